@@ -0,0 +1,431 @@
+import java.util.Arrays;
+
+/**
+ * Análise semântica de um programa C- sobre sua {@link ArvoreSintatica}.
+ * Resolve cada identificador usado na declaração visível, com as regras
+ * de escopo da linguagem (globais, parâmetros e blocos aninhados), e
+ * verifica:
+ * - declarações: nomes repetidos no mesmo escopo, variáveis void e
+ *   vetores de tamanho zero;
+ * - usos: nomes não declarados, funções usadas como variáveis,
+ *   indexação de escalares e vetores usados sem índice;
+ * - chamadas: chamada de não-funções, quantidade de argumentos,
+ *   vetores passados no lugar de inteiros (e vice-versa) e funções void
+ *   usadas como valor;
+ * - retornos: coerência com o tipo da função.
+ *
+ * As funções predefinidas int input() e void output(int x) são
+ * declaradas no escopo global. A análise percorre a árvore uma vez, com
+ * uma {@link TabelaSimbolos}, e custa tempo linear no tamanho do
+ * programa. Os erros são registrados em {@link Diagnosticos}, após os do
+ * léxico e do parser; a árvore deve vir de um parsing sem erros.
+ */
+public class AnalisadorSemantico {
+    private static final long BYTES_POR_NIVEL = 512;
+    private static final Token.Tipo[] TIPOS = Token.Tipo.values();
+    
+    /**
+     * Tipos das expressões. ERRO marca uma expressão cujo erro já foi
+     * registrado, para que não gere outros em cascata.
+     */
+    private enum Tipo {
+        INT, VOID, VETOR, ERRO
+    }
+    
+    private final ArvoreSintatica arvore;
+    private Diagnosticos diagnosticos;
+    private TabelaSimbolos simbolos;
+    // Nó da declaração de cada nome usado, indexado pelo nó do uso
+    private int[] declaracoes;
+    private int funcaoAtual;
+    private int erros;
+    
+    public AnalisadorSemantico(ArvoreSintatica arvore) {
+        this.arvore = arvore;
+        this.diagnosticos = new Diagnosticos();
+    }
+    
+    /**
+     * Executa a análise
+     * @return true se o programa não tem erros semânticos
+     */
+    public boolean analisar() {
+        int registrados = diagnosticos.tamanho();
+        try {
+            return executar();
+        } catch (StackOverflowError e) {
+            // A recursão acompanha a profundidade da árvore
+            diagnosticos.truncar(registrados);
+            return analisarComPilha(arvore.profundidade());
+        }
+    }
+    
+    private boolean executar() {
+        declaracoes = new int[arvore.tamanho()];
+        Arrays.fill(declaracoes, -1);
+        simbolos = new TabelaSimbolos();
+        erros = 0;
+        int raiz = arvore.getRaiz();
+        if (raiz < 0) {
+            return true;
+        }
+        try {
+            simbolos.abrirEscopo();
+            predefinir();
+            for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+                 declaracao = arvore.getProximoIrmao(declaracao)) {
+                if (arvore.getTipo(declaracao) == ArvoreSintatica.No.DECL_FUNCAO) {
+                    funcao(declaracao);
+                } else {
+                    variavel(declaracao);
+                }
+            }
+            simbolos.fecharEscopo();
+        } catch (Diagnosticos.LimiteAtingido e) {
+            return false;
+        }
+        return erros == 0;
+    }
+    
+    /**
+     * Executa a análise em uma thread com pilha para a profundidade indicada
+     */
+    private boolean analisarComPilha(int profundidade) {
+        try {
+            return Pilha.executarComPilha("AnalisadorSemantico", profundidade, BYTES_POR_NIVEL, this::executar);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    /**
+     * Declara as funções predefinidas usadas pelo programa. Um nome que
+     * não está na tabela de nomes não aparece na fonte.
+     */
+    private void predefinir() {
+        TabelaNomes nomes = arvore.getNomes();
+        int entrada = nomes.buscar("input");
+        if (entrada >= 0) {
+            simbolos.declarar(entrada, TabelaSimbolos.Categoria.FUNCAO, Token.Tipo.INT, -1);
+        }
+        int saida = nomes.buscar("output");
+        if (saida >= 0) {
+            int funcao = simbolos.declarar(saida, TabelaSimbolos.Categoria.FUNCAO, Token.Tipo.VOID, -1);
+            simbolos.adicionarParametro(funcao, false);
+        }
+    }
+    
+    // ========== Declarações ==========
+    
+    /**
+     * Declara uma variável, vetor ou parâmetro no escopo atual
+     * @return o símbolo, ou -1 se o nome já estava declarado
+     */
+    private int variavel(int no) {
+        ArvoreSintatica.No tipoNo = arvore.getTipo(no);
+        boolean vetor = tipoNo == ArvoreSintatica.No.DECL_VETOR || tipoNo == ArvoreSintatica.No.PARAMETRO_VETOR;
+        Token.Tipo tipo = tipoDeclarado(no);
+        if (tipo == Token.Tipo.VOID) {
+            erro(Diagnosticos.Codigo.VARIAVEL_VOID, no);
+        }
+        if (tipoNo == ArvoreSintatica.No.DECL_VETOR) {
+            // Constantes não são negativas, e as que não cabem em int já
+            // foram rejeitadas pelo parser
+            int tamanho = arvore.getProximoIrmao(arvore.getPrimeiroFilho(no));
+            if (tamanho >= 0 && arvore.getValor(tamanho) <= 0) {
+                erro(Diagnosticos.Codigo.TAMANHO_VETOR, no);
+            }
+        }
+        return declarar(no, vetor ? TabelaSimbolos.Categoria.VETOR : TabelaSimbolos.Categoria.VARIAVEL, tipo);
+    }
+    
+    /**
+     * Declara a função e analisa seus parâmetros e corpo. O corpo está
+     * no mesmo escopo dos parâmetros.
+     */
+    private void funcao(int no) {
+        int tipo = arvore.getPrimeiroFilho(no);
+        int parametros = tipo >= 0 ? arvore.getProximoIrmao(tipo) : -1;
+        int corpo = parametros >= 0 ? arvore.getProximoIrmao(parametros) : -1;
+        int funcao = declarar(no, TabelaSimbolos.Categoria.FUNCAO, tipoDeclarado(no));
+        funcaoAtual = no;
+        simbolos.abrirEscopo();
+        if (parametros >= 0) {
+            for (int parametro = arvore.getPrimeiroFilho(parametros); parametro >= 0;
+                 parametro = arvore.getProximoIrmao(parametro)) {
+                variavel(parametro);
+                if (funcao >= 0) {
+                    simbolos.adicionarParametro(funcao, arvore.getTipo(parametro) == ArvoreSintatica.No.PARAMETRO_VETOR);
+                }
+            }
+        }
+        if (corpo >= 0) {
+            conteudo(corpo);
+        }
+        simbolos.fecharEscopo();
+    }
+    
+    private int declarar(int no, TabelaSimbolos.Categoria categoria, Token.Tipo tipo) {
+        int nome = arvore.getValor(no);
+        if (nome < 0) {
+            return -1;
+        }
+        int simbolo = simbolos.declarar(nome, categoria, tipo, no);
+        if (simbolo < 0) {
+            erro(Diagnosticos.Codigo.REDECLARADO, no);
+        }
+        return simbolo;
+    }
+    
+    /**
+     * Retorna o tipo (INT ou VOID) do filho TIPO de uma declaração
+     */
+    private Token.Tipo tipoDeclarado(int no) {
+        int tipo = arvore.getPrimeiroFilho(no);
+        if (tipo < 0 || arvore.getTipo(tipo) != ArvoreSintatica.No.TIPO) {
+            return Token.Tipo.INT;
+        }
+        return TIPOS[arvore.getValor(tipo)];
+    }
+    
+    // ========== Comandos ==========
+    
+    /**
+     * Analisa as declarações locais e os comandos de um bloco no escopo atual
+     */
+    private void conteudo(int bloco) {
+        for (int filho = arvore.getPrimeiroFilho(bloco); filho >= 0; filho = arvore.getProximoIrmao(filho)) {
+            ArvoreSintatica.No tipo = arvore.getTipo(filho);
+            if (tipo == ArvoreSintatica.No.DECL_VARIAVEL || tipo == ArvoreSintatica.No.DECL_VETOR) {
+                variavel(filho);
+            } else {
+                comando(filho);
+            }
+        }
+    }
+    
+    private void comando(int no) {
+        switch (arvore.getTipo(no)) {
+            case BLOCO:
+                simbolos.abrirEscopo();
+                conteudo(no);
+                simbolos.fecharEscopo();
+                break;
+            case SE:
+            case ENQUANTO: {
+                // Condição seguida do corpo (e, no SE, do senão)
+                int condicao = arvore.getPrimeiroFilho(no);
+                valor(condicao);
+                for (int corpo = arvore.getProximoIrmao(condicao); corpo >= 0; corpo = arvore.getProximoIrmao(corpo)) {
+                    comando(corpo);
+                }
+                break;
+            }
+            case RETORNO:
+                retorno(no);
+                break;
+            case VAZIO:
+                break;
+            default:
+                // Comando expressão: o resultado é descartado e pode ser void
+                expressao(no);
+                break;
+        }
+    }
+    
+    private void retorno(int no) {
+        int expressao = arvore.getPrimeiroFilho(no);
+        boolean funcaoVoid = tipoDeclarado(funcaoAtual) == Token.Tipo.VOID;
+        if (expressao < 0) {
+            if (!funcaoVoid) {
+                erro(Diagnosticos.Codigo.RETORNO_SEM_VALOR, no, arvore.getNome(funcaoAtual), null);
+            }
+        } else if (funcaoVoid) {
+            expressao(expressao);
+            erro(Diagnosticos.Codigo.RETORNO_COM_VALOR, no, arvore.getNome(funcaoAtual), null);
+        } else {
+            valor(expressao);
+        }
+    }
+    
+    // ========== Expressões ==========
+    
+    /**
+     * Analisa uma expressão usada como valor inteiro
+     */
+    private Tipo valor(int no) {
+        Tipo tipo = expressao(no);
+        if (tipo == Tipo.VOID) {
+            erro(Diagnosticos.Codigo.VALOR_VOID, no);
+            return Tipo.ERRO;
+        }
+        if (tipo == Tipo.VETOR) {
+            erro(Diagnosticos.Codigo.VETOR_SEM_INDICE, no);
+            return Tipo.ERRO;
+        }
+        return tipo;
+    }
+    
+    private Tipo expressao(int no) {
+        if (no < 0) {
+            return Tipo.ERRO;
+        }
+        switch (arvore.getTipo(no)) {
+            case CONSTANTE:
+                return Tipo.INT;
+            case OPERACAO: {
+                int esquerda = arvore.getPrimeiroFilho(no);
+                valor(esquerda);
+                valor(esquerda >= 0 ? arvore.getProximoIrmao(esquerda) : -1);
+                return Tipo.INT;
+            }
+            case ATRIBUICAO: {
+                int alvo = arvore.getPrimeiroFilho(no);
+                Tipo tipo = alvo >= 0 && arvore.getTipo(alvo) == ArvoreSintatica.No.INDEXACAO
+                            ? indexacao(alvo) : valor(alvo);
+                valor(alvo >= 0 ? arvore.getProximoIrmao(alvo) : -1);
+                return tipo == Tipo.ERRO ? Tipo.ERRO : Tipo.INT;
+            }
+            case VARIAVEL:
+                return variavelUsada(no);
+            case INDEXACAO:
+                return indexacao(no);
+            case CHAMADA:
+                return chamada(no);
+            default:
+                return Tipo.ERRO;
+        }
+    }
+    
+    private Tipo variavelUsada(int no) {
+        int simbolo = resolver(no);
+        if (simbolo < 0) {
+            return Tipo.ERRO;
+        }
+        switch (simbolos.getCategoria(simbolo)) {
+            case FUNCAO:
+                erro(Diagnosticos.Codigo.FUNCAO_COMO_VARIAVEL, no);
+                return Tipo.ERRO;
+            case VETOR:
+                return Tipo.VETOR;
+            default:
+                return Tipo.INT;
+        }
+    }
+    
+    private Tipo indexacao(int no) {
+        int simbolo = resolver(no);
+        Tipo tipo = Tipo.INT;
+        if (simbolo < 0) {
+            tipo = Tipo.ERRO;
+        } else if (simbolos.getCategoria(simbolo) != TabelaSimbolos.Categoria.VETOR) {
+            erro(Diagnosticos.Codigo.NAO_E_VETOR, no);
+            tipo = Tipo.ERRO;
+        }
+        valor(arvore.getPrimeiroFilho(no));
+        return tipo;
+    }
+    
+    private Tipo chamada(int no) {
+        int simbolo = resolver(no);
+        if (simbolo >= 0 && simbolos.getCategoria(simbolo) != TabelaSimbolos.Categoria.FUNCAO) {
+            erro(Diagnosticos.Codigo.NAO_E_FUNCAO, no);
+            simbolo = -1;
+        }
+        int esperados = simbolo >= 0 ? simbolos.getQuantidadeParametros(simbolo) : 0;
+        int argumentos = 0;
+        for (int argumento = arvore.getPrimeiroFilho(no); argumento >= 0;
+             argumento = arvore.getProximoIrmao(argumento)) {
+            if (simbolo < 0 || argumentos >= esperados) {
+                expressao(argumento);
+            } else if (simbolos.isParametroVetor(simbolo, argumentos)) {
+                Tipo tipo = expressao(argumento);
+                if (tipo != Tipo.VETOR && tipo != Tipo.ERRO) {
+                    erro(Diagnosticos.Codigo.ARGUMENTO_VETOR, no, arvore.getNome(no),
+                         " (argumento " + (argumentos + 1) + ": esperado vetor)");
+                }
+            } else {
+                Tipo tipo = expressao(argumento);
+                if (tipo == Tipo.VETOR) {
+                    erro(Diagnosticos.Codigo.ARGUMENTO_VETOR, no, arvore.getNome(no),
+                         " (argumento " + (argumentos + 1) + ": esperado inteiro)");
+                } else if (tipo == Tipo.VOID) {
+                    erro(Diagnosticos.Codigo.VALOR_VOID, argumento);
+                }
+            }
+            argumentos++;
+        }
+        if (simbolo < 0) {
+            return Tipo.ERRO;
+        }
+        if (argumentos != esperados) {
+            erro(Diagnosticos.Codigo.ARGUMENTOS, no, arvore.getNome(no),
+                 " (esperados " + esperados + ", recebidos " + argumentos + ")");
+        }
+        return simbolos.getTipo(simbolo) == Token.Tipo.VOID ? Tipo.VOID : Tipo.INT;
+    }
+    
+    /**
+     * Resolve o nome usado no nó, registrando a declaração encontrada
+     * @return o símbolo, ou -1 (com o erro já registrado)
+     */
+    private int resolver(int no) {
+        int nome = arvore.getValor(no);
+        int simbolo = nome >= 0 ? simbolos.buscar(nome) : -1;
+        if (simbolo < 0) {
+            erro(Diagnosticos.Codigo.NAO_DECLARADO, no);
+            return -1;
+        }
+        declaracoes[no] = simbolos.getDeclaracao(simbolo);
+        return simbolo;
+    }
+    
+    // ========== Erros ==========
+    
+    private void erro(Diagnosticos.Codigo codigo, int no) {
+        erro(codigo, no, arvore.getNome(no), null);
+    }
+    
+    /**
+     * Registra um erro na posição do nó, abandonando a análise se o
+     * limite de erros foi atingido
+     */
+    private void erro(Diagnosticos.Codigo codigo, int no, String nome, String detalhe) {
+        erros++;
+        if (!diagnosticos.registrarSemantico(codigo, arvore.getPosicao(no), arvore.getLinha(no),
+                                             arvore.getColuna(no), nome, detalhe)) {
+            throw Diagnosticos.LimiteAtingido.INSTANCIA;
+        }
+    }
+    
+    // ========== Consulta ==========
+    
+    /**
+     * Retorna o nó da declaração do nome usado em um nó VARIAVEL,
+     * INDEXACAO ou CHAMADA, ou -1 se o nome não foi resolvido ou é de
+     * uma função predefinida
+     */
+    public int getDeclaracao(int no) {
+        return declaracoes[no];
+    }
+    
+    /**
+     * Retorna a quantidade de erros semânticos da última análise
+     */
+    public int getQuantidadeErros() {
+        return erros;
+    }
+    
+    public Diagnosticos getDiagnosticos() {
+        return diagnosticos;
+    }
+    
+    /**
+     * Define o coletor de diagnósticos, para reunir os erros das fases
+     * em um só
+     */
+    public void setDiagnosticos(Diagnosticos diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
+}
@@ -0,0 +1,383 @@
+import java.util.Arrays;
+
+/**
+ * Árvore sintática abstrata guardada em uma arena: cada nó é um índice
+ * inteiro em vetores paralelos (tipo, valor, posição, primeiro filho e
+ * próximo irmão), sem um objeto por nó.
+ *
+ * O significado de 'valor' depende do tipo do nó: id do nome (na tabela
+ * de nomes) para declarações, variáveis e chamadas; o valor numérico
+ * para constantes; o {@link Operador} para operações; o
+ * {@link Token.Tipo} (INT ou VOID) para tipos.
+ */
+public class ArvoreSintatica {
+    private static final int CAPACIDADE_INICIAL = 256;
+    private static final No[] NOS = No.values();
+    private static final Operador[] OPERADORES = Operador.values();
+    
+    /**
+     * Tipos de nó e seus filhos, na ordem
+     */
+    public enum No {
+        PROGRAMA,          // declarações
+        TIPO,              // (nenhum)
+        DECL_VARIAVEL,     // tipo
+        DECL_VETOR,        // tipo, tamanho (constante)
+        DECL_FUNCAO,       // tipo, parâmetros, bloco
+        PARAMETROS,        // parâmetros
+        PARAMETRO,         // tipo
+        PARAMETRO_VETOR,   // tipo
+        BLOCO,             // declarações locais e comandos
+        SE,                // condição, então, senão (opcional)
+        ENQUANTO,          // condição, corpo
+        RETORNO,           // expressão (opcional)
+        VAZIO,             // (nenhum)
+        ATRIBUICAO,        // alvo (variável ou indexação), valor
+        OPERACAO,          // esquerda, direita
+        VARIAVEL,          // (nenhum)
+        INDEXACAO,         // índice
+        CHAMADA,           // argumentos
+        CONSTANTE          // (nenhum)
+    }
+    
+    /**
+     * Operadores binários, guardados no valor dos nós OPERACAO
+     */
+    public enum Operador {
+        SOMA("+"), SUBTRACAO("-"), MULTIPLICACAO("*"), DIVISAO("/"),
+        MENOR("<"), MENOR_IGUAL("<="), MAIOR(">"), MAIOR_IGUAL(">="),
+        IGUAL("=="), DIFERENTE("!=");
+        
+        private final String simbolo;
+        
+        Operador(String simbolo) {
+            this.simbolo = simbolo;
+        }
+        
+        public String getSimbolo() {
+            return simbolo;
+        }
+    }
+    
+    private final TabelaNomes nomes;
+    private final IndiceLinhas linhas;
+    private byte[] tipos;
+    private int[] valores;
+    private int[] posicoes;
+    private int[] primeirosFilhos;
+    private int[] proximosIrmaos;
+    // Usado apenas na construção, para acrescentar filhos no fim
+    private int[] ultimosFilhos;
+    private int tamanho;
+    private int raiz = -1;
+    
+    /**
+     * @param nomes Tabela dos nomes referenciados pelos nós
+     * @param linhas Índice de linhas da fonte, para localizar os nós
+     * @param capacidade Quantidade esperada de nós
+     */
+    public ArvoreSintatica(TabelaNomes nomes, IndiceLinhas linhas, int capacidade) {
+        capacidade = Math.max(capacidade, CAPACIDADE_INICIAL);
+        this.nomes = nomes;
+        this.linhas = linhas;
+        this.tipos = new byte[capacidade];
+        this.valores = new int[capacidade];
+        this.posicoes = new int[capacidade];
+        this.primeirosFilhos = new int[capacidade];
+        this.proximosIrmaos = new int[capacidade];
+        this.ultimosFilhos = new int[capacidade];
+    }
+    
+    // ========== Construção ==========
+    
+    /**
+     * Cria um nó sem filhos
+     * @param posicao Posição na fonte do token que originou o nó
+     * @return o índice do nó
+     */
+    public int novo(No tipo, int valor, int posicao) {
+        if (tamanho == tipos.length) {
+            crescer();
+        }
+        int no = tamanho++;
+        tipos[no] = (byte) tipo.ordinal();
+        valores[no] = valor;
+        posicoes[no] = posicao;
+        primeirosFilhos[no] = -1;
+        proximosIrmaos[no] = -1;
+        ultimosFilhos[no] = -1;
+        return no;
+    }
+    
+    /**
+     * Acrescenta um filho ao fim da lista de filhos do nó. Nós ausentes
+     * (-1, após um erro de sintaxe) são ignorados.
+     */
+    public void adicionarFilho(int pai, int filho) {
+        if (pai < 0 || filho < 0) {
+            return;
+        }
+        int ultimo = ultimosFilhos[pai];
+        if (ultimo < 0) {
+            primeirosFilhos[pai] = filho;
+        } else {
+            proximosIrmaos[ultimo] = filho;
+        }
+        ultimosFilhos[pai] = filho;
+        // O filho pode vir de outro pai (nó reaproveitado no parsing incremental)
+        proximosIrmaos[filho] = -1;
+    }
+    
+    public void setRaiz(int raiz) {
+        this.raiz = raiz;
+    }
+    
+    /**
+     * Copia para esta árvore a subárvore de 'no' em outra árvore (que
+     * deve usar a mesma tabela de nomes), preservando a ordem dos filhos
+     * @return o índice da cópia de 'no' nesta árvore, ou -1 se 'no' é -1
+     */
+    public int anexar(ArvoreSintatica origem, int no) {
+        if (no < 0) {
+            return -1;
+        }
+        // Pares (nó na origem, cópia do pai) a visitar, em pré-ordem
+        int[] pendentes = new int[32];
+        int topo = 0;
+        int copia = novo(origem.getTipo(no), origem.valores[no], origem.posicoes[no]);
+        for (int filho = origem.primeirosFilhos[no]; filho >= 0; filho = origem.proximosIrmaos[filho]) {
+            if (topo + 2 > pendentes.length) {
+                pendentes = Arrays.copyOf(pendentes, pendentes.length * 2);
+            }
+            pendentes[topo++] = filho;
+            pendentes[topo++] = copia;
+        }
+        // Os irmãos são invertidos na pilha para serem copiados em ordem
+        inverterPares(pendentes, 0, topo);
+        while (topo > 0) {
+            int pai = pendentes[--topo];
+            int atual = pendentes[--topo];
+            int novoNo = novo(origem.getTipo(atual), origem.valores[atual], origem.posicoes[atual]);
+            adicionarFilho(pai, novoNo);
+            int inicio = topo;
+            for (int filho = origem.primeirosFilhos[atual]; filho >= 0; filho = origem.proximosIrmaos[filho]) {
+                if (topo + 2 > pendentes.length) {
+                    pendentes = Arrays.copyOf(pendentes, pendentes.length * 2);
+                }
+                pendentes[topo++] = filho;
+                pendentes[topo++] = novoNo;
+            }
+            inverterPares(pendentes, inicio, topo);
+        }
+        return copia;
+    }
+    
+    /**
+     * Soma 'delta' às posições dos nós [de, ate), após uma edição na
+     * fonte antes deles
+     */
+    public void deslocar(int de, int ate, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (int no = de; no < ate; no++) {
+            posicoes[no] += delta;
+        }
+    }
+    
+    private static void inverterPares(int[] pares, int de, int ate) {
+        for (int i = de, j = ate - 2; i < j; i += 2, j -= 2) {
+            int no = pares[i];
+            int pai = pares[i + 1];
+            pares[i] = pares[j];
+            pares[i + 1] = pares[j + 1];
+            pares[j] = no;
+            pares[j + 1] = pai;
+        }
+    }
+    
+    private void crescer() {
+        int capacidade = tipos.length * 2;
+        tipos = Arrays.copyOf(tipos, capacidade);
+        valores = Arrays.copyOf(valores, capacidade);
+        posicoes = Arrays.copyOf(posicoes, capacidade);
+        primeirosFilhos = Arrays.copyOf(primeirosFilhos, capacidade);
+        proximosIrmaos = Arrays.copyOf(proximosIrmaos, capacidade);
+        ultimosFilhos = Arrays.copyOf(ultimosFilhos, capacidade);
+    }
+    
+    // ========== Consulta ==========
+    
+    /**
+     * Retorna o nó raiz (PROGRAMA), ou -1 se a árvore está vazia
+     */
+    public int getRaiz() {
+        return raiz;
+    }
+    
+    /**
+     * Retorna a quantidade de nós
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+    
+    public No getTipo(int no) {
+        return NOS[tipos[no]];
+    }
+    
+    public int getValor(int no) {
+        return valores[no];
+    }
+    
+    public int getPosicao(int no) {
+        return posicoes[no];
+    }
+    
+    /**
+     * Retorna o primeiro filho do nó, ou -1
+     */
+    public int getPrimeiroFilho(int no) {
+        return primeirosFilhos[no];
+    }
+    
+    /**
+     * Retorna o próximo irmão do nó, ou -1
+     */
+    public int getProximoIrmao(int no) {
+        return proximosIrmaos[no];
+    }
+    
+    /**
+     * Retorna o nome associado ao nó (declarações, variáveis e chamadas)
+     */
+    public String getNome(int no) {
+        return valores[no] >= 0 ? nomes.nome(valores[no]) : "?";
+    }
+    
+    /**
+     * Retorna o operador de um nó OPERACAO
+     */
+    public Operador getOperador(int no) {
+        return OPERADORES[valores[no]];
+    }
+    
+    /**
+     * Calcula a linha do nó na fonte
+     */
+    public int getLinha(int no) {
+        return linhas.linha(posicoes[no]);
+    }
+    
+    /**
+     * Calcula a coluna do nó na fonte
+     */
+    public int getColuna(int no) {
+        return linhas.coluna(posicoes[no]);
+    }
+    
+    public TabelaNomes getNomes() {
+        return nomes;
+    }
+    
+    /**
+     * Calcula a profundidade da árvore (1 para a raiz sozinha, 0 se a
+     * árvore está vazia), sem recursão
+     */
+    public int profundidade() {
+        if (raiz < 0) {
+            return 0;
+        }
+        int[] pilha = new int[64];
+        int[] niveis = new int[64];
+        int topo = 0;
+        int maxima = 0;
+        pilha[topo] = raiz;
+        niveis[topo++] = 1;
+        while (topo > 0) {
+            int no = pilha[--topo];
+            int nivel = niveis[topo];
+            maxima = Math.max(maxima, nivel);
+            for (int filho = primeirosFilhos[no]; filho >= 0; filho = proximosIrmaos[filho]) {
+                if (topo == pilha.length) {
+                    pilha = Arrays.copyOf(pilha, topo * 2);
+                    niveis = Arrays.copyOf(niveis, topo * 2);
+                }
+                pilha[topo] = filho;
+                niveis[topo++] = nivel + 1;
+            }
+        }
+        return maxima;
+    }
+    
+    /**
+     * Retorna a árvore em texto indentado, um nó por linha. Percorre a
+     * árvore com uma pilha explícita, pois ela pode ser tão profunda
+     * quanto o aninhamento do programa.
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder();
+        if (raiz < 0) {
+            return "";
+        }
+        int[] pilha = new int[64];
+        int[] niveis = new int[64];
+        int topo = 0;
+        pilha[topo] = raiz;
+        niveis[topo++] = 0;
+        while (topo > 0) {
+            int no = pilha[--topo];
+            int nivel = niveis[topo];
+            imprimir(no, nivel, texto);
+            // Empilha os filhos em ordem inversa, para visitá-los em ordem
+            int inicio = topo;
+            for (int filho = primeirosFilhos[no]; filho >= 0; filho = proximosIrmaos[filho]) {
+                if (topo == pilha.length) {
+                    pilha = Arrays.copyOf(pilha, topo * 2);
+                    niveis = Arrays.copyOf(niveis, topo * 2);
+                }
+                pilha[topo] = filho;
+                niveis[topo++] = nivel + 1;
+            }
+            for (int i = inicio, j = topo - 1; i < j; i++, j--) {
+                int troca = pilha[i];
+                pilha[i] = pilha[j];
+                pilha[j] = troca;
+            }
+        }
+        return texto.toString();
+    }
+    
+    private void imprimir(int no, int nivel, StringBuilder texto) {
+        for (int i = 0; i < nivel; i++) {
+            texto.append("  ");
+        }
+        No tipo = getTipo(no);
+        texto.append(tipo);
+        switch (tipo) {
+            case TIPO:
+                texto.append(' ').append(Token.Tipo.values()[valores[no]].name().toLowerCase());
+                break;
+            case CONSTANTE:
+                texto.append(' ').append(valores[no]);
+                break;
+            case OPERACAO:
+                texto.append(' ').append(getOperador(no).getSimbolo());
+                break;
+            case DECL_VARIAVEL:
+            case DECL_VETOR:
+            case DECL_FUNCAO:
+            case PARAMETRO:
+            case PARAMETRO_VETOR:
+            case VARIAVEL:
+            case INDEXACAO:
+            case CHAMADA:
+                texto.append(' ').append(getNome(no));
+                break;
+            default:
+                break;
+        }
+        texto.append('\n');
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntSupplier;
+
+/**
+ * Medição de desempenho dos analisadores léxico e sintático, sobre uma
+ * fonte gerada por {@link GeradorProgramas}
+ * Uso: java Benchmark [tamanho da fonte em KB] [semente]
+ */
+public class Benchmark {
+    private static final int AQUECIMENTO = 5;
+    private static final int MEDICOES = 10;
+    
+    public static void main(String[] args) {
+        int kb = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        long semente = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        String fonte = GeradorProgramas.gerar(semente, kb * 1024);
+        
+        System.out.println("=== Benchmark do Analisador Léxico ===");
+        System.out.printf("Fonte: %d KB%n%n", fonte.length() / 1024);
+        
+        double anterior = medir("Caractere a caractere (implementação anterior)",
+                                () -> new LexicoCaractere(fonte).analisar().size());
+        medir("Autômato, lista de tokens (analisar)",
+              () -> new Lexico(fonte).analisar().size());
+        double automato = medir("Autômato, buffer compacto (analisarBuffer)",
+                                () -> new Lexico(fonte).analisarBuffer().tamanho());
+        conferirParalelo(fonte);
+        conferirParalelo(ConferenciaLexico.comentarMeio(fonte));
+        double trechos = medir("Autômato paralelo em trechos (" + ForkJoinPool.commonPool().getParallelism() + " threads)",
+                               () -> {
+                                   Lexico lexico = new Lexico(fonte);
+                                   lexico.setParalelo(ForkJoinPool.commonPool());
+                                   return lexico.analisarBuffer().tamanho();
+                               });
+        
+        System.out.printf("%nGanho do autômato com buffer: %.2fx%n", automato / anterior);
+        System.out.printf("Paralelo / sequencial: %.2fx%n", trechos / automato);
+        
+        System.out.println("\n=== Benchmark do Analisador Sintático ===");
+        BufferTokens tokens = new Lexico(fonte).analisarBuffer();
+        double recursivo = medir("Descendente recursivo (ParserLL1)",
+                                 () -> analisar(new ParserLL1(tokens).parse(), tokens));
+        double tabela = medir("Dirigido por tabela (ParserTabela)",
+                              () -> analisar(new ParserTabela(tokens).parse(), tokens));
+        double paralelo = medir("Descendente recursivo paralelo (" + ForkJoinPool.commonPool().getParallelism() + " threads)",
+                                () -> {
+                                    ParserLL1 parser = new ParserLL1(tokens);
+                                    parser.setParalelo(ForkJoinPool.commonPool());
+                                    return analisar(parser.parse(), tokens);
+                                });
+        // Vazão equivalente: tokens do programa inteiro pelo tempo do reparse
+        ParserLL1 incremental = new ParserLL1(new Lexico(new StringBuilder(fonte)).analisarBuffer());
+        incremental.setIncremental(true);
+        incremental.parse();
+        int meio = tokens.getInicio(constanteApos(tokens, tokens.tamanho() / 2));
+        double reparse = medir("Reparse incremental (edição de 1 caractere)",
+                               () -> analisar(incremental.reanalisar(meio, 1, "1"), tokens));
+        
+        System.out.printf("%nTabela / recursivo: %.2fx%n", tabela / recursivo);
+        System.out.printf("Paralelo / recursivo: %.2fx%n", paralelo / recursivo);
+        System.out.printf("Incremental / recursivo: %.2fx%n", reparse / recursivo);
+    }
+    
+    /**
+     * Confere o resultado de um parsing e retorna a quantidade de tokens
+     */
+    private static int analisar(boolean sucesso, BufferTokens tokens) {
+        if (!sucesso) {
+            throw new IllegalStateException("Fonte gerada rejeitada pelo parser");
+        }
+        return tokens.tamanho();
+    }
+    
+    /**
+     * Confere se a análise léxica paralela produz exatamente o resultado
+     * da sequencial (a conferência completa, sobre muitas fontes, é a de
+     * {@link ConferenciaLexico})
+     */
+    private static void conferirParalelo(String fonte) {
+        String diferenca = ConferenciaLexico.conferir(fonte, 0);
+        if (diferenca != null) {
+            throw new IllegalStateException("Análise léxica paralela difere da sequencial: " + diferenca);
+        }
+    }
+    
+    /**
+     * Executa a tarefa repetidamente e imprime a vazão em tokens/s
+     * @return a vazão média
+     */
+    private static double medir(String nome, IntSupplier tarefa) {
+        for (int i = 0; i < AQUECIMENTO; i++) {
+            tarefa.getAsInt();
+        }
+        
+        double melhor = 0;
+        double soma = 0;
+        for (int i = 0; i < MEDICOES; i++) {
+            long inicio = System.nanoTime();
+            int tokens = tarefa.getAsInt();
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            double vazao = tokens / segundos;
+            melhor = Math.max(melhor, vazao);
+            soma += vazao;
+        }
+        
+        System.out.printf("%-50s %8.2f M tokens/s (melhor %.2f)%n",
+                          nome, soma / MEDICOES / 1e6, melhor / 1e6);
+        return soma / MEDICOES;
+    }
+    
+    /**
+     * Retorna o índice da primeira constante a partir do token indicado
+     */
+    private static int constanteApos(BufferTokens tokens, int inicio) {
+        int i = inicio;
+        while (tokens.getTipo(i) != Token.Tipo.CONTINT) {
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * Implementação anterior do analisador léxico, mantida apenas como
+     * referência de comparação: percorre a fonte caractere a caractere
+     * com Character.isXxx e cria um Token (e uma String) por lexema
+     */
+    private static class LexicoCaractere {
+        private final String codigo;
+        private int posicao;
+        private int linha = 1;
+        private int coluna = 1;
+        private final List<Token> tokens = new ArrayList<>();
+        
+        LexicoCaractere(String codigo) {
+            this.codigo = codigo;
+        }
+        
+        List<Token> analisar() {
+            while (posicao < codigo.length()) {
+                while (posicao < codigo.length() && Character.isWhitespace(codigo.charAt(posicao))) {
+                    avancar();
+                }
+                if (posicao >= codigo.length()) {
+                    break;
+                }
+                char atual = codigo.charAt(posicao);
+                int inicio = posicao;
+                int colInicio = coluna;
+                if (Character.isLetter(atual) || atual == '_') {
+                    while (posicao < codigo.length() &&
+                           (Character.isLetterOrDigit(codigo.charAt(posicao)) || codigo.charAt(posicao) == '_')) {
+                        avancar();
+                    }
+                    String valor = codigo.substring(inicio, posicao);
+                    tokens.add(new Token(palavraChave(valor), valor, linha, colInicio));
+                } else if (Character.isDigit(atual)) {
+                    while (posicao < codigo.length() && Character.isDigit(codigo.charAt(posicao))) {
+                        avancar();
+                    }
+                    tokens.add(new Token(Token.Tipo.CONTINT, codigo.substring(inicio, posicao), linha, colInicio));
+                } else {
+                    simbolo(atual, colInicio);
+                }
+            }
+            tokens.add(new Token(Token.Tipo.EOF, "", linha, coluna));
+            return tokens;
+        }
+        
+        private Token.Tipo palavraChave(String palavra) {
+            switch (palavra) {
+                case "int": return Token.Tipo.INT;
+                case "void": return Token.Tipo.VOID;
+                case "if": return Token.Tipo.IF;
+                case "else": return Token.Tipo.ELSE;
+                case "while": return Token.Tipo.WHILE;
+                case "return": return Token.Tipo.RETURN;
+                default: return Token.Tipo.IDENT;
+            }
+        }
+        
+        private void simbolo(char atual, int colInicio) {
+            char proximo = posicao + 1 < codigo.length() ? codigo.charAt(posicao + 1) : '\0';
+            switch (atual) {
+                case ';': emitir(Token.Tipo.PONTO_VIRGULA, ";", colInicio); break;
+                case ',': emitir(Token.Tipo.VIRGULA, ",", colInicio); break;
+                case '(': emitir(Token.Tipo.ABRE_PARENTESES, "(", colInicio); break;
+                case ')': emitir(Token.Tipo.FECHA_PARENTESES, ")", colInicio); break;
+                case '[': emitir(Token.Tipo.ABRE_COLCHETES, "[", colInicio); break;
+                case ']': emitir(Token.Tipo.FECHA_COLCHETES, "]", colInicio); break;
+                case '{': emitir(Token.Tipo.ABRE_CHAVES, "{", colInicio); break;
+                case '}': emitir(Token.Tipo.FECHA_CHAVES, "}", colInicio); break;
+                case '+': emitir(Token.Tipo.OPADITIVO, "+", colInicio); break;
+                case '-': emitir(Token.Tipo.OPADITIVO, "-", colInicio); break;
+                case '*': emitir(Token.Tipo.OPMULT, "*", colInicio); break;
+                case '=':
+                case '<':
+                case '>':
+                case '!':
+                    if (proximo == '=') {
+                        emitir(Token.Tipo.OPRELACIONAL, atual + "=", colInicio);
+                        avancar();
+                    } else if (atual == '=') {
+                        emitir(Token.Tipo.ATRIBUICAO, "=", colInicio);
+                    } else if (atual != '!') {
+                        emitir(Token.Tipo.OPRELACIONAL, String.valueOf(atual), colInicio);
+                    } else {
+                        avancar();
+                    }
+                    break;
+                case '/':
+                    if (proximo == '/') {
+                        while (posicao < codigo.length() && codigo.charAt(posicao) != '\n') {
+                            avancar();
+                        }
+                    } else if (proximo == '*') {
+                        avancar();
+                        avancar();
+                        while (posicao < codigo.length()) {
+                            if (codigo.charAt(posicao) == '*' && posicao + 1 < codigo.length() &&
+                                codigo.charAt(posicao + 1) == '/') {
+                                avancar();
+                                avancar();
+                                break;
+                            }
+                            avancar();
+                        }
+                    } else {
+                        emitir(Token.Tipo.OPMULT, "/", colInicio);
+                    }
+                    break;
+                default:
+                    avancar();
+                    break;
+            }
+        }
+        
+        private void emitir(Token.Tipo tipo, String valor, int colInicio) {
+            tokens.add(new Token(tipo, valor, linha, colInicio));
+            avancar();
+        }
+        
+        private void avancar() {
+            if (posicao < codigo.length()) {
+                if (codigo.charAt(posicao) == '\n') {
+                    linha++;
+                    coluna = 1;
+                } else {
+                    coluna++;
+                }
+                posicao++;
+            }
+        }
+    }
+}
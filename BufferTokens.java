@@ -0,0 +1,380 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sequência de tokens armazenada em vetores paralelos (tipo, início,
+ * comprimento e id do nome), sem um objeto por token. O texto de cada
+ * token é extraído da fonte e a linha e a coluna são calculadas pelo
+ * {@link IndiceLinhas} apenas quando pedidos; {@link Token} é usado
+ * somente como visão sob demanda.
+ */
+public class BufferTokens {
+    private static final int CAPACIDADE_INICIAL = 256;
+    private static final Token.Tipo[] TIPOS = Token.Tipo.values();
+    
+    private CharSequence fonte;
+    private TabelaNomes nomes;
+    private IndiceLinhas linhas;
+    private int[] tipos;
+    private int[] inicios;
+    private int[] comprimentos;
+    private int[] ids;
+    private int tamanho;
+    
+    // Modo circular: índices absolutos mapeados por 'mascara' em uma
+    // capacidade fixa; no modo normal a máscara é ~0 (identidade)
+    private int mascara;
+    
+    // Deslocamento pendente após edições: os tokens a partir de
+    // 'indicePendente' ainda não tiveram 'deltaInicio' somado às
+    // posições, o que é feito apenas sob demanda
+    private int indicePendente = Integer.MAX_VALUE;
+    private int deltaInicio;
+    
+    /**
+     * Cria um buffer que cresce conforme necessário
+     * @param fonte Código-fonte de onde o texto dos tokens é extraído
+     */
+    public BufferTokens(CharSequence fonte) {
+        this(fonte, CAPACIDADE_INICIAL);
+    }
+    
+    /**
+     * Cria um buffer com capacidade inicial para a quantidade de tokens
+     * esperada, evitando cópias ao crescer
+     */
+    public BufferTokens(CharSequence fonte, int capacidade) {
+        this(fonte, new TabelaNomes(), null, capacidade);
+    }
+    
+    /**
+     * @param nomes Tabela onde estão registrados os nomes dos identificadores
+     * @param linhas Índice de linhas da fonte, ou null para construí-lo
+     *               a partir da fonte quando a primeira linha for pedida
+     */
+    public BufferTokens(CharSequence fonte, TabelaNomes nomes, IndiceLinhas linhas, int capacidade) {
+        capacidade = Math.max(capacidade, 1);
+        this.mascara = ~0;
+        this.fonte = fonte;
+        this.nomes = nomes;
+        this.linhas = linhas;
+        this.tipos = new int[capacidade];
+        this.inicios = new int[capacidade];
+        this.comprimentos = new int[capacidade];
+        this.ids = new int[capacidade];
+    }
+    
+    /**
+     * Cria um buffer circular que mantém apenas os últimos tokens
+     * adicionados, usado para leitura em fluxo
+     * @param capacidade Quantidade de tokens mantidos (potência de 2)
+     */
+    public static BufferTokens circular(CharSequence fonte, TabelaNomes nomes, IndiceLinhas linhas, int capacidade) {
+        if (Integer.bitCount(capacidade) != 1) {
+            throw new IllegalArgumentException("Capacidade deve ser potência de 2: " + capacidade);
+        }
+        BufferTokens buffer = new BufferTokens(fonte, nomes, linhas, capacidade);
+        buffer.mascara = capacidade - 1;
+        return buffer;
+    }
+    
+    /**
+     * Converte uma lista de tokens já materializada. O texto dos tokens
+     * é copiado para uma fonte sintética, em que cada token é posto na
+     * sua linha e coluna (ou logo após o anterior, se elas não couberem).
+     */
+    public static BufferTokens de(List<Token> tokens) {
+        StringBuilder fonte = new StringBuilder();
+        BufferTokens buffer = new BufferTokens(fonte);
+        int linha = 1;
+        int inicioLinha = 0;
+        for (Token token : tokens) {
+            while (linha < token.getLinha()) {
+                fonte.append('\n');
+                linha++;
+                inicioLinha = fonte.length();
+            }
+            while (fonte.length() - inicioLinha + 1 < token.getColuna()) {
+                fonte.append(' ');
+            }
+            int inicio = fonte.length();
+            int id = -1;
+            if (token.getTipo() == Token.Tipo.IDENT) {
+                id = buffer.nomes.internar(token.getValor());
+            }
+            fonte.append(token.getValor());
+            buffer.adicionar(token.getTipo(), inicio, token.getValor().length(), id);
+        }
+        if (buffer.tamanho == 0 || buffer.getTipo(buffer.tamanho - 1) != Token.Tipo.EOF) {
+            buffer.adicionar(Token.Tipo.EOF, fonte.length(), 0, -1);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Adiciona um token ao fim do buffer
+     * @param id Id do nome para identificadores, -1 para os demais tokens
+     */
+    public void adicionar(Token.Tipo tipo, int inicio, int comprimento, int id) {
+        if (tamanho == tipos.length && mascara == ~0) {
+            crescer();
+        }
+        int i = tamanho & mascara;
+        tipos[i] = tipo.ordinal();
+        inicios[i] = inicio;
+        comprimentos[i] = comprimento;
+        ids[i] = id;
+        tamanho++;
+    }
+    
+    /**
+     * Acrescenta ao fim os tokens [de, ate) de outro buffer sobre a mesma
+     * fonte, traduzindo os ids dos nomes para a tabela deste buffer. Os
+     * nomes novos são internados na ordem em que aparecem, como se os
+     * tokens tivessem sido adicionados um a um.
+     */
+    public void anexar(BufferTokens origem, int de, int ate) {
+        if (mascara != ~0 || origem.mascara != ~0) {
+            throw new IllegalStateException("Buffer circular não pode ser anexado");
+        }
+        int n = ate - de;
+        while (tamanho + n > tipos.length) {
+            crescer();
+        }
+        System.arraycopy(origem.tipos, de, tipos, tamanho, n);
+        System.arraycopy(origem.inicios, de, inicios, tamanho, n);
+        System.arraycopy(origem.comprimentos, de, comprimentos, tamanho, n);
+        for (int i = Math.max(origem.indicePendente, de); i < ate; i++) {
+            inicios[tamanho + i - de] += origem.deltaInicio;
+        }
+        if (origem.nomes == nomes) {
+            System.arraycopy(origem.ids, de, ids, tamanho, n);
+        } else {
+            int[] mapa = new int[origem.nomes.tamanho()];
+            Arrays.fill(mapa, -1);
+            for (int i = 0; i < n; i++) {
+                int id = origem.ids[de + i];
+                if (id >= 0) {
+                    if (mapa[id] < 0) {
+                        mapa[id] = nomes.internar(origem.nomes.nome(id));
+                    }
+                    id = mapa[id];
+                }
+                ids[tamanho + i] = id;
+            }
+        }
+        tamanho += n;
+    }
+    
+    /**
+     * Dobra a capacidade dos vetores
+     */
+    private void crescer() {
+        int capacidade = tipos.length * 2;
+        tipos = Arrays.copyOf(tipos, capacidade);
+        inicios = Arrays.copyOf(inicios, capacidade);
+        comprimentos = Arrays.copyOf(comprimentos, capacidade);
+        ids = Arrays.copyOf(ids, capacidade);
+    }
+    
+    /**
+     * Retorna a quantidade de tokens adicionados
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+    
+    public Token.Tipo getTipo(int i) {
+        return TIPOS[tipos[i & mascara]];
+    }
+    
+    public int getInicio(int i) {
+        int inicio = inicios[i & mascara];
+        return i < indicePendente ? inicio : inicio + deltaInicio;
+    }
+    
+    public int getComprimento(int i) {
+        return comprimentos[i & mascara];
+    }
+    
+    /**
+     * Calcula a linha do token por busca no índice de linhas
+     */
+    public int getLinha(int i) {
+        return getLinhas().linha(getInicio(i));
+    }
+    
+    /**
+     * Calcula a coluna do token por busca no índice de linhas
+     */
+    public int getColuna(int i) {
+        return getLinhas().coluna(getInicio(i));
+    }
+    
+    /**
+     * Retorna o id do nome (na tabela de nomes) de um identificador,
+     * ou -1 para os demais tokens
+     */
+    public int getId(int i) {
+        return ids[i & mascara];
+    }
+    
+    /**
+     * Extrai da fonte o texto do token. Identificadores retornam a
+     * cópia única guardada na tabela de nomes.
+     */
+    public String getTexto(int i) {
+        int id = ids[i & mascara];
+        if (id >= 0) {
+            return nomes.nome(id);
+        }
+        int inicio = getInicio(i);
+        return fonte.subSequence(inicio, inicio + comprimentos[i & mascara]).toString();
+    }
+    
+    /**
+     * Retorna a fonte de onde o texto dos tokens é extraído
+     */
+    public CharSequence getFonte() {
+        return fonte;
+    }
+    
+    /**
+     * Retorna a tabela onde estão registrados os nomes dos identificadores
+     */
+    public TabelaNomes getNomes() {
+        return nomes;
+    }
+    
+    /**
+     * Retorna o índice de linhas da fonte, construindo-o se necessário
+     */
+    public IndiceLinhas getLinhas() {
+        if (linhas == null) {
+            linhas = IndiceLinhas.de(fonte);
+        }
+        return linhas;
+    }
+    
+    /**
+     * Retorna o índice do primeiro token que termina na posição indicada
+     * ou depois dela (o EOF, se nenhum outro)
+     */
+    public int buscarTerminandoEm(int posicao) {
+        int baixo = 0;
+        int alto = tamanho - 1;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (getInicio(meio) + getComprimento(meio) < posicao) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+    
+    /**
+     * Retorna o índice do token que começa na posição indicada, ou -1
+     */
+    public int buscarIniciandoEm(int posicao) {
+        int baixo = 0;
+        int alto = tamanho - 1;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            int inicio = getInicio(meio);
+            if (inicio < posicao) {
+                baixo = meio + 1;
+            } else if (inicio > posicao) {
+                alto = meio - 1;
+            } else {
+                return meio;
+            }
+        }
+        return -1;
+    }
+    
+    // ========== Edição ==========
+    
+    /**
+     * Substitui os tokens [de, ate) pelos tokens do buffer 'novos', cujas
+     * posições já estão na fonte editada. Os tokens seguintes mantêm suas
+     * posições; use {@link #deslocar} para ajustá-las.
+     */
+    public void substituir(int de, int ate, BufferTokens novos) {
+        if (mascara != ~0) {
+            throw new IllegalStateException("Buffer circular não pode ser editado");
+        }
+        // O deslocamento pendente não pode valer para os tokens novos
+        if (indicePendente < ate) {
+            aplicarDeslocamento(indicePendente, de, deltaInicio);
+            indicePendente = ate;
+        }
+        
+        int n = novos.tamanho;
+        int diferenca = n - (ate - de);
+        while (tamanho + diferenca > tipos.length) {
+            crescer();
+        }
+        if (diferenca != 0) {
+            int restantes = tamanho - ate;
+            System.arraycopy(tipos, ate, tipos, de + n, restantes);
+            System.arraycopy(inicios, ate, inicios, de + n, restantes);
+            System.arraycopy(comprimentos, ate, comprimentos, de + n, restantes);
+            System.arraycopy(ids, ate, ids, de + n, restantes);
+            tamanho += diferenca;
+            if (indicePendente != Integer.MAX_VALUE) {
+                indicePendente += diferenca;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            tipos[de + i] = novos.tipos[i];
+            inicios[de + i] = novos.getInicio(i);
+            comprimentos[de + i] = novos.comprimentos[i];
+            ids[de + i] = novos.ids[i];
+        }
+    }
+    
+    /**
+     * Soma 'delta' às posições dos tokens a partir de 'de'. O ajuste
+     * fica pendente e é combinado com o da edição seguinte, de modo que
+     * só os tokens entre duas edições são percorridos, e não todo o
+     * restante do arquivo. Linhas e colunas vêm do índice de linhas,
+     * atualizado à parte.
+     */
+    public void deslocar(int de, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (indicePendente == Integer.MAX_VALUE) {
+            indicePendente = de;
+        } else if (de >= indicePendente) {
+            aplicarDeslocamento(indicePendente, de, deltaInicio);
+            indicePendente = de;
+        } else {
+            aplicarDeslocamento(de, indicePendente, delta);
+        }
+        deltaInicio += delta;
+    }
+    
+    /**
+     * Substitui a fonte de onde o texto dos tokens é extraído
+     */
+    public void setFonte(CharSequence fonte) {
+        this.fonte = fonte;
+    }
+    
+    private void aplicarDeslocamento(int de, int ate, int delta) {
+        ate = Math.min(ate, tamanho);
+        for (int i = de; i < ate; i++) {
+            inicios[i] += delta;
+        }
+    }
+    
+    /**
+     * Cria uma visão do token como objeto
+     */
+    public Token token(int i) {
+        return new Token(getTipo(i), getTexto(i), getLinha(i), getColuna(i), getId(i));
+    }
+}
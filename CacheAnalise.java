@@ -0,0 +1,458 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Cache persistente do resultado da análise de fontes C-, endereçado
+ * pelo conteúdo: a chave é um hash de 64 bits dos bytes da fonte (com o
+ * seu tamanho e a versão dos analisadores), de modo que uma fonte que
+ * não mudou não é analisada de novo, seja qual for o seu caminho.
+ *
+ * Cada entrada é um arquivo no diretório do cache com os erros, o
+ * resultado do parsing e os tokens (nomes, início das linhas e, por
+ * token, o tipo e inteiros de tamanho variável com a distância ao token
+ * anterior, o comprimento e o id do nome), lido por mapeamento em
+ * memória. O tamanho total é
+ * limitado: ao excedê-lo, as entradas usadas há mais tempo (pela data
+ * de modificação, renovada nos acertos) são removidas.
+ *
+ * Pode ser usado por várias threads e por vários processos sobre o
+ * mesmo diretório: as entradas são escritas em um arquivo temporário e
+ * renomeadas, e uma entrada inválida é tratada como ausente. O
+ * cabeçalho guarda o tamanho e o CRC32 do corpo, conferidos na busca
+ * junto com a estrutura do corpo; uma entrada truncada ou corrompida, ou
+ * um erro de leitura, faz a fonte ser analisada de novo, e a entrada
+ * corrompida é removida.
+ */
+public class CacheAnalise {
+    // Mudar sempre que o léxico, o parser, a análise semântica ou as
+    // mensagens de erro mudarem o resultado: as entradas de outra versão
+    // são ignoradas
+    private static final int VERSAO = 5;
+    private static final int MAGICO = 0x434D4341;
+    private static final int TAMANHO_CABECALHO = 48;
+    
+    private static final String EXTENSAO = ".cma";
+    // Nos acertos, a data de uso só é renovada se tiver mais que isto
+    private static final long RENOVACAO_MS = 60_000;
+    // A remoção libera espaço até esta fração do limite
+    private static final double MARGEM = 0.9;
+    
+    private static final Token.Tipo[] TIPOS = Token.Tipo.values();
+    
+    // Constantes do hash (as de xxHash64)
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    
+    private final Path diretorio;
+    private final long limite;
+    private final AtomicLong tamanho = new AtomicLong();
+    
+    /**
+     * Entrada encontrada no cache, mapeada em memória
+     */
+    public static final class Entrada {
+        private final ByteBuffer dados;
+        private final boolean sucesso;
+        private final int tokens;
+        private final int nomes;
+        private final int linhas;
+        private final int erros;
+        
+        private Entrada(ByteBuffer dados) {
+            this.dados = dados;
+            this.sucesso = dados.getInt(20) != 0;
+            this.tokens = dados.getInt(24);
+            this.nomes = dados.getInt(28);
+            this.linhas = dados.getInt(32);
+            this.erros = dados.getInt(36);
+            validar();
+        }
+        
+        /**
+         * Percorre o corpo sem decodificá-lo, conferindo que as contagens
+         * do cabeçalho, os tamanhos dos textos e os tipos dos tokens são
+         * coerentes e que o corpo termina exatamente no fim do arquivo
+         * @throws RuntimeException se o corpo não é válido
+         */
+        private void validar() {
+            ByteBuffer leitura = dados.duplicate();
+            leitura.position(TAMANHO_CABECALHO);
+            for (int i = 0; i < erros + nomes; i++) {
+                int bytes = leitura.getInt();
+                leitura.position(leitura.position() + bytes);
+            }
+            for (int i = 0; i < linhas; i++) {
+                lerVariavel(leitura);
+            }
+            for (int i = 0; i < tokens; i++) {
+                int tipo = Objects.checkIndex(leitura.get(), TIPOS.length);
+                lerVariavel(leitura);
+                lerVariavel(leitura);
+                if (TIPOS[tipo] == Token.Tipo.IDENT) {
+                    Objects.checkIndex(lerVariavel(leitura), nomes);
+                }
+            }
+            if (erros < 0 || nomes < 0 || linhas < 0 || tokens < 0 || leitura.hasRemaining()) {
+                throw new IllegalStateException("Entrada do cache inconsistente");
+            }
+        }
+        
+        /**
+         * Retorna o resultado do parsing
+         */
+        public boolean isSucesso() {
+            return sucesso;
+        }
+        
+        /**
+         * Retorna a quantidade de tokens, incluindo o EOF
+         */
+        public int getQuantidadeTokens() {
+            return tokens;
+        }
+        
+        /**
+         * Retorna os erros léxicos e sintáticos, já formatados
+         */
+        public List<String> getErros() {
+            ByteBuffer leitura = dados.duplicate();
+            leitura.position(TAMANHO_CABECALHO);
+            List<String> mensagens = new ArrayList<>(erros);
+            for (int i = 0; i < erros; i++) {
+                mensagens.add(lerTexto(leitura));
+            }
+            return mensagens;
+        }
+        
+        /**
+         * Reconstrói o buffer de tokens, com a tabela de nomes e o índice
+         * de linhas, sem analisar a fonte
+         * @param fonte A mesma fonte que originou a entrada
+         */
+        public BufferTokens getTokens(CharSequence fonte) {
+            ByteBuffer leitura = dados.duplicate();
+            leitura.position(TAMANHO_CABECALHO);
+            for (int i = 0; i < erros; i++) {
+                lerTexto(leitura);
+            }
+            
+            TabelaNomes tabela = new TabelaNomes();
+            for (int i = 0; i < nomes; i++) {
+                tabela.internar(lerTexto(leitura));
+            }
+            IndiceLinhas indice = new IndiceLinhas(fonte);
+            int inicioLinha = 0;
+            for (int i = 0; i < linhas; i++) {
+                inicioLinha += lerVariavel(leitura);
+                indice.adicionar(inicioLinha);
+            }
+            
+            BufferTokens buffer = new BufferTokens(fonte, tabela, indice, tokens);
+            int fim = 0;
+            for (int i = 0; i < tokens; i++) {
+                Token.Tipo tipo = TIPOS[leitura.get()];
+                int inicio = fim + lerVariavel(leitura);
+                int comprimento = lerVariavel(leitura);
+                int id = tipo == Token.Tipo.IDENT ? lerVariavel(leitura) : -1;
+                buffer.adicionar(tipo, inicio, comprimento, id);
+                fim = inicio + comprimento;
+            }
+            return buffer;
+        }
+        
+        private static int lerVariavel(ByteBuffer leitura) {
+            int valor = 0;
+            int deslocamento = 0;
+            byte b;
+            do {
+                b = leitura.get();
+                valor |= (b & 0x7F) << deslocamento;
+                deslocamento += 7;
+            } while (b < 0);
+            return valor;
+        }
+        
+        private static String lerTexto(ByteBuffer leitura) {
+            byte[] bytes = new byte[leitura.getInt()];
+            leitura.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * @param diretorio Diretório das entradas, criado se não existir
+     * @param limite Tamanho máximo, em bytes, do conjunto das entradas
+     */
+    public CacheAnalise(Path diretorio, long limite) throws IOException {
+        this.diretorio = Files.createDirectories(diretorio);
+        this.limite = limite;
+        try (Stream<Path> entradas = Files.list(diretorio)) {
+            entradas.filter(CacheAnalise::isEntrada).forEach(p -> tamanho.addAndGet(p.toFile().length()));
+        }
+    }
+    
+    /**
+     * Calcula o hash de 64 bits do conteúdo, 8 bytes por vez
+     */
+    public static long hash(byte[] conteudo) {
+        ByteBuffer palavras = ByteBuffer.wrap(conteudo).order(ByteOrder.LITTLE_ENDIAN);
+        long h = P3 ^ conteudo.length;
+        int i = 0;
+        for (; i + 8 <= conteudo.length; i += 8) {
+            h = Long.rotateLeft(h ^ (palavras.getLong(i) * P2), 31) * P1;
+        }
+        for (; i < conteudo.length; i++) {
+            h = Long.rotateLeft(h ^ ((conteudo[i] & 0xFF) * P3), 11) * P1;
+        }
+        // Mistura final: cada bit da entrada afeta todos os da saída
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        return h ^ (h >>> 32);
+    }
+    
+    /**
+     * Procura o resultado da análise de uma fonte com este conteúdo
+     * @return a entrada, ou null se não há entrada válida
+     */
+    public Entrada buscar(byte[] conteudo) {
+        long hash = hash(conteudo);
+        Path arquivo = caminho(hash);
+        try {
+            BasicFileAttributes atributos = Files.readAttributes(arquivo, BasicFileAttributes.class);
+            MappedByteBuffer dados;
+            try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+                dados = canal.map(FileChannel.MapMode.READ_ONLY, 0, atributos.size());
+            }
+            if (dados.limit() >= TAMANHO_CABECALHO && dados.getInt(0) == MAGICO && dados.getInt(4) != VERSAO) {
+                // De outra versão: é substituída quando a fonte for guardada de novo
+                return null;
+            }
+            if (dados.limit() < TAMANHO_CABECALHO || dados.getInt(0) != MAGICO || dados.getLong(8) != hash || dados.getInt(16) != conteudo.length
+                || dados.getInt(40) != dados.limit() - TAMANHO_CABECALHO
+                || dados.getInt(44) != checksum(dados.duplicate().position(TAMANHO_CABECALHO))) {
+                descartar(arquivo, atributos.size());
+                return null;
+            }
+            Entrada entrada;
+            try {
+                entrada = new Entrada(dados);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                     | IllegalStateException e) {
+                descartar(arquivo, atributos.size());
+                return null;
+            }
+            long agora = System.currentTimeMillis();
+            if (agora - atributos.lastModifiedTime().toMillis() > RENOVACAO_MS) {
+                Files.setLastModifiedTime(arquivo, FileTime.fromMillis(agora));
+            }
+            return entrada;
+        } catch (IOException e) {
+            // Inclui NoSuchFileException: a entrada não existe ou não pôde ser lida
+            return null;
+        }
+    }
+    
+    /**
+     * Remove uma entrada corrompida, para que seja reescrita pela
+     * próxima análise da fonte
+     */
+    private void descartar(Path arquivo, long bytes) {
+        try {
+            if (Files.deleteIfExists(arquivo)) {
+                tamanho.addAndGet(-bytes);
+            }
+        } catch (IOException e) {
+            // Será sobrescrita por uma escrita futura
+        }
+    }
+    
+    private static int checksum(ByteBuffer corpo) {
+        CRC32 crc = new CRC32();
+        crc.update(corpo);
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * Guarda o resultado da análise de uma fonte, removendo as entradas
+     * menos usadas se o limite de tamanho for excedido
+     * @param conteudo Bytes da fonte analisada
+     * @param tokens Buffer produzido pelo léxico sobre essa fonte
+     * @param erros Erros léxicos e sintáticos, formatados
+     * @param sucesso Resultado das análises
+     */
+    public void guardar(byte[] conteudo, BufferTokens tokens, List<String> erros, boolean sucesso) {
+        long hash = hash(conteudo);
+        Path arquivo = caminho(hash);
+        TabelaNomes nomes = tokens.getNomes();
+        IndiceLinhas linhas = tokens.getLinhas();
+        int n = tokens.tamanho();
+        Path temporario = null;
+        try {
+            // O corpo é montado em memória para que o cabeçalho leve o seu tamanho e CRC32
+            ByteArrayOutputStream corpo = new ByteArrayOutputStream(16 + n * 4);
+            try (DataOutputStream saida = new DataOutputStream(corpo)) {
+                for (String erro : erros) {
+                    escreverTexto(saida, erro);
+                }
+                for (int id = 0; id < nomes.tamanho(); id++) {
+                    escreverTexto(saida, nomes.nome(id));
+                }
+                // A primeira linha começa sempre em 0; as demais, pela distância à anterior
+                for (int linha = 2; linha <= linhas.tamanho(); linha++) {
+                    escreverVariavel(saida, linhas.inicioDaLinha(linha) - linhas.inicioDaLinha(linha - 1));
+                }
+                int fim = 0;
+                for (int i = 0; i < n; i++) {
+                    Token.Tipo tipo = tokens.getTipo(i);
+                    int inicio = tokens.getInicio(i);
+                    saida.writeByte(tipo.ordinal());
+                    escreverVariavel(saida, inicio - fim);
+                    escreverVariavel(saida, tokens.getComprimento(i));
+                    if (tipo == Token.Tipo.IDENT) {
+                        escreverVariavel(saida, tokens.getId(i));
+                    }
+                    fim = inicio + tokens.getComprimento(i);
+                }
+            }
+            byte[] bytes = corpo.toByteArray();
+            temporario = Files.createTempFile(diretorio, null, ".tmp");
+            try (DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario)))) {
+                saida.writeInt(MAGICO);
+                saida.writeInt(VERSAO);
+                saida.writeLong(hash);
+                saida.writeInt(conteudo.length);
+                saida.writeInt(sucesso ? 1 : 0);
+                saida.writeInt(n);
+                saida.writeInt(nomes.tamanho());
+                saida.writeInt(linhas.tamanho() - 1);
+                saida.writeInt(erros.size());
+                saida.writeInt(bytes.length);
+                saida.writeInt(checksum(ByteBuffer.wrap(bytes)));
+                saida.write(bytes);
+            }
+            long escritos = Files.size(temporario);
+            long substituidos = Files.exists(arquivo) ? Files.size(arquivo) : 0;
+            mover(temporario, arquivo);
+            if (tamanho.addAndGet(escritos - substituidos) > limite) {
+                remover();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                if (temporario != null) {
+                    Files.deleteIfExists(temporario);
+                }
+            } catch (IOException e) {
+                // O temporário será sobrescrito por uma escrita futura
+            }
+        }
+    }
+    
+    /**
+     * Retorna o tamanho total das entradas, em bytes
+     */
+    public long tamanho() {
+        return tamanho.get();
+    }
+    
+    /**
+     * Remove as entradas usadas há mais tempo até o total ficar abaixo
+     * da margem do limite
+     */
+    private synchronized void remover() throws IOException {
+        if (tamanho.get() <= limite) {
+            return;
+        }
+        List<Path> entradas = new ArrayList<>();
+        List<FileTime> usos = new ArrayList<>();
+        List<Long> tamanhos = new ArrayList<>();
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            arquivos.filter(CacheAnalise::isEntrada).forEach(entradas::add);
+        }
+        for (Path entrada : entradas) {
+            try {
+                BasicFileAttributes atributos = Files.readAttributes(entrada, BasicFileAttributes.class);
+                usos.add(atributos.lastModifiedTime());
+                tamanhos.add(atributos.size());
+            } catch (NoSuchFileException e) {
+                // Removida por outro processo
+                usos.add(FileTime.fromMillis(0));
+                tamanhos.add(0L);
+            }
+        }
+        Integer[] ordem = new Integer[entradas.size()];
+        for (int i = 0; i < ordem.length; i++) {
+            ordem[i] = i;
+        }
+        Arrays.sort(ordem, (a, b) -> usos.get(a).compareTo(usos.get(b)));
+        
+        long alvo = (long) (limite * MARGEM);
+        for (int i = 0; i < ordem.length && tamanho.get() > alvo; i++) {
+            if (Files.deleteIfExists(entradas.get(ordem[i]))) {
+                tamanho.addAndGet(-tamanhos.get(ordem[i]));
+            }
+        }
+    }
+    
+    private Path caminho(long hash) {
+        return diretorio.resolve(String.format("%016x", hash) + EXTENSAO);
+    }
+    
+    private static boolean isEntrada(Path arquivo) {
+        return arquivo.getFileName().toString().endsWith(EXTENSAO);
+    }
+    
+    private static void mover(Path de, Path para) throws IOException {
+        try {
+            Files.move(de, para, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(de, para, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Escreve um inteiro não negativo em 7 bits por byte, o bit alto
+     * indicando que há mais bytes
+     */
+    private static void escreverVariavel(DataOutputStream saida, int valor) throws IOException {
+        while ((valor & ~0x7F) != 0) {
+            saida.writeByte((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        saida.writeByte(valor);
+    }
+    
+    private static void escreverTexto(DataOutputStream saida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        saida.writeInt(bytes.length);
+        saida.write(bytes);
+    }
+}
@@ -0,0 +1,406 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Verificação em lote de programas C-: analisa arquivos, diretórios
+ * (recursivamente) e padrões glob em uma única JVM, cada arquivo em uma
+ * tarefa própria, e imprime os erros de todos, na ordem dos argumentos,
+ * seguidos da vazão total.
+ *
+ * As tarefas rodam em threads virtuais quando a JVM as oferece (Java 21
+ * ou posterior), e em um pool fixo com uma thread por processador caso
+ * contrário. A leitura dos arquivos é limitada por um semáforo, de modo
+ * que dezenas de milhares de tarefas não abrem todos os arquivos de uma
+ * vez nem mantêm todas as fontes em memória.
+ *
+ * Com um diretório de cache (-c), o resultado de cada fonte é guardado
+ * em um {@link CacheAnalise}, e fontes sem mudanças desde uma execução
+ * anterior custam apenas a leitura e o hash.
+ *
+ * Com -Dcmenos.metricas=true, o tempo e a alocação de cada fase e as
+ * contagens por regra do parser (ver {@link Metricas}) são impressos ao
+ * fim.
+ *
+ * Uso: java Compilador [-j leituras] [-c cache [-m MB]] [-q] arquivo|diretório|glob...
+ */
+public class Compilador {
+    private static final String[] EXTENSOES = {".cm", ".c-"};
+    private static final int LEITURAS_PADRAO = 64;
+    private static final int CACHE_PADRAO_MB = 256;
+    
+    /**
+     * Resultado da verificação de um arquivo
+     */
+    public static final class Resultado {
+        private final Path arquivo;
+        private final long bytes;
+        private final int tokens;
+        private final List<String> erros;
+        // Se o resultado veio do cache
+        private boolean cache;
+        
+        Resultado(Path arquivo, long bytes, int tokens, List<String> erros) {
+            this.arquivo = arquivo;
+            this.bytes = bytes;
+            this.tokens = tokens;
+            this.erros = erros;
+        }
+        
+        public Path getArquivo() {
+            return arquivo;
+        }
+        
+        public long getBytes() {
+            return bytes;
+        }
+        
+        public int getTokens() {
+            return tokens;
+        }
+        
+        /**
+         * Retorna os erros léxicos, sintáticos e semânticos, formatados
+         */
+        public List<String> getErros() {
+            return erros;
+        }
+        
+        public boolean isSucesso() {
+            return erros.isEmpty();
+        }
+    }
+    
+    /**
+     * Resultado das análises léxica, sintática e semântica de uma fonte
+     */
+    public static final class Analise {
+        private final BufferTokens tokens;
+        private final ArvoreSintatica arvore;
+        private final AnalisadorSemantico semantico;
+        private final List<String> erros;
+        private final boolean sucesso;
+        
+        Analise(BufferTokens tokens, ArvoreSintatica arvore, AnalisadorSemantico semantico, List<String> erros,
+                boolean sucesso) {
+            this.tokens = tokens;
+            this.arvore = arvore;
+            this.semantico = semantico;
+            this.erros = erros;
+            this.sucesso = sucesso;
+        }
+        
+        public BufferTokens getTokens() {
+            return tokens;
+        }
+        
+        public ArvoreSintatica getArvore() {
+            return arvore;
+        }
+        
+        /**
+         * Retorna a análise semântica, ou null se o parsing teve erros
+         */
+        public AnalisadorSemantico getSemantico() {
+            return semantico;
+        }
+        
+        /**
+         * Retorna os erros de todas as fases, formatados
+         */
+        public List<String> getErros() {
+            return erros;
+        }
+        
+        /**
+         * Retorna se o parsing e a análise semântica não tiveram erros
+         * (os erros léxicos não contam)
+         */
+        public boolean isSucesso() {
+            return sucesso;
+        }
+    }
+    
+    private final Semaphore leituras;
+    private final CacheAnalise cache;
+    private final AtomicInteger acertos = new AtomicInteger();
+    
+    /**
+     * @param leituras Quantidade máxima de arquivos lidos ao mesmo tempo
+     * @param cache Cache dos resultados, ou null
+     */
+    public Compilador(int leituras, CacheAnalise cache) {
+        this.leituras = new Semaphore(leituras);
+        this.cache = cache;
+    }
+    
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int leituras = LEITURAS_PADRAO;
+        String diretorioCache = null;
+        long megabytesCache = CACHE_PADRAO_MB;
+        boolean silencioso = false;
+        List<String> entradas = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j") && i + 1 < args.length) {
+                leituras = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-c") && i + 1 < args.length) {
+                diretorioCache = args[++i];
+            } else if (args[i].equals("-m") && i + 1 < args.length) {
+                megabytesCache = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-q")) {
+                silencioso = true;
+            } else {
+                entradas.add(args[i]);
+            }
+        }
+        if (entradas.isEmpty() || leituras < 1) {
+            System.err.println("Uso: java Compilador [-j leituras] [-c cache [-m MB]] [-q] arquivo|diretório|glob...");
+            System.exit(2);
+        }
+        
+        List<Path> arquivos = new ArrayList<>();
+        for (String entrada : entradas) {
+            arquivos.addAll(listar(entrada));
+        }
+        
+        long inicio = System.nanoTime();
+        CacheAnalise cache = null;
+        if (diretorioCache != null) {
+            cache = new CacheAnalise(Paths.get(diretorioCache), megabytesCache << 20);
+        }
+        Compilador compilador = new Compilador(leituras, cache);
+        long bytes = 0;
+        long tokens = 0;
+        int comErros = 0;
+        int erros = 0;
+        ExecutorService executor = criarExecutor();
+        try {
+            List<Future<Resultado>> pendentes = new ArrayList<>(arquivos.size());
+            for (Path arquivo : arquivos) {
+                pendentes.add(executor.submit(() -> compilador.verificar(arquivo)));
+            }
+            // Os resultados são impressos na ordem dos arquivos, à medida que ficam prontos
+            for (Future<Resultado> pendente : pendentes) {
+                Resultado resultado = obter(pendente);
+                bytes += resultado.getBytes();
+                tokens += resultado.getTokens();
+                if (!resultado.isSucesso()) {
+                    comErros++;
+                    erros += resultado.getErros().size();
+                    if (!silencioso) {
+                        for (String erro : resultado.getErros()) {
+                            System.out.println(resultado.getArquivo() + ": " + erro);
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        
+        System.out.printf("%d arquivos, %d com erros, %d erros%n", arquivos.size(), comErros, erros);
+        if (cache != null) {
+            System.out.printf("Cache: %d acertos, %.1f MB%n", compilador.getAcertos(), cache.tamanho() / (double) (1 << 20));
+        }
+        System.out.printf("%.3f s: %.1f arquivos/s, %.2f MB/s, %.2f M tokens/s%n", segundos,
+                          arquivos.size() / segundos, bytes / segundos / (1 << 20), tokens / segundos / 1e6);
+        if (Metricas.ATIVAS) {
+            System.out.println();
+            System.out.print(Metricas.relatorio());
+        }
+        System.exit(comErros == 0 ? 0 : 1);
+    }
+    
+    /**
+     * Lê o arquivo e executa as análises léxica, sintática e semântica
+     * (esta apenas sem erros de sintaxe). Um arquivo que não pode ser
+     * lido resulta em um único erro.
+     */
+    public Resultado verificar(Path arquivo) throws InterruptedException {
+        Metricas.EventoArquivo evento = new Metricas.EventoArquivo();
+        evento.begin();
+        Resultado resultado = analisar(arquivo);
+        if (evento.shouldCommit()) {
+            evento.arquivo = arquivo.toString();
+            evento.bytes = resultado.getBytes();
+            evento.erros = resultado.getErros().size();
+            evento.cache = resultado.cache;
+            evento.commit();
+        }
+        return resultado;
+    }
+    
+    private Resultado analisar(Path arquivo) throws InterruptedException {
+        byte[] conteudo;
+        leituras.acquire();
+        try {
+            conteudo = Files.readAllBytes(arquivo);
+        } catch (IOException e) {
+            return new Resultado(arquivo, 0, 0, List.of("Erro de leitura: " + e));
+        } finally {
+            leituras.release();
+        }
+        
+        if (cache != null) {
+            CacheAnalise.Entrada entrada = cache.buscar(conteudo);
+            if (entrada != null) {
+                acertos.incrementAndGet();
+                Resultado resultado = new Resultado(arquivo, conteudo.length, entrada.getQuantidadeTokens(),
+                                                    entrada.getErros());
+                resultado.cache = true;
+                return resultado;
+            }
+        }
+        
+        Analise analise = analisarFonte(new FonteBytes(ByteBuffer.wrap(conteudo)));
+        if (cache != null) {
+            cache.guardar(conteudo, analise.tokens, analise.erros, analise.sucesso);
+        }
+        return new Resultado(arquivo, conteudo.length, analise.tokens.tamanho(), analise.erros);
+    }
+    
+    /**
+     * Executa as análises léxica, sintática e semântica da fonte (esta
+     * apenas sem erros de sintaxe), com a árvore sintática construída
+     */
+    public static Analise analisarFonte(CharSequence fonte) {
+        // As fases registram os erros no mesmo coletor, em ordem
+        Diagnosticos diagnosticos = new Diagnosticos();
+        Lexico lexico = new Lexico(fonte);
+        lexico.setDiagnosticos(diagnosticos);
+        BufferTokens tokens = lexico.analisarBuffer();
+        ParserLL1 parser = new ParserLL1(tokens);
+        parser.setDiagnosticos(diagnosticos);
+        parser.setConstruirArvore(true);
+        boolean sucesso = parser.parse();
+        AnalisadorSemantico semantico = null;
+        // A análise semântica só faz sentido sobre uma árvore completa
+        if (sucesso) {
+            semantico = new AnalisadorSemantico(parser.getArvore());
+            semantico.setDiagnosticos(diagnosticos);
+            sucesso = semantico.analisar();
+        }
+        return new Analise(tokens, parser.getArvore(), semantico, diagnosticos.renderizar(), sucesso);
+    }
+    
+    /**
+     * Lê e analisa o arquivo para as ferramentas de linha de comando que
+     * processam a árvore; se houver erros, imprime-os e encerra a JVM
+     * com status 1
+     */
+    static Analise analisarOuSair(Path arquivo) throws IOException {
+        Analise analise = analisarFonte(new FonteBytes(ByteBuffer.wrap(Files.readAllBytes(arquivo))));
+        if (!analise.erros.isEmpty()) {
+            for (String erro : analise.erros) {
+                System.err.println(erro);
+            }
+            System.exit(1);
+        }
+        return analise;
+    }
+    
+    /**
+     * Retorna quantos arquivos tiveram o resultado obtido do cache
+     */
+    public int getAcertos() {
+        return acertos.get();
+    }
+    
+    /**
+     * Retorna os arquivos indicados por um argumento: o próprio arquivo,
+     * os arquivos C- de um diretório e seus subdiretórios, ou os que
+     * casam com um padrão glob (como "src/**.cm")
+     */
+    static List<Path> listar(String entrada) {
+        int especial = primeiroEspecial(entrada);
+        Path base;
+        PathMatcher padrao = null;
+        if (especial < 0) {
+            base = Paths.get(entrada);
+            if (!Files.isDirectory(base)) {
+                return List.of(base);
+            }
+        } else {
+            // A busca começa no último diretório antes do primeiro caractere especial
+            int barra = entrada.lastIndexOf('/', especial);
+            base = Paths.get(barra < 0 ? "." : entrada.substring(0, barra + 1));
+            padrao = FileSystems.getDefault().getPathMatcher("glob:" + (barra < 0 ? entrada : entrada.substring(barra + 1)));
+        }
+        
+        PathMatcher filtro = padrao;
+        try (Stream<Path> caminhos = Files.walk(base)) {
+            List<Path> arquivos = new ArrayList<>();
+            caminhos.filter(Files::isRegularFile)
+                    .filter(p -> filtro != null ? filtro.matches(base.relativize(p)) : temExtensao(p))
+                    .sorted()
+                    .forEach(arquivos::add);
+            return arquivos;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static int primeiroEspecial(String entrada) {
+        for (int i = 0; i < entrada.length(); i++) {
+            if ("*?[{".indexOf(entrada.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean temExtensao(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        for (String extensao : EXTENSOES) {
+            if (nome.endsWith(extensao)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Cria um executor de threads virtuais, obtido por reflexão para que
+     * o código compile e rode também em JVMs anteriores ao Java 21, onde
+     * se usa um pool fixo com uma thread por processador
+     */
+    static ExecutorService criarExecutor() {
+        try {
+            Method virtuais = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtuais.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+    
+    private static Resultado obter(Future<Resultado> pendente) throws InterruptedException {
+        try {
+            return pendente.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            if (causa instanceof Error) {
+                throw (Error) causa;
+            }
+            throw new IllegalStateException(causa);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Conferência diferencial da análise léxica paralela: para cada semente,
+ * gera um programa com {@link GeradorProgramas} e variantes dele, e
+ * confere que a análise em trechos paralelos produz exatamente os
+ * tokens, nomes, linhas e erros da análise sequencial. As variantes
+ * exercitam os casos em que os trechos não podem ser analisados de forma
+ * independente:
+ * - comentários de bloco que atravessam vários trechos;
+ * - um comentário não terminado, que vai até o fim da fonte;
+ * - quebras de linha CRLF;
+ * - caracteres inválidos, com e sem limite de erros (o limite pode ser
+ *   atingido no meio de qualquer trecho).
+ *
+ * Termina com código 1 na primeira diferença, indicando a semente, a
+ * variante e o primeiro token diferente.
+ *
+ * Uso: java ConferenciaLexico [sementes] [tamanho da fonte em KB]
+ */
+public class ConferenciaLexico {
+    // Limites de erros conferidos nas variantes com caracteres inválidos
+    // (0 = sem limite); os menores são atingidos antes do fim da fonte
+    private static final int[] LIMITES = {0, 1, 7, 60};
+    private static final int CARACTERES_INVALIDOS = 100;
+    
+    public static void main(String[] args) {
+        int sementes = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        // Acima do mínimo para a análise paralela (1 MB), com vários trechos
+        int kb = args.length > 1 ? Integer.parseInt(args[1]) : 1536;
+        
+        int conferidas = 0;
+        for (long semente = 1; semente <= sementes; semente++) {
+            GeradorProgramas gerador = new GeradorProgramas(semente);
+            gerador.setTamanho(kb * 1024);
+            gerador.setComentarios(0.3);
+            String fonte = gerador.gerar();
+            Random aleatorio = new Random(semente);
+            
+            List<String> nomes = new ArrayList<>();
+            List<String> variantes = new ArrayList<>();
+            nomes.add("original");
+            variantes.add(fonte);
+            nomes.add("comentário entre trechos");
+            variantes.add(comentarMeio(fonte));
+            nomes.add("comentário não terminado");
+            variantes.add(abrirComentario(fonte, aleatorio));
+            nomes.add("CRLF");
+            variantes.add(fonte.replace("\n", "\r\n"));
+            nomes.add("CRLF com comentário entre trechos");
+            variantes.add(comentarMeio(fonte).replace("\n", "\r\n"));
+            String invalidos = inserirInvalidos(fonte, aleatorio);
+            
+            for (int i = 0; i < variantes.size(); i++) {
+                verificar(semente, nomes.get(i), variantes.get(i), 0);
+                conferidas++;
+            }
+            for (int limite : LIMITES) {
+                verificar(semente, "caracteres inválidos, limite " + limite, invalidos, limite);
+                conferidas++;
+            }
+        }
+        System.out.println(conferidas + " fontes conferidas: análise paralela idêntica à sequencial");
+    }
+    
+    private static void verificar(long semente, String variante, String fonte, int limite) {
+        String diferenca = conferir(fonte, limite);
+        if (diferenca != null) {
+            System.err.println("Semente " + semente + ", " + variante + ": " + diferenca);
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Analisa a fonte em sequência e em paralelo e compara os resultados
+     * @param limite Limite de erros (0 = sem limite)
+     * @return a primeira diferença, ou null se os resultados são idênticos
+     */
+    public static String conferir(String fonte, int limite) {
+        Lexico sequencial = new Lexico(fonte);
+        Lexico paralelo = new Lexico(fonte);
+        if (limite > 0) {
+            sequencial.setDiagnosticos(new Diagnosticos(limite));
+            paralelo.setDiagnosticos(new Diagnosticos(limite));
+        }
+        paralelo.setParalelo(ForkJoinPool.commonPool());
+        BufferTokens esperado = sequencial.analisarBuffer();
+        BufferTokens obtido = paralelo.analisarBuffer();
+        
+        int tokens = Math.min(esperado.tamanho(), obtido.tamanho());
+        for (int i = 0; i < tokens; i++) {
+            if (esperado.getTipo(i) != obtido.getTipo(i)
+                || esperado.getInicio(i) != obtido.getInicio(i)
+                || esperado.getComprimento(i) != obtido.getComprimento(i)
+                || esperado.getId(i) != obtido.getId(i)
+                || esperado.getLinha(i) != obtido.getLinha(i)
+                || esperado.getColuna(i) != obtido.getColuna(i)) {
+                return "token " + i + ": esperado " + esperado.token(i) + " em " + esperado.getInicio(i)
+                       + ", obtido " + obtido.token(i) + " em " + obtido.getInicio(i);
+            }
+        }
+        if (esperado.tamanho() != obtido.tamanho()) {
+            return esperado.tamanho() + " tokens esperados, " + obtido.tamanho() + " obtidos";
+        }
+        if (esperado.getNomes().tamanho() != obtido.getNomes().tamanho()) {
+            return esperado.getNomes().tamanho() + " nomes esperados, " + obtido.getNomes().tamanho() + " obtidos";
+        }
+        for (int id = 0; id < esperado.getNomes().tamanho(); id++) {
+            if (!esperado.getNomes().nome(id).equals(obtido.getNomes().nome(id))) {
+                return "nome " + id + ": esperado " + esperado.getNomes().nome(id)
+                       + ", obtido " + obtido.getNomes().nome(id);
+            }
+        }
+        if (esperado.getLinhas().tamanho() != obtido.getLinhas().tamanho()) {
+            return esperado.getLinhas().tamanho() + " linhas esperadas, " + obtido.getLinhas().tamanho() + " obtidas";
+        }
+        List<String> errosEsperados = sequencial.getDiagnosticos().renderizar();
+        List<String> errosObtidos = paralelo.getDiagnosticos().renderizar();
+        if (!errosEsperados.equals(errosObtidos)) {
+            return errosEsperados.size() + " erros esperados, " + errosObtidos.size() + " obtidos";
+        }
+        return null;
+    }
+    
+    // ========== Variantes ==========
+    
+    /**
+     * Envolve o terço central da fonte em um único comentário de bloco,
+     * que atravessa vários trechos da análise paralela
+     */
+    static String comentarMeio(String fonte) {
+        int de = fonte.indexOf('\n', fonte.length() / 3) + 1;
+        int ate = fonte.indexOf('\n', fonte.length() * 2 / 3) + 1;
+        return fonte.substring(0, de) + "/*" + fonte.substring(de, ate).replace("*/", "* /") + "*/\n"
+               + fonte.substring(ate);
+    }
+    
+    /**
+     * Abre, no início de uma linha da segunda metade, um comentário que
+     * não é fechado
+     */
+    private static String abrirComentario(String fonte, Random aleatorio) {
+        int de = fonte.indexOf('\n', fonte.length() / 2 + aleatorio.nextInt(fonte.length() / 4)) + 1;
+        return fonte.substring(0, de) + "/*" + fonte.substring(de).replace("*/", "* /");
+    }
+    
+    /**
+     * Insere caracteres inválidos em posições aleatórias, espalhadas por
+     * todos os trechos
+     */
+    private static String inserirInvalidos(String fonte, Random aleatorio) {
+        StringBuilder resultado = new StringBuilder(fonte);
+        for (int i = 0; i < CARACTERES_INVALIDOS; i++) {
+            resultado.insert(aleatorio.nextInt(resultado.length()), "@$#".charAt(aleatorio.nextInt(3)));
+        }
+        return resultado.toString();
+    }
+}
@@ -0,0 +1,566 @@
+import java.util.Arrays;
+
+/**
+ * Constrói a forma SSA ({@link FuncaoSsa}) de cada função de um programa
+ * C- sem erros (sintáticos e semânticos), a partir da árvore e das
+ * declarações resolvidas pelo {@link AnalisadorSemantico}.
+ *
+ * A construção tem duas etapas:
+ * - a árvore vira um grafo de blocos básicos (if e while criam os
+ *   desvios), em que as variáveis escalares locais ainda são lidas e
+ *   escritas por LER e ESCREVER;
+ * - as φ são inseridas na fronteira de dominância iterada dos blocos que
+ *   escrevem cada variável (Cytron et al.), e uma busca na árvore de
+ *   dominadores renomeia as variáveis: cada LER passa a ser o valor
+ *   visível, e os ESCREVER somem.
+ *
+ * Só recebem φ as variáveis lidas em algum bloco antes de serem escritas
+ * nele (SSA semi-podada): as demais não vivem entre blocos. Atribuições
+ * de uma variável a outra viram COPY, eliminadas pela propagação de
+ * cópias do {@link OtimizadorSsa}.
+ */
+public class ConstrutorSsa {
+    private static final long BYTES_POR_NIVEL = 512;
+    
+    private final ArvoreSintatica arvore;
+    private final AnalisadorSemantico semantico;
+    private final int entrada;
+    private final int saida;
+    
+    // Por nó de declaração: índice da global ou da função, variável local
+    // ou valor de um vetor local ou parâmetro vetor; -1 se não atribuído
+    private int[] indices;
+    private boolean[] globais;
+    private String[] nomesGlobais;
+    private String[] nomesFuncoes;
+    private int[] quantidadesParametros;
+    
+    // Função em construção
+    private FuncaoSsa funcao;
+    private int atual;
+    private int variaveis;
+    // Por variável: último bloco que a escreveu e se é lida antes de
+    // escrita em algum bloco
+    private int[] escritaEm;
+    private boolean[] vivasEntreBlocos;
+    // Blocos que escrevem cada variável, em listas encadeadas
+    private int[] primeiraEscrita;
+    private int[] blocosEscrita;
+    private int[] proximasEscritas;
+    private int quantidadeEscritas;
+    
+    /**
+     * @param semantico Analisador que analisou a árvore sem erros
+     */
+    public ConstrutorSsa(ArvoreSintatica arvore, AnalisadorSemantico semantico) {
+        this.arvore = arvore;
+        this.semantico = semantico;
+        this.entrada = arvore.getNomes().buscar("input");
+        this.saida = arvore.getNomes().buscar("output");
+    }
+    
+    /**
+     * Constrói as funções do programa, na ordem em que são declaradas
+     */
+    public FuncaoSsa[] construir() {
+        try {
+            return executar();
+        } catch (StackOverflowError e) {
+            // A recursão acompanha a profundidade da árvore
+            try {
+                return Pilha.executarComPilha("ConstrutorSsa", arvore.profundidade(), BYTES_POR_NIVEL, this::executar);
+            } catch (InterruptedException interrompido) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("construção interrompida", interrompido);
+            }
+        }
+    }
+    
+    private FuncaoSsa[] executar() {
+        indices = new int[arvore.tamanho()];
+        Arrays.fill(indices, -1);
+        globais = new boolean[arvore.tamanho()];
+        int raiz = arvore.getRaiz();
+        int quantidadeGlobais = 0;
+        int quantidadeFuncoes = 0;
+        for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+             declaracao = arvore.getProximoIrmao(declaracao)) {
+            if (arvore.getTipo(declaracao) == ArvoreSintatica.No.DECL_FUNCAO) {
+                indices[declaracao] = quantidadeFuncoes++;
+            } else {
+                indices[declaracao] = quantidadeGlobais++;
+                globais[declaracao] = true;
+            }
+        }
+        nomesGlobais = new String[quantidadeGlobais];
+        nomesFuncoes = new String[quantidadeFuncoes];
+        quantidadesParametros = new int[quantidadeFuncoes];
+        for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+             declaracao = arvore.getProximoIrmao(declaracao)) {
+            if (arvore.getTipo(declaracao) == ArvoreSintatica.No.DECL_FUNCAO) {
+                nomesFuncoes[indices[declaracao]] = arvore.getNome(declaracao);
+            } else {
+                nomesGlobais[indices[declaracao]] = arvore.getNome(declaracao);
+            }
+        }
+        
+        FuncaoSsa[] funcoes = new FuncaoSsa[quantidadeFuncoes];
+        for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+             declaracao = arvore.getProximoIrmao(declaracao)) {
+            if (arvore.getTipo(declaracao) == ArvoreSintatica.No.DECL_FUNCAO) {
+                funcoes[indices[declaracao]] = funcao(declaracao);
+            }
+        }
+        return funcoes;
+    }
+    
+    private int tamanhoVetor(int declaracao) {
+        int tamanho = arvore.getProximoIrmao(arvore.getPrimeiroFilho(declaracao));
+        return tamanho >= 0 ? arvore.getValor(tamanho) : 0;
+    }
+    
+    // ========== Funções e comandos ==========
+    
+    private FuncaoSsa funcao(int no) {
+        int tipo = arvore.getPrimeiroFilho(no);
+        int parametros = arvore.getProximoIrmao(tipo);
+        int quantidade = 0;
+        for (int parametro = arvore.getPrimeiroFilho(parametros); parametro >= 0;
+             parametro = arvore.getProximoIrmao(parametro)) {
+            quantidade++;
+        }
+        funcao = new FuncaoSsa(arvore.getNome(no), quantidade, nomesGlobais, nomesFuncoes);
+        variaveis = 0;
+        escritaEm = new int[8];
+        vivasEntreBlocos = new boolean[8];
+        primeiraEscrita = new int[8];
+        blocosEscrita = new int[16];
+        proximasEscritas = new int[16];
+        quantidadeEscritas = 0;
+        atual = funcao.novoBloco();
+        
+        quantidade = 0;
+        for (int parametro = arvore.getPrimeiroFilho(parametros); parametro >= 0;
+             parametro = arvore.getProximoIrmao(parametro)) {
+            int valor = emitir(FuncaoSsa.PARAM, quantidade++);
+            if (arvore.getTipo(parametro) == ArvoreSintatica.No.PARAMETRO_VETOR) {
+                indices[parametro] = valor;
+            } else {
+                indices[parametro] = novaVariavel();
+                escrever(indices[parametro], valor);
+            }
+        }
+        bloco(arvore.getProximoIrmao(parametros));
+        // Retorno implícito ao fim do corpo (0, se a função retorna int)
+        if (arvore.getValor(tipo) != Token.Tipo.VOID.ordinal()) {
+            emitir(FuncaoSsa.RET, 0, emitir(FuncaoSsa.CONST, 0));
+        } else {
+            emitir(FuncaoSsa.RET, 0);
+        }
+        
+        // Os blocos após um return não têm predecessores
+        funcao.removerInalcancaveis();
+        converter();
+        FuncaoSsa construida = funcao;
+        funcao = null;
+        return construida;
+    }
+    
+    private void bloco(int no) {
+        for (int filho = arvore.getPrimeiroFilho(no); filho >= 0; filho = arvore.getProximoIrmao(filho)) {
+            switch (arvore.getTipo(filho)) {
+                case DECL_VARIAVEL:
+                    // Variáveis locais começam zeradas
+                    indices[filho] = novaVariavel();
+                    escrever(indices[filho], emitir(FuncaoSsa.CONST, 0));
+                    break;
+                case DECL_VETOR:
+                    indices[filho] = emitir(FuncaoSsa.VETOR, tamanhoVetor(filho));
+                    break;
+                default:
+                    comando(filho);
+                    break;
+            }
+        }
+    }
+    
+    private void comando(int no) {
+        switch (arvore.getTipo(no)) {
+            case BLOCO:
+                bloco(no);
+                break;
+            case SE: {
+                int condicao = arvore.getPrimeiroFilho(no);
+                int entao = arvore.getProximoIrmao(condicao);
+                int senao = arvore.getProximoIrmao(entao);
+                int valor = expressao(condicao);
+                int blocoEntao = funcao.novoBloco();
+                int fim = funcao.novoBloco();
+                int blocoSenao = senao >= 0 ? funcao.novoBloco() : fim;
+                desviar(valor, blocoEntao, blocoSenao);
+                atual = blocoEntao;
+                comando(entao);
+                saltar(fim);
+                if (senao >= 0) {
+                    atual = blocoSenao;
+                    comando(senao);
+                    saltar(fim);
+                }
+                atual = fim;
+                break;
+            }
+            case ENQUANTO: {
+                int condicao = arvore.getPrimeiroFilho(no);
+                int teste = funcao.novoBloco();
+                saltar(teste);
+                atual = teste;
+                int valor = expressao(condicao);
+                int corpo = funcao.novoBloco();
+                int fim = funcao.novoBloco();
+                desviar(valor, corpo, fim);
+                atual = corpo;
+                comando(arvore.getProximoIrmao(condicao));
+                saltar(teste);
+                atual = fim;
+                break;
+            }
+            case RETORNO: {
+                int valor = arvore.getPrimeiroFilho(no);
+                if (valor >= 0) {
+                    emitir(FuncaoSsa.RET, 0, expressao(valor));
+                } else {
+                    emitir(FuncaoSsa.RET, 0);
+                }
+                // Os comandos seguintes ficam em um bloco inalcançável
+                atual = funcao.novoBloco();
+                break;
+            }
+            case VAZIO:
+                break;
+            default:
+                expressao(no);
+                break;
+        }
+    }
+    
+    private void saltar(int destino) {
+        emitir(FuncaoSsa.JMP, 0);
+        funcao.ligar(atual, 0, destino);
+    }
+    
+    private void desviar(int condicao, int verdadeiro, int falso) {
+        emitir(FuncaoSsa.BR, 0, condicao);
+        funcao.ligar(atual, 0, verdadeiro);
+        funcao.ligar(atual, 1, falso);
+    }
+    
+    // ========== Expressões ==========
+    
+    /**
+     * Compila a expressão no bloco atual
+     * @return o valor da expressão (de uma chamada void, um valor sem uso)
+     */
+    private int expressao(int no) {
+        switch (arvore.getTipo(no)) {
+            case CONSTANTE:
+                return emitir(FuncaoSsa.CONST, arvore.getValor(no));
+            case VARIAVEL:
+                return variavel(semantico.getDeclaracao(no));
+            case OPERACAO: {
+                int esquerda = arvore.getPrimeiroFilho(no);
+                int a = expressao(esquerda);
+                int b = expressao(arvore.getProximoIrmao(esquerda));
+                return emitir(FuncaoSsa.ADD + arvore.getValor(no), 0, a, b);
+            }
+            case ATRIBUICAO:
+                return atribuicao(no);
+            case INDEXACAO: {
+                int vetor = variavel(semantico.getDeclaracao(no));
+                return emitir(FuncaoSsa.LOADV, 0, vetor, expressao(arvore.getPrimeiroFilho(no)));
+            }
+            case CHAMADA:
+                return chamada(no);
+            default:
+                throw new IllegalStateException("nó inesperado em expressão: " + arvore.getTipo(no));
+        }
+    }
+    
+    /**
+     * Lê a variável declarada em 'declaracao'; de um vetor, o valor que o
+     * referencia
+     */
+    private int variavel(int declaracao) {
+        ArvoreSintatica.No tipo = arvore.getTipo(declaracao);
+        if (globais[declaracao]) {
+            int operacao = tipo == ArvoreSintatica.No.DECL_VETOR ? FuncaoSsa.VETORG : FuncaoSsa.LOADG;
+            return emitir(operacao, indices[declaracao]);
+        }
+        if (tipo == ArvoreSintatica.No.DECL_VETOR || tipo == ArvoreSintatica.No.PARAMETRO_VETOR) {
+            return indices[declaracao];
+        }
+        int variavel = indices[declaracao];
+        if (escritaEm[variavel] != atual + 1) {
+            vivasEntreBlocos[variavel] = true;
+        }
+        return emitir(FuncaoSsa.LER, variavel);
+    }
+    
+    private int atribuicao(int no) {
+        int alvo = arvore.getPrimeiroFilho(no);
+        int origem = arvore.getProximoIrmao(alvo);
+        int declaracao = semantico.getDeclaracao(alvo);
+        if (arvore.getTipo(alvo) == ArvoreSintatica.No.INDEXACAO) {
+            int vetor = variavel(declaracao);
+            int indice = expressao(arvore.getPrimeiroFilho(alvo));
+            int valor = expressao(origem);
+            emitir(FuncaoSsa.STOREV, 0, vetor, indice, valor);
+            return valor;
+        }
+        int valor = expressao(origem);
+        if (globais[declaracao]) {
+            emitir(FuncaoSsa.STOREG, indices[declaracao], valor);
+        } else {
+            if (arvore.getTipo(origem) == ArvoreSintatica.No.VARIAVEL) {
+                valor = emitir(FuncaoSsa.COPY, 0, valor);
+            }
+            escrever(indices[declaracao], valor);
+        }
+        return valor;
+    }
+    
+    private int chamada(int no) {
+        int nome = arvore.getValor(no);
+        int declaracao = semantico.getDeclaracao(no);
+        if (declaracao < 0 && nome == entrada) {
+            return emitir(FuncaoSsa.INPUT, 0);
+        }
+        if (declaracao < 0 && nome == saida) {
+            return emitir(FuncaoSsa.OUTPUT, 0, expressao(arvore.getPrimeiroFilho(no)));
+        }
+        int quantidade = 0;
+        for (int argumento = arvore.getPrimeiroFilho(no); argumento >= 0;
+             argumento = arvore.getProximoIrmao(argumento)) {
+            quantidade++;
+        }
+        int[] argumentos = new int[quantidade];
+        quantidade = 0;
+        for (int argumento = arvore.getPrimeiroFilho(no); argumento >= 0;
+             argumento = arvore.getProximoIrmao(argumento)) {
+            argumentos[quantidade++] = expressao(argumento);
+        }
+        return emitir(FuncaoSsa.CALL, indices[declaracao], argumentos);
+    }
+    
+    private int emitir(int operacao, int constante, int... argumentos) {
+        int instrucao = funcao.nova(operacao, constante, argumentos);
+        funcao.anexar(atual, instrucao);
+        return instrucao;
+    }
+    
+    // ========== Variáveis ==========
+    
+    private int novaVariavel() {
+        if (variaveis == escritaEm.length) {
+            escritaEm = Arrays.copyOf(escritaEm, variaveis * 2);
+            vivasEntreBlocos = Arrays.copyOf(vivasEntreBlocos, variaveis * 2);
+            primeiraEscrita = Arrays.copyOf(primeiraEscrita, variaveis * 2);
+        }
+        escritaEm[variaveis] = 0;
+        vivasEntreBlocos[variaveis] = false;
+        primeiraEscrita[variaveis] = -1;
+        return variaveis++;
+    }
+    
+    /**
+     * Escreve a variável no bloco atual, registrando o bloco entre os
+     * que a definem
+     */
+    private void escrever(int variavel, int valor) {
+        emitir(FuncaoSsa.ESCREVER, variavel, valor);
+        if (escritaEm[variavel] == atual + 1) {
+            return;
+        }
+        escritaEm[variavel] = atual + 1;
+        if (quantidadeEscritas == blocosEscrita.length) {
+            blocosEscrita = Arrays.copyOf(blocosEscrita, quantidadeEscritas * 2);
+            proximasEscritas = Arrays.copyOf(proximasEscritas, quantidadeEscritas * 2);
+        }
+        blocosEscrita[quantidadeEscritas] = atual;
+        proximasEscritas[quantidadeEscritas] = primeiraEscrita[variavel];
+        primeiraEscrita[variavel] = quantidadeEscritas++;
+    }
+    
+    // ========== Conversão para SSA ==========
+    
+    /**
+     * Insere as φ e renomeia as variáveis
+     */
+    private void converter() {
+        FuncaoSsa.Dominadores dominadores = funcao.dominadores();
+        int blocos = funcao.getQuantidadeBlocos();
+        int[][] fronteiras = fronteiras(dominadores);
+        
+        // φ na fronteira de dominância iterada dos blocos que escrevem
+        // cada variável viva entre blocos
+        int[] phiEm = new int[blocos];
+        int[] naLista = new int[blocos];
+        int[] lista = new int[blocos];
+        for (int variavel = 0; variavel < variaveis; variavel++) {
+            if (!vivasEntreBlocos[variavel]) {
+                continue;
+            }
+            int tamanho = 0;
+            for (int e = primeiraEscrita[variavel]; e >= 0; e = proximasEscritas[e]) {
+                int bloco = blocosEscrita[e];
+                if (dominadores.imediatos[bloco] >= 0) {
+                    lista[tamanho++] = bloco;
+                    naLista[bloco] = variavel + 1;
+                }
+            }
+            while (tamanho > 0) {
+                int bloco = lista[--tamanho];
+                int[] fronteira = fronteiras[bloco];
+                for (int i = 0; fronteira != null && i < fronteira.length && fronteira[i] >= 0; i++) {
+                    int destino = fronteira[i];
+                    if (phiEm[destino] == variavel + 1) {
+                        continue;
+                    }
+                    phiEm[destino] = variavel + 1;
+                    funcao.inserirNoInicio(destino,
+                                           funcao.novaPhi(variavel, funcao.getQuantidadePredecessores(destino)));
+                    if (naLista[destino] != variavel + 1) {
+                        naLista[destino] = variavel + 1;
+                        lista[tamanho++] = destino;
+                    }
+                }
+            }
+        }
+        renomear(dominadores);
+    }
+    
+    /**
+     * Calcula a fronteira de dominância de cada bloco (Cooper, Harvey e
+     * Kennedy): a partir de cada predecessor de uma junção, sobe a árvore
+     * de dominadores até o dominador imediato da junção
+     * @return por bloco, os blocos da fronteira (terminados em -1 se o
+     *         array sobra), ou null se ela é vazia
+     */
+    private int[][] fronteiras(FuncaoSsa.Dominadores dominadores) {
+        int[] imediatos = dominadores.imediatos;
+        int[][] fronteiras = new int[funcao.getQuantidadeBlocos()][];
+        int[] tamanhos = new int[funcao.getQuantidadeBlocos()];
+        for (int bloco : dominadores.ordem) {
+            int predecessores = funcao.getQuantidadePredecessores(bloco);
+            if (predecessores < 2) {
+                continue;
+            }
+            for (int p = 0; p < predecessores; p++) {
+                int corredor = funcao.getPredecessor(bloco, p);
+                while (corredor != imediatos[bloco]) {
+                    int tamanho = tamanhos[corredor];
+                    // A junção é processada de uma vez: basta olhar o último acrescentado
+                    if (tamanho > 0 && fronteiras[corredor][tamanho - 1] == bloco) {
+                        break;
+                    }
+                    if (fronteiras[corredor] == null) {
+                        fronteiras[corredor] = new int[2];
+                    } else if (tamanho == fronteiras[corredor].length) {
+                        fronteiras[corredor] = Arrays.copyOf(fronteiras[corredor], tamanho * 2);
+                    }
+                    fronteiras[corredor][tamanho] = bloco;
+                    tamanhos[corredor] = tamanho + 1;
+                    corredor = imediatos[corredor];
+                }
+            }
+        }
+        for (int bloco = 0; bloco < fronteiras.length; bloco++) {
+            if (fronteiras[bloco] != null && tamanhos[bloco] < fronteiras[bloco].length) {
+                fronteiras[bloco][tamanhos[bloco]] = -1;
+            }
+        }
+        return fronteiras;
+    }
+    
+    /**
+     * Percorre a árvore de dominadores em pré-ordem (com uma pilha
+     * explícita) trocando cada LER pelo valor visível da variável e
+     * preenchendo os operandos das φ dos sucessores
+     */
+    private void renomear(FuncaoSsa.Dominadores dominadores) {
+        int[] valores = new int[variaveis];
+        Arrays.fill(valores, -1);
+        // Valores anteriores das variáveis redefinidas, restaurados ao
+        // sair do bloco que as redefiniu
+        int[] desfazerVariaveis = new int[16];
+        int[] desfazerValores = new int[16];
+        int desfazer = 0;
+        int[] pilha = new int[2 * funcao.getQuantidadeBlocos() + 2];
+        int[] marcas = new int[funcao.getQuantidadeBlocos()];
+        int topo = 0;
+        pilha[topo++] = funcao.getEntrada();
+        while (topo > 0) {
+            int bloco = pilha[--topo];
+            if (bloco < 0) {
+                // Saída do bloco ~bloco
+                int marca = marcas[~bloco];
+                while (desfazer > marca) {
+                    desfazer--;
+                    valores[desfazerVariaveis[desfazer]] = desfazerValores[desfazer];
+                }
+                continue;
+            }
+            marcas[bloco] = desfazer;
+            int instrucao = funcao.getPrimeira(bloco);
+            while (instrucao >= 0) {
+                int proxima = funcao.getProxima(instrucao);
+                int operacao = funcao.getOperacao(instrucao);
+                if (operacao == FuncaoSsa.PHI || operacao == FuncaoSsa.ESCREVER) {
+                    int variavel = funcao.getConstante(instrucao);
+                    if (desfazer == desfazerVariaveis.length) {
+                        desfazerVariaveis = Arrays.copyOf(desfazerVariaveis, desfazer * 2);
+                        desfazerValores = Arrays.copyOf(desfazerValores, desfazer * 2);
+                    }
+                    desfazerVariaveis[desfazer] = variavel;
+                    desfazerValores[desfazer++] = valores[variavel];
+                    if (operacao == FuncaoSsa.PHI) {
+                        valores[variavel] = instrucao;
+                    } else {
+                        valores[variavel] = funcao.getOperando(instrucao, 0);
+                        funcao.remover(instrucao);
+                    }
+                } else if (operacao == FuncaoSsa.LER) {
+                    funcao.substituir(instrucao, valor(valores, funcao.getConstante(instrucao)));
+                }
+                instrucao = proxima;
+            }
+            for (int i = 0; i < 2; i++) {
+                int sucessor = funcao.getSucessor(bloco, i);
+                if (sucessor < 0 || (i == 1 && sucessor == funcao.getSucessor(bloco, 0))) {
+                    continue;
+                }
+                int indice = funcao.indicePredecessor(sucessor, bloco);
+                for (int phi = funcao.getPrimeira(sucessor); phi >= 0 && funcao.getOperacao(phi) == FuncaoSsa.PHI;
+                     phi = funcao.getProxima(phi)) {
+                    funcao.setOperando(phi, indice, valor(valores, funcao.getConstante(phi)));
+                }
+            }
+            pilha[topo++] = ~bloco;
+            for (int i = dominadores.inicios[bloco]; i < dominadores.inicios[bloco + 1]; i++) {
+                pilha[topo++] = dominadores.filhos[i];
+            }
+        }
+    }
+    
+    /**
+     * Retorna o valor visível da variável; uma variável lida antes de
+     * qualquer escrita (o que a linguagem não permite) vale 0
+     */
+    private int valor(int[] valores, int variavel) {
+        if (valores[variavel] < 0) {
+            int zero = funcao.nova(FuncaoSsa.CONST, 0);
+            funcao.inserirNoInicio(funcao.getEntrada(), zero);
+            valores[variavel] = zero;
+        }
+        return valores[variavel];
+    }
+}
@@ -0,0 +1,408 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coletor de diagnósticos (erros léxicos, sintáticos e semânticos)
+ * guardados como registros compactos em vetores paralelos: código, tipo
+ * do token encontrado, posição, comprimento e conjunto de tipos
+ * esperados.
+ * As mensagens só são formatadas quando pedidas, de modo que quem
+ * verifica apenas se houve erro não paga pela formatação.
+ *
+ * Um limite de erros pode ser configurado: ao atingi-lo, o registro
+ * seguinte é recusado e o analisador interrompe o trabalho.
+ */
+public class Diagnosticos {
+    private static final int CAPACIDADE_INICIAL = 16;
+    private static final Token.Tipo[] TIPOS = Token.Tipo.values();
+    private static final Codigo[] CODIGOS = Codigo.values();
+    
+    /**
+     * Fase que registra cada tipo de diagnóstico
+     */
+    public enum Categoria {
+        LEXICO, SINTATICO, SEMANTICO
+    }
+    
+    /**
+     * Tipos de diagnóstico. A mensagem é completada pelo texto do token
+     * (erros léxicos), pelos tipos esperados, pelo nome envolvido (erros
+     * semânticos) ou por um detalhe.
+     */
+    public enum Codigo {
+        CARACTERE_INESPERADO(Categoria.LEXICO, "Caractere inesperado: "),
+        CONSTANTE_FORA_DO_INTERVALO(Categoria.LEXICO, "Constante inteira fora do intervalo de int: "),
+        TOKEN_ESPERADO(Categoria.SINTATICO, "Esperado "),
+        DECLARACAO_INCOMPLETA(Categoria.SINTATICO, "Esperado ';', '[' ou '(' após identificador"),
+        DECLARACAO_VAR_INCOMPLETA(Categoria.SINTATICO, "Esperado ';' ou '[' após identificador"),
+        TIPO_ESPERADO(Categoria.SINTATICO, "Esperado 'int' ou 'void'"),
+        EXPRESSAO_ESPERADA(Categoria.SINTATICO, "Esperado expressão: '(', constante inteira ou identificador"),
+        RELACIONAL_ESPERADO(Categoria.SINTATICO, "Esperado operador relacional: >, <, <=, >=, == ou !="),
+        ADITIVO_ESPERADO(Categoria.SINTATICO, "Esperado operador aditivo: + ou -"),
+        MULTIPLICATIVO_ESPERADO(Categoria.SINTATICO, "Esperado operador multiplicativo: * ou /"),
+        FATOR_ESPERADO(Categoria.SINTATICO, "Esperado fator: '(', constante inteira ou identificador"),
+        TOKENS_ADICIONAIS(Categoria.SINTATICO, "Tokens adicionais após o fim do programa"),
+        ANINHAMENTO_EXCESSIVO(Categoria.SINTATICO, "Aninhamento excessivo: a pilha de chamadas do parser se esgotou"),
+        ERRO_INTERNO(Categoria.SINTATICO, "Erro durante o parsing: "),
+        NAO_DECLARADO(Categoria.SEMANTICO, "Identificador não declarado: "),
+        REDECLARADO(Categoria.SEMANTICO, "Identificador já declarado neste escopo: "),
+        VARIAVEL_VOID(Categoria.SEMANTICO, "Variável declarada como void: "),
+        NAO_E_FUNCAO(Categoria.SEMANTICO, "Chamada de identificador que não é função: "),
+        FUNCAO_COMO_VARIAVEL(Categoria.SEMANTICO, "Função usada como variável: "),
+        ARGUMENTOS(Categoria.SEMANTICO, "Quantidade incorreta de argumentos na chamada de "),
+        NAO_E_VETOR(Categoria.SEMANTICO, "Indexação de identificador que não é vetor: "),
+        VETOR_SEM_INDICE(Categoria.SEMANTICO, "Vetor usado sem índice: "),
+        ARGUMENTO_VETOR(Categoria.SEMANTICO, "Argumento incompatível na chamada de "),
+        VALOR_VOID(Categoria.SEMANTICO, "Função void usada como valor: "),
+        RETORNO_COM_VALOR(Categoria.SEMANTICO, "Retorno com valor na função void "),
+        RETORNO_SEM_VALOR(Categoria.SEMANTICO, "Retorno sem valor na função int "),
+        TAMANHO_VETOR(Categoria.SEMANTICO, "Vetor de tamanho zero: ");
+        
+        private final Categoria categoria;
+        private final String mensagem;
+        
+        Codigo(Categoria categoria, String mensagem) {
+            this.categoria = categoria;
+            this.mensagem = mensagem;
+        }
+        
+        public Categoria getCategoria() {
+            return categoria;
+        }
+        
+        public boolean isSintatico() {
+            return categoria == Categoria.SINTATICO;
+        }
+    }
+    
+    /**
+     * Lançada pelo parser para abandonar a análise quando o limite de
+     * erros é atingido. Não guarda pilha de chamadas, pois é esperada.
+     */
+    public static final class LimiteAtingido extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        public static final LimiteAtingido INSTANCIA = new LimiteAtingido();
+        
+        private LimiteAtingido() {
+            super("Limite de erros atingido", null, false, false);
+        }
+    }
+    
+    private final int limite;
+    private int tamanho;
+    private boolean limiteAtingido;
+    
+    private int[] codigos;
+    private int[] encontrados;
+    private int[] posicoes;
+    private int[] comprimentos;
+    private int[] linhas;
+    private int[] colunas;
+    private long[] esperados;
+    
+    // Texto do token de cada registro, seguido do detalhe (se houver),
+    // a partir de 'iniciosTexto[i]'
+    private int[] iniciosTexto;
+    private final StringBuilder textos;
+    
+    /**
+     * Cria um coletor sem limite de erros
+     */
+    public Diagnosticos() {
+        this(Integer.MAX_VALUE);
+    }
+    
+    /**
+     * @param limite Quantidade máxima de erros registrados
+     */
+    public Diagnosticos(int limite) {
+        this.limite = limite;
+        this.codigos = new int[CAPACIDADE_INICIAL];
+        this.encontrados = new int[CAPACIDADE_INICIAL];
+        this.posicoes = new int[CAPACIDADE_INICIAL];
+        this.comprimentos = new int[CAPACIDADE_INICIAL];
+        this.linhas = new int[CAPACIDADE_INICIAL];
+        this.colunas = new int[CAPACIDADE_INICIAL];
+        this.esperados = new long[CAPACIDADE_INICIAL];
+        this.iniciosTexto = new int[CAPACIDADE_INICIAL];
+        this.textos = new StringBuilder();
+    }
+    
+    /**
+     * Registra um diagnóstico. O texto do token é copiado de 'fonte'
+     * (posições [posicao, posicao + comprimento)), sem criar String.
+     * @param encontrado Tipo do token encontrado, ou null em erros léxicos
+     * @param esperados Conjunto de tipos esperados (ver {@link #conjunto})
+     * @param detalhe Texto que completa a mensagem, ou null
+     * @return false se o limite de erros já foi atingido e o diagnóstico
+     *         foi descartado; o analisador deve então interromper
+     */
+    public boolean registrar(Codigo codigo, Token.Tipo encontrado, int posicao, int comprimento,
+                             int linha, int coluna, long esperados, CharSequence fonte, String detalhe) {
+        int i = novoRegistro(codigo, posicao, comprimento, linha, coluna);
+        if (i < 0) {
+            return false;
+        }
+        encontrados[i] = encontrado == null ? -1 : encontrado.ordinal();
+        this.esperados[i] = esperados;
+        if (fonte instanceof FonteBytes) {
+            // Decodificado: um caractere multibyte ocupa vários bytes da fonte
+            textos.append(fonte.subSequence(posicao, posicao + comprimento).toString());
+        } else {
+            textos.append(fonte, posicao, posicao + comprimento);
+        }
+        if (detalhe != null) {
+            textos.append(detalhe);
+        }
+        return true;
+    }
+    
+    /**
+     * Registra um diagnóstico semântico sobre o nome declarado ou usado
+     * em 'posicao'
+     * @param detalhe Texto que completa a mensagem após o nome, ou null
+     * @return false se o limite de erros já foi atingido
+     */
+    public boolean registrarSemantico(Codigo codigo, int posicao, int linha, int coluna,
+                                      String nome, String detalhe) {
+        int i = novoRegistro(codigo, posicao, nome.length(), linha, coluna);
+        if (i < 0) {
+            return false;
+        }
+        encontrados[i] = Token.Tipo.IDENT.ordinal();
+        esperados[i] = 0;
+        textos.append(nome);
+        if (detalhe != null) {
+            textos.append(detalhe);
+        }
+        return true;
+    }
+    
+    /**
+     * Reserva um registro e preenche os campos comuns
+     * @return o índice do registro, ou -1 se o limite foi atingido
+     */
+    private int novoRegistro(Codigo codigo, int posicao, int comprimento, int linha, int coluna) {
+        if (tamanho >= limite) {
+            limiteAtingido = true;
+            return -1;
+        }
+        if (tamanho == codigos.length) {
+            crescer();
+        }
+        int i = tamanho++;
+        codigos[i] = codigo.ordinal();
+        posicoes[i] = posicao;
+        comprimentos[i] = comprimento;
+        linhas[i] = linha;
+        colunas[i] = coluna;
+        iniciosTexto[i] = textos.length();
+        return i;
+    }
+    
+    /**
+     * Verifica se ainda cabem 'quantidade' diagnósticos antes do limite
+     */
+    public boolean comporta(int quantidade) {
+        return quantidade <= limite - tamanho;
+    }
+    
+    /**
+     * Descarta os diagnósticos registrados após os 'tamanho' primeiros,
+     * usado quando uma análise é refeita desde o início
+     */
+    public void truncar(int tamanho) {
+        if (tamanho >= this.tamanho) {
+            return;
+        }
+        textos.setLength(Math.min(iniciosTexto[tamanho], textos.length()));
+        this.tamanho = tamanho;
+        limiteAtingido = false;
+    }
+    
+    private void crescer() {
+        int capacidade = codigos.length * 2;
+        codigos = Arrays.copyOf(codigos, capacidade);
+        encontrados = Arrays.copyOf(encontrados, capacidade);
+        posicoes = Arrays.copyOf(posicoes, capacidade);
+        comprimentos = Arrays.copyOf(comprimentos, capacidade);
+        linhas = Arrays.copyOf(linhas, capacidade);
+        colunas = Arrays.copyOf(colunas, capacidade);
+        esperados = Arrays.copyOf(esperados, capacidade);
+        iniciosTexto = Arrays.copyOf(iniciosTexto, capacidade);
+    }
+    
+    /**
+     * Retorna o conjunto de tipos de token como máscara de bits
+     */
+    public static long conjunto(Token.Tipo... tipos) {
+        long bits = 0;
+        for (Token.Tipo tipo : tipos) {
+            bits |= 1L << tipo.ordinal();
+        }
+        return bits;
+    }
+    
+    // ========== Consulta ==========
+    
+    /**
+     * Retorna a quantidade de diagnósticos registrados
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+    
+    /**
+     * Verifica se algum diagnóstico foi recusado por exceder o limite
+     */
+    public boolean isLimiteAtingido() {
+        return limiteAtingido;
+    }
+    
+    public Codigo getCodigo(int i) {
+        return CODIGOS[codigos[i]];
+    }
+    
+    /**
+     * Retorna o tipo do token encontrado, ou null em erros léxicos
+     */
+    public Token.Tipo getEncontrado(int i) {
+        return encontrados[i] < 0 ? null : TIPOS[encontrados[i]];
+    }
+    
+    public int getPosicao(int i) {
+        return posicoes[i];
+    }
+    
+    public int getComprimento(int i) {
+        return comprimentos[i];
+    }
+    
+    public int getLinha(int i) {
+        return linhas[i];
+    }
+    
+    public int getColuna(int i) {
+        return colunas[i];
+    }
+    
+    /**
+     * Retorna o conjunto de tipos esperados como máscara de bits
+     */
+    public long getEsperados(int i) {
+        return esperados[i];
+    }
+    
+    /**
+     * Verifica se o tipo indicado estava entre os esperados
+     */
+    public boolean esperava(int i, Token.Tipo tipo) {
+        return (esperados[i] & (1L << tipo.ordinal())) != 0;
+    }
+    
+    // ========== Formatação ==========
+    
+    /**
+     * Formata a mensagem do diagnóstico, sem a posição
+     */
+    public String mensagem(int i) {
+        Codigo codigo = getCodigo(i);
+        int inicio = iniciosTexto[i];
+        if (codigo.categoria == Categoria.SEMANTICO) {
+            // Nome seguido do detalhe
+            return codigo.mensagem + textos.substring(inicio, fimTexto(i));
+        }
+        switch (codigo) {
+            case CARACTERE_INESPERADO:
+            case CONSTANTE_FORA_DO_INTERVALO:
+                // Sem detalhe: o texto vai até o próximo registro
+                return codigo.mensagem + textos.substring(inicio, fimTexto(i));
+            case TOKEN_ESPERADO:
+                return codigo.mensagem + descrever(esperados[i]);
+            case ERRO_INTERNO:
+                return codigo.mensagem + textos.substring(inicio + comprimentos[i], fimTexto(i));
+            default:
+                return codigo.mensagem;
+        }
+    }
+    
+    /**
+     * Formata o diagnóstico completo, com posição e token encontrado
+     */
+    public String renderizar(int i) {
+        switch (getCodigo(i).categoria) {
+            case LEXICO:
+                return "Erro léxico na linha " + linhas[i] + ", coluna " + colunas[i] + ": " + mensagem(i);
+            case SEMANTICO:
+                return "Erro semântico na linha " + linhas[i] + ", coluna " + colunas[i] + ": " + mensagem(i);
+            default:
+                break;
+        }
+        int inicio = iniciosTexto[i];
+        Token encontrado = new Token(getEncontrado(i), textos.substring(inicio, inicio + comprimentos[i]),
+                                     linhas[i], colunas[i]);
+        return String.format("Erro na linha %d, coluna %d: %s. Token encontrado: %s",
+                             linhas[i], colunas[i], mensagem(i), encontrado);
+    }
+    
+    private int fimTexto(int i) {
+        return i + 1 < tamanho ? iniciosTexto[i + 1] : textos.length();
+    }
+    
+    /**
+     * Formata todos os diagnósticos, na ordem em que foram registrados
+     */
+    public List<String> renderizar() {
+        List<String> mensagens = new ArrayList<>(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            mensagens.add(renderizar(i));
+        }
+        return mensagens;
+    }
+    
+    /**
+     * Descreve um conjunto de tipos: "a", "a ou b", "a, b ou c"
+     */
+    private static String descrever(long conjunto) {
+        StringBuilder texto = new StringBuilder();
+        int restantes = Long.bitCount(conjunto);
+        for (Token.Tipo tipo : TIPOS) {
+            if ((conjunto & (1L << tipo.ordinal())) != 0) {
+                texto.append(descrever(tipo));
+                restantes--;
+                if (restantes > 1) {
+                    texto.append(", ");
+                } else if (restantes == 1) {
+                    texto.append(" ou ");
+                }
+            }
+        }
+        return texto.toString();
+    }
+    
+    /**
+     * Retorna a descrição de um tipo de token usada nas mensagens
+     */
+    public static String descrever(Token.Tipo tipo) {
+        switch (tipo) {
+            case IDENT: return "identificador";
+            case CONTINT: return "constante inteira";
+            case OPRELACIONAL: return "operador relacional";
+            case OPADITIVO: return "operador aditivo";
+            case OPMULT: return "operador multiplicativo";
+            case ATRIBUICAO: return "=";
+            case PONTO_VIRGULA: return ";";
+            case VIRGULA: return ",";
+            case ABRE_PARENTESES: return "(";
+            case FECHA_PARENTESES: return ")";
+            case ABRE_COLCHETES: return "[";
+            case FECHA_COLCHETES: return "]";
+            case ABRE_CHAVES: return "{";
+            case FECHA_CHAVES: return "}";
+            case EOF: return "fim do arquivo";
+            default: return tipo.name().toLowerCase();
+        }
+    }
+}
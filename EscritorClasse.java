@@ -0,0 +1,711 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escritor mínimo de arquivos .class (versão 52, Java 8), com o que o
+ * {@link GeradorJvm} precisa: pool de constantes, campos e métodos
+ * estáticos e um montador de bytecode que calcula max_stack, max_locals
+ * e a StackMapTable exigida pelo verificador.
+ *
+ * O montador acompanha os tipos da pilha de operandos (int e int[])
+ * instrução a instrução. Código inalcançável (após goto ou return, até
+ * um rótulo alcançado por algum desvio) é descartado, de modo que todo
+ * código emitido tem tipos conhecidos. Os quadros da StackMapTable são
+ * completos (full_frame) e ficam nos rótulos que são destino de desvios.
+ */
+public final class EscritorClasse {
+    private static final int MAGICO = 0xCAFEBABE;
+    private static final int VERSAO = 52;
+    
+    // ========== Modificadores ==========
+    
+    public static final int PUBLICO = 0x0001;
+    public static final int ESTATICO = 0x0008;
+    public static final int FINAL = 0x0010;
+    public static final int SUPER = 0x0020;
+    
+    // ========== Instruções ==========
+    
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int IALOAD = 0x2e;
+    public static final int ISTORE = 0x36;
+    public static final int ASTORE = 0x3a;
+    public static final int IASTORE = 0x4f;
+    public static final int POP = 0x57;
+    public static final int DUP = 0x59;
+    public static final int DUP_X2 = 0x5b;
+    public static final int SWAP = 0x5f;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int IDIV = 0x6c;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    // Comparações de dois inteiros, na ordem de ArvoreSintatica.Operador
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int RETURN = 0xb1;
+    public static final int GETSTATIC = 0xb2;
+    public static final int PUTSTATIC = 0xb3;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int INVOKEINTERFACE = 0xb9;
+    public static final int NEWARRAY = 0xbc;
+    public static final int WIDE = 0xc4;
+    
+    private static final int T_INT = 10;
+    
+    /**
+     * Tipos de valores na pilha e nas variáveis locais
+     */
+    public static final int TIPO_INT = 1;
+    public static final int TIPO_VETOR = 2;
+    // Outros objetos, que não podem estar na pilha em um rótulo
+    public static final int TIPO_OBJETO = 3;
+    
+    // ========== Pool de constantes ==========
+    
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> constantes = new HashMap<>();
+    private int quantidadeConstantes = 1;
+    
+    private final String nome;
+    private final int classe;
+    private final int superclasse;
+    private final int classeVetor;
+    private final ByteArrayOutputStream campos = new ByteArrayOutputStream();
+    private int quantidadeCampos;
+    private final List<Metodo> metodos = new ArrayList<>();
+    
+    /**
+     * @param nome Nome interno da classe (com '/' separando pacotes)
+     */
+    public EscritorClasse(String nome) {
+        this.nome = nome;
+        this.classe = classe(nome);
+        this.superclasse = classe("java/lang/Object");
+        this.classeVetor = classe("[I");
+    }
+    
+    public String getNome() {
+        return nome;
+    }
+    
+    public int utf8(String texto) {
+        Integer indice = constantes.get("U" + texto);
+        if (indice != null) {
+            return indice;
+        }
+        try {
+            pool.writeByte(1);
+            pool.writeUTF(texto);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return registrar("U" + texto, 1);
+    }
+    
+    public int classe(String nomeInterno) {
+        return referencia(7, "C" + nomeInterno, utf8(nomeInterno), -1);
+    }
+    
+    public int inteiro(int valor) {
+        Integer indice = constantes.get("I" + valor);
+        if (indice != null) {
+            return indice;
+        }
+        try {
+            pool.writeByte(3);
+            pool.writeInt(valor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return registrar("I" + valor, 1);
+    }
+    
+    public int campo(String dono, String nome, String descritor) {
+        return membro(9, dono, nome, descritor);
+    }
+    
+    public int metodo(String dono, String nome, String descritor) {
+        return membro(10, dono, nome, descritor);
+    }
+    
+    public int metodoInterface(String dono, String nome, String descritor) {
+        return membro(11, dono, nome, descritor);
+    }
+    
+    private int membro(int marca, String dono, String nome, String descritor) {
+        int nomeETipo = referencia(12, "N" + nome + ' ' + descritor, utf8(nome), utf8(descritor));
+        return referencia(marca, marca + dono + '.' + nome + ' ' + descritor, classe(dono), nomeETipo);
+    }
+    
+    /**
+     * Acrescenta uma constante formada por uma ou duas referências a outras
+     */
+    private int referencia(int marca, String chave, int primeira, int segunda) {
+        Integer indice = constantes.get(chave);
+        if (indice != null) {
+            return indice;
+        }
+        try {
+            pool.writeByte(marca);
+            pool.writeShort(primeira);
+            if (segunda >= 0) {
+                pool.writeShort(segunda);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return registrar(chave, 1);
+    }
+    
+    private int registrar(String chave, int posicoes) {
+        int indice = quantidadeConstantes;
+        quantidadeConstantes += posicoes;
+        if (quantidadeConstantes > 0xFFFF) {
+            throw new IllegalStateException("pool de constantes excede 65535 entradas");
+        }
+        constantes.put(chave, indice);
+        return indice;
+    }
+    
+    // ========== Campos e métodos ==========
+    
+    public void adicionarCampo(int modificadores, String nome, String descritor) {
+        DataOutputStream saida = new DataOutputStream(campos);
+        try {
+            saida.writeShort(modificadores);
+            saida.writeShort(utf8(nome));
+            saida.writeShort(utf8(descritor));
+            saida.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        quantidadeCampos++;
+    }
+    
+    /**
+     * Cria um método, cujo código é montado pelo objeto retornado
+     * @param parametros Tipos dos parâmetros (TIPO_INT ou TIPO_VETOR)
+     */
+    public Metodo adicionarMetodo(int modificadores, String nome, String descritor, int[] parametros) {
+        Metodo metodo = new Metodo(modificadores, nome, descritor, parametros);
+        metodos.add(metodo);
+        return metodo;
+    }
+    
+    /**
+     * Retorna o arquivo .class completo
+     */
+    public byte[] toByteArray() {
+        // Os nomes dos atributos entram no pool antes de escrevê-lo
+        int codigo = utf8("Code");
+        int quadros = utf8("StackMapTable");
+        int linhas = utf8("LineNumberTable");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream saida = new DataOutputStream(bytes);
+        try {
+            saida.writeInt(MAGICO);
+            saida.writeShort(0);
+            saida.writeShort(VERSAO);
+            saida.writeShort(quantidadeConstantes);
+            poolBytes.writeTo(saida);
+            saida.writeShort(PUBLICO | FINAL | SUPER);
+            saida.writeShort(classe);
+            saida.writeShort(superclasse);
+            saida.writeShort(0);
+            saida.writeShort(quantidadeCampos);
+            campos.writeTo(saida);
+            saida.writeShort(metodos.size());
+            for (Metodo metodo : metodos) {
+                metodo.escrever(saida, codigo, quadros, linhas);
+            }
+            saida.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    // ========== Montador ==========
+    
+    /**
+     * Destino de desvios, posicionado por {@link Metodo#marcar}
+     */
+    public static final class Rotulo {
+        private int posicao = -1;
+        // Posições das instruções de desvio que apontam para o rótulo
+        private int[] desvios = new int[2];
+        private int quantidadeDesvios;
+        // Tipos da pilha nos desvios, que o rótulo herda se não é
+        // alcançado pela instrução anterior
+        private int[] pilha;
+        private int profundidade;
+    }
+    
+    /**
+     * Código de um método
+     */
+    public final class Metodo {
+        private final int modificadores;
+        private final String nome;
+        private final int indiceNome;
+        private final int indiceDescritor;
+        
+        private byte[] codigo = new byte[256];
+        private int tamanho;
+        private boolean alcancavel = true;
+        
+        private int[] pilha = new int[16];
+        private int profundidade;
+        private int maximoPilha;
+        
+        private int[] locais = new int[16];
+        private int quantidadeLocais;
+        private int maximoLocais;
+        
+        private final List<Rotulo> pendentes = new ArrayList<>();
+        private final ByteArrayOutputStream quadros = new ByteArrayOutputStream();
+        private int quantidadeQuadros;
+        private int ultimoQuadro = -1;
+        // Quadro no fim do código, ainda não escrito: pode ser substituído
+        // por outro rótulo marcado na mesma posição
+        private byte[] quadroPendente;
+        private int posicaoPendente;
+        
+        private final ByteArrayOutputStream linhas = new ByteArrayOutputStream();
+        private int quantidadeLinhas;
+        private int ultimaLinha = -1;
+        
+        Metodo(int modificadores, String nome, String descritor, int[] parametros) {
+            this.modificadores = modificadores;
+            this.nome = nome;
+            this.indiceNome = utf8(nome);
+            this.indiceDescritor = utf8(descritor);
+            for (int tipo : parametros) {
+                declararLocal(tipo);
+            }
+        }
+        
+        /**
+         * Reserva uma variável local do tipo
+         * @return a posição da variável
+         */
+        public int declararLocal(int tipo) {
+            if (quantidadeLocais == locais.length) {
+                locais = Arrays.copyOf(locais, quantidadeLocais * 2);
+            }
+            locais[quantidadeLocais] = tipo;
+            maximoLocais = Math.max(maximoLocais, quantidadeLocais + 1);
+            return quantidadeLocais++;
+        }
+        
+        /**
+         * Libera as variáveis locais a partir da posição, ao fim de um bloco
+         */
+        public void liberarLocais(int inicio) {
+            quantidadeLocais = inicio;
+        }
+        
+        public int getQuantidadeLocais() {
+            return quantidadeLocais;
+        }
+        
+        /**
+         * Verifica se a próxima instrução é alcançável; as inalcançáveis
+         * são descartadas
+         */
+        public boolean isAlcancavel() {
+            return alcancavel;
+        }
+        
+        /**
+         * Registra a linha da fonte das próximas instruções
+         */
+        public void linha(int linha) {
+            if (!alcancavel || linha == ultimaLinha) {
+                return;
+            }
+            ultimaLinha = linha;
+            escreverShort(linhas, tamanho);
+            escreverShort(linhas, linha);
+            quantidadeLinhas++;
+        }
+        
+        // ========== Instruções ==========
+        
+        /**
+         * Empilha uma constante inteira, com a instrução mais curta
+         */
+        public void constante(int valor) {
+            if (!alcancavel) {
+                return;
+            }
+            if (valor >= -1 && valor <= 5) {
+                u1(ICONST_0 + valor);
+            } else if (valor >= Byte.MIN_VALUE && valor <= Byte.MAX_VALUE) {
+                u1(BIPUSH);
+                u1(valor);
+            } else if (valor >= Short.MIN_VALUE && valor <= Short.MAX_VALUE) {
+                u1(SIPUSH);
+                u2(valor);
+            } else {
+                u1(LDC_W);
+                u2(inteiro(valor));
+            }
+            empilhar(TIPO_INT);
+        }
+        
+        /**
+         * Empilha uma variável local
+         */
+        public void carregar(int local) {
+            int tipo = locais[local];
+            variavel(tipo == TIPO_VETOR ? ALOAD : ILOAD, local);
+            empilhar(tipo);
+        }
+        
+        /**
+         * Desempilha para uma variável local
+         */
+        public void armazenar(int local) {
+            variavel(locais[local] == TIPO_VETOR ? ASTORE : ISTORE, local);
+            desempilhar(1);
+        }
+        
+        private void variavel(int instrucao, int local) {
+            if (!alcancavel) {
+                return;
+            }
+            if (local <= 3) {
+                // Formas curtas: iload_0 = 0x1a, aload_0 = 0x2a, istore_0 = 0x3b, astore_0 = 0x4b
+                u1(instrucao == ILOAD ? 0x1a + local : instrucao == ALOAD ? 0x2a + local
+                   : instrucao == ISTORE ? 0x3b + local : 0x4b + local);
+            } else if (local <= 0xFF) {
+                u1(instrucao);
+                u1(local);
+            } else {
+                u1(WIDE);
+                u1(instrucao);
+                u2(local);
+            }
+        }
+        
+        /**
+         * Emite uma instrução sem operandos que desempilha 'consome'
+         * valores e empilha o tipo 'produz' (0: nenhum)
+         */
+        public void instrucao(int instrucao, int consome, int produz) {
+            if (!alcancavel) {
+                return;
+            }
+            u1(instrucao);
+            desempilhar(consome);
+            if (produz != 0) {
+                empilhar(produz);
+            }
+            if (instrucao == IRETURN || instrucao == RETURN) {
+                alcancavel = false;
+            }
+        }
+        
+        /**
+         * Duplica o topo, inserindo a cópia sob os três valores do topo
+         * (dup_x2) ou apenas repetindo-o (dup)
+         */
+        public void duplicar(boolean sobTres) {
+            if (!alcancavel) {
+                return;
+            }
+            int topo = pilha[profundidade - 1];
+            if (sobTres) {
+                u1(DUP_X2);
+                pilha[profundidade - 1] = pilha[profundidade - 2];
+                pilha[profundidade - 2] = pilha[profundidade - 3];
+                pilha[profundidade - 3] = topo;
+            } else {
+                u1(DUP);
+            }
+            empilhar(topo);
+        }
+        
+        /**
+         * Troca os dois valores do topo da pilha
+         */
+        public void trocar() {
+            if (!alcancavel) {
+                return;
+            }
+            u1(SWAP);
+            int topo = pilha[profundidade - 1];
+            pilha[profundidade - 1] = pilha[profundidade - 2];
+            pilha[profundidade - 2] = topo;
+        }
+        
+        /**
+         * Cria um int[] com o tamanho no topo da pilha
+         */
+        public void novoVetor() {
+            if (!alcancavel) {
+                return;
+            }
+            u1(NEWARRAY);
+            u1(T_INT);
+            desempilhar(1);
+            empilhar(TIPO_VETOR);
+        }
+        
+        /**
+         * Lê (GETSTATIC) ou escreve (PUTSTATIC) um campo estático do tipo
+         */
+        public void campoEstatico(int instrucao, int referencia, int tipo) {
+            if (!alcancavel) {
+                return;
+            }
+            u1(instrucao);
+            u2(referencia);
+            if (instrucao == GETSTATIC) {
+                empilhar(tipo);
+            } else {
+                desempilhar(1);
+            }
+        }
+        
+        /**
+         * Chama um método estático ou de interface, desempilhando os
+         * 'argumentos' (incluindo o objeto, em uma interface)
+         * @param retorno Tipo do resultado, ou 0 se é void
+         */
+        public void chamar(int instrucao, int referencia, int argumentos, int retorno) {
+            if (!alcancavel) {
+                return;
+            }
+            u1(instrucao);
+            u2(referencia);
+            if (instrucao == INVOKEINTERFACE) {
+                u1(argumentos);
+                u1(0);
+            }
+            desempilhar(argumentos);
+            if (retorno != 0) {
+                empilhar(retorno);
+            }
+        }
+        
+        private void empilhar(int tipo) {
+            if (profundidade == pilha.length) {
+                pilha = Arrays.copyOf(pilha, profundidade * 2);
+            }
+            pilha[profundidade++] = tipo;
+            maximoPilha = Math.max(maximoPilha, profundidade);
+        }
+        
+        private void desempilhar(int quantidade) {
+            profundidade -= quantidade;
+        }
+        
+        // ========== Desvios ==========
+        
+        /**
+         * Emite um desvio (condicional ou goto) para o rótulo
+         */
+        public void desviar(int instrucao, Rotulo rotulo) {
+            if (!alcancavel) {
+                return;
+            }
+            desempilhar(instrucao == GOTO ? 0 : instrucao == IFEQ || instrucao == IFNE ? 1 : 2);
+            if (rotulo.pilha == null) {
+                rotulo.pilha = Arrays.copyOf(pilha, profundidade);
+                rotulo.profundidade = profundidade;
+            }
+            if (rotulo.quantidadeDesvios == rotulo.desvios.length) {
+                rotulo.desvios = Arrays.copyOf(rotulo.desvios, rotulo.quantidadeDesvios * 2);
+            }
+            rotulo.desvios[rotulo.quantidadeDesvios++] = tamanho;
+            if (rotulo.quantidadeDesvios == 1) {
+                pendentes.add(rotulo);
+            }
+            u1(instrucao);
+            u2(0);
+            if (instrucao == GOTO) {
+                alcancavel = false;
+            }
+        }
+        
+        /**
+         * Posiciona o rótulo na próxima instrução
+         * @param laco Se o rótulo será destino de um desvio ainda não
+         *        emitido (o início do corpo de um laço alcançável), o que o
+         *        torna alcançável mesmo sem desvios anteriores
+         */
+        public void marcar(Rotulo rotulo, boolean laco) {
+            rotulo.posicao = tamanho;
+            if (!alcancavel) {
+                if (rotulo.quantidadeDesvios == 0 && !laco) {
+                    return;
+                }
+                if (rotulo.pilha != null) {
+                    pilha = Arrays.copyOf(rotulo.pilha, Math.max(16, rotulo.profundidade));
+                    profundidade = rotulo.profundidade;
+                } else {
+                    profundidade = 0;
+                }
+                alcancavel = true;
+            }
+            quadro();
+        }
+        
+        /**
+         * Verifica, após o fim do código, que todo rótulo usado foi marcado
+         * e corrige os deslocamentos dos desvios
+         */
+        private void resolver() {
+            for (Rotulo rotulo : pendentes) {
+                if (rotulo.posicao < 0) {
+                    throw new IllegalStateException("rótulo não marcado em " + nome);
+                }
+                for (int i = 0; i < rotulo.quantidadeDesvios; i++) {
+                    int desvio = rotulo.desvios[i];
+                    int deslocamento = rotulo.posicao - desvio;
+                    if (deslocamento < Short.MIN_VALUE || deslocamento > Short.MAX_VALUE) {
+                        throw new IllegalStateException("desvio longo demais em " + nome);
+                    }
+                    codigo[desvio + 1] = (byte) (deslocamento >> 8);
+                    codigo[desvio + 2] = (byte) deslocamento;
+                }
+            }
+        }
+        
+        /**
+         * Registra o quadro (variáveis locais e pilha) da posição atual
+         */
+        private void quadro() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bytes.write(255);
+            // O deslocamento é preenchido ao escrever o quadro
+            escreverShort(bytes, 0);
+            escreverShort(bytes, quantidadeLocais);
+            for (int i = 0; i < quantidadeLocais; i++) {
+                tipo(bytes, locais[i]);
+            }
+            escreverShort(bytes, profundidade);
+            for (int i = 0; i < profundidade; i++) {
+                tipo(bytes, pilha[i]);
+            }
+            if (quadroPendente != null && posicaoPendente != tamanho) {
+                fecharQuadro();
+            }
+            // Dois rótulos na mesma posição: vale o último, que tem menos locais
+            quadroPendente = bytes.toByteArray();
+            posicaoPendente = tamanho;
+        }
+        
+        private void fecharQuadro() {
+            int deslocamento = quantidadeQuadros == 0 ? posicaoPendente : posicaoPendente - ultimoQuadro - 1;
+            quadroPendente[1] = (byte) (deslocamento >> 8);
+            quadroPendente[2] = (byte) deslocamento;
+            quadros.write(quadroPendente, 0, quadroPendente.length);
+            quantidadeQuadros++;
+            ultimoQuadro = posicaoPendente;
+            quadroPendente = null;
+        }
+        
+        private void tipo(ByteArrayOutputStream bytes, int tipo) {
+            if (tipo == TIPO_OBJETO) {
+                throw new IllegalStateException("objeto na pilha em um rótulo de " + nome);
+            } else if (tipo == TIPO_VETOR) {
+                bytes.write(7);
+                escreverShort(bytes, classeVetor);
+            } else {
+                bytes.write(1);
+            }
+        }
+        
+        // ========== Escrita ==========
+        
+        /**
+         * Retorna o tamanho do código já emitido
+         */
+        public int tamanho() {
+            return tamanho;
+        }
+        
+        private void u1(int valor) {
+            if (tamanho == codigo.length) {
+                codigo = Arrays.copyOf(codigo, tamanho * 2);
+            }
+            codigo[tamanho++] = (byte) valor;
+        }
+        
+        private void u2(int valor) {
+            u1(valor >> 8);
+            u1(valor);
+        }
+        
+        private void escrever(DataOutputStream saida, int atributoCodigo, int atributoQuadros,
+                              int atributoLinhas) throws IOException {
+            if (alcancavel) {
+                throw new IllegalStateException("o código de " + nome + " não termina em retorno");
+            }
+            if (tamanho > 0xFFFF) {
+                throw new IllegalStateException("o código de " + nome + " excede 64 KB");
+            }
+            resolver();
+            if (quadroPendente != null) {
+                fecharQuadro();
+            }
+            saida.writeShort(modificadores);
+            saida.writeShort(indiceNome);
+            saida.writeShort(indiceDescritor);
+            saida.writeShort(1);
+            int atributos = (quantidadeQuadros > 0 ? 1 : 0) + (quantidadeLinhas > 0 ? 1 : 0);
+            int comprimento = 12 + tamanho + 6 * atributos
+                              + (quantidadeQuadros > 0 ? 2 + quadros.size() : 0)
+                              + (quantidadeLinhas > 0 ? 2 + linhas.size() : 0);
+            saida.writeShort(atributoCodigo);
+            saida.writeInt(comprimento);
+            saida.writeShort(maximoPilha);
+            saida.writeShort(maximoLocais);
+            saida.writeInt(tamanho);
+            saida.write(codigo, 0, tamanho);
+            saida.writeShort(0);
+            saida.writeShort(atributos);
+            if (quantidadeQuadros > 0) {
+                saida.writeShort(atributoQuadros);
+                saida.writeInt(2 + quadros.size());
+                saida.writeShort(quantidadeQuadros);
+                quadros.writeTo(saida);
+            }
+            if (quantidadeLinhas > 0) {
+                saida.writeShort(atributoLinhas);
+                saida.writeInt(2 + linhas.size());
+                saida.writeShort(quantidadeLinhas);
+                linhas.writeTo(saida);
+            }
+        }
+    }
+    
+    private static void escreverShort(ByteArrayOutputStream bytes, int valor) {
+        bytes.write(valor >> 8);
+        bytes.write(valor);
+    }
+}
@@ -1,4 +1,4 @@
-import java.util.List;
+import java.io.StringReader;
 
 /**
  * Exemplo de uso do ParserLL1
@@ -9,7 +9,7 @@ public class ExemploUso {
     
     public static void main(String[] args) {
         // Exemplo de código C- para análise
-        String codigoFonte = 
+        String codigoFonte =
             "int main() {\n" +
             "    int x;\n" +
             "    int y[10];\n" +
@@ -31,11 +31,14 @@ public class ExemploUso {
         // 1. Analisar código-fonte e gerar tokens (análise léxica)
         System.out.println("\n=== Análise Léxica ===");
         Lexico lexico = new Lexico(codigoFonte);
-        List<Token> tokens = lexico.analisar();
+        BufferTokens tokens = lexico.analisarBuffer();
         
-        System.out.println("Tokens gerados: " + tokens.size());
-        for (Token token : tokens) {
-            System.out.println("  " + token);
+        System.out.println("Tokens gerados: " + tokens.tamanho());
+        for (int i = 0; i < tokens.tamanho(); i++) {
+            System.out.println("  " + tokens.token(i));
+        }
+        for (String erro : lexico.getDiagnosticos().renderizar()) {
+            System.out.println("  - " + erro);
         }
         
         // 2. Instanciar o parser LL(1)
@@ -54,5 +57,62 @@ public class ExemploUso {
                 System.out.println("  - " + erro);
             }
         }
+        
+        // 5. Parsing em fluxo: léxico e sintático intercalados, sem lista de tokens
+        System.out.println("\n=== Análise em Fluxo ===");
+        ParserLL1 parserFluxo = new ParserLL1(new Lexico(new StringReader(codigoFonte)));
+        if (parserFluxo.parse()) {
+            System.out.println("Parsing em fluxo bem-sucedido!");
+        } else {
+            System.out.println("✗ Erros no parsing em fluxo: " + parserFluxo.getErros().size());
+        }
+        
+        // 6. Reanálise incremental: após uma edição, só o trecho afetado é reanalisado
+        System.out.println("\n=== Reanálise Incremental ===");
+        StringBuilder documento = new StringBuilder(codigoFonte);
+        BufferTokens editados = new Lexico(documento).analisarBuffer();
+        int posicaoEdicao = documento.indexOf("x");
+        int reanalisados = Lexico.reanalisar(editados, posicaoEdicao, 1, "/* x */ valor");
+        System.out.println("Tokens reanalisados: " + reanalisados + " de " + editados.tamanho());
+        
+        // 7. Árvore sintática: construída apenas quando pedida
+        System.out.println("\n=== Árvore Sintática ===");
+        ParserLL1 parserArvore = new ParserLL1(tokens);
+        parserArvore.setConstruirArvore(true);
+        parserArvore.parse();
+        System.out.print(parserArvore.getArvore());
+        
+        // 8. Análise semântica: resolve os nomes da árvore nas declarações
+        System.out.println("\n=== Análise Semântica ===");
+        AnalisadorSemantico semantico = new AnalisadorSemantico(parserArvore.getArvore());
+        if (semantico.analisar()) {
+            System.out.println("Nenhum erro semântico.");
+        } else {
+            for (String erro : semantico.getDiagnosticos().renderizar()) {
+                System.out.println("  - " + erro);
+            }
+            return;
+        }
+        
+        // 9. Execução: compila para bytecode de registradores e interpreta
+        System.out.println("\n=== Execução ===");
+        ProgramaBytecode programa = new GeradorBytecode(parserArvore.getArvore(), semantico).gerar();
+        System.out.print(programa);
+        System.out.println("Valor retornado por main: " + new Interpretador(programa).executar());
+        
+        // 10. Execução na JVM: compila cada função para um método de uma classe oculta
+        System.out.println("\n=== Execução na JVM ===");
+        ProgramaJvm programaJvm = new GeradorJvm(parserArvore.getArvore(), semantico).gerar();
+        System.out.println("Classe gerada: " + programaJvm.getClasse().getName());
+        System.out.println("Valor retornado por main: " + programaJvm.executar());
+        
+        // 11. Forma SSA: cada função com as otimizações escalares aplicadas
+        System.out.println("\n=== Forma SSA Otimizada ===");
+        OtimizadorSsa otimizador = new OtimizadorSsa();
+        for (FuncaoSsa funcao : new ConstrutorSsa(parserArvore.getArvore(), semantico).construir()) {
+            otimizador.otimizar(funcao);
+            System.out.println(funcao);
+        }
+        System.out.print(otimizador.relatorio());
     }
 }
@@ -0,0 +1,172 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fonte de código lida diretamente de bytes (tipicamente um arquivo
+ * mapeado em memória), sem decodificar o arquivo inteiro para String.
+ * Bytes ASCII são entregues como caracteres; bytes de sequências UTF-8
+ * multibyte, que em C- só aparecem dentro de comentários, são entregues
+ * como '�' e nunca formam tokens; fora de comentários, o léxico obtém o
+ * comprimento da sequência e registra um único erro para ela, como para
+ * o caractere de uma String.
+ */
+public class FonteBytes implements CharSequence {
+    public static final char NAO_ASCII = '�';
+    
+    // Constantes das buscas SWAR (8 bytes por palavra)
+    private static final long UNS = 0x0101010101010101L;
+    private static final long SETES = 0x7F7F7F7F7F7F7F7FL;
+    private static final long ALTOS = 0x8080808080808080L;
+    
+    private final ByteBuffer bytes;
+    // Mesmo conteúdo lido em little-endian: o primeiro byte da palavra
+    // é o menos significativo
+    private final ByteBuffer palavras;
+    private final int inicio;
+    private final int comprimento;
+    
+    /**
+     * @param bytes Conteúdo da fonte, lido por posições absolutas
+     */
+    public FonteBytes(ByteBuffer bytes) {
+        this(bytes, bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN), 0, bytes.limit());
+    }
+    
+    private FonteBytes(ByteBuffer bytes, ByteBuffer palavras, int inicio, int comprimento) {
+        this.bytes = bytes;
+        this.palavras = palavras;
+        this.inicio = inicio;
+        this.comprimento = comprimento;
+    }
+    
+    @Override
+    public int length() {
+        return comprimento;
+    }
+    
+    @Override
+    public char charAt(int indice) {
+        byte b = bytes.get(inicio + indice);
+        return b >= 0 ? (char) b : NAO_ASCII;
+    }
+    
+    @Override
+    public CharSequence subSequence(int de, int ate) {
+        return new FonteBytes(bytes, palavras, inicio + de, ate - de);
+    }
+    
+    /**
+     * Retorna quantos bytes ocupa o caractere que começa em 'indice',
+     * pelo byte inicial da sequência UTF-8: 1 para ASCII e para bytes que
+     * não iniciam uma sequência válida; nunca além de 'ate' nem de um
+     * byte que não é de continuação
+     */
+    int comprimentoSequencia(int indice, int ate) {
+        int b = bytes.get(inicio + indice) & 0xFF;
+        int esperado = b >= 0xF0 && b < 0xF8 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+        int n = 1;
+        while (n < esperado && indice + n < ate && (bytes.get(inicio + indice + n) & 0xC0) == 0x80) {
+            n++;
+        }
+        return n;
+    }
+    
+    // ========== Buscas em bloco ==========
+    
+    /**
+     * Retorna a posição do primeiro byte igual a 'b' em [de, ate), ou -1
+     */
+    int indiceDe(byte b, int de, int ate) {
+        long padrao = (b & 0xFF) * UNS;
+        int i = de;
+        for (; i + 8 <= ate; i += 8) {
+            long iguais = bytesZero(palavras.getLong(inicio + i) ^ padrao);
+            if (iguais != 0) {
+                return i + (Long.numberOfTrailingZeros(iguais) >>> 3);
+            }
+        }
+        for (; i < ate; i++) {
+            if (bytes.get(inicio + i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Conta os caracteres em [de, ate) em unidades UTF-16, como as
+     * colunas de uma String: todos os bytes exceto os de continuação
+     * UTF-8 (10xxxxxx), e dois para o byte inicial de uma sequência de
+     * quatro bytes (11110xxx), que forma um par substituto
+     */
+    int contarCaracteres(int de, int ate) {
+        int continuacoes = 0;
+        int pares = 0;
+        int i = de;
+        for (; i + 8 <= ate; i += 8) {
+            long palavra = palavras.getLong(inicio + i);
+            continuacoes += Long.bitCount(palavra & ~(palavra << 1) & ALTOS);
+            pares += Long.bitCount(palavra & (palavra << 1) & (palavra << 2) & (palavra << 3) & ~(palavra << 4) & ALTOS);
+        }
+        for (; i < ate; i++) {
+            int b = bytes.get(inicio + i) & 0xFF;
+            if ((b & 0xC0) == 0x80) {
+                continuacoes++;
+            } else if ((b & 0xF8) == 0xF0) {
+                pares++;
+            }
+        }
+        return ate - de - continuacoes + pares;
+    }
+    
+    /**
+     * Retorna a posição do primeiro '*' seguido de '/' em [de, ate), ou -1
+     */
+    int indiceDeFimComentario(int de, int ate) {
+        long estrelas = '*' * UNS;
+        long barras = '/' * UNS;
+        int i = de;
+        for (; i + 8 <= ate; i += 8) {
+            long palavra = palavras.getLong(inicio + i);
+            long estrela = bytesZero(palavra ^ estrelas);
+            if (estrela == 0) {
+                continue;
+            }
+            // Alinha cada '/' com o byte anterior
+            long fim = estrela & (bytesZero(palavra ^ barras) >>> 8);
+            if (fim != 0) {
+                return i + (Long.numberOfTrailingZeros(fim) >>> 3);
+            }
+            // '*' no último byte e '/' no primeiro da palavra seguinte
+            if (estrela < 0 && i + 8 < ate && bytes.get(inicio + i + 8) == '/') {
+                return i + 7;
+            }
+        }
+        for (; i + 1 < ate; i++) {
+            if (bytes.get(inicio + i) == '*' && bytes.get(inicio + i + 1) == '/') {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Marca com o bit alto cada byte nulo da palavra (exato, sem falsos
+     * positivos por propagação de empréstimo)
+     */
+    private static long bytesZero(long x) {
+        return ~(((x & SETES) + SETES) | x | SETES);
+    }
+    
+    /**
+     * Decodifica o trecho como UTF-8. Usado para o texto de tokens,
+     * nunca para a fonte inteira.
+     */
+    @Override
+    public String toString() {
+        byte[] copia = new byte[comprimento];
+        bytes.get(inicio, copia);
+        return new String(copia, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,839 @@
+import java.util.Arrays;
+
+/**
+ * Função C- em forma SSA (atribuição estática única), construída por
+ * {@link ConstrutorSsa} e transformada por {@link OtimizadorSsa}.
+ *
+ * As instruções ficam em arrays paralelos, identificadas por índice (como
+ * os nós de {@link ArvoreSintatica}), e o índice de uma instrução é também
+ * o valor que ela define. Cada bloco básico é uma lista duplamente
+ * encadeada de instruções: primeiro as φ, depois as demais e por fim um
+ * terminador (JMP, BR ou RET). Os sucessores ficam no bloco, e os
+ * operandos de cada φ seguem a ordem dos predecessores do bloco.
+ *
+ * Uma instrução substituída por outro valor (nas propagações e na
+ * numeração de valores) é removida e guarda o substituto: os operandos
+ * são resolvidos ao serem lidos, sem percorrer os usos.
+ *
+ * Só as variáveis escalares locais e os parâmetros escalares viram
+ * valores SSA. As globais e os vetores são memória, lida e escrita por
+ * LOADG/STOREG e LOADV/STOREV.
+ */
+public final class FuncaoSsa {
+    // ========== Instruções ==========
+    
+    public static final int CONST = 0;     // k
+    public static final int PARAM = 1;     // k: índice do parâmetro
+    public static final int PHI = 2;       // um operando por predecessor
+    public static final int COPY = 3;      // a
+    // Aritméticas e relacionais, na ordem de ArvoreSintatica.Operador
+    public static final int ADD = 4;       // a b
+    public static final int SUB = 5;
+    public static final int MUL = 6;
+    public static final int DIV = 7;
+    public static final int LT = 8;        // a b: 1 se a < b, senão 0
+    public static final int LE = 9;
+    public static final int GT = 10;
+    public static final int GE = 11;
+    public static final int EQ = 12;
+    public static final int NE = 13;
+    // Memória
+    public static final int LOADG = 14;    // k: global
+    public static final int STOREG = 15;   // k; a
+    public static final int VETOR = 16;    // k: tamanho de um vetor local novo, zerado
+    public static final int VETORG = 17;   // k: vetor global
+    public static final int LOADV = 18;    // v i
+    public static final int STOREV = 19;   // v i a
+    // Chamadas
+    public static final int CALL = 20;     // k: função; argumentos
+    public static final int INPUT = 21;
+    public static final int OUTPUT = 22;   // a
+    // Terminadores
+    public static final int JMP = 23;      // para o sucessor
+    public static final int BR = 24;       // a: para o primeiro sucessor se a != 0, senão para o segundo
+    public static final int RET = 25;      // [a]
+    // Acesso a variáveis, só durante a construção
+    public static final int LER = 26;      // k: variável
+    public static final int ESCREVER = 27; // k; a
+    
+    private static final String[] NOMES = {
+        "const", "param", "phi", "copy", "add", "sub", "mul", "div",
+        "lt", "le", "gt", "ge", "eq", "ne", "loadg", "storeg", "vetor", "vetorg", "loadv", "storev",
+        "call", "input", "output", "jmp", "br", "ret", "ler", "escrever"
+    };
+    
+    /**
+     * Retorna o mnemônico da instrução
+     */
+    public static String nome(int operacao) {
+        return NOMES[operacao];
+    }
+    
+    /**
+     * Verifica se a operação é aritmética ou relacional
+     */
+    public static boolean isBinaria(int operacao) {
+        return operacao >= ADD && operacao <= NE;
+    }
+    
+    /**
+     * Verifica se a instrução tem efeito além do valor que define (e não
+     * pode ser removida sem uso). A divisão pode falhar (por zero).
+     */
+    public static boolean temEfeito(int operacao) {
+        return operacao == STOREG || operacao == STOREV || operacao == CALL || operacao == INPUT
+               || operacao == OUTPUT || operacao == DIV || operacao >= JMP;
+    }
+    
+    // ========== Função ==========
+    
+    private final String nome;
+    private final int parametros;
+    private final String[] globais;
+    private final String[] funcoes;
+    
+    private int[] operacoes = new int[64];
+    private int[] constantes = new int[64];
+    private int[] blocos = new int[64];
+    private int[] inicios = new int[64];
+    private int[] quantidades = new int[64];
+    private int[] proximas = new int[64];
+    private int[] anteriores = new int[64];
+    private int[] substitutos = new int[64];
+    private int quantidadeInstrucoes;
+    private int[] operandos = new int[128];
+    private int tamanhoOperandos;
+    
+    private int[] primeiras = new int[16];
+    private int[] ultimas = new int[16];
+    private int[] sucessores = new int[32];
+    private int[][] predecessores = new int[16][];
+    private int[] quantidadesPredecessores = new int[16];
+    private boolean[] removidos = new boolean[16];
+    private int quantidadeBlocos;
+    
+    /**
+     * @param globais Nomes das variáveis e vetores globais, pelo índice k
+     * @param funcoes Nomes das funções, pelo índice k de CALL
+     */
+    FuncaoSsa(String nome, int parametros, String[] globais, String[] funcoes) {
+        this.nome = nome;
+        this.parametros = parametros;
+        this.globais = globais;
+        this.funcoes = funcoes;
+    }
+    
+    public String getNome() {
+        return nome;
+    }
+    
+    public int getParametros() {
+        return parametros;
+    }
+    
+    /**
+     * Retorna o bloco de entrada
+     */
+    public int getEntrada() {
+        return 0;
+    }
+    
+    // ========== Instruções ==========
+    
+    /**
+     * Cria uma instrução fora de qualquer bloco
+     */
+    int nova(int operacao, int constante, int... argumentos) {
+        if (quantidadeInstrucoes == operacoes.length) {
+            int capacidade = quantidadeInstrucoes * 2;
+            operacoes = Arrays.copyOf(operacoes, capacidade);
+            constantes = Arrays.copyOf(constantes, capacidade);
+            blocos = Arrays.copyOf(blocos, capacidade);
+            inicios = Arrays.copyOf(inicios, capacidade);
+            quantidades = Arrays.copyOf(quantidades, capacidade);
+            proximas = Arrays.copyOf(proximas, capacidade);
+            anteriores = Arrays.copyOf(anteriores, capacidade);
+            substitutos = Arrays.copyOf(substitutos, capacidade);
+        }
+        if (tamanhoOperandos + argumentos.length > operandos.length) {
+            operandos = Arrays.copyOf(operandos, Math.max(operandos.length * 2, tamanhoOperandos + argumentos.length));
+        }
+        int instrucao = quantidadeInstrucoes++;
+        operacoes[instrucao] = operacao;
+        constantes[instrucao] = constante;
+        blocos[instrucao] = -1;
+        inicios[instrucao] = tamanhoOperandos;
+        quantidades[instrucao] = argumentos.length;
+        proximas[instrucao] = -1;
+        anteriores[instrucao] = -1;
+        substitutos[instrucao] = -1;
+        System.arraycopy(argumentos, 0, operandos, tamanhoOperandos, argumentos.length);
+        tamanhoOperandos += argumentos.length;
+        return instrucao;
+    }
+    
+    /**
+     * Cria uma φ com 'quantidade' operandos, ainda indefinidos (-1)
+     */
+    int novaPhi(int variavel, int quantidade) {
+        int[] argumentos = new int[quantidade];
+        Arrays.fill(argumentos, -1);
+        return nova(PHI, variavel, argumentos);
+    }
+    
+    /**
+     * Retorna a quantidade de instruções já criadas, incluindo as removidas
+     */
+    public int tamanho() {
+        return quantidadeInstrucoes;
+    }
+    
+    public int getOperacao(int instrucao) {
+        return operacoes[instrucao];
+    }
+    
+    public int getConstante(int instrucao) {
+        return constantes[instrucao];
+    }
+    
+    /**
+     * Retorna o bloco da instrução, ou -1 se ela foi removida
+     */
+    public int getBloco(int instrucao) {
+        return blocos[instrucao];
+    }
+    
+    public int getQuantidadeOperandos(int instrucao) {
+        return quantidades[instrucao];
+    }
+    
+    /**
+     * Retorna o operando, já resolvido para o valor que o substitui
+     */
+    public int getOperando(int instrucao, int indice) {
+        int posicao = inicios[instrucao] + indice;
+        int valor = operandos[posicao];
+        if (valor >= 0 && substitutos[valor] >= 0) {
+            valor = resolver(valor);
+            operandos[posicao] = valor;
+        }
+        return valor;
+    }
+    
+    void setOperando(int instrucao, int indice, int valor) {
+        operandos[inicios[instrucao] + indice] = valor;
+    }
+    
+    /**
+     * Transforma a instrução em CONST k, mantendo-a no lugar
+     */
+    void tornarConstante(int instrucao, int valor) {
+        operacoes[instrucao] = CONST;
+        constantes[instrucao] = valor;
+        quantidades[instrucao] = 0;
+    }
+    
+    /**
+     * Transforma a instrução em COPY do valor, mantendo-a no lugar
+     */
+    void tornarCopia(int instrucao, int valor) {
+        operacoes[instrucao] = COPY;
+        operandos[inicios[instrucao]] = valor;
+        quantidades[instrucao] = 1;
+    }
+    
+    /**
+     * Retorna a próxima instrução do bloco, ou -1
+     */
+    public int getProxima(int instrucao) {
+        return proximas[instrucao];
+    }
+    
+    /**
+     * Retorna o valor que substitui 'valor', seguindo as substituições
+     */
+    public int resolver(int valor) {
+        int resolvido = valor;
+        while (substitutos[resolvido] >= 0) {
+            resolvido = substitutos[resolvido];
+        }
+        // Compressão do caminho
+        while (substitutos[valor] >= 0 && substitutos[valor] != resolvido) {
+            int proximo = substitutos[valor];
+            substitutos[valor] = resolvido;
+            valor = proximo;
+        }
+        return resolvido;
+    }
+    
+    /**
+     * Remove a instrução, cujos usos passam a ler 'valor'
+     */
+    void substituir(int instrucao, int valor) {
+        remover(instrucao);
+        substitutos[instrucao] = valor;
+    }
+    
+    /**
+     * Acrescenta a instrução ao fim do bloco
+     */
+    void anexar(int bloco, int instrucao) {
+        blocos[instrucao] = bloco;
+        anteriores[instrucao] = ultimas[bloco];
+        proximas[instrucao] = -1;
+        if (ultimas[bloco] >= 0) {
+            proximas[ultimas[bloco]] = instrucao;
+        } else {
+            primeiras[bloco] = instrucao;
+        }
+        ultimas[bloco] = instrucao;
+    }
+    
+    /**
+     * Acrescenta a instrução ao início do bloco
+     */
+    void inserirNoInicio(int bloco, int instrucao) {
+        blocos[instrucao] = bloco;
+        anteriores[instrucao] = -1;
+        proximas[instrucao] = primeiras[bloco];
+        if (primeiras[bloco] >= 0) {
+            anteriores[primeiras[bloco]] = instrucao;
+        } else {
+            ultimas[bloco] = instrucao;
+        }
+        primeiras[bloco] = instrucao;
+    }
+    
+    /**
+     * Retira a instrução de seu bloco
+     */
+    void remover(int instrucao) {
+        int bloco = blocos[instrucao];
+        if (bloco < 0) {
+            return;
+        }
+        int anterior = anteriores[instrucao];
+        int proxima = proximas[instrucao];
+        if (anterior >= 0) {
+            proximas[anterior] = proxima;
+        } else {
+            primeiras[bloco] = proxima;
+        }
+        if (proxima >= 0) {
+            anteriores[proxima] = anterior;
+        } else {
+            ultimas[bloco] = anterior;
+        }
+        blocos[instrucao] = -1;
+    }
+    
+    /**
+     * Remove o operando de uma φ (ao remover a aresta correspondente)
+     */
+    private void removerOperando(int instrucao, int indice) {
+        int inicio = inicios[instrucao];
+        System.arraycopy(operandos, inicio + indice + 1, operandos, inicio + indice,
+                         quantidades[instrucao] - indice - 1);
+        quantidades[instrucao]--;
+    }
+    
+    /**
+     * Acrescenta um operando a uma φ; o intervalo de operandos é copiado
+     * para o fim do pool
+     */
+    private void acrescentarOperando(int instrucao, int valor) {
+        int quantidade = quantidades[instrucao];
+        if (tamanhoOperandos + quantidade + 1 > operandos.length) {
+            operandos = Arrays.copyOf(operandos, Math.max(operandos.length * 2, tamanhoOperandos + quantidade + 1));
+        }
+        System.arraycopy(operandos, inicios[instrucao], operandos, tamanhoOperandos, quantidade);
+        inicios[instrucao] = tamanhoOperandos;
+        operandos[tamanhoOperandos + quantidade] = valor;
+        tamanhoOperandos += quantidade + 1;
+        quantidades[instrucao] = quantidade + 1;
+    }
+    
+    // ========== Blocos ==========
+    
+    /**
+     * Cria um bloco vazio, sem arestas
+     */
+    int novoBloco() {
+        if (quantidadeBlocos == primeiras.length) {
+            int capacidade = quantidadeBlocos * 2;
+            primeiras = Arrays.copyOf(primeiras, capacidade);
+            ultimas = Arrays.copyOf(ultimas, capacidade);
+            sucessores = Arrays.copyOf(sucessores, 2 * capacidade);
+            predecessores = Arrays.copyOf(predecessores, capacidade);
+            quantidadesPredecessores = Arrays.copyOf(quantidadesPredecessores, capacidade);
+            removidos = Arrays.copyOf(removidos, capacidade);
+        }
+        int bloco = quantidadeBlocos++;
+        primeiras[bloco] = -1;
+        ultimas[bloco] = -1;
+        sucessores[2 * bloco] = -1;
+        sucessores[2 * bloco + 1] = -1;
+        predecessores[bloco] = new int[2];
+        return bloco;
+    }
+    
+    /**
+     * Retorna a quantidade de blocos já criados, incluindo os removidos
+     */
+    public int getQuantidadeBlocos() {
+        return quantidadeBlocos;
+    }
+    
+    public boolean isRemovido(int bloco) {
+        return removidos[bloco];
+    }
+    
+    /**
+     * Retorna a primeira instrução do bloco, ou -1
+     */
+    public int getPrimeira(int bloco) {
+        return primeiras[bloco];
+    }
+    
+    /**
+     * Retorna a última instrução (o terminador) do bloco, ou -1
+     */
+    public int getUltima(int bloco) {
+        return ultimas[bloco];
+    }
+    
+    /**
+     * Retorna o sucessor 0 ou 1 do bloco, ou -1
+     */
+    public int getSucessor(int bloco, int indice) {
+        return sucessores[2 * bloco + indice];
+    }
+    
+    public int getQuantidadePredecessores(int bloco) {
+        return quantidadesPredecessores[bloco];
+    }
+    
+    public int getPredecessor(int bloco, int indice) {
+        return predecessores[bloco][indice];
+    }
+    
+    /**
+     * Retorna a posição de 'predecessor' entre os predecessores do bloco
+     * (a do operando das φ), ou -1
+     */
+    public int indicePredecessor(int bloco, int predecessor) {
+        int[] lista = predecessores[bloco];
+        for (int i = 0; i < quantidadesPredecessores[bloco]; i++) {
+            if (lista[i] == predecessor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Liga o bloco ao sucessor 0 ou 1
+     */
+    void ligar(int bloco, int indice, int sucessor) {
+        sucessores[2 * bloco + indice] = sucessor;
+        acrescentarPredecessor(sucessor, bloco);
+    }
+    
+    private void acrescentarPredecessor(int bloco, int predecessor) {
+        int quantidade = quantidadesPredecessores[bloco];
+        if (quantidade == predecessores[bloco].length) {
+            predecessores[bloco] = Arrays.copyOf(predecessores[bloco], quantidade * 2);
+        }
+        predecessores[bloco][quantidade] = predecessor;
+        quantidadesPredecessores[bloco] = quantidade + 1;
+    }
+    
+    /**
+     * Remove o predecessor na posição 'indice' do bloco e o operando
+     * correspondente de suas φ
+     */
+    void removerPredecessor(int bloco, int indice) {
+        int[] lista = predecessores[bloco];
+        int quantidade = quantidadesPredecessores[bloco];
+        System.arraycopy(lista, indice + 1, lista, indice, quantidade - indice - 1);
+        quantidadesPredecessores[bloco] = quantidade - 1;
+        for (int phi = primeiras[bloco]; phi >= 0 && operacoes[phi] == PHI; phi = proximas[phi]) {
+            removerOperando(phi, indice);
+        }
+    }
+    
+    /**
+     * Troca o BR no fim do bloco por um JMP para o sucessor 0 ou 1,
+     * removendo a outra aresta
+     */
+    void fixarDesvio(int bloco, int mantido) {
+        int descartado = sucessores[2 * bloco + 1 - mantido];
+        int destino = sucessores[2 * bloco + mantido];
+        int desvio = ultimas[bloco];
+        operacoes[desvio] = JMP;
+        quantidades[desvio] = 0;
+        sucessores[2 * bloco] = destino;
+        sucessores[2 * bloco + 1] = -1;
+        if (descartado != destino) {
+            removerPredecessor(descartado, indicePredecessor(descartado, bloco));
+        } else {
+            removerPredecessor(destino, indicePredecessor(destino, bloco));
+        }
+    }
+    
+    /**
+     * Faz a aresta de 'bloco' para 'antigo' (vazio, só com JMP para
+     * 'novo') ir direto a 'novo'. As φ de 'novo' recebem, para a aresta
+     * nova, o operando que tinham para 'antigo'.
+     */
+    void redirecionar(int bloco, int antigo, int novo) {
+        for (int i = 0; i < 2; i++) {
+            if (sucessores[2 * bloco + i] == antigo) {
+                sucessores[2 * bloco + i] = novo;
+            }
+        }
+        int origem = indicePredecessor(novo, antigo);
+        acrescentarPredecessor(novo, bloco);
+        for (int phi = primeiras[novo]; phi >= 0 && operacoes[phi] == PHI; phi = proximas[phi]) {
+            acrescentarOperando(phi, getOperando(phi, origem));
+        }
+    }
+    
+    /**
+     * Remove o bloco, se ele só tem um JMP e não é a entrada, ligando seus
+     * predecessores direto ao destino do JMP. Não remove se um predecessor
+     * já é predecessor do destino (as φ do destino precisariam de dois
+     * operandos para a mesma aresta).
+     * @return true se o bloco foi removido
+     */
+    boolean contornar(int bloco) {
+        int desvio = primeiras[bloco];
+        int destino = sucessores[2 * bloco];
+        if (bloco == getEntrada() || desvio < 0 || operacoes[desvio] != JMP || destino == bloco) {
+            return false;
+        }
+        int[] lista = predecessores[bloco];
+        int quantidade = quantidadesPredecessores[bloco];
+        for (int i = 0; i < quantidade; i++) {
+            int predecessor = lista[i];
+            if (sucessores[2 * predecessor] == destino || sucessores[2 * predecessor + 1] == destino) {
+                return false;
+            }
+        }
+        for (int i = 0; i < quantidade; i++) {
+            redirecionar(lista[i], bloco, destino);
+        }
+        removerPredecessor(destino, indicePredecessor(destino, bloco));
+        remover(desvio);
+        quantidadesPredecessores[bloco] = 0;
+        removidos[bloco] = true;
+        return true;
+    }
+    
+    /**
+     * Move as instruções de 'sucessor' (cujo único predecessor é o bloco,
+     * que termina em JMP para ele) para o fim do bloco e remove 'sucessor'.
+     * As φ de 'sucessor' têm um único operando e são substituídas por ele.
+     */
+    void fundir(int bloco, int sucessor) {
+        int instrucao = primeiras[sucessor];
+        while (instrucao >= 0 && operacoes[instrucao] == PHI) {
+            int proxima = proximas[instrucao];
+            substituir(instrucao, getOperando(instrucao, 0));
+            instrucao = proxima;
+        }
+        remover(ultimas[bloco]);
+        for (int movida = instrucao; movida >= 0; movida = proximas[movida]) {
+            blocos[movida] = bloco;
+        }
+        if (instrucao >= 0) {
+            anteriores[instrucao] = ultimas[bloco];
+            if (ultimas[bloco] >= 0) {
+                proximas[ultimas[bloco]] = instrucao;
+            } else {
+                primeiras[bloco] = instrucao;
+            }
+            ultimas[bloco] = ultimas[sucessor];
+        }
+        for (int i = 0; i < 2; i++) {
+            int proximo = sucessores[2 * sucessor + i];
+            sucessores[2 * bloco + i] = proximo;
+            if (proximo >= 0) {
+                predecessores[proximo][indicePredecessor(proximo, sucessor)] = bloco;
+            }
+        }
+        primeiras[sucessor] = -1;
+        ultimas[sucessor] = -1;
+        quantidadesPredecessores[sucessor] = 0;
+        removidos[sucessor] = true;
+    }
+    
+    /**
+     * Remove os blocos inalcançáveis a partir da entrada, com suas
+     * instruções e suas arestas para os alcançáveis
+     * @return a quantidade de blocos removidos
+     */
+    int removerInalcancaveis() {
+        boolean[] alcancados = new boolean[quantidadeBlocos];
+        int[] pilha = new int[quantidadeBlocos];
+        int topo = 0;
+        pilha[topo++] = getEntrada();
+        alcancados[getEntrada()] = true;
+        while (topo > 0) {
+            int bloco = pilha[--topo];
+            for (int i = 0; i < 2; i++) {
+                int sucessor = sucessores[2 * bloco + i];
+                if (sucessor >= 0 && !alcancados[sucessor]) {
+                    alcancados[sucessor] = true;
+                    pilha[topo++] = sucessor;
+                }
+            }
+        }
+        int removidosAgora = 0;
+        for (int bloco = 0; bloco < quantidadeBlocos; bloco++) {
+            if (alcancados[bloco] || removidos[bloco]) {
+                continue;
+            }
+            for (int i = 0; i < 2; i++) {
+                int sucessor = sucessores[2 * bloco + i];
+                if (sucessor >= 0 && alcancados[sucessor] && (i == 0 || sucessor != sucessores[2 * bloco])) {
+                    removerPredecessor(sucessor, indicePredecessor(sucessor, bloco));
+                }
+            }
+            for (int instrucao = primeiras[bloco]; instrucao >= 0; instrucao = proximas[instrucao]) {
+                blocos[instrucao] = -1;
+            }
+            primeiras[bloco] = -1;
+            ultimas[bloco] = -1;
+            quantidadesPredecessores[bloco] = 0;
+            removidos[bloco] = true;
+            removidosAgora++;
+        }
+        return removidosAgora;
+    }
+    
+    // ========== Dominadores ==========
+    
+    /**
+     * Árvore de dominadores dos blocos alcançáveis
+     */
+    static final class Dominadores {
+        // Blocos em pós-ordem reversa
+        final int[] ordem;
+        // Dominador imediato de cada bloco (a entrada domina a si mesma), ou -1
+        final int[] imediatos;
+        // Filhos do bloco b na árvore: filhos[inicios[b]] até filhos[inicios[b + 1] - 1]
+        final int[] inicios;
+        final int[] filhos;
+        
+        Dominadores(int[] ordem, int[] imediatos, int[] inicios, int[] filhos) {
+            this.ordem = ordem;
+            this.imediatos = imediatos;
+            this.inicios = inicios;
+            this.filhos = filhos;
+        }
+    }
+    
+    /**
+     * Calcula os dominadores pelo algoritmo iterativo de Cooper, Harvey e
+     * Kennedy sobre a pós-ordem reversa. Em grafos de programas
+     * estruturados (if e while), ele converge em duas passagens.
+     */
+    Dominadores dominadores() {
+        int[] ordem = posOrdemReversa();
+        int[] numeros = new int[quantidadeBlocos];
+        Arrays.fill(numeros, -1);
+        for (int i = 0; i < ordem.length; i++) {
+            numeros[ordem[i]] = i;
+        }
+        int[] imediatos = new int[quantidadeBlocos];
+        Arrays.fill(imediatos, -1);
+        imediatos[getEntrada()] = getEntrada();
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            for (int i = 1; i < ordem.length; i++) {
+                int bloco = ordem[i];
+                int novo = -1;
+                for (int p = 0; p < quantidadesPredecessores[bloco]; p++) {
+                    int predecessor = predecessores[bloco][p];
+                    if (imediatos[predecessor] < 0 || numeros[predecessor] < 0) {
+                        continue;
+                    }
+                    novo = novo < 0 ? predecessor : intersecao(predecessor, novo, imediatos, numeros);
+                }
+                if (novo != imediatos[bloco]) {
+                    imediatos[bloco] = novo;
+                    mudou = true;
+                }
+            }
+        }
+        
+        // Filhos agrupados por pai (contagem)
+        int[] inicios = new int[quantidadeBlocos + 1];
+        for (int bloco : ordem) {
+            if (bloco != getEntrada()) {
+                inicios[imediatos[bloco] + 1]++;
+            }
+        }
+        for (int b = 0; b < quantidadeBlocos; b++) {
+            inicios[b + 1] += inicios[b];
+        }
+        int[] filhos = new int[Math.max(ordem.length - 1, 0)];
+        int[] posicoes = Arrays.copyOf(inicios, quantidadeBlocos);
+        for (int bloco : ordem) {
+            if (bloco != getEntrada()) {
+                filhos[posicoes[imediatos[bloco]]++] = bloco;
+            }
+        }
+        return new Dominadores(ordem, imediatos, inicios, filhos);
+    }
+    
+    private static int intersecao(int a, int b, int[] imediatos, int[] numeros) {
+        while (a != b) {
+            while (numeros[a] > numeros[b]) {
+                a = imediatos[a];
+            }
+            while (numeros[b] > numeros[a]) {
+                b = imediatos[b];
+            }
+        }
+        return a;
+    }
+    
+    /**
+     * Retorna os blocos alcançáveis em pós-ordem reversa (busca em
+     * profundidade iterativa)
+     */
+    public int[] posOrdemReversa() {
+        int[] ordem = new int[quantidadeBlocos];
+        int quantidade = 0;
+        boolean[] visitados = new boolean[quantidadeBlocos];
+        // Pilha de blocos e do próximo sucessor a visitar de cada um
+        int[] pilha = new int[quantidadeBlocos];
+        int[] proximos = new int[quantidadeBlocos];
+        int topo = 0;
+        pilha[topo++] = getEntrada();
+        visitados[getEntrada()] = true;
+        while (topo > 0) {
+            int bloco = pilha[topo - 1];
+            if (proximos[topo - 1] < 2) {
+                int sucessor = sucessores[2 * bloco + proximos[topo - 1]++];
+                if (sucessor >= 0 && !visitados[sucessor]) {
+                    visitados[sucessor] = true;
+                    pilha[topo] = sucessor;
+                    proximos[topo++] = 0;
+                }
+            } else {
+                ordem[quantidade++] = bloco;
+                topo--;
+            }
+        }
+        int[] reversa = new int[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            reversa[i] = ordem[quantidade - 1 - i];
+        }
+        return reversa;
+    }
+    
+    // ========== Consulta ==========
+    
+    /**
+     * Retorna a quantidade de blocos não removidos
+     */
+    public int contarBlocos() {
+        int quantidade = 0;
+        for (int bloco = 0; bloco < quantidadeBlocos; bloco++) {
+            if (!removidos[bloco]) {
+                quantidade++;
+            }
+        }
+        return quantidade;
+    }
+    
+    /**
+     * Retorna a quantidade de instruções nos blocos
+     */
+    public int contarInstrucoes() {
+        int quantidade = 0;
+        for (int bloco = 0; bloco < quantidadeBlocos; bloco++) {
+            for (int instrucao = primeiras[bloco]; instrucao >= 0; instrucao = proximas[instrucao]) {
+                quantidade++;
+            }
+        }
+        return quantidade;
+    }
+    
+    /**
+     * Retorna a função em texto, um bloco por vez, como:
+     * b1 (de b0, b3):
+     *   v7 = phi v3, v8
+     *   br v9, b2, b4
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder();
+        texto.append(nome).append(" (").append(parametros).append(" parâmetros)\n");
+        for (int bloco = 0; bloco < quantidadeBlocos; bloco++) {
+            if (removidos[bloco]) {
+                continue;
+            }
+            texto.append('b').append(bloco);
+            for (int p = 0; p < quantidadesPredecessores[bloco]; p++) {
+                texto.append(p == 0 ? " (de b" : ", b").append(predecessores[bloco][p]);
+            }
+            texto.append(quantidadesPredecessores[bloco] > 0 ? "):\n" : ":\n");
+            for (int instrucao = primeiras[bloco]; instrucao >= 0; instrucao = proximas[instrucao]) {
+                instrucao(texto, instrucao);
+            }
+        }
+        return texto.toString();
+    }
+    
+    private void instrucao(StringBuilder texto, int instrucao) {
+        int operacao = operacoes[instrucao];
+        texto.append("  ");
+        if (operacao < STOREG || operacao == VETOR || operacao == VETORG || operacao == LOADV
+            || operacao == CALL || operacao == INPUT || operacao == LER) {
+            texto.append('v').append(instrucao).append(" = ");
+        }
+        texto.append(NOMES[operacao]);
+        String separador = " ";
+        switch (operacao) {
+            case CONST:
+            case PARAM:
+            case VETOR:
+            case LER:
+            case ESCREVER:
+                texto.append(' ').append(constantes[instrucao]);
+                separador = ", ";
+                break;
+            case LOADG:
+            case STOREG:
+            case VETORG:
+                texto.append(' ').append(globais[constantes[instrucao]]);
+                separador = ", ";
+                break;
+            case CALL:
+                texto.append(' ').append(funcoes[constantes[instrucao]]);
+                separador = ", ";
+                break;
+            default:
+                break;
+        }
+        for (int i = 0; i < quantidades[instrucao]; i++) {
+            int operando = getOperando(instrucao, i);
+            texto.append(i == 0 ? separador : ", ").append(operando >= 0 ? "v" + operando : "?");
+        }
+        int bloco = blocos[instrucao];
+        if (operacao == JMP || operacao == BR) {
+            for (int i = 0; i < 2; i++) {
+                int sucessor = sucessores[2 * bloco + i];
+                if (sucessor >= 0) {
+                    texto.append(i == 0 && operacao == JMP ? " b" : ", b").append(sucessor);
+                }
+            }
+        }
+        texto.append('\n');
+    }
+}
@@ -0,0 +1,499 @@
+import java.util.Arrays;
+
+/**
+ * Compila a árvore de um programa C- sem erros (sintáticos e semânticos)
+ * para {@link ProgramaBytecode}. Os nomes são resolvidos pelo
+ * {@link AnalisadorSemantico} que analisou a árvore.
+ *
+ * Variáveis locais e parâmetros ocupam registradores fixos, e as
+ * expressões usam os temporários acima deles como uma pilha: cada
+ * comando libera os que usou. Os argumentos de uma chamada são
+ * calculados nos temporários do topo, que passam a ser os primeiros
+ * registradores (os parâmetros) do quadro da função chamada, sem cópia.
+ * Um vetor é passado em dois registradores, o endereço e o tamanho, que
+ * o acesso pelo parâmetro confere.
+ * As condições de if e while com operador relacional viram um único
+ * desvio condicional, e o teste do while fica no fim do laço.
+ */
+public class GeradorBytecode {
+    private static final long BYTES_POR_NIVEL = 512;
+    private static final int[] NEGACOES = {3, 2, 1, 0, 5, 4};
+    
+    private final ArvoreSintatica arvore;
+    private final AnalisadorSemantico semantico;
+    private final int entrada;
+    private final int saida;
+    
+    // Por nó de declaração: endereço global, registrador ou índice de função
+    private int[] enderecos;
+    private boolean[] globais;
+    
+    private int[] codigo;
+    private int[] linhas;
+    private int tamanho;
+    private int linhaAtual;
+    private int ultimaInstrucao = -1;
+    
+    // Registradores da função em compilação
+    private int topo;
+    private int maximo;
+    
+    /**
+     * @param semantico Analisador que analisou a árvore sem erros
+     */
+    public GeradorBytecode(ArvoreSintatica arvore, AnalisadorSemantico semantico) {
+        this.arvore = arvore;
+        this.semantico = semantico;
+        this.entrada = arvore.getNomes().buscar("input");
+        this.saida = arvore.getNomes().buscar("output");
+    }
+    
+    /**
+     * Compila o programa
+     */
+    public ProgramaBytecode gerar() {
+        try {
+            return executar();
+        } catch (StackOverflowError e) {
+            // A recursão acompanha a profundidade da árvore
+            try {
+                return Pilha.executarComPilha("GeradorBytecode", arvore.profundidade(), BYTES_POR_NIVEL, this::executar);
+            } catch (InterruptedException interrompido) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("compilação interrompida", interrompido);
+            }
+        }
+    }
+    
+    private ProgramaBytecode executar() {
+        enderecos = new int[arvore.tamanho()];
+        globais = new boolean[arvore.tamanho()];
+        codigo = new int[Math.max(64, arvore.tamanho() * 2)];
+        linhas = new int[codigo.length];
+        tamanho = 0;
+        ultimaInstrucao = -1;
+        
+        // Endereços das globais e índices das funções, que podem ser
+        // chamadas antes de definidas
+        int raiz = arvore.getRaiz();
+        int memoria = 0;
+        int quantidade = 0;
+        for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+             declaracao = arvore.getProximoIrmao(declaracao)) {
+            switch (arvore.getTipo(declaracao)) {
+                case DECL_FUNCAO:
+                    enderecos[declaracao] = quantidade++;
+                    break;
+                case DECL_VETOR:
+                    enderecos[declaracao] = memoria;
+                    memoria += tamanhoVetor(declaracao);
+                    globais[declaracao] = true;
+                    break;
+                default:
+                    enderecos[declaracao] = memoria++;
+                    globais[declaracao] = true;
+                    break;
+            }
+        }
+        
+        String[] nomes = new String[quantidade];
+        int[] entradas = new int[quantidade];
+        int[] quadros = new int[quantidade];
+        int principal = -1;
+        for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+             declaracao = arvore.getProximoIrmao(declaracao)) {
+            if (arvore.getTipo(declaracao) == ArvoreSintatica.No.DECL_FUNCAO) {
+                int f = enderecos[declaracao];
+                nomes[f] = arvore.getNome(declaracao);
+                entradas[f] = tamanho;
+                quadros[f] = funcao(declaracao);
+                if (nomes[f].equals("main")) {
+                    principal = f;
+                }
+            }
+        }
+        return new ProgramaBytecode(Arrays.copyOf(codigo, tamanho), Arrays.copyOf(linhas, tamanho), memoria,
+                                    nomes, entradas, quadros, principal);
+    }
+    
+    private int tamanhoVetor(int declaracao) {
+        int tamanho = arvore.getProximoIrmao(arvore.getPrimeiroFilho(declaracao));
+        return tamanho >= 0 ? arvore.getValor(tamanho) : 0;
+    }
+    
+    // ========== Funções e comandos ==========
+    
+    /**
+     * Compila a função
+     * @return o tamanho de seu quadro
+     */
+    private int funcao(int no) {
+        int parametros = arvore.getProximoIrmao(arvore.getPrimeiroFilho(no));
+        topo = 0;
+        for (int parametro = arvore.getPrimeiroFilho(parametros); parametro >= 0;
+             parametro = arvore.getProximoIrmao(parametro)) {
+            enderecos[parametro] = topo;
+            topo += arvore.getTipo(parametro) == ArvoreSintatica.No.PARAMETRO_VETOR ? 2 : 1;
+        }
+        maximo = topo;
+        linhaAtual = arvore.getLinha(no);
+        bloco(arvore.getProximoIrmao(parametros));
+        // Retorno implícito ao fim do corpo
+        emitir(ProgramaBytecode.RETV);
+        return maximo;
+    }
+    
+    /**
+     * Compila um bloco; suas variáveis locais ocupam registradores até o fim dele
+     */
+    private void bloco(int no) {
+        int marca = topo;
+        for (int filho = arvore.getPrimeiroFilho(no); filho >= 0; filho = arvore.getProximoIrmao(filho)) {
+            ArvoreSintatica.No tipo = arvore.getTipo(filho);
+            if (tipo == ArvoreSintatica.No.DECL_VARIAVEL || tipo == ArvoreSintatica.No.DECL_VETOR) {
+                int ocupados = tipo == ArvoreSintatica.No.DECL_VETOR ? tamanhoVetor(filho) : 1;
+                enderecos[filho] = topo;
+                zerar(topo, ocupados);
+                reservar(ocupados);
+            } else {
+                comando(filho);
+            }
+        }
+        topo = marca;
+    }
+    
+    private void comando(int no) {
+        linhaAtual = arvore.getLinha(no);
+        int marca = topo;
+        switch (arvore.getTipo(no)) {
+            case BLOCO:
+                bloco(no);
+                break;
+            case SE: {
+                int condicao = arvore.getPrimeiroFilho(no);
+                int entao = arvore.getProximoIrmao(condicao);
+                int senao = arvore.getProximoIrmao(entao);
+                int falso = desvio(condicao, false);
+                comando(entao);
+                if (senao >= 0) {
+                    int fim = emitir(ProgramaBytecode.JMP, 0) + 1;
+                    corrigir(falso);
+                    comando(senao);
+                    corrigir(fim);
+                } else {
+                    corrigir(falso);
+                }
+                break;
+            }
+            case ENQUANTO: {
+                int condicao = arvore.getPrimeiroFilho(no);
+                int teste = emitir(ProgramaBytecode.JMP, 0) + 1;
+                int corpo = tamanho;
+                comando(arvore.getProximoIrmao(condicao));
+                corrigir(teste);
+                linhaAtual = arvore.getLinha(no);
+                codigo[desvio(condicao, true)] = corpo;
+                break;
+            }
+            case RETORNO: {
+                int valor = arvore.getPrimeiroFilho(no);
+                if (valor >= 0) {
+                    emitir(ProgramaBytecode.RET, expressao(valor));
+                } else {
+                    emitir(ProgramaBytecode.RETV);
+                }
+                break;
+            }
+            case VAZIO:
+                break;
+            case ATRIBUICAO:
+                atribuicao(no, -1);
+                break;
+            default:
+                expressao(no);
+                break;
+        }
+        topo = marca;
+    }
+    
+    /**
+     * Emite um desvio tomado quando a condição tem o valor 'quando'
+     * @return a posição do destino do desvio, a corrigir
+     */
+    private int desvio(int condicao, boolean quando) {
+        int marca = topo;
+        int posicao;
+        if (arvore.getTipo(condicao) == ArvoreSintatica.No.OPERACAO && relacional(condicao)) {
+            int relacao = arvore.getValor(condicao) - ArvoreSintatica.Operador.MENOR.ordinal();
+            if (!quando) {
+                relacao = NEGACOES[relacao];
+            }
+            int esquerda = arvore.getPrimeiroFilho(condicao);
+            int direita = arvore.getProximoIrmao(esquerda);
+            int a = expressao(esquerda);
+            if (arvore.getTipo(direita) == ArvoreSintatica.No.CONSTANTE) {
+                posicao = emitir(ProgramaBytecode.JLTK + relacao, a, arvore.getValor(direita), 0) + 3;
+            } else {
+                posicao = emitir(ProgramaBytecode.JLT + relacao, a, expressao(direita), 0) + 3;
+            }
+        } else {
+            posicao = emitir(quando ? ProgramaBytecode.JNZ : ProgramaBytecode.JZ, expressao(condicao), 0) + 2;
+        }
+        topo = marca;
+        return posicao;
+    }
+    
+    /**
+     * Faz o desvio cujo destino está em 'posicao' apontar para a próxima instrução
+     */
+    private void corrigir(int posicao) {
+        codigo[posicao] = tamanho;
+        // Um destino pode ser o início de um laço: não funde instruções através dele
+        ultimaInstrucao = -1;
+    }
+    
+    // ========== Expressões ==========
+    
+    /**
+     * Compila a expressão e retorna o registrador com seu valor: o da
+     * própria variável, se for local, ou um temporário novo
+     */
+    private int expressao(int no) {
+        if (arvore.getTipo(no) == ArvoreSintatica.No.VARIAVEL) {
+            int declaracao = semantico.getDeclaracao(no);
+            ArvoreSintatica.No tipo = arvore.getTipo(declaracao);
+            if (!globais[declaracao] && tipo != ArvoreSintatica.No.DECL_VETOR) {
+                return enderecos[declaracao];
+            }
+        }
+        int destino = temporario();
+        expressao(no, destino);
+        return destino;
+    }
+    
+    /**
+     * Compila a expressão com o valor no registrador 'destino'
+     */
+    private void expressao(int no, int destino) {
+        int marca = topo;
+        switch (arvore.getTipo(no)) {
+            case CONSTANTE:
+                emitir(ProgramaBytecode.CONST, destino, arvore.getValor(no));
+                break;
+            case VARIAVEL:
+                variavel(no, destino);
+                break;
+            case OPERACAO: {
+                int esquerda = arvore.getPrimeiroFilho(no);
+                int direita = arvore.getProximoIrmao(esquerda);
+                int operador = arvore.getValor(no);
+                int a = expressao(esquerda);
+                if (!relacional(no) && arvore.getTipo(direita) == ArvoreSintatica.No.CONSTANTE) {
+                    emitir(ProgramaBytecode.ADDK + operador, destino, a, arvore.getValor(direita));
+                } else if (relacional(no)) {
+                    int relacao = operador - ArvoreSintatica.Operador.MENOR.ordinal();
+                    emitir(ProgramaBytecode.LT + relacao, destino, a, expressao(direita));
+                } else {
+                    emitir(ProgramaBytecode.ADD + operador, destino, a, expressao(direita));
+                }
+                break;
+            }
+            case ATRIBUICAO:
+                atribuicao(no, destino);
+                break;
+            case INDEXACAO: {
+                int declaracao = semantico.getDeclaracao(no);
+                int indice = expressao(arvore.getPrimeiroFilho(no));
+                if (arvore.getTipo(declaracao) == ArvoreSintatica.No.PARAMETRO_VETOR) {
+                    emitir(ProgramaBytecode.LOADX, destino, enderecos[declaracao], indice);
+                } else {
+                    emitir(globais[declaracao] ? ProgramaBytecode.LOADA : ProgramaBytecode.LOADL, destino,
+                           enderecos[declaracao], indice, tamanhoVetor(declaracao));
+                }
+                break;
+            }
+            case CHAMADA:
+                chamada(no, destino);
+                break;
+            default:
+                throw new IllegalStateException("nó inesperado em expressão: " + arvore.getTipo(no));
+        }
+        topo = marca;
+    }
+    
+    /**
+     * Lê a variável para o registrador; de um vetor, lê o endereço
+     */
+    private void variavel(int no, int destino) {
+        int declaracao = semantico.getDeclaracao(no);
+        int endereco = enderecos[declaracao];
+        switch (arvore.getTipo(declaracao)) {
+            case DECL_VETOR:
+                if (globais[declaracao]) {
+                    emitir(ProgramaBytecode.CONST, destino, endereco);
+                } else {
+                    emitir(ProgramaBytecode.ADDR, destino, endereco);
+                }
+                break;
+            default:
+                if (globais[declaracao]) {
+                    emitir(ProgramaBytecode.LOADG, destino, endereco);
+                } else {
+                    emitir(ProgramaBytecode.MOV, destino, endereco);
+                }
+                break;
+        }
+    }
+    
+    /**
+     * Compila a atribuição, com o valor atribuído também em 'destino'
+     * (-1 quando é um comando e o valor é descartado)
+     */
+    private void atribuicao(int no, int destino) {
+        int alvo = arvore.getPrimeiroFilho(no);
+        int valor = arvore.getProximoIrmao(alvo);
+        int declaracao = semantico.getDeclaracao(alvo);
+        int endereco = enderecos[declaracao];
+        if (arvore.getTipo(alvo) == ArvoreSintatica.No.INDEXACAO) {
+            int indice = expressao(arvore.getPrimeiroFilho(alvo));
+            int registrador = destino >= 0 ? destino : temporario();
+            expressao(valor, registrador);
+            if (arvore.getTipo(declaracao) == ArvoreSintatica.No.PARAMETRO_VETOR) {
+                emitir(ProgramaBytecode.STOREX, endereco, indice, registrador);
+            } else {
+                emitir(globais[declaracao] ? ProgramaBytecode.STOREA : ProgramaBytecode.STOREL, endereco,
+                       indice, registrador, tamanhoVetor(declaracao));
+            }
+        } else if (globais[declaracao]) {
+            int registrador = destino >= 0 ? destino : temporario();
+            expressao(valor, registrador);
+            emitir(ProgramaBytecode.STOREG, endereco, registrador);
+        } else {
+            // O valor é calculado direto no registrador da variável
+            expressao(valor, endereco);
+            if (destino >= 0) {
+                emitir(ProgramaBytecode.MOV, destino, endereco);
+            }
+        }
+    }
+    
+    private void chamada(int no, int destino) {
+        int nome = arvore.getValor(no);
+        int declaracao = semantico.getDeclaracao(no);
+        if (declaracao < 0 && nome == entrada) {
+            emitir(ProgramaBytecode.INPUT, destino);
+            return;
+        }
+        if (declaracao < 0 && nome == saida) {
+            emitir(ProgramaBytecode.OUTPUT, expressao(arvore.getPrimeiroFilho(no)));
+            return;
+        }
+        // Os argumentos ficam nos registradores do topo, em ordem
+        int base = topo;
+        for (int argumento = arvore.getPrimeiroFilho(no); argumento >= 0;
+             argumento = arvore.getProximoIrmao(argumento)) {
+            if (!argumentoVetor(argumento)) {
+                expressao(argumento, temporario());
+            }
+        }
+        emitir(ProgramaBytecode.CALL, enderecos[declaracao], base, destino);
+    }
+    
+    /**
+     * Se o argumento é um vetor, põe o seu endereço e o seu tamanho em dois
+     * temporários novos
+     * @return false se o argumento não é um vetor
+     */
+    private boolean argumentoVetor(int argumento) {
+        if (arvore.getTipo(argumento) != ArvoreSintatica.No.VARIAVEL) {
+            return false;
+        }
+        int declaracao = semantico.getDeclaracao(argumento);
+        ArvoreSintatica.No tipo = arvore.getTipo(declaracao);
+        if (tipo != ArvoreSintatica.No.DECL_VETOR && tipo != ArvoreSintatica.No.PARAMETRO_VETOR) {
+            return false;
+        }
+        int endereco = temporario();
+        int tamanho = temporario();
+        if (tipo == ArvoreSintatica.No.PARAMETRO_VETOR) {
+            emitir(ProgramaBytecode.MOV, endereco, enderecos[declaracao]);
+            emitir(ProgramaBytecode.MOV, tamanho, enderecos[declaracao] + 1);
+        } else {
+            variavel(argumento, endereco);
+            emitir(ProgramaBytecode.CONST, tamanho, tamanhoVetor(declaracao));
+        }
+        return true;
+    }
+    
+    private boolean relacional(int operacao) {
+        return arvore.getValor(operacao) >= ArvoreSintatica.Operador.MENOR.ordinal();
+    }
+    
+    // ========== Registradores e emissão ==========
+    
+    private int temporario() {
+        reservar(1);
+        return topo - 1;
+    }
+    
+    private void reservar(int quantidade) {
+        topo += quantidade;
+        maximo = Math.max(maximo, topo);
+    }
+    
+    /**
+     * Zera os registradores de variáveis locais, estendendo o ZERO
+     * anterior quando são contíguos
+     */
+    private void zerar(int inicio, int quantidade) {
+        if (ultimaInstrucao >= 0 && codigo[ultimaInstrucao] == ProgramaBytecode.ZERO
+            && codigo[ultimaInstrucao + 1] + codigo[ultimaInstrucao + 2] == inicio) {
+            codigo[ultimaInstrucao + 2] += quantidade;
+        } else {
+            emitir(ProgramaBytecode.ZERO, inicio, quantidade);
+        }
+    }
+    
+    /**
+     * Emite uma instrução
+     * @return a posição da instrução no código
+     */
+    private int emitir(int operacao) {
+        if (tamanho + 5 > codigo.length) {
+            codigo = Arrays.copyOf(codigo, codigo.length * 2);
+            linhas = Arrays.copyOf(linhas, codigo.length);
+        }
+        int posicao = tamanho;
+        linhas[posicao] = linhaAtual;
+        codigo[tamanho++] = operacao;
+        ultimaInstrucao = posicao;
+        return posicao;
+    }
+    
+    private int emitir(int operacao, int a) {
+        int posicao = emitir(operacao);
+        codigo[tamanho++] = a;
+        return posicao;
+    }
+    
+    private int emitir(int operacao, int a, int b) {
+        int posicao = emitir(operacao);
+        codigo[tamanho++] = a;
+        codigo[tamanho++] = b;
+        return posicao;
+    }
+    
+    private int emitir(int operacao, int a, int b, int c) {
+        int posicao = emitir(operacao);
+        codigo[tamanho++] = a;
+        codigo[tamanho++] = b;
+        codigo[tamanho++] = c;
+        return posicao;
+    }
+    
+    private int emitir(int operacao, int a, int b, int c, int d) {
+        int posicao = emitir(operacao, a, b, c);
+        codigo[tamanho++] = d;
+        return posicao;
+    }
+}
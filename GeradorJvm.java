@@ -0,0 +1,455 @@
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Compila a árvore de um programa C- sem erros (sintáticos e semânticos)
+ * para bytecode da JVM, em uma classe oculta (hidden class) carregada na
+ * própria JVM. Os nomes são resolvidos pelo {@link AnalisadorSemantico}
+ * que analisou a árvore.
+ *
+ * Cada função vira um método estático com o mesmo nome, chamado
+ * diretamente por invokestatic: int vira int, vetores viram int[] e
+ * void vira void. As variáveis globais viram campos estáticos, zerados
+ * (e os vetores, criados) por um método chamado antes de cada execução,
+ * e as locais viram variáveis locais do método, zeradas na declaração. input() e output()
+ * chamam um IntSupplier e um IntConsumer guardados em campos estáticos,
+ * definidos por {@link ProgramaJvm}. O JIT da JVM compila então os
+ * métodos para código nativo.
+ */
+public class GeradorJvm {
+    private static final long BYTES_POR_NIVEL = 512;
+    private static final int[] NEGACOES = {3, 2, 1, 0, 5, 4};
+    private static final int[] COMPARACOES = {
+        EscritorClasse.IF_ICMPLT, EscritorClasse.IF_ICMPLE, EscritorClasse.IF_ICMPGT,
+        EscritorClasse.IF_ICMPGE, EscritorClasse.IF_ICMPEQ, EscritorClasse.IF_ICMPNE
+    };
+    private static final int[] ARITMETICAS = {
+        EscritorClasse.IADD, EscritorClasse.ISUB, EscritorClasse.IMUL, EscritorClasse.IDIV
+    };
+    
+    static final String CLASSE = "ProgramaCMenos";
+    static final String CAMPO_ENTRADA = "$entrada";
+    static final String CAMPO_SAIDA = "$saida";
+    static final String INICIAR = "$iniciar";
+    private static final String SUPRIDOR = "java/util/function/IntSupplier";
+    private static final String CONSUMIDOR = "java/util/function/IntConsumer";
+    
+    private final ArvoreSintatica arvore;
+    private final AnalisadorSemantico semantico;
+    private final int entrada;
+    private final int saida;
+    
+    // Por nó de declaração: referência ao campo ou ao método no pool de
+    // constantes, ou posição da variável local
+    private int[] enderecos;
+    private boolean[] globais;
+    private String[] descritores;
+    // Descritor do método main, ou null
+    private String principal;
+    
+    private EscritorClasse classe;
+    private EscritorClasse.Metodo metodo;
+    private int campoEntrada;
+    private int campoSaida;
+    private int lerEntrada;
+    private int escreverSaida;
+    
+    /**
+     * @param semantico Analisador que analisou a árvore sem erros
+     */
+    public GeradorJvm(ArvoreSintatica arvore, AnalisadorSemantico semantico) {
+        this.arvore = arvore;
+        this.semantico = semantico;
+        this.entrada = arvore.getNomes().buscar("input");
+        this.saida = arvore.getNomes().buscar("output");
+    }
+    
+    /**
+     * Compila o programa e carrega a classe
+     * @throws IllegalStateException se uma função excede os limites de
+     *         um método da JVM (64 KB de código)
+     */
+    public ProgramaJvm gerar() {
+        byte[] bytes = gerarClasse();
+        try {
+            return new ProgramaJvm(MethodHandles.lookup().defineHiddenClass(bytes, true), principal);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("classe gerada inválida", e);
+        }
+    }
+    
+    /**
+     * Compila o programa para o arquivo .class, sem carregá-lo
+     */
+    public byte[] gerarClasse() {
+        try {
+            return executar();
+        } catch (StackOverflowError e) {
+            // A recursão acompanha a profundidade da árvore
+            try {
+                return Pilha.executarComPilha("GeradorJvm", arvore.profundidade(), BYTES_POR_NIVEL, this::executar);
+            } catch (InterruptedException interrompido) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("compilação interrompida", interrompido);
+            }
+        }
+    }
+    
+    private byte[] executar() {
+        enderecos = new int[arvore.tamanho()];
+        globais = new boolean[arvore.tamanho()];
+        descritores = new String[arvore.tamanho()];
+        principal = null;
+        classe = new EscritorClasse(CLASSE);
+        int estatico = EscritorClasse.PUBLICO | EscritorClasse.ESTATICO;
+        classe.adicionarCampo(estatico, CAMPO_ENTRADA, "L" + SUPRIDOR + ";");
+        classe.adicionarCampo(estatico, CAMPO_SAIDA, "L" + CONSUMIDOR + ";");
+        campoEntrada = classe.campo(CLASSE, CAMPO_ENTRADA, "L" + SUPRIDOR + ";");
+        campoSaida = classe.campo(CLASSE, CAMPO_SAIDA, "L" + CONSUMIDOR + ";");
+        lerEntrada = classe.metodoInterface(SUPRIDOR, "getAsInt", "()I");
+        escreverSaida = classe.metodoInterface(CONSUMIDOR, "accept", "(I)V");
+        
+        // Campos das globais e referências das funções, que podem ser
+        // chamadas antes de definidas
+        int raiz = arvore.getRaiz();
+        for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+             declaracao = arvore.getProximoIrmao(declaracao)) {
+            String nome = arvore.getNome(declaracao);
+            switch (arvore.getTipo(declaracao)) {
+                case DECL_FUNCAO:
+                    descritores[declaracao] = descritor(declaracao);
+                    enderecos[declaracao] = classe.metodo(CLASSE, nome, descritores[declaracao]);
+                    if (nome.equals("main")) {
+                        principal = descritores[declaracao];
+                    }
+                    break;
+                case DECL_VETOR:
+                    classe.adicionarCampo(estatico, nome, "[I");
+                    enderecos[declaracao] = classe.campo(CLASSE, nome, "[I");
+                    globais[declaracao] = true;
+                    break;
+                default:
+                    classe.adicionarCampo(estatico, nome, "I");
+                    enderecos[declaracao] = classe.campo(CLASSE, nome, "I");
+                    globais[declaracao] = true;
+                    break;
+            }
+        }
+        
+        iniciar(raiz);
+        for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+             declaracao = arvore.getProximoIrmao(declaracao)) {
+            if (arvore.getTipo(declaracao) == ArvoreSintatica.No.DECL_FUNCAO) {
+                funcao(declaracao);
+            }
+        }
+        return classe.toByteArray();
+    }
+    
+    /**
+     * Gera o método que zera as globais e cria os vetores globais, chamado
+     * antes de cada execução
+     */
+    private void iniciar(int raiz) {
+        metodo = classe.adicionarMetodo(EscritorClasse.PUBLICO | EscritorClasse.ESTATICO, INICIAR, "()V",
+                                        new int[0]);
+        for (int declaracao = arvore.getPrimeiroFilho(raiz); declaracao >= 0;
+             declaracao = arvore.getProximoIrmao(declaracao)) {
+            switch (arvore.getTipo(declaracao)) {
+                case DECL_FUNCAO:
+                    break;
+                case DECL_VETOR:
+                    metodo.constante(tamanhoVetor(declaracao));
+                    metodo.novoVetor();
+                    metodo.campoEstatico(EscritorClasse.PUTSTATIC, enderecos[declaracao],
+                                         EscritorClasse.TIPO_VETOR);
+                    break;
+                default:
+                    metodo.constante(0);
+                    metodo.campoEstatico(EscritorClasse.PUTSTATIC, enderecos[declaracao], EscritorClasse.TIPO_INT);
+                    break;
+            }
+        }
+        metodo.instrucao(EscritorClasse.RETURN, 0, 0);
+    }
+    
+    /**
+     * Retorna o descritor do método da função, como "(I[I)I"
+     */
+    private String descritor(int funcao) {
+        int tipo = arvore.getPrimeiroFilho(funcao);
+        StringBuilder descritor = new StringBuilder("(");
+        for (int parametro = arvore.getPrimeiroFilho(arvore.getProximoIrmao(tipo)); parametro >= 0;
+             parametro = arvore.getProximoIrmao(parametro)) {
+            descritor.append(arvore.getTipo(parametro) == ArvoreSintatica.No.PARAMETRO_VETOR ? "[I" : "I");
+        }
+        return descritor.append(retornaValor(funcao) ? ")I" : ")V").toString();
+    }
+    
+    private boolean retornaValor(int funcao) {
+        return arvore.getValor(arvore.getPrimeiroFilho(funcao)) != Token.Tipo.VOID.ordinal();
+    }
+    
+    private int tamanhoVetor(int declaracao) {
+        int tamanho = arvore.getProximoIrmao(arvore.getPrimeiroFilho(declaracao));
+        return tamanho >= 0 ? arvore.getValor(tamanho) : 0;
+    }
+    
+    // ========== Funções e comandos ==========
+    
+    private void funcao(int no) {
+        int parametros = arvore.getProximoIrmao(arvore.getPrimeiroFilho(no));
+        int quantidade = 0;
+        for (int parametro = arvore.getPrimeiroFilho(parametros); parametro >= 0;
+             parametro = arvore.getProximoIrmao(parametro)) {
+            quantidade++;
+        }
+        int[] tipos = new int[quantidade];
+        quantidade = 0;
+        for (int parametro = arvore.getPrimeiroFilho(parametros); parametro >= 0;
+             parametro = arvore.getProximoIrmao(parametro)) {
+            tipos[quantidade] = arvore.getTipo(parametro) == ArvoreSintatica.No.PARAMETRO_VETOR
+                                ? EscritorClasse.TIPO_VETOR : EscritorClasse.TIPO_INT;
+            enderecos[parametro] = quantidade++;
+        }
+        metodo = classe.adicionarMetodo(EscritorClasse.PUBLICO | EscritorClasse.ESTATICO, arvore.getNome(no),
+                                        descritores[no], tipos);
+        metodo.linha(arvore.getLinha(no));
+        bloco(arvore.getProximoIrmao(parametros));
+        // Retorno implícito ao fim do corpo (0, se a função retorna int)
+        if (retornaValor(no)) {
+            metodo.constante(0);
+            metodo.instrucao(EscritorClasse.IRETURN, 1, 0);
+        } else {
+            metodo.instrucao(EscritorClasse.RETURN, 0, 0);
+        }
+    }
+    
+    /**
+     * Compila um bloco; suas variáveis locais existem até o fim dele
+     */
+    private void bloco(int no) {
+        int marca = metodo.getQuantidadeLocais();
+        for (int filho = arvore.getPrimeiroFilho(no); filho >= 0; filho = arvore.getProximoIrmao(filho)) {
+            ArvoreSintatica.No tipo = arvore.getTipo(filho);
+            if (tipo == ArvoreSintatica.No.DECL_VARIAVEL) {
+                enderecos[filho] = metodo.declararLocal(EscritorClasse.TIPO_INT);
+                metodo.constante(0);
+                metodo.armazenar(enderecos[filho]);
+            } else if (tipo == ArvoreSintatica.No.DECL_VETOR) {
+                enderecos[filho] = metodo.declararLocal(EscritorClasse.TIPO_VETOR);
+                metodo.constante(tamanhoVetor(filho));
+                metodo.novoVetor();
+                metodo.armazenar(enderecos[filho]);
+            } else {
+                comando(filho);
+            }
+        }
+        metodo.liberarLocais(marca);
+    }
+    
+    private void comando(int no) {
+        metodo.linha(arvore.getLinha(no));
+        switch (arvore.getTipo(no)) {
+            case BLOCO:
+                bloco(no);
+                break;
+            case SE: {
+                int condicao = arvore.getPrimeiroFilho(no);
+                int entao = arvore.getProximoIrmao(condicao);
+                int senao = arvore.getProximoIrmao(entao);
+                EscritorClasse.Rotulo falso = new EscritorClasse.Rotulo();
+                desvio(condicao, false, falso);
+                comando(entao);
+                if (senao >= 0) {
+                    EscritorClasse.Rotulo fim = new EscritorClasse.Rotulo();
+                    metodo.desviar(EscritorClasse.GOTO, fim);
+                    metodo.marcar(falso, false);
+                    comando(senao);
+                    metodo.marcar(fim, false);
+                } else {
+                    metodo.marcar(falso, false);
+                }
+                break;
+            }
+            case ENQUANTO: {
+                // O teste fica no fim do laço, com um único desvio por volta
+                int condicao = arvore.getPrimeiroFilho(no);
+                EscritorClasse.Rotulo teste = new EscritorClasse.Rotulo();
+                EscritorClasse.Rotulo corpo = new EscritorClasse.Rotulo();
+                boolean alcancavel = metodo.isAlcancavel();
+                metodo.desviar(EscritorClasse.GOTO, teste);
+                metodo.marcar(corpo, alcancavel);
+                comando(arvore.getProximoIrmao(condicao));
+                metodo.marcar(teste, false);
+                metodo.linha(arvore.getLinha(no));
+                desvio(condicao, true, corpo);
+                break;
+            }
+            case RETORNO: {
+                int valor = arvore.getPrimeiroFilho(no);
+                if (valor >= 0) {
+                    expressao(valor);
+                    metodo.instrucao(EscritorClasse.IRETURN, 1, 0);
+                } else {
+                    metodo.instrucao(EscritorClasse.RETURN, 0, 0);
+                }
+                break;
+            }
+            case VAZIO:
+                break;
+            case ATRIBUICAO:
+                atribuicao(no, false);
+                break;
+            default:
+                if (expressao(no)) {
+                    metodo.instrucao(EscritorClasse.POP, 1, 0);
+                }
+                break;
+        }
+    }
+    
+    /**
+     * Emite um desvio para o rótulo, tomado quando a condição tem o valor 'quando'
+     */
+    private void desvio(int condicao, boolean quando, EscritorClasse.Rotulo rotulo) {
+        if (arvore.getTipo(condicao) == ArvoreSintatica.No.OPERACAO && relacional(condicao)) {
+            int relacao = arvore.getValor(condicao) - ArvoreSintatica.Operador.MENOR.ordinal();
+            if (!quando) {
+                relacao = NEGACOES[relacao];
+            }
+            int esquerda = arvore.getPrimeiroFilho(condicao);
+            expressao(esquerda);
+            expressao(arvore.getProximoIrmao(esquerda));
+            metodo.desviar(COMPARACOES[relacao], rotulo);
+        } else {
+            expressao(condicao);
+            metodo.desviar(quando ? EscritorClasse.IFNE : EscritorClasse.IFEQ, rotulo);
+        }
+    }
+    
+    // ========== Expressões ==========
+    
+    /**
+     * Compila a expressão, empilhando seu valor
+     * @return false se a expressão é a chamada de uma função void
+     */
+    private boolean expressao(int no) {
+        switch (arvore.getTipo(no)) {
+            case CONSTANTE:
+                metodo.constante(arvore.getValor(no));
+                return true;
+            case VARIAVEL:
+                variavel(semantico.getDeclaracao(no));
+                return true;
+            case OPERACAO: {
+                int esquerda = arvore.getPrimeiroFilho(no);
+                int operador = arvore.getValor(no);
+                if (relacional(no)) {
+                    // Valor 0 ou 1, pelo desvio da comparação negada
+                    EscritorClasse.Rotulo falso = new EscritorClasse.Rotulo();
+                    EscritorClasse.Rotulo fim = new EscritorClasse.Rotulo();
+                    desvio(no, false, falso);
+                    metodo.constante(1);
+                    metodo.desviar(EscritorClasse.GOTO, fim);
+                    metodo.marcar(falso, false);
+                    metodo.constante(0);
+                    metodo.marcar(fim, false);
+                } else {
+                    expressao(esquerda);
+                    expressao(arvore.getProximoIrmao(esquerda));
+                    metodo.instrucao(ARITMETICAS[operador], 2, EscritorClasse.TIPO_INT);
+                }
+                return true;
+            }
+            case ATRIBUICAO:
+                atribuicao(no, true);
+                return true;
+            case INDEXACAO:
+                variavel(semantico.getDeclaracao(no));
+                expressao(arvore.getPrimeiroFilho(no));
+                metodo.instrucao(EscritorClasse.IALOAD, 2, EscritorClasse.TIPO_INT);
+                return true;
+            case CHAMADA:
+                return chamada(no);
+            default:
+                throw new IllegalStateException("nó inesperado em expressão: " + arvore.getTipo(no));
+        }
+    }
+    
+    /**
+     * Empilha a variável declarada em 'declaracao'; de um vetor, o int[]
+     */
+    private void variavel(int declaracao) {
+        boolean vetor = arvore.getTipo(declaracao) == ArvoreSintatica.No.DECL_VETOR
+                        || arvore.getTipo(declaracao) == ArvoreSintatica.No.PARAMETRO_VETOR;
+        if (globais[declaracao]) {
+            metodo.campoEstatico(EscritorClasse.GETSTATIC, enderecos[declaracao],
+                                 vetor ? EscritorClasse.TIPO_VETOR : EscritorClasse.TIPO_INT);
+        } else {
+            metodo.carregar(enderecos[declaracao]);
+        }
+    }
+    
+    /**
+     * Compila a atribuição, deixando o valor atribuído na pilha se 'valor'
+     */
+    private void atribuicao(int no, boolean valor) {
+        int alvo = arvore.getPrimeiroFilho(no);
+        int declaracao = semantico.getDeclaracao(alvo);
+        if (arvore.getTipo(alvo) == ArvoreSintatica.No.INDEXACAO) {
+            variavel(declaracao);
+            expressao(arvore.getPrimeiroFilho(alvo));
+            expressao(arvore.getProximoIrmao(alvo));
+            if (valor) {
+                metodo.duplicar(true);
+            }
+            metodo.instrucao(EscritorClasse.IASTORE, 3, 0);
+            return;
+        }
+        expressao(arvore.getProximoIrmao(alvo));
+        if (valor) {
+            metodo.duplicar(false);
+        }
+        if (globais[declaracao]) {
+            metodo.campoEstatico(EscritorClasse.PUTSTATIC, enderecos[declaracao], EscritorClasse.TIPO_INT);
+        } else {
+            metodo.armazenar(enderecos[declaracao]);
+        }
+    }
+    
+    /**
+     * @return false se a função chamada é void
+     */
+    private boolean chamada(int no) {
+        int nome = arvore.getValor(no);
+        int declaracao = semantico.getDeclaracao(no);
+        if (declaracao < 0 && nome == entrada) {
+            metodo.campoEstatico(EscritorClasse.GETSTATIC, campoEntrada, EscritorClasse.TIPO_OBJETO);
+            metodo.chamar(EscritorClasse.INVOKEINTERFACE, lerEntrada, 1, EscritorClasse.TIPO_INT);
+            return true;
+        }
+        if (declaracao < 0 && nome == saida) {
+            // O argumento vem antes do IntConsumer, que não pode estar na
+            // pilha em um rótulo (de uma comparação no argumento)
+            expressao(arvore.getPrimeiroFilho(no));
+            metodo.campoEstatico(EscritorClasse.GETSTATIC, campoSaida, EscritorClasse.TIPO_OBJETO);
+            metodo.trocar();
+            metodo.chamar(EscritorClasse.INVOKEINTERFACE, escreverSaida, 2, 0);
+            return false;
+        }
+        int argumentos = 0;
+        for (int argumento = arvore.getPrimeiroFilho(no); argumento >= 0;
+             argumento = arvore.getProximoIrmao(argumento)) {
+            expressao(argumento);
+            argumentos++;
+        }
+        boolean retorna = retornaValor(declaracao);
+        metodo.chamar(EscritorClasse.INVOKESTATIC, enderecos[declaracao], argumentos,
+                      retorna ? EscritorClasse.TIPO_INT : 0);
+        return retorna;
+    }
+    
+    private boolean relacional(int operacao) {
+        return arvore.getValor(operacao) >= ArvoreSintatica.Operador.MENOR.ordinal();
+    }
+}
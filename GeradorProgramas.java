@@ -0,0 +1,687 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Gerador de programas C- sintéticos, a partir das regras da gramática
+ * (README), para benchmarks e testes de carga. A geração é determinística:
+ * a mesma semente e os mesmos parâmetros produzem sempre o mesmo programa.
+ *
+ * São ajustáveis o tamanho (ou a quantidade de funções), a profundidade
+ * de aninhamento dos comandos, a complexidade das expressões, a densidade
+ * de comentários e o vocabulário de identificadores. Com uma taxa de
+ * erros, alguns comandos recebem um erro de sintaxe.
+ *
+ * Os programas válidos também fazem sentido semanticamente, e podem ser
+ * executados:
+ * - os nomes são declarados antes do uso, e as chamadas respeitam a
+ *   quantidade e o tipo dos parâmetros;
+ * - os laços usam contadores próprios, que o corpo não altera, e
+ *   terminam;
+ * - os índices de vetores ficam dentro dos limites;
+ * - não há divisão por zero nem recursão.
+ *
+ * Uso: java GeradorProgramas [-s semente] [-t KB] [-f funções] [-p profundidade]
+ *                            [-e complexidade] [-c comentários] [-v vocabulário]
+ *                            [-x taxa de erros] [arquivo]
+ */
+public class GeradorProgramas {
+    // Tamanho de todos os vetores; os laços e os índices ficam abaixo dele
+    private static final int TAMANHO_VETOR = 8;
+    private static final String[] SILABAS = {
+        "ca", "so", "ma", "ti", "lo", "ver", "fa", "ne", "ri", "pu", "do", "gel",
+        "tra", "bi", "xa", "mun", "te", "por", "lu", "zan", "que", "val", "dis", "nor"
+    };
+    private static final Set<String> PALAVRAS_CHAVE = Set.of("int", "void", "if", "else", "while", "return");
+    private static final String[] OPERADORES = {" + ", " - ", " * "};
+    private static final String[] RELACIONAIS = {" < ", " <= ", " > ", " >= ", " == ", " != "};
+    
+    private final long semente;
+    private int tamanho = 64 << 10;
+    private int funcoes;
+    private int profundidade = 3;
+    private int complexidade = 3;
+    private double comentarios = 0.1;
+    private int vocabulario = 64;
+    private double taxaErros;
+    
+    // Estado da geração atual
+    private Random aleatorio;
+    private StringBuilder fonte;
+    private String[] palavras;
+    private List<Funcao> declaradas;
+    private List<String> escalaresGlobais;
+    private List<String> vetoresGlobais;
+    private Funcao atual;
+    private int errosInjetados;
+    
+    /**
+     * Função já declarada, que pode ser chamada pelas seguintes
+     */
+    private static final class Funcao {
+        final String nome;
+        final boolean retornaInt;
+        // Chamadas só para folhas, que não chamam outras funções: o
+        // custo de executar o programa fica limitado
+        final boolean folha;
+        final List<Boolean> parametrosVetor = new ArrayList<>();
+        final List<String> escalares = new ArrayList<>();
+        final List<String> vetores = new ArrayList<>();
+        
+        Funcao(String nome, boolean retornaInt, boolean folha) {
+            this.nome = nome;
+            this.retornaInt = retornaInt;
+            this.folha = folha;
+        }
+    }
+    
+    /**
+     * @param semente Semente da geração
+     */
+    public GeradorProgramas(long semente) {
+        this.semente = semente;
+    }
+    
+    /**
+     * Gera um programa válido com os parâmetros padrão
+     * @param tamanho Quantidade aproximada de caracteres
+     */
+    public static String gerar(long semente, int tamanho) {
+        GeradorProgramas gerador = new GeradorProgramas(semente);
+        gerador.setTamanho(tamanho);
+        return gerador.gerar();
+    }
+    
+    public static void main(String[] args) throws IOException {
+        long semente = 1;
+        String saida = null;
+        List<String[]> opcoes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("-") && i + 1 < args.length) {
+                if (args[i].equals("-s")) {
+                    semente = Long.parseLong(args[++i]);
+                } else {
+                    opcoes.add(new String[] {args[i], args[++i]});
+                }
+            } else {
+                saida = args[i];
+            }
+        }
+        GeradorProgramas gerador = new GeradorProgramas(semente);
+        for (String[] opcao : opcoes) {
+            switch (opcao[0]) {
+                case "-t":
+                    gerador.setTamanho(Integer.parseInt(opcao[1]) << 10);
+                    break;
+                case "-f":
+                    gerador.setFuncoes(Integer.parseInt(opcao[1]));
+                    break;
+                case "-p":
+                    gerador.setProfundidade(Integer.parseInt(opcao[1]));
+                    break;
+                case "-e":
+                    gerador.setComplexidade(Integer.parseInt(opcao[1]));
+                    break;
+                case "-c":
+                    gerador.setComentarios(Double.parseDouble(opcao[1]));
+                    break;
+                case "-v":
+                    gerador.setVocabulario(Integer.parseInt(opcao[1]));
+                    break;
+                case "-x":
+                    gerador.setTaxaErros(Double.parseDouble(opcao[1]));
+                    break;
+                default:
+                    System.err.println("Opção desconhecida: " + opcao[0]);
+                    System.exit(2);
+            }
+        }
+        
+        String programa = gerador.gerar();
+        if (saida == null) {
+            System.out.print(programa);
+        } else {
+            Files.write(Paths.get(saida), programa.getBytes(StandardCharsets.UTF_8));
+            System.err.printf("%d caracteres, %d erros injetados%n", programa.length(), gerador.getErrosInjetados());
+        }
+    }
+    
+    // ========== Parâmetros ==========
+    
+    /**
+     * Define a quantidade aproximada de caracteres do programa (usada
+     * quando a quantidade de funções não é definida)
+     */
+    public void setTamanho(int tamanho) {
+        this.tamanho = tamanho;
+    }
+    
+    /**
+     * Define a quantidade de funções, além de main; 0 faz a quantidade
+     * depender do tamanho
+     */
+    public void setFuncoes(int funcoes) {
+        this.funcoes = funcoes;
+    }
+    
+    /**
+     * Define a profundidade máxima de aninhamento dos comandos
+     */
+    public void setProfundidade(int profundidade) {
+        this.profundidade = Math.max(profundidade, 0);
+    }
+    
+    /**
+     * Define a profundidade máxima das expressões
+     */
+    public void setComplexidade(int complexidade) {
+        this.complexidade = Math.max(complexidade, 0);
+    }
+    
+    /**
+     * Define a probabilidade de um comentário antes de cada comando e de
+     * cada função, entre 0 e 1
+     */
+    public void setComentarios(double comentarios) {
+        this.comentarios = comentarios;
+    }
+    
+    /**
+     * Define a quantidade de palavras das quais os identificadores são
+     * formados
+     */
+    public void setVocabulario(int vocabulario) {
+        this.vocabulario = Math.max(vocabulario, 8);
+    }
+    
+    /**
+     * Define a fração dos comandos que recebem um erro de sintaxe, entre
+     * 0 e 1. Cada erro injetado é reportado pelo parser, mas a recuperação
+     * pode reunir erros próximos em um só.
+     */
+    public void setTaxaErros(double taxaErros) {
+        this.taxaErros = taxaErros;
+    }
+    
+    /**
+     * Retorna a quantidade de erros injetados no último programa gerado
+     */
+    public int getErrosInjetados() {
+        return errosInjetados;
+    }
+    
+    // ========== Geração ==========
+    
+    /**
+     * Gera o programa
+     */
+    public String gerar() {
+        aleatorio = new Random(semente);
+        fonte = new StringBuilder(funcoes > 0 ? funcoes * 512 : tamanho + 1024);
+        declaradas = new ArrayList<>();
+        escalaresGlobais = new ArrayList<>();
+        vetoresGlobais = new ArrayList<>();
+        errosInjetados = 0;
+        gerarVocabulario();
+        
+        // <programa> → <declaraçõeslista>
+        comentarioBloco();
+        int globais = 2 + aleatorio.nextInt(4);
+        for (int i = 0; i < globais; i++) {
+            // O primeiro vetor global garante um argumento para parâmetros vetor
+            boolean vetor = i == 0 || aleatorio.nextInt(3) == 0;
+            String nome = palavra() + "_g" + i;
+            if (vetor) {
+                fonte.append("int ").append(nome).append('[').append(TAMANHO_VETOR).append("];\n");
+                vetoresGlobais.add(nome);
+            } else {
+                fonte.append("int ").append(nome).append(";\n");
+                escalaresGlobais.add(nome);
+            }
+        }
+        fonte.append('\n');
+        
+        for (int n = 0; funcoes > 0 ? n < funcoes : fonte.length() < tamanho; n++) {
+            funcao(n);
+        }
+        principal();
+        
+        String programa = fonte.toString();
+        fonte = null;
+        atual = null;
+        return programa;
+    }
+    
+    private void gerarVocabulario() {
+        Set<String> vistas = new HashSet<>();
+        palavras = new String[vocabulario];
+        for (int i = 0; i < vocabulario; i++) {
+            String palavra;
+            do {
+                StringBuilder nova = new StringBuilder();
+                int silabas = 2 + aleatorio.nextInt(2);
+                for (int s = 0; s < silabas; s++) {
+                    nova.append(SILABAS[aleatorio.nextInt(SILABAS.length)]);
+                }
+                palavra = nova.toString();
+            } while (PALAVRAS_CHAVE.contains(palavra) || !vistas.add(palavra));
+            palavras[i] = palavra;
+        }
+    }
+    
+    private String palavra() {
+        return palavras[aleatorio.nextInt(palavras.length)];
+    }
+    
+    /**
+     * <func> → <tipo> ident (<parformais>) <declcomposto>
+     */
+    private void funcao(int n) {
+        boolean retornaInt = aleatorio.nextInt(5) != 0;
+        Funcao funcao = new Funcao(palavra() + "_" + n, retornaInt, n % 4 == 0);
+        atual = funcao;
+        comentarioBloco();
+        fonte.append(retornaInt ? "int " : "void ").append(funcao.nome).append('(');
+        
+        // Parâmetros e locais usam palavras distintas do vocabulário
+        Set<String> usadas = new HashSet<>();
+        int parametros = aleatorio.nextInt(4);
+        for (int i = 0; i < parametros; i++) {
+            String nome = palavraNova(usadas);
+            boolean vetor = aleatorio.nextInt(3) == 0;
+            if (i > 0) {
+                fonte.append(", ");
+            }
+            fonte.append("int ").append(nome).append(vetor ? "[]" : "");
+            funcao.parametrosVetor.add(vetor);
+            (vetor ? funcao.vetores : funcao.escalares).add(nome);
+        }
+        fonte.append(") {\n");
+        
+        // <declaraçõeslocais>: os contadores dos laços e algumas variáveis
+        for (int i = 0; i < profundidade; i++) {
+            fonte.append("    int i").append(i).append(";\n");
+        }
+        int parametrosEscalares = funcao.escalares.size();
+        int locais = 1 + aleatorio.nextInt(3);
+        for (int i = 0; i < locais; i++) {
+            String nome = palavraNova(usadas);
+            if (aleatorio.nextInt(4) == 0) {
+                fonte.append("    int ").append(nome).append('[').append(TAMANHO_VETOR).append("];\n");
+                funcao.vetores.add(nome);
+            } else {
+                fonte.append("    int ").append(nome).append(";\n");
+                funcao.escalares.add(nome);
+            }
+        }
+        // Contadores e escalares locais começam definidos
+        for (int i = 0; i < profundidade; i++) {
+            fonte.append("    i").append(i).append(" = 0;\n");
+        }
+        for (String escalar : funcao.escalares.subList(parametrosEscalares, funcao.escalares.size())) {
+            fonte.append("    ").append(escalar).append(" = ").append(aleatorio.nextInt(100)).append(";\n");
+        }
+        
+        // <listadecomandos>
+        int comandos = 2 + aleatorio.nextInt(5);
+        for (int i = 0; i < comandos; i++) {
+            comando(1);
+        }
+        if (retornaInt) {
+            fonte.append("    return ");
+            expressao(complexidade);
+            fonte.append(";\n");
+        }
+        fonte.append("}\n\n");
+        declaradas.add(funcao);
+    }
+    
+    /**
+     * Função main, que chama algumas das funções geradas
+     */
+    private void principal() {
+        Funcao funcao = new Funcao("main", true, false);
+        atual = funcao;
+        fonte.append("int main() {\n");
+        for (int i = 0; i < profundidade; i++) {
+            fonte.append("    int i").append(i).append(";\n");
+        }
+        fonte.append("    int total;\n");
+        for (int i = 0; i < profundidade; i++) {
+            fonte.append("    i").append(i).append(" = 0;\n");
+        }
+        fonte.append("    total = 0;\n");
+        funcao.escalares.add("total");
+        int chamadas = Math.min(declaradas.size(), 4);
+        for (int i = 0; i < chamadas; i++) {
+            Funcao chamada = declaradas.get(declaradas.size() - 1 - i);
+            indentar(1);
+            if (chamada.retornaInt) {
+                fonte.append("total = total + ");
+                chamada(chamada, complexidade);
+            } else {
+                chamada(chamada, complexidade);
+            }
+            fonte.append(";\n");
+        }
+        fonte.append("    return total;\n}\n");
+    }
+    
+    private String palavraNova(Set<String> usadas) {
+        // Vocabulários pequenos podem se esgotar: o sufixo mantém os nomes distintos
+        String nome = palavra();
+        while (!usadas.add(nome)) {
+            nome = palavra() + usadas.size();
+        }
+        return nome;
+    }
+    
+    /**
+     * <comando> → <comandoexpressão> | <comandocomposto> | <comandoseleção>
+     *           | <comandoiteração> | <comandoretorno>
+     */
+    private void comando(int nivel) {
+        comando(nivel, false);
+    }
+    
+    /**
+     * @param simples Se o comando deve ser uma única atribuição ou
+     *                chamada (corpo sem chaves, em que o laço, precedido
+     *                da inicialização do contador, não caberia)
+     */
+    private void comando(int nivel, boolean simples) {
+        if (aleatorio.nextDouble() < comentarios) {
+            indentar(nivel);
+            fonte.append("// ");
+            texto(3 + aleatorio.nextInt(6));
+            fonte.append('\n');
+        }
+        int inicio = fonte.length();
+        int escolha = nivel <= profundidade && !simples ? aleatorio.nextInt(10) : aleatorio.nextInt(5);
+        indentar(nivel);
+        if (escolha < 4) {
+            // <expressão> → <var> = <expressão>
+            atribuicao(complexidade);
+            fonte.append(";\n");
+        } else if (escolha == 4) {
+            chamadaComando();
+        } else if (escolha == 5) {
+            // <comandocomposto> → { <listadecomandos> }
+            fonte.append("{\n");
+            int comandos = 1 + aleatorio.nextInt(3);
+            for (int i = 0; i < comandos; i++) {
+                comando(nivel + 1);
+            }
+            indentar(nivel);
+            fonte.append("}\n");
+        } else if (escolha <= 7) {
+            // <comandoseleção>
+            fonte.append("if (");
+            condicao();
+            fonte.append(")\n");
+            corpo(nivel);
+            if (escolha == 7) {
+                indentar(nivel);
+                fonte.append("else\n");
+                corpo(nivel);
+            }
+        } else {
+            // <comandoiteração>, com contador do nível: termina sempre, e
+            // o contador fica abaixo do tamanho dos vetores
+            String contador = "i" + (nivel - 1);
+            fonte.append(contador).append(" = 0;\n");
+            indentar(nivel);
+            fonte.append("while (").append(contador).append(" < ")
+                 .append(1 + aleatorio.nextInt(TAMANHO_VETOR - 1)).append(") {\n");
+            int comandos = 1 + aleatorio.nextInt(3);
+            for (int i = 0; i < comandos; i++) {
+                comando(nivel + 1);
+            }
+            indentar(nivel + 1);
+            fonte.append(contador).append(" = ").append(contador).append(" + 1;\n");
+            indentar(nivel);
+            fonte.append("}\n");
+        }
+        if (aleatorio.nextDouble() < taxaErros) {
+            injetarErro(inicio);
+        }
+    }
+    
+    private void corpo(int nivel) {
+        if (aleatorio.nextBoolean()) {
+            comando(nivel + 1, true);
+        } else {
+            indentar(nivel);
+            fonte.append("{\n");
+            comando(nivel + 1);
+            indentar(nivel);
+            fonte.append("}\n");
+        }
+    }
+    
+    /**
+     * Atribui a um escalar ou a uma posição de vetor; os contadores dos
+     * laços não são alterados
+     */
+    private void atribuicao(int complexidade) {
+        List<String> vetores = vetoresVisiveis();
+        List<String> escalares = escalaresVisiveis(false);
+        if (escalares.isEmpty() || aleatorio.nextInt(4) == 0) {
+            fonte.append(vetores.get(aleatorio.nextInt(vetores.size())));
+            indice();
+        } else {
+            fonte.append(escalares.get(aleatorio.nextInt(escalares.size())));
+        }
+        fonte.append(" = ");
+        expressao(complexidade);
+    }
+    
+    private void chamadaComando() {
+        Funcao chamada = chamavel(false);
+        if (chamada == null) {
+            atribuicao(complexidade);
+        } else {
+            chamada(chamada, complexidade);
+        }
+        fonte.append(";\n");
+    }
+    
+    /**
+     * <expressãosimples> com operador relacional
+     */
+    private void condicao() {
+        expressao(complexidade - 1);
+        fonte.append(RELACIONAIS[aleatorio.nextInt(RELACIONAIS.length)]);
+        expressao(complexidade - 1);
+    }
+    
+    /**
+     * <expressõessoma> e <termo>: operações aritméticas até a
+     * profundidade indicada; divisões apenas por constantes não nulas
+     */
+    private void expressao(int nivel) {
+        if (nivel <= 0 || aleatorio.nextInt(4) == 0) {
+            fator(nivel);
+            return;
+        }
+        boolean parenteses = aleatorio.nextInt(3) == 0;
+        if (parenteses) {
+            fonte.append('(');
+        }
+        expressao(nivel - 1);
+        if (aleatorio.nextInt(6) == 0) {
+            fonte.append(" / ").append(1 + aleatorio.nextInt(9));
+        } else {
+            fonte.append(OPERADORES[aleatorio.nextInt(OPERADORES.length)]);
+            expressao(nivel - 1);
+        }
+        if (parenteses) {
+            fonte.append(')');
+        }
+    }
+    
+    /**
+     * <fator> → contint | <var> | <ativação>
+     */
+    private void fator(int nivel) {
+        int escolha = aleatorio.nextInt(10);
+        if (escolha < 3) {
+            fonte.append(aleatorio.nextInt(100));
+            return;
+        }
+        if (escolha < 8) {
+            List<String> escalares = escalaresVisiveis(true);
+            fonte.append(escalares.get(aleatorio.nextInt(escalares.size())));
+            return;
+        }
+        Funcao chamada = escolha == 9 && nivel > 0 ? chamavel(true) : null;
+        if (chamada != null) {
+            chamada(chamada, nivel - 1);
+        } else {
+            List<String> vetores = vetoresVisiveis();
+            fonte.append(vetores.get(aleatorio.nextInt(vetores.size())));
+            indice();
+        }
+    }
+    
+    /**
+     * Índice dentro dos limites: constante ou contador de laço
+     */
+    private void indice() {
+        fonte.append('[');
+        if (profundidade > 0 && aleatorio.nextBoolean()) {
+            fonte.append('i').append(aleatorio.nextInt(profundidade));
+        } else {
+            fonte.append(aleatorio.nextInt(TAMANHO_VETOR));
+        }
+        fonte.append(']');
+    }
+    
+    /**
+     * <ativação> → ident (<args>)
+     */
+    private void chamada(Funcao funcao, int nivel) {
+        fonte.append(funcao.nome).append('(');
+        List<String> vetores = vetoresVisiveis();
+        for (int i = 0; i < funcao.parametrosVetor.size(); i++) {
+            if (i > 0) {
+                fonte.append(", ");
+            }
+            if (funcao.parametrosVetor.get(i)) {
+                fonte.append(vetores.get(aleatorio.nextInt(vetores.size())));
+            } else {
+                expressao(Math.min(nivel, 1));
+            }
+        }
+        fonte.append(')');
+    }
+    
+    /**
+     * Sorteia uma função folha já declarada, ou retorna null se não há
+     * nenhuma que sirva
+     * @param emExpressao Se a chamada é parte de uma expressão (exige int)
+     */
+    private Funcao chamavel(boolean emExpressao) {
+        if (atual.folha || declaradas.isEmpty()) {
+            return null;
+        }
+        for (int tentativa = 0; tentativa < 4; tentativa++) {
+            Funcao funcao = declaradas.get(aleatorio.nextInt(declaradas.size()));
+            if (funcao.folha && (funcao.retornaInt || !emExpressao)) {
+                return funcao;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Escalares que podem ser lidos (incluindo os contadores) ou escritos
+     */
+    private List<String> escalaresVisiveis(boolean leitura) {
+        List<String> escalares = new ArrayList<>(atual.escalares);
+        escalares.addAll(escalaresGlobais);
+        if (leitura) {
+            for (int i = 0; i < profundidade; i++) {
+                escalares.add("i" + i);
+            }
+            if (escalares.isEmpty()) {
+                escalares.add("0");
+            }
+        }
+        return escalares;
+    }
+    
+    private List<String> vetoresVisiveis() {
+        List<String> vetores = new ArrayList<>(atual.vetores);
+        vetores.addAll(vetoresGlobais);
+        return vetores;
+    }
+    
+    // ========== Comentários e erros ==========
+    
+    private void comentarioBloco() {
+        if (aleatorio.nextDouble() >= comentarios) {
+            return;
+        }
+        fonte.append("/*\n");
+        int linhas = 1 + aleatorio.nextInt(5);
+        for (int i = 0; i < linhas; i++) {
+            fonte.append(" * ");
+            texto(4 + aleatorio.nextInt(8));
+            fonte.append('\n');
+        }
+        fonte.append(" */\n");
+    }
+    
+    private void texto(int palavras) {
+        for (int i = 0; i < palavras; i++) {
+            if (i > 0) {
+                fonte.append(' ');
+            }
+            fonte.append(palavra());
+        }
+    }
+    
+    /**
+     * Introduz um erro de sintaxe no comando que começa em 'inicio'. Todas
+     * as formas são sempre erros, qualquer que seja o contexto:
+     * - o ';' final trocado por ',';
+     * - um operador duplicado ("a + * b");
+     * - 'int' antes do comando, onde declarações não são permitidas.
+     */
+    private void injetarErro(int inicio) {
+        errosInjetados++;
+        int fim = fonte.length();
+        int escolha = aleatorio.nextInt(3);
+        if (escolha == 0 && fonte.charAt(fim - 2) == ';') {
+            fonte.setCharAt(fim - 2, ',');
+            return;
+        }
+        if (escolha == 1) {
+            for (String operador : OPERADORES) {
+                int posicao = fonte.indexOf(operador, inicio);
+                if (posicao >= 0) {
+                    fonte.insert(posicao + operador.length(), "* ");
+                    return;
+                }
+            }
+        }
+        int comando = inicio;
+        while (fonte.charAt(comando) == ' ') {
+            comando++;
+        }
+        fonte.insert(comando, "int ");
+    }
+    
+    private void indentar(int nivel) {
+        for (int i = 0; i < nivel; i++) {
+            fonte.append("    ");
+        }
+    }
+}
@@ -0,0 +1,409 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gramática LL(1) lida da notação do README (Parte 2), com os conjuntos
+ * FIRST e FOLLOW calculados como máscaras de bits sobre Token.Tipo e a
+ * tabela de parsing (não-terminal × tipo de token) usada por
+ * {@link ParserTabela}.
+ *
+ * Símbolos são inteiros: terminais são o ordinal do Token.Tipo
+ * (menores que {@link #TERMINAIS}) e o não-terminal i é TERMINAIS + i.
+ */
+public class Gramatica {
+    public static final int TERMINAIS = Token.Tipo.values().length;
+    
+    /**
+     * Cópia da gramática refatorada da Parte 2 do README.md
+     */
+    private static final String[] REGRAS_C_MENOS = {
+        "<programa> → <declaraçõeslista>",
+        "<declaraçõeslista> → <declarações> <declaraçõeslista'>",
+        "<declaraçõeslista'> → <declarações> <declaraçõeslista'> | ε",
+        "<declarações> → <tipo> ident <declarações'>",
+        "<declarações'> → ; | [contint]; | (<parformais>) <declcomposto>",
+        "<declaraçãovar> → <tipo> ident <declaraçãovar'>",
+        "<declaraçãovar'> → ; | [contint];",
+        "<tipo> → int | void",
+        "<parformais> → <listaparformais> | ε",
+        "<listaparformais> → <parametro> <listaparformais'>",
+        "<listaparformais'> → , <listaparformais> | ε",
+        "<parametro> → <tipo> ident <parametro'>",
+        "<parametro'> → [] | ε",
+        "<declcomposto> → { <declaraçõeslocais> <listadecomandos> }",
+        "<declaraçõeslocais> → <declaraçãovar> <declaraçõeslocais> | ε",
+        "<listadecomandos> → <comando> <listadecomandos> | ε",
+        "<comando> → <comandoexpressão> | <comandocomposto> | <comandoseleção> | <comandoiteração> | <comandoretorno>",
+        "<comandoexpressão> → <expressão>; | ;",
+        "<comandoiteração> → while (<expressão>) <comando>",
+        "<comandoseleção> → if (<expressão>) <comando> <comandoseleção'>",
+        "<comandoseleção'> → else <comando> | ε",
+        "<comandoretorno> → return <comandoretorno'>",
+        "<comandoretorno'> → ; | <expressão>;",
+        "<comandocomposto> → { <listadecomandos> }",
+        "<expressão> → ( <expressão> ) <termo'> <expressõessoma'> <expressãosimples'>",
+        "| contint <termo'> <expressõessoma'> <expressãosimples'>",
+        "| ident <expressãoident'>",
+        "<expressãoident'> → = <expressão>",
+        "| [ <expressão> ] <expressãoidentcolchete'>",
+        "| ( <args> ) <termo'> <expressõessoma'> <expressãosimples'>",
+        "| <termo'> <expressõessoma'> <expressãosimples'>",
+        "<expressãoidentcolchete'> → = <expressão>",
+        "| <termo'> <expressõessoma'> <expressãosimples'>",
+        "<expressãosimples> → <expressõessoma> <expressãosimples'>",
+        "<expressãosimples'> → <oprelacional> <expressõessoma> | ε",
+        "<oprelacional> → > | < | <= | >= | == | !=",
+        "<expressõessoma> → <termo> <expressõessoma'>",
+        "<expressõessoma'> → <opaditivo> <termo> <expressõessoma'> | ε",
+        "<opaditivo> → + | -",
+        "<termo> → <fator> <termo'>",
+        "<termo'> → <opmult> <fator> <termo'> | ε",
+        "<opmult> → * | /",
+        "<fator> → (<expressão>) | contint | ident <fatorident'>",
+        "<fatorident'> → [ <expressão> ] | ( <args> ) | ε",
+        "<args> → <argslista> | ε",
+        "<argslista> → <expressão> <argslista'>",
+        "<argslista'> → , <expressão> <argslista'> | ε"
+    };
+    
+    /**
+     * Gramática da linguagem C-
+     */
+    public static final Gramatica C_MENOS = ler(String.join("\n", REGRAS_C_MENOS));
+    
+    private final List<String> nomes = new ArrayList<>();
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final List<int[]> corpos = new ArrayList<>();
+    private final List<Integer> cabecas = new ArrayList<>();
+    private final List<String> conflitos = new ArrayList<>();
+    
+    private boolean[] anulaveis;
+    private long[] first;
+    private long[] follow;
+    // tabela[naoTerminal * TERMINAIS + tipo] = produção, ou -1 (erro)
+    private int[] tabela;
+    
+    private Gramatica() {
+    }
+    
+    /**
+     * Lê uma gramática na notação do README: uma regra por linha no
+     * formato "<A> → α | β", alternativas podendo continuar em linhas
+     * iniciadas por "|". O primeiro não-terminal é o símbolo inicial.
+     * Alternativas que se tornam idênticas ao mapear os símbolos para
+     * tipos de token (como "+ | -") são unificadas.
+     * @throws IllegalArgumentException se a gramática é inválida
+     */
+    public static Gramatica ler(CharSequence texto) {
+        Gramatica gramatica = new Gramatica();
+        int cabeca = -1;
+        boolean[] definidos = new boolean[0];
+        for (String linha : texto.toString().split("\n")) {
+            linha = linha.trim();
+            if (linha.isEmpty()) {
+                continue;
+            }
+            String corpo;
+            int seta = linha.indexOf('→');
+            if (seta >= 0) {
+                String nome = linha.substring(0, seta).trim();
+                if (!nome.startsWith("<") || !nome.endsWith(">")) {
+                    throw new IllegalArgumentException("Não-terminal inválido: " + nome);
+                }
+                cabeca = gramatica.indice(nome.substring(1, nome.length() - 1));
+                corpo = linha.substring(seta + 1);
+            } else if (linha.startsWith("|") && cabeca >= 0) {
+                corpo = linha.substring(1);
+            } else {
+                throw new IllegalArgumentException("Linha inválida na gramática: " + linha);
+            }
+            if (cabeca >= definidos.length) {
+                definidos = Arrays.copyOf(definidos, cabeca + 16);
+            }
+            definidos[cabeca] = true;
+            for (String alternativa : corpo.split("\\|")) {
+                gramatica.adicionarProducao(cabeca, gramatica.simbolos(alternativa));
+            }
+        }
+        for (int i = 0; i < gramatica.nomes.size(); i++) {
+            if (i >= definidos.length || !definidos[i]) {
+                throw new IllegalArgumentException("Não-terminal sem regras: <" + gramatica.nomes.get(i) + ">");
+            }
+        }
+        gramatica.calcularFirst();
+        gramatica.calcularFollow();
+        gramatica.construirTabela();
+        return gramatica;
+    }
+    
+    // ========== Leitura ==========
+    
+    private int indice(String nome) {
+        Integer indice = indices.get(nome);
+        if (indice == null) {
+            indice = nomes.size();
+            nomes.add(nome);
+            indices.put(nome, indice);
+        }
+        return indice;
+    }
+    
+    private void adicionarProducao(int cabeca, int[] corpo) {
+        for (int p = 0; p < corpos.size(); p++) {
+            if (cabecas.get(p) == cabeca && Arrays.equals(corpos.get(p), corpo)) {
+                return;
+            }
+        }
+        cabecas.add(cabeca);
+        corpos.add(corpo);
+    }
+    
+    /**
+     * Converte uma alternativa em sequência de símbolos
+     */
+    private int[] simbolos(String alternativa) {
+        int[] simbolos = new int[8];
+        int n = 0;
+        int i = 0;
+        while (i < alternativa.length()) {
+            char c = alternativa.charAt(i);
+            int simbolo;
+            if (Character.isWhitespace(c) || c == 'ε') {
+                i++;
+                continue;
+            } else if (c == '<' && i + 1 < alternativa.length() && Character.isLetter(alternativa.charAt(i + 1))) {
+                int fim = alternativa.indexOf('>', i);
+                if (fim < 0) {
+                    throw new IllegalArgumentException("Não-terminal sem '>': " + alternativa);
+                }
+                simbolo = TERMINAIS + indice(alternativa.substring(i + 1, fim));
+                i = fim + 1;
+            } else if (Character.isLetter(c)) {
+                int fim = i;
+                while (fim < alternativa.length() && Character.isLetter(alternativa.charAt(fim))) {
+                    fim++;
+                }
+                simbolo = terminal(alternativa.substring(i, fim)).ordinal();
+                i = fim;
+            } else {
+                int fim = i + 2 <= alternativa.length() && alternativa.charAt(i + 1) == '=' ? i + 2 : i + 1;
+                simbolo = terminal(alternativa.substring(i, fim)).ordinal();
+                i = fim;
+            }
+            if (n == simbolos.length) {
+                simbolos = Arrays.copyOf(simbolos, n * 2);
+            }
+            simbolos[n++] = simbolo;
+        }
+        return Arrays.copyOf(simbolos, n);
+    }
+    
+    /**
+     * Retorna o tipo de token correspondente a um terminal da notação
+     */
+    private static Token.Tipo terminal(String texto) {
+        switch (texto) {
+            case "int": return Token.Tipo.INT;
+            case "void": return Token.Tipo.VOID;
+            case "if": return Token.Tipo.IF;
+            case "else": return Token.Tipo.ELSE;
+            case "while": return Token.Tipo.WHILE;
+            case "return": return Token.Tipo.RETURN;
+            case "ident": return Token.Tipo.IDENT;
+            case "contint": return Token.Tipo.CONTINT;
+            case ">": case "<": case "<=": case ">=": case "==": case "!=": return Token.Tipo.OPRELACIONAL;
+            case "+": case "-": return Token.Tipo.OPADITIVO;
+            case "*": case "/": return Token.Tipo.OPMULT;
+            case "=": return Token.Tipo.ATRIBUICAO;
+            case ";": return Token.Tipo.PONTO_VIRGULA;
+            case ",": return Token.Tipo.VIRGULA;
+            case "(": return Token.Tipo.ABRE_PARENTESES;
+            case ")": return Token.Tipo.FECHA_PARENTESES;
+            case "[": return Token.Tipo.ABRE_COLCHETES;
+            case "]": return Token.Tipo.FECHA_COLCHETES;
+            case "{": return Token.Tipo.ABRE_CHAVES;
+            case "}": return Token.Tipo.FECHA_CHAVES;
+            default:
+                throw new IllegalArgumentException("Terminal desconhecido na gramática: " + texto);
+        }
+    }
+    
+    // ========== FIRST, FOLLOW e tabela ==========
+    
+    private void calcularFirst() {
+        int n = nomes.size();
+        anulaveis = new boolean[n];
+        first = new long[n];
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            for (int p = 0; p < corpos.size(); p++) {
+                int a = cabecas.get(p);
+                int[] corpo = corpos.get(p);
+                long bits = first[a] | firstSequencia(corpo, 0);
+                boolean anulavel = anulaveis[a] || anulavel(corpo, 0);
+                if (bits != first[a] || anulavel != anulaveis[a]) {
+                    first[a] = bits;
+                    anulaveis[a] = anulavel;
+                    mudou = true;
+                }
+            }
+        }
+    }
+    
+    private void calcularFollow() {
+        follow = new long[nomes.size()];
+        follow[0] = 1L << Token.Tipo.EOF.ordinal();
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            for (int p = 0; p < corpos.size(); p++) {
+                int[] corpo = corpos.get(p);
+                for (int i = 0; i < corpo.length; i++) {
+                    if (corpo[i] < TERMINAIS) {
+                        continue;
+                    }
+                    int b = corpo[i] - TERMINAIS;
+                    long bits = follow[b] | firstSequencia(corpo, i + 1);
+                    if (anulavel(corpo, i + 1)) {
+                        bits |= follow[cabecas.get(p)];
+                    }
+                    if (bits != follow[b]) {
+                        follow[b] = bits;
+                        mudou = true;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Preenche a tabela: primeiro pelos FIRST de cada produção, depois
+     * pelos FOLLOW das produções anuláveis, apenas nas células vazias.
+     * Assim um conflito FIRST/FOLLOW (o "else pendente") é resolvido a
+     * favor da produção que consome o token.
+     */
+    private void construirTabela() {
+        tabela = new int[nomes.size() * TERMINAIS];
+        Arrays.fill(tabela, -1);
+        for (int p = 0; p < corpos.size(); p++) {
+            preencher(p, firstSequencia(corpos.get(p), 0), "FIRST/FIRST");
+        }
+        for (int p = 0; p < corpos.size(); p++) {
+            if (anulavel(corpos.get(p), 0)) {
+                preencher(p, follow[cabecas.get(p)], "FIRST/FOLLOW");
+            }
+        }
+    }
+    
+    private void preencher(int p, long tipos, String tipoConflito) {
+        int a = cabecas.get(p);
+        for (long bits = tipos; bits != 0; bits &= bits - 1) {
+            int tipo = Long.numberOfTrailingZeros(bits);
+            int celula = a * TERMINAIS + tipo;
+            if (tabela[celula] < 0) {
+                tabela[celula] = p;
+            } else if (tabela[celula] != p) {
+                conflitos.add(String.format("Conflito %s em <%s> com %s: mantida a produção %d",
+                                            tipoConflito, nomes.get(a),
+                                            Diagnosticos.descrever(Token.Tipo.values()[tipo]), tabela[celula]));
+            }
+        }
+    }
+    
+    private long firstSequencia(int[] corpo, int de) {
+        long bits = 0;
+        for (int i = de; i < corpo.length; i++) {
+            if (corpo[i] < TERMINAIS) {
+                return bits | (1L << corpo[i]);
+            }
+            bits |= first[corpo[i] - TERMINAIS];
+            if (!anulaveis[corpo[i] - TERMINAIS]) {
+                return bits;
+            }
+        }
+        return bits;
+    }
+    
+    private boolean anulavel(int[] corpo, int de) {
+        for (int i = de; i < corpo.length; i++) {
+            if (corpo[i] < TERMINAIS || !anulaveis[corpo[i] - TERMINAIS]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // ========== Consulta ==========
+    
+    /**
+     * Retorna o símbolo inicial
+     */
+    public int getInicial() {
+        return TERMINAIS;
+    }
+    
+    /**
+     * Retorna a produção a aplicar para o não-terminal diante do tipo
+     * de token, ou -1 se o token não é esperado ali
+     * @param naoTerminal Índice do não-terminal (símbolo - TERMINAIS)
+     */
+    public int producao(int naoTerminal, int tipo) {
+        return tabela[naoTerminal * TERMINAIS + tipo];
+    }
+    
+    /**
+     * Retorna os símbolos do lado direito da produção
+     */
+    public int[] getCorpo(int producao) {
+        return corpos.get(producao);
+    }
+    
+    public int quantidadeProducoes() {
+        return corpos.size();
+    }
+    
+    public int quantidadeNaoTerminais() {
+        return nomes.size();
+    }
+    
+    public String getNome(int naoTerminal) {
+        return nomes.get(naoTerminal);
+    }
+    
+    public boolean isAnulavel(int naoTerminal) {
+        return anulaveis[naoTerminal];
+    }
+    
+    /**
+     * Retorna o FIRST do não-terminal como máscara de bits de Token.Tipo
+     */
+    public long getFirst(int naoTerminal) {
+        return first[naoTerminal];
+    }
+    
+    /**
+     * Retorna o FOLLOW do não-terminal como máscara de bits de Token.Tipo
+     */
+    public long getFollow(int naoTerminal) {
+        return follow[naoTerminal];
+    }
+    
+    /**
+     * Retorna os tipos de token aceitos onde o não-terminal é esperado
+     */
+    public long esperados(int naoTerminal) {
+        return anulaveis[naoTerminal] ? first[naoTerminal] | follow[naoTerminal] : first[naoTerminal];
+    }
+    
+    /**
+     * Retorna os conflitos encontrados ao montar a tabela e como foram
+     * resolvidos (na gramática de C-, apenas o do "else pendente")
+     */
+    public List<String> getConflitos() {
+        return conflitos;
+    }
+}
@@ -0,0 +1,236 @@
+import java.util.Arrays;
+
+/**
+ * Índice das posições de início de cada linha da fonte. O analisador
+ * léxico registra apenas posições; linha e coluna de um token são
+ * calculadas por busca binária neste índice quando alguém as pede
+ * (mensagens de erro, visões {@link Token}).
+ */
+public class IndiceLinhas {
+    private static final int CAPACIDADE_INICIAL = 256;
+    
+    // inicios[i] é a posição onde começa a linha (linhaBase + i)
+    private int[] inicios;
+    private int tamanho;
+    private int linhaBase;
+    
+    // Fonte em bytes, cujas colunas contam caracteres e não bytes
+    private FonteBytes bytes;
+    
+    // Deslocamento pendente após edições (ver BufferTokens.deslocar)
+    private int indicePendente = Integer.MAX_VALUE;
+    private int deltaPendente;
+    
+    /**
+     * Cria um índice contendo apenas a primeira linha, a ser preenchido
+     * durante a análise
+     */
+    public IndiceLinhas(CharSequence fonte) {
+        this.inicios = new int[CAPACIDADE_INICIAL];
+        this.inicios[0] = 0;
+        this.tamanho = 1;
+        this.linhaBase = 1;
+        this.bytes = fonte instanceof FonteBytes ? (FonteBytes) fonte : null;
+    }
+    
+    /**
+     * Cria o índice completo de uma fonte já disponível
+     */
+    public static IndiceLinhas de(CharSequence fonte) {
+        IndiceLinhas indice = new IndiceLinhas(fonte);
+        indice.registrarQuebras(fonte, 0, fonte.length());
+        return indice;
+    }
+    
+    /**
+     * Registra o início de uma linha. Posições que não estão além da
+     * última registrada são ignoradas (já constam no índice).
+     */
+    public void adicionar(int inicio) {
+        if (inicio <= getInicio(tamanho - 1)) {
+            return;
+        }
+        if (tamanho == inicios.length) {
+            inicios = Arrays.copyOf(inicios, tamanho * 2);
+        }
+        int i = tamanho++;
+        inicios[i] = i < indicePendente ? inicio : inicio - deltaPendente;
+    }
+    
+    /**
+     * Registra as linhas iniciadas após as quebras em [de, ate) da fonte
+     */
+    public void registrarQuebras(CharSequence fonte, int de, int ate) {
+        for (int i = Varredura.proximaQuebra(fonte, de, ate); i >= 0; i = Varredura.proximaQuebra(fonte, i + 1, ate)) {
+            adicionar(i + 1);
+        }
+    }
+    
+    /**
+     * Registra as linhas de outro índice da mesma fonte que começam
+     * depois da última registrada neste
+     */
+    public void anexar(IndiceLinhas origem) {
+        for (int i = 0; i < origem.tamanho; i++) {
+            adicionar(origem.getInicio(i));
+        }
+    }
+    
+    /**
+     * Retorna a linha (a partir de 1) que contém a posição
+     */
+    public int linha(int posicao) {
+        return linhaBase + indiceDe(posicao);
+    }
+    
+    /**
+     * Retorna a coluna (a partir de 1) da posição em sua linha
+     */
+    public int coluna(int posicao) {
+        int inicio = getInicio(indiceDe(posicao));
+        if (bytes != null) {
+            return bytes.contarCaracteres(inicio, posicao) + 1;
+        }
+        return posicao - inicio + 1;
+    }
+    
+    /**
+     * Retorna a posição onde começa a linha (a partir de 1)
+     */
+    public int inicioDaLinha(int linha) {
+        return getInicio(linha - linhaBase);
+    }
+    
+    /**
+     * Retorna a quantidade de linhas registradas
+     */
+    public int tamanho() {
+        return linhaBase - 1 + tamanho;
+    }
+    
+    /**
+     * Índice da linha que contém a posição; a última linha é testada
+     * primeiro, pois é a consultada durante a análise
+     */
+    private int indiceDe(int posicao) {
+        int ultima = tamanho - 1;
+        if (posicao >= getInicio(ultima)) {
+            return ultima;
+        }
+        int baixo = 0;
+        int alto = ultima;
+        while (baixo < alto) {
+            int meio = (baixo + alto + 1) >>> 1;
+            if (getInicio(meio) <= posicao) {
+                baixo = meio;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return baixo;
+    }
+    
+    private int getInicio(int i) {
+        return i < indicePendente ? inicios[i] : inicios[i] + deltaPendente;
+    }
+    
+    /**
+     * Esquece as linhas que terminam antes da posição (modo fluxo),
+     * mantendo a numeração das seguintes
+     */
+    public void descartarAte(int posicao) {
+        int i = indiceDe(posicao);
+        // Compacta apenas quando a maior parte do vetor é descartável
+        if (i > 0 && i * 2 >= inicios.length) {
+            System.arraycopy(inicios, i, inicios, 0, tamanho - i);
+            tamanho -= i;
+            linhaBase += i;
+            if (indicePendente != Integer.MAX_VALUE) {
+                indicePendente = Math.max(indicePendente - i, 0);
+            }
+        }
+    }
+    
+    // ========== Edição ==========
+    
+    /**
+     * Atualiza o índice após uma edição: remove as linhas iniciadas no
+     * trecho removido, registra as quebras do texto inserido e desloca
+     * as linhas seguintes (de forma pendente, como em BufferTokens)
+     * @param novaFonte Fonte já editada
+     */
+    public void editar(CharSequence novaFonte, int inicio, int removidos, int inseridos) {
+        int delta = inseridos - removidos;
+        bytes = novaFonte instanceof FonteBytes ? (FonteBytes) novaFonte : null;
+        int de = primeiroApos(inicio);
+        int ate = primeiroApos(inicio + removidos);
+        
+        // Quebras do texto inserido
+        int[] novas = new int[4];
+        int n = 0;
+        for (int i = Varredura.proximaQuebra(novaFonte, inicio, inicio + inseridos); i >= 0;
+             i = Varredura.proximaQuebra(novaFonte, i + 1, inicio + inseridos)) {
+            if (n == novas.length) {
+                novas = Arrays.copyOf(novas, n * 2);
+            }
+            novas[n++] = i + 1;
+        }
+        
+        if (indicePendente < ate) {
+            aplicarDeslocamento(indicePendente, de, deltaPendente);
+            indicePendente = ate;
+        }
+        int diferenca = n - (ate - de);
+        if (diferenca != 0) {
+            if (tamanho + diferenca > inicios.length) {
+                inicios = Arrays.copyOf(inicios, Math.max(inicios.length * 2, tamanho + diferenca));
+            }
+            System.arraycopy(inicios, ate, inicios, de + n, tamanho - ate);
+            tamanho += diferenca;
+            if (indicePendente != Integer.MAX_VALUE) {
+                indicePendente += diferenca;
+            }
+        }
+        System.arraycopy(novas, 0, inicios, de, n);
+        deslocar(de + n, delta);
+    }
+    
+    /**
+     * Índice da primeira linha que começa depois da posição
+     */
+    private int primeiroApos(int posicao) {
+        int baixo = 0;
+        int alto = tamanho;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (getInicio(meio) <= posicao) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+    
+    private void deslocar(int de, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (indicePendente == Integer.MAX_VALUE) {
+            indicePendente = de;
+        } else if (de >= indicePendente) {
+            aplicarDeslocamento(indicePendente, de, deltaPendente);
+            indicePendente = de;
+        } else {
+            aplicarDeslocamento(de, indicePendente, delta);
+        }
+        deltaPendente += delta;
+    }
+    
+    private void aplicarDeslocamento(int de, int ate, int delta) {
+        ate = Math.min(ate, tamanho);
+        for (int i = de; i < ate; i++) {
+            inicios[i] += delta;
+        }
+    }
+}
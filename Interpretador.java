@@ -0,0 +1,421 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StreamTokenizer;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Executa um {@link ProgramaBytecode} a partir da função main.
+ *
+ * Toda a memória do programa é um único int[]: as variáveis globais no
+ * início e, depois delas, a pilha de quadros das funções. Os endereços
+ * de vetores são índices nessa memória, válidos também quando ela cresce.
+ * O retorno de cada chamada (instrução, quadro e registrador de destino)
+ * fica em uma segunda pilha int[]. A execução é um único laço com um
+ * switch sobre o código de operação, sem recursão em Java: a
+ * profundidade das chamadas do programa C- é limitada apenas pela
+ * memória configurada. Os acessos a vetores conferem o índice com o
+ * tamanho do vetor, como o código gerado para a JVM.
+ *
+ * Uso: java Interpretador [-d | -j] arquivo
+ * Com -d, imprime o código desmontado em vez de executá-lo; com -j,
+ * executa o programa compilado para a JVM por {@link GeradorJvm}.
+ */
+public class Interpretador {
+    private static final int MEMORIA_INICIAL = 1 << 16;
+    private static final int LIMITE_PADRAO = 1 << 24;
+    
+    /**
+     * Erro durante a execução do programa C-, como divisão por zero ou
+     * estouro da pilha
+     */
+    public static final class ErroExecucao extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        private final int linha;
+        
+        /**
+         * @param linha Linha da fonte, ou 0 se desconhecida
+         */
+        public ErroExecucao(String mensagem, int linha) {
+            super(linha > 0 ? "Erro de execução na linha " + linha + ": " + mensagem
+                  : "Erro de execução: " + mensagem);
+            this.linha = linha;
+        }
+        
+        public int getLinha() {
+            return linha;
+        }
+    }
+    
+    private final ProgramaBytecode programa;
+    private IntSupplier entrada = Interpretador::lerEntradaPadrao;
+    private IntConsumer saida = System.out::println;
+    private int limiteMemoria = LIMITE_PADRAO;
+    private int[] memoria;
+    private int[] chamadas;
+    
+    private static StreamTokenizer entradaPadrao;
+    
+    public Interpretador(ProgramaBytecode programa) {
+        this.programa = programa;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        boolean desmontar = args.length == 2 && args[0].equals("-d");
+        boolean jvm = args.length == 2 && args[0].equals("-j");
+        if (args.length != 1 && !desmontar && !jvm) {
+            System.err.println("Uso: java Interpretador [-d | -j] arquivo");
+            System.exit(2);
+        }
+        Compilador.Analise analise = Compilador.analisarOuSair(Paths.get(args[args.length - 1]));
+        if (jvm) {
+            try {
+                System.exit(new GeradorJvm(analise.getArvore(), analise.getSemantico()).gerar().executar());
+            } catch (ErroExecucao e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+        ProgramaBytecode programa = new GeradorBytecode(analise.getArvore(), analise.getSemantico()).gerar();
+        if (desmontar) {
+            System.out.print(programa);
+            return;
+        }
+        try {
+            System.exit(new Interpretador(programa).executar());
+        } catch (ErroExecucao e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Define a origem dos valores de input(); por padrão, inteiros lidos
+     * da entrada padrão
+     */
+    public void setEntrada(IntSupplier entrada) {
+        this.entrada = entrada;
+    }
+    
+    /**
+     * Define o destino dos valores de output(); por padrão, uma linha por
+     * valor na saída padrão
+     */
+    public void setSaida(IntConsumer saida) {
+        this.saida = saida;
+    }
+    
+    /**
+     * Define o tamanho máximo da memória (globais e pilha), em posições
+     */
+    public void setLimiteMemoria(int limiteMemoria) {
+        this.limiteMemoria = limiteMemoria;
+    }
+    
+    /**
+     * Executa a função main
+     * @return o valor retornado por main (0 se ela é void)
+     * @throws ErroExecucao se o programa não tem main ou falha
+     */
+    public int executar() {
+        int principal = programa.getPrincipal();
+        if (principal < 0) {
+            throw new ErroExecucao("o programa não tem função main", 0);
+        }
+        int globais = programa.getGlobais();
+        int quadro = programa.getTamanhoQuadro(principal);
+        memoria = new int[Math.max(MEMORIA_INICIAL, globais + quadro)];
+        chamadas = new int[3 * 64];
+        return executar(programa.getCodigo(), programa.getEntrada(principal), globais);
+    }
+    
+    /**
+     * Laço de execução, a partir da instrução 'pc' com o quadro em 'fp'
+     */
+    private int executar(int[] c, int pc, int fp) {
+        int[] m = memoria;
+        int[] pilha = chamadas;
+        int[] entradas = programa.getEntradas();
+        int[] quadros = programa.getTamanhosQuadro();
+        int profundidade = 0;
+        try {
+            while (true) {
+                switch (c[pc]) {
+                    case ProgramaBytecode.CONST:
+                        m[fp + c[pc + 1]] = c[pc + 2];
+                        pc += 3;
+                        break;
+                    case ProgramaBytecode.MOV:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case ProgramaBytecode.ADD:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] + m[fp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.SUB:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] - m[fp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.MUL:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] * m[fp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.DIV:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] / m[fp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.ADDK:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] + c[pc + 3];
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.SUBK:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] - c[pc + 3];
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.MULK:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] * c[pc + 3];
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.DIVK:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] / c[pc + 3];
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.LT:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] < m[fp + c[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.LE:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] <= m[fp + c[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.GT:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] > m[fp + c[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.GE:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] >= m[fp + c[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.EQ:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] == m[fp + c[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.NE:
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2]] != m[fp + c[pc + 3]] ? 1 : 0;
+                        pc += 4;
+                        break;
+                    case ProgramaBytecode.JMP:
+                        pc = c[pc + 1];
+                        break;
+                    case ProgramaBytecode.JZ:
+                        pc = m[fp + c[pc + 1]] == 0 ? c[pc + 2] : pc + 3;
+                        break;
+                    case ProgramaBytecode.JNZ:
+                        pc = m[fp + c[pc + 1]] != 0 ? c[pc + 2] : pc + 3;
+                        break;
+                    case ProgramaBytecode.JLT:
+                        pc = m[fp + c[pc + 1]] < m[fp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JLE:
+                        pc = m[fp + c[pc + 1]] <= m[fp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JGT:
+                        pc = m[fp + c[pc + 1]] > m[fp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JGE:
+                        pc = m[fp + c[pc + 1]] >= m[fp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JEQ:
+                        pc = m[fp + c[pc + 1]] == m[fp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JNE:
+                        pc = m[fp + c[pc + 1]] != m[fp + c[pc + 2]] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JLTK:
+                        pc = m[fp + c[pc + 1]] < c[pc + 2] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JLEK:
+                        pc = m[fp + c[pc + 1]] <= c[pc + 2] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JGTK:
+                        pc = m[fp + c[pc + 1]] > c[pc + 2] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JGEK:
+                        pc = m[fp + c[pc + 1]] >= c[pc + 2] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JEQK:
+                        pc = m[fp + c[pc + 1]] == c[pc + 2] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.JNEK:
+                        pc = m[fp + c[pc + 1]] != c[pc + 2] ? c[pc + 3] : pc + 4;
+                        break;
+                    case ProgramaBytecode.LOADG:
+                        m[fp + c[pc + 1]] = m[c[pc + 2]];
+                        pc += 3;
+                        break;
+                    case ProgramaBytecode.STOREG:
+                        m[c[pc + 1]] = m[fp + c[pc + 2]];
+                        pc += 3;
+                        break;
+                    // Os índices são comparados sem sinal: um negativo fica acima do tamanho
+                    case ProgramaBytecode.LOADA: {
+                        int i = m[fp + c[pc + 3]];
+                        if (Integer.compareUnsigned(i, c[pc + 4]) >= 0) {
+                            throw foraDoVetor(pc);
+                        }
+                        m[fp + c[pc + 1]] = m[c[pc + 2] + i];
+                        pc += 5;
+                        break;
+                    }
+                    case ProgramaBytecode.STOREA: {
+                        int i = m[fp + c[pc + 2]];
+                        if (Integer.compareUnsigned(i, c[pc + 4]) >= 0) {
+                            throw foraDoVetor(pc);
+                        }
+                        m[c[pc + 1] + i] = m[fp + c[pc + 3]];
+                        pc += 5;
+                        break;
+                    }
+                    case ProgramaBytecode.LOADL: {
+                        int i = m[fp + c[pc + 3]];
+                        if (Integer.compareUnsigned(i, c[pc + 4]) >= 0) {
+                            throw foraDoVetor(pc);
+                        }
+                        m[fp + c[pc + 1]] = m[fp + c[pc + 2] + i];
+                        pc += 5;
+                        break;
+                    }
+                    case ProgramaBytecode.STOREL: {
+                        int i = m[fp + c[pc + 2]];
+                        if (Integer.compareUnsigned(i, c[pc + 4]) >= 0) {
+                            throw foraDoVetor(pc);
+                        }
+                        m[fp + c[pc + 1] + i] = m[fp + c[pc + 3]];
+                        pc += 5;
+                        break;
+                    }
+                    case ProgramaBytecode.LOADX: {
+                        int v = fp + c[pc + 2];
+                        int i = m[fp + c[pc + 3]];
+                        if (Integer.compareUnsigned(i, m[v + 1]) >= 0) {
+                            throw foraDoVetor(pc);
+                        }
+                        m[fp + c[pc + 1]] = m[m[v] + i];
+                        pc += 4;
+                        break;
+                    }
+                    case ProgramaBytecode.STOREX: {
+                        int v = fp + c[pc + 1];
+                        int i = m[fp + c[pc + 2]];
+                        if (Integer.compareUnsigned(i, m[v + 1]) >= 0) {
+                            throw foraDoVetor(pc);
+                        }
+                        m[m[v] + i] = m[fp + c[pc + 3]];
+                        pc += 4;
+                        break;
+                    }
+                    case ProgramaBytecode.ADDR:
+                        m[fp + c[pc + 1]] = fp + c[pc + 2];
+                        pc += 3;
+                        break;
+                    case ProgramaBytecode.ZERO:
+                        Arrays.fill(m, fp + c[pc + 1], fp + c[pc + 1] + c[pc + 2], 0);
+                        pc += 3;
+                        break;
+                    case ProgramaBytecode.CALL: {
+                        int funcao = c[pc + 1];
+                        int novo = fp + c[pc + 2];
+                        if (novo + quadros[funcao] > m.length) {
+                            m = crescerMemoria(novo + quadros[funcao], pc);
+                        }
+                        if (profundidade + 3 > pilha.length) {
+                            pilha = crescerChamadas(pc);
+                        }
+                        pilha[profundidade++] = pc + 4;
+                        pilha[profundidade++] = fp;
+                        pilha[profundidade++] = c[pc + 3];
+                        fp = novo;
+                        pc = entradas[funcao];
+                        break;
+                    }
+                    case ProgramaBytecode.RET:
+                    case ProgramaBytecode.RETV: {
+                        int valor = c[pc] == ProgramaBytecode.RET ? m[fp + c[pc + 1]] : 0;
+                        if (profundidade == 0) {
+                            return valor;
+                        }
+                        int destino = pilha[--profundidade];
+                        fp = pilha[--profundidade];
+                        pc = pilha[--profundidade];
+                        m[fp + destino] = valor;
+                        break;
+                    }
+                    case ProgramaBytecode.INPUT:
+                        m[fp + c[pc + 1]] = entrada.getAsInt();
+                        pc += 2;
+                        break;
+                    case ProgramaBytecode.OUTPUT:
+                        saida.accept(m[fp + c[pc + 1]]);
+                        pc += 2;
+                        break;
+                    default:
+                        throw new ErroExecucao("instrução inválida: " + c[pc], programa.getLinha(pc));
+                }
+            }
+        } catch (ArithmeticException e) {
+            throw new ErroExecucao("divisão por zero", programa.getLinha(pc));
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new ErroExecucao("acesso fora da memória", programa.getLinha(pc));
+        }
+    }
+    
+    private ErroExecucao foraDoVetor(int pc) {
+        return new ErroExecucao("acesso fora do vetor", programa.getLinha(pc));
+    }
+    
+    /**
+     * Aumenta a memória para comportar ao menos 'necessario' posições
+     */
+    private int[] crescerMemoria(int necessario, int pc) {
+        if (necessario > limiteMemoria) {
+            throw new ErroExecucao("estouro da pilha de chamadas", programa.getLinha(pc));
+        }
+        int capacidade = (int) Math.min(limiteMemoria, Math.max(necessario, 2L * memoria.length));
+        memoria = Arrays.copyOf(memoria, capacidade);
+        return memoria;
+    }
+    
+    /**
+     * Dobra a pilha de retornos, que também respeita o limite de memória
+     */
+    private int[] crescerChamadas(int pc) {
+        if (chamadas.length >= limiteMemoria) {
+            throw new ErroExecucao("estouro da pilha de chamadas", programa.getLinha(pc));
+        }
+        chamadas = Arrays.copyOf(chamadas, (int) Math.min(limiteMemoria, 2L * chamadas.length));
+        return chamadas;
+    }
+    
+    /**
+     * Lê o próximo inteiro da entrada padrão (0 no fim dela)
+     */
+    static int lerEntradaPadrao() {
+        try {
+            if (entradaPadrao == null) {
+                entradaPadrao = new StreamTokenizer(new BufferedReader(new InputStreamReader(System.in)));
+            }
+            if (entradaPadrao.nextToken() != StreamTokenizer.TT_NUMBER) {
+                return 0;
+            }
+            return (int) entradaPadrao.nval;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
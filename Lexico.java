@@ -1,23 +1,93 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Analisador Léxico para a linguagem C-
- * Converte código-fonte em uma lista de tokens
+ * Converte código-fonte em uma lista ou em um buffer compacto de tokens,
+ * ou entrega os tokens um a um (modo fluxo) através de {@link #proximoToken()}
  */
 public class Lexico {
-    private String codigo;
+    private static final int TAMANHO_BLOCO = 8192;
+    
+    // Caracteres por token em código típico (incluindo espaços), usado
+    // para dimensionar o buffer de tokens de uma vez
+    private static final int TAMANHO_MEDIO_TOKEN = 4;
+    
+    // Análise paralela: só compensa a partir deste tamanho de fonte, e
+    // cada tarefa analisa um trecho de ao menos este tamanho
+    private static final int MINIMO_PARALELO = 1 << 20;
+    private static final int CARACTERES_POR_TAREFA = 1 << 18;
+    
+    private CharSequence codigo;
     private int posicao;
-    private int linha;
-    private int coluna;
+    private IndiceLinhas linhas;
     private List<Token> tokens;
+    private TabelaNomes nomes;
+    private Diagnosticos diagnosticos;
+    private CharSequence fonteDiagnosticos;
+    
+    // Leitura em fluxo: quando a fonte é um Reader, 'codigo' é uma janela
+    // deslizante e 'descartados' é o deslocamento absoluto do seu início
+    private Reader leitor;
+    private StringBuilder janela;
+    private char[] bloco;
+    private int descartados;
+    private int limite;
+    private int retido = Integer.MAX_VALUE;
     
-    public Lexico(String codigo) {
+    // Último token reconhecido
+    private Token.Tipo tipoToken;
+    private int inicioToken;
+    private int idToken;
+    
+    // Análise paralela em trechos (null: sequencial)
+    private ForkJoinPool paralelo;
+    // Início do comentário de bloco em que a fonte (ou o trecho) acabou, ou -1
+    private int comentarioAberto = -1;
+    
+    public Lexico(CharSequence codigo) {
         this.codigo = codigo;
         this.posicao = 0;
-        this.linha = 1;
-        this.coluna = 1;
+        this.linhas = new IndiceLinhas(codigo);
         this.tokens = new ArrayList<>();
+        this.nomes = new TabelaNomes();
+        this.diagnosticos = new Diagnosticos();
+        this.limite = codigo.length();
+    }
+    
+    /**
+     * Cria um analisador que lê a fonte sob demanda, em blocos, mantendo
+     * em memória apenas o trecho a partir do token corrente
+     */
+    public Lexico(Reader leitor) {
+        this(new StringBuilder(TAMANHO_BLOCO));
+        this.leitor = leitor;
+        this.janela = (StringBuilder) codigo;
+        this.bloco = new char[TAMANHO_BLOCO];
+    }
+    
+    /**
+     * Cria um analisador que lê o arquivo mapeado em memória, byte a
+     * byte, sem decodificá-lo nem copiá-lo para uma String
+     */
+    public static Lexico deArquivo(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Arquivo muito grande para mapear (limite de 2 GB): " + arquivo);
+            }
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            return new Lexico(new FonteBytes(mapa));
+        }
     }
     
     /**
@@ -26,268 +96,847 @@ public class Lexico {
     public List<Token> analisar() {
         tokens.clear();
         
-        while (posicao < codigo.length()) {
-            pularEspacos();
+        Token token;
+        do {
+            token = proximoToken();
+            tokens.add(token);
+        } while (token.getTipo() != Token.Tipo.EOF);
+        
+        return tokens;
+    }
+    
+    /**
+     * Analisa o código-fonte inteiro para um buffer compacto de tokens,
+     * sem criar objetos por token. O texto dos tokens é extraído da
+     * fonte sob demanda, por isso a fonte lida de um Reader é mantida.
+     */
+    public BufferTokens analisarBuffer() {
+        Metricas.EventoLexico evento = new Metricas.EventoLexico();
+        evento.begin();
+        long inicio = Metricas.ATIVAS ? System.nanoTime() : 0;
+        long alocados = Metricas.ATIVAS ? Metricas.alocados() : 0;
+        
+        BufferTokens buffer = analisarTudo();
+        
+        // O EOF fica na posição do fim da fonte
+        int caracteres = buffer.getInicio(buffer.tamanho() - 1);
+        if (Metricas.ATIVAS) {
+            Metricas.registrarFase(Metricas.Fase.LEXICA, inicio, alocados, buffer.tamanho(), caracteres);
+        }
+        if (evento.shouldCommit()) {
+            evento.caracteres = caracteres;
+            evento.tokens = buffer.tamanho();
+            evento.erros = diagnosticos.tamanho();
+            evento.commit();
+        }
+        return buffer;
+    }
+    
+    private BufferTokens analisarTudo() {
+        retido = 0;
+        if (paralelo != null && leitor == null && posicao == 0 && limite >= MINIMO_PARALELO) {
+            Trechos trechos = Trechos.analisar(this);
+            // Já se sabe quantos tokens há, a menos de poucos reanalisados
+            BufferTokens buffer = new BufferTokens(codigo, nomes, linhas, trechos.totalTokens() + 256);
+            juntar(trechos, buffer);
+            return buffer;
+        }
+        BufferTokens buffer = new BufferTokens(getFonte(), nomes, linhas, Math.max(limite / TAMANHO_MEDIO_TOKEN, 256));
+        while (proximoToken(buffer) != Token.Tipo.EOF) {
+            // continua até o EOF
+        }
+        return buffer;
+    }
+    
+    /**
+     * Atualiza o buffer de tokens após uma edição na fonte, aplicando-a
+     * também à fonte do buffer (modificada no lugar se for um
+     * StringBuilder).
+     * @param inicio Posição da edição
+     * @param removidos Quantidade de caracteres removidos
+     * @param inserido Texto inserido no lugar
+     * @return a quantidade de tokens reanalisados
+     */
+    public static int reanalisar(BufferTokens tokens, int inicio, int removidos, CharSequence inserido) {
+        // O índice de linhas, se ainda não existe, vem da fonte anterior
+        tokens.getLinhas();
+        CharSequence fonte = tokens.getFonte();
+        if (fonte instanceof StringBuilder) {
+            ((StringBuilder) fonte).replace(inicio, inicio + removidos, inserido.toString());
+        } else {
+            fonte = new StringBuilder(fonte.length() - removidos + inserido.length())
+                .append(fonte, 0, inicio)
+                .append(inserido)
+                .append(fonte, inicio + removidos, fonte.length())
+                .toString();
+        }
+        return reanalisar(tokens, fonte, inicio, removidos, inserido.length());
+    }
+    
+    /**
+     * Atualiza o buffer de tokens após uma edição, reanalisando apenas o
+     * trecho afetado. A análise recomeça no fim do último token anterior
+     * à edição (onde o autômato está certamente no estado inicial, fora
+     * de comentários) e segue até um token novo terminar, já depois da
+     * edição, na mesma posição de um token antigo: daí em diante o texto
+     * e o estado são os mesmos, e os tokens antigos são mantidos com as
+     * posições deslocadas. Assim, abrir ou fechar um comentário de bloco
+     * reanalisa o quanto for preciso, e uma edição comum, só alguns tokens.
+     * @param novaFonte Fonte já editada
+     * @param inicio Posição da edição
+     * @param removidos Quantidade de caracteres removidos da fonte anterior
+     * @param inseridos Quantidade de caracteres inseridos em seu lugar
+     * @return a quantidade de tokens reanalisados
+     */
+    public static int reanalisar(BufferTokens tokens, CharSequence novaFonte,
+                                 int inicio, int removidos, int inseridos) {
+        int delta = inseridos - removidos;
+        int fimEdicao = inicio + inseridos;
+        
+        // Primeiro token que pode ter mudado: o que termina na edição ou depois
+        int primeiro = tokens.buscarTerminandoEm(inicio);
+        
+        // O índice de linhas é atualizado primeiro e compartilhado
+        IndiceLinhas linhas = tokens.getLinhas();
+        linhas.editar(novaFonte, inicio, removidos, inseridos);
+        Lexico lexico = new Lexico(novaFonte);
+        lexico.nomes = tokens.getNomes();
+        lexico.linhas = linhas;
+        if (primeiro > 0) {
+            int anterior = primeiro - 1;
+            lexico.posicao = tokens.getInicio(anterior) + tokens.getComprimento(anterior);
+        }
+        
+        BufferTokens novos = new BufferTokens(novaFonte, tokens.getNomes(), linhas, 16);
+        int ultimo = tokens.tamanho() - 1;
+        int antigo = primeiro;
+        while (lexico.proximoToken(novos) != Token.Tipo.EOF) {
+            int fimNovo = lexico.posicao;
+            if (fimNovo < fimEdicao) {
+                continue;
+            }
+            // Procura um token antigo que termine na posição correspondente
+            int fimAnterior = fimNovo - delta;
+            while (antigo < ultimo && tokens.getInicio(antigo) + tokens.getComprimento(antigo) < fimAnterior) {
+                antigo++;
+            }
+            if (antigo < ultimo && tokens.getInicio(antigo) + tokens.getComprimento(antigo) == fimAnterior) {
+                // Ressincronizado: o restante é igual, apenas deslocado
+                int n = novos.tamanho();
+                tokens.substituir(primeiro, antigo + 1, novos);
+                tokens.setFonte(novaFonte);
+                tokens.deslocar(primeiro + n, delta);
+                return n;
+            }
+        }
+        
+        // Chegou ao fim da fonte sem ressincronizar: substitui até o EOF
+        tokens.substituir(primeiro, ultimo + 1, novos);
+        tokens.setFonte(novaFonte);
+        return novos.tamanho();
+    }
+    
+    /**
+     * Reconhece e retorna o próximo token da fonte.
+     * Ao fim da fonte retorna sempre um token EOF.
+     */
+    public Token proximoToken() {
+        reconhecer();
+        String valor = idToken >= 0 ? nomes.nome(idToken) : texto(inicioToken, posicao);
+        return new Token(tipoToken, valor, linhas.linha(inicioToken), linhas.coluna(inicioToken), idToken);
+    }
+    
+    /**
+     * Reconhece o próximo token e o adiciona ao buffer
+     * @return o tipo do token adicionado
+     */
+    public Token.Tipo proximoToken(BufferTokens destino) {
+        reconhecer();
+        destino.adicionar(tipoToken, inicioToken, posicao - inicioToken, idToken);
+        return tipoToken;
+    }
+    
+    /**
+     * Ativa a análise paralela de {@link #analisarBuffer()} no pool
+     * indicado (null volta à sequencial). A fonte é dividida em trechos
+     * que começam em inícios de linha, analisados em paralelo como se
+     * cada um começasse fora de comentários, e os resultados são juntados
+     * em ordem. O resultado (tokens, ids dos nomes, linhas e erros) é
+     * idêntico ao da análise sequencial. Sem efeito no modo fluxo.
+     */
+    public void setParalelo(ForkJoinPool paralelo) {
+        this.paralelo = paralelo;
+    }
+    
+    /**
+     * Permite descartar o texto da fonte anterior à posição indicada
+     * (modo fluxo). Consumidores que guardam tokens em um buffer
+     * informam aqui o início do token mais antigo ainda em uso.
+     */
+    public void liberarAte(int posicao) {
+        retido = posicao;
+    }
+    
+    /**
+     * Retorna a tabela onde os identificadores são internados
+     */
+    public TabelaNomes getNomes() {
+        return nomes;
+    }
+    
+    /**
+     * Retorna o índice de linhas, preenchido durante a análise
+     */
+    public IndiceLinhas getLinhas() {
+        return linhas;
+    }
+    
+    /**
+     * Retorna os erros léxicos registrados
+     */
+    public Diagnosticos getDiagnosticos() {
+        return diagnosticos;
+    }
+    
+    /**
+     * Define onde os erros léxicos são registrados, permitindo
+     * compartilhar o coletor (e seu limite de erros) com o parser
+     */
+    public void setDiagnosticos(Diagnosticos diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
+    
+    /**
+     * Retorna a fonte indexada por posições absolutas. No modo fluxo,
+     * apenas o trecho ainda não descartado pode ser lido.
+     */
+    public CharSequence getFonte() {
+        if (leitor == null && descartados == 0) {
+            return codigo;
+        }
+        return new CharSequence() {
+            public int length() {
+                return limite;
+            }
             
-            if (posicao >= codigo.length()) {
-                break;
+            public char charAt(int indice) {
+                return charEm(indice);
             }
             
-            char atual = codigo.charAt(posicao);
+            public CharSequence subSequence(int inicio, int fim) {
+                return codigo.subSequence(inicio - descartados, fim - descartados);
+            }
             
-            // Identificadores e palavras-chave
-            if (Character.isLetter(atual) || atual == '_') {
-                processarIdentificador();
+            @Override
+            public String toString() {
+                return codigo.toString();
             }
-            // Números
-            else if (Character.isDigit(atual)) {
-                processarNumero();
+        };
+    }
+    
+    /**
+     * Reconhece o próximo token, deixando seu tipo e início em
+     * 'tipoToken' e 'inicioToken'. O fim do token é a posição atual.
+     * Apenas posições são acompanhadas; as quebras de linha consumidas
+     * são registradas no índice de linhas.
+     * 
+     * Um único laço percorre o autômato: a cada caractere, a classe é
+     * obtida de CLASSES e a ação de TRANSICOES, sem chamadas a
+     * Character.isXxx nem switch por símbolo.
+     */
+    private void reconhecer() {
+        CharSequence fonte = codigo;
+        int deslocamento = descartados;
+        int fim = limite;
+        int pos = posicao;
+        int inicio = pos;
+        int estado = E_INICIO;
+        
+        while (true) {
+            int classe;
+            char atual = 0;
+            if (pos < fim) {
+                atual = fonte.charAt(pos - deslocamento);
+                // Identificadores são só ASCII: fora dele nenhum caractere
+                // é letra, como na leitura por bytes de FonteBytes
+                classe = atual < 128 ? CLASSES[atual] : C_OUTRO;
+            } else {
+                // Dentro de comentário nada precisa ser mantido na janela
+                inicioToken = estado >= E_COMENTARIO_LINHA ? pos : inicio;
+                if (carregar(pos)) {
+                    deslocamento = descartados;
+                    fim = limite;
+                    continue;
+                }
+                classe = C_FIM;
             }
-            // Operadores e delimitadores
-            else {
-                processarSimbolo();
+            
+            int transicao = TRANSICOES[estado * NUM_CLASSES + classe];
+            int acao = transicao & 0xFF;
+            
+            if (acao == A_SEGUE) {
+                estado = transicao >>> 8;
+                if (estado == E_COMENTARIO_LINHA || estado == E_COMENTARIO_BLOCO) {
+                    // Consome o caractere e salta o corpo do comentário em bloco
+                    if (atual == '\n') {
+                        linhas.adicionar(pos + 1);
+                    }
+                    pos = pularComentario(fonte, deslocamento, pos + 1, fim, estado == E_COMENTARIO_BLOCO);
+                    continue;
+                }
+            } else if (acao == A_ACEITA || acao == A_ACEITA_CONSUMINDO) {
+                posicao = acao == A_ACEITA ? pos : pos + 1;
+                aceitar(TIPOS[transicao >>> 8], inicio);
+                return;
+            } else if (acao == A_FIM) {
+                posicao = pos;
+                comentarioAberto = estado == E_COMENTARIO_BLOCO || estado == E_COMENTARIO_ESTRELA ? inicio : -1;
+                aceitar(Token.Tipo.EOF, pos);
+                return;
+            } else {
+                if (acao == A_ERRO) {
+                    // Caractere inválido no início do token: descarta apenas ele,
+                    // com todas as posições que ocupa
+                    pos = inicio;
+                    atual = fonte.charAt(pos - deslocamento);
+                    int comprimento = comprimentoCaractere(fonte, pos - deslocamento, fim - deslocamento);
+                    if (!erro(pos, comprimento)) {
+                        // Limite de erros: encerra como se a fonte acabasse aqui
+                        leitor = null;
+                        fim = limite = pos + comprimento;
+                    }
+                    pos += comprimento - 1;
+                } else if (atual == '\n') {
+                    // Só espaços e comentários consomem quebras de linha
+                    linhas.adicionar(pos + 1);
+                }
+                // Espaço, fim de comentário ou erro: recomeça um token
+                estado = E_INICIO;
+                inicio = pos + 1;
             }
+            
+            // Consome o caractere atual
+            pos++;
+        }
+    }
+    
+    /**
+     * Salta o corpo de um comentário a partir de 'pos' usando as buscas
+     * em bloco de {@link Varredura}: até a quebra de linha (comentário de
+     * linha) ou até o '*' do terminador (comentário de bloco), registrando
+     * as quebras de linha saltadas. O autômato trata em seguida o
+     * caractere onde a busca parou; se o terminador não está no trecho
+     * carregado, para antes do último caractere, que pode ser um '*'.
+     * @return a nova posição
+     */
+    private int pularComentario(CharSequence fonte, int deslocamento, int pos, int fim, boolean bloco) {
+        int de = pos - deslocamento;
+        int ate = fim - deslocamento;
+        if (!bloco) {
+            int quebra = Varredura.proximaQuebra(fonte, de, ate);
+            return (quebra >= 0 ? quebra : ate) + deslocamento;
         }
         
-        // Adiciona token EOF
-        tokens.add(new Token(Token.Tipo.EOF, "", linha, coluna));
-        
-        return tokens;
+        int alvo = Varredura.fimComentario(fonte, de, ate);
+        if (alvo < 0) {
+            alvo = Math.max(de, ate - 1);
+        }
+        for (int i = Varredura.proximaQuebra(fonte, de, alvo); i >= 0; i = Varredura.proximaQuebra(fonte, i + 1, alvo)) {
+            linhas.adicionar(i + 1 + deslocamento);
+        }
+        return alvo + deslocamento;
+    }
+    
+    /**
+     * Registra o token reconhecido, distinguindo palavras-chave de
+     * identificadores e internando estes
+     */
+    private void aceitar(Token.Tipo tipo, int inicio) {
+        idToken = -1;
+        if (tipo == Token.Tipo.IDENT) {
+            Token.Tipo palavraChave = identificarPalavraChave(inicio, posicao);
+            if (palavraChave != null) {
+                tipo = palavraChave;
+            } else {
+                idToken = nomes.internar(codigo, inicio - descartados, posicao - descartados);
+            }
+        }
+        tipoToken = tipo;
+        inicioToken = inicio;
     }
     
     /**
-     * Processa identificadores e palavras-chave
+     * Identifica se o trecho [inicio, fim) da fonte é uma palavra-chave.
+     * Um hash perfeito sobre o comprimento e os dois primeiros caracteres
+     * escolhe a única candidata, comparada em seguida caractere a
+     * caractere, sem criar String.
      */
-    private void processarIdentificador() {
-        int inicio = posicao;
-        int colInicio = coluna;
+    private Token.Tipo identificarPalavraChave(int inicio, int fim) {
+        int comprimento = fim - inicio;
+        if (comprimento < 2 || comprimento > 6) {
+            return null;
+        }
+        int h = hashPalavraChave(charEm(inicio), charEm(inicio + 1), comprimento);
+        String candidata = PALAVRAS_CHAVE[h];
+        if (candidata == null || candidata.length() != comprimento || !coincide(inicio, candidata)) {
+            return null;
+        }
+        return TIPOS_PALAVRAS_CHAVE[h];
+    }
+    
+    private static int hashPalavraChave(char primeiro, char segundo, int comprimento) {
+        return (primeiro + segundo + comprimento) & 15;
+    }
+    
+    /**
+     * Compara a fonte a partir de 'inicio' com a palavra indicada
+     */
+    private boolean coincide(int inicio, String palavra) {
+        for (int i = 0; i < palavra.length(); i++) {
+            if (charEm(inicio + i) != palavra.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // ========== Autômato ==========
+    
+    // Classes de caracteres
+    private static final int C_OUTRO = 0;
+    private static final int C_LETRA = 1;
+    private static final int C_DIGITO = 2;
+    private static final int C_ESPACO = 3;
+    private static final int C_QUEBRA = 4;
+    private static final int C_IGUAL = 5;
+    private static final int C_EXCLAMACAO = 6;
+    private static final int C_MENOR_MAIOR = 7;
+    private static final int C_ADITIVO = 8;
+    private static final int C_ASTERISCO = 9;
+    private static final int C_BARRA = 10;
+    private static final int C_PONTO_VIRGULA = 11;
+    private static final int C_VIRGULA = 12;
+    private static final int C_ABRE_PARENTESES = 13;
+    private static final int C_FECHA_PARENTESES = 14;
+    private static final int C_ABRE_COLCHETES = 15;
+    private static final int C_FECHA_COLCHETES = 16;
+    private static final int C_ABRE_CHAVES = 17;
+    private static final int C_FECHA_CHAVES = 18;
+    private static final int C_FIM = 19;
+    private static final int NUM_CLASSES = 20;
+    
+    // Estados (os de comentário ficam por último)
+    private static final int E_INICIO = 0;
+    private static final int E_IDENT = 1;
+    private static final int E_NUMERO = 2;
+    private static final int E_IGUAL = 3;
+    private static final int E_EXCLAMACAO = 4;
+    private static final int E_RELACIONAL = 5;
+    private static final int E_BARRA = 6;
+    private static final int E_COMENTARIO_LINHA = 7;
+    private static final int E_COMENTARIO_BLOCO = 8;
+    private static final int E_COMENTARIO_ESTRELA = 9;
+    private static final int NUM_ESTADOS = 10;
+    
+    // Ações (byte baixo da transição; o restante é o argumento)
+    private static final int A_SEGUE = 0;             // consome e vai ao estado
+    private static final int A_ACEITA = 1;            // aceita o token sem consumir
+    private static final int A_ACEITA_CONSUMINDO = 2; // consome e aceita o token
+    private static final int A_DESCARTA = 3;          // consome e recomeça (espaços, comentários)
+    private static final int A_ERRO = 4;              // caractere inválido no início do token
+    private static final int A_FIM = 5;               // fim da fonte
+    
+    private static final Token.Tipo[] TIPOS = Token.Tipo.values();
+    
+    // Palavras-chave indexadas pelo hash perfeito
+    private static final String[] PALAVRAS_CHAVE = new String[16];
+    private static final Token.Tipo[] TIPOS_PALAVRAS_CHAVE = new Token.Tipo[16];
+    private static final byte[] CLASSES = new byte[128];
+    private static final int[] TRANSICOES = new int[NUM_ESTADOS * NUM_CLASSES];
+    
+    static {
+        palavraChave("int", Token.Tipo.INT);
+        palavraChave("void", Token.Tipo.VOID);
+        palavraChave("if", Token.Tipo.IF);
+        palavraChave("else", Token.Tipo.ELSE);
+        palavraChave("while", Token.Tipo.WHILE);
+        palavraChave("return", Token.Tipo.RETURN);
         
-        while (posicao < codigo.length() && 
-               (Character.isLetterOrDigit(codigo.charAt(posicao)) || 
-                codigo.charAt(posicao) == '_')) {
-            avancar();
+        for (char c = 0; c < 128; c++) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_') {
+                CLASSES[c] = C_LETRA;
+            } else if (c >= '0' && c <= '9') {
+                CLASSES[c] = C_DIGITO;
+            } else if (Character.isWhitespace(c)) {
+                CLASSES[c] = C_ESPACO;
+            }
         }
+        CLASSES['\n'] = C_QUEBRA;
+        CLASSES['='] = C_IGUAL;
+        CLASSES['!'] = C_EXCLAMACAO;
+        CLASSES['<'] = C_MENOR_MAIOR;
+        CLASSES['>'] = C_MENOR_MAIOR;
+        CLASSES['+'] = C_ADITIVO;
+        CLASSES['-'] = C_ADITIVO;
+        CLASSES['*'] = C_ASTERISCO;
+        CLASSES['/'] = C_BARRA;
+        CLASSES[';'] = C_PONTO_VIRGULA;
+        CLASSES[','] = C_VIRGULA;
+        CLASSES['('] = C_ABRE_PARENTESES;
+        CLASSES[')'] = C_FECHA_PARENTESES;
+        CLASSES['['] = C_ABRE_COLCHETES;
+        CLASSES[']'] = C_FECHA_COLCHETES;
+        CLASSES['{'] = C_ABRE_CHAVES;
+        CLASSES['}'] = C_FECHA_CHAVES;
         
-        String valor = codigo.substring(inicio, posicao);
-        Token.Tipo tipo = identificarPalavraChave(valor);
+        // <INICIO>
+        transicao(E_INICIO, C_OUTRO, A_ERRO, 0);
+        transicao(E_INICIO, C_LETRA, A_SEGUE, E_IDENT);
+        transicao(E_INICIO, C_DIGITO, A_SEGUE, E_NUMERO);
+        transicao(E_INICIO, C_ESPACO, A_DESCARTA, 0);
+        transicao(E_INICIO, C_QUEBRA, A_DESCARTA, 0);
+        transicao(E_INICIO, C_IGUAL, A_SEGUE, E_IGUAL);
+        transicao(E_INICIO, C_EXCLAMACAO, A_SEGUE, E_EXCLAMACAO);
+        transicao(E_INICIO, C_MENOR_MAIOR, A_SEGUE, E_RELACIONAL);
+        transicao(E_INICIO, C_ADITIVO, A_ACEITA_CONSUMINDO, Token.Tipo.OPADITIVO);
+        transicao(E_INICIO, C_ASTERISCO, A_ACEITA_CONSUMINDO, Token.Tipo.OPMULT);
+        transicao(E_INICIO, C_BARRA, A_SEGUE, E_BARRA);
+        transicao(E_INICIO, C_PONTO_VIRGULA, A_ACEITA_CONSUMINDO, Token.Tipo.PONTO_VIRGULA);
+        transicao(E_INICIO, C_VIRGULA, A_ACEITA_CONSUMINDO, Token.Tipo.VIRGULA);
+        transicao(E_INICIO, C_ABRE_PARENTESES, A_ACEITA_CONSUMINDO, Token.Tipo.ABRE_PARENTESES);
+        transicao(E_INICIO, C_FECHA_PARENTESES, A_ACEITA_CONSUMINDO, Token.Tipo.FECHA_PARENTESES);
+        transicao(E_INICIO, C_ABRE_COLCHETES, A_ACEITA_CONSUMINDO, Token.Tipo.ABRE_COLCHETES);
+        transicao(E_INICIO, C_FECHA_COLCHETES, A_ACEITA_CONSUMINDO, Token.Tipo.FECHA_COLCHETES);
+        transicao(E_INICIO, C_ABRE_CHAVES, A_ACEITA_CONSUMINDO, Token.Tipo.ABRE_CHAVES);
+        transicao(E_INICIO, C_FECHA_CHAVES, A_ACEITA_CONSUMINDO, Token.Tipo.FECHA_CHAVES);
+        transicao(E_INICIO, C_FIM, A_FIM, 0);
         
-        if (tipo == null) {
-            tipo = Token.Tipo.IDENT;
-        }
+        // ident: letra (letra | dígito)*
+        padrao(E_IDENT, A_ACEITA, Token.Tipo.IDENT);
+        transicao(E_IDENT, C_LETRA, A_SEGUE, E_IDENT);
+        transicao(E_IDENT, C_DIGITO, A_SEGUE, E_IDENT);
+        
+        // contint: dígito+
+        padrao(E_NUMERO, A_ACEITA, Token.Tipo.CONTINT);
+        transicao(E_NUMERO, C_DIGITO, A_SEGUE, E_NUMERO);
+        
+        // = ou ==
+        padrao(E_IGUAL, A_ACEITA, Token.Tipo.ATRIBUICAO);
+        transicao(E_IGUAL, C_IGUAL, A_ACEITA_CONSUMINDO, Token.Tipo.OPRELACIONAL);
         
-        tokens.add(new Token(tipo, valor, linha, colInicio));
+        // != (um '!' isolado é inválido)
+        padrao(E_EXCLAMACAO, A_ERRO, 0);
+        transicao(E_EXCLAMACAO, C_IGUAL, A_ACEITA_CONSUMINDO, Token.Tipo.OPRELACIONAL);
+        
+        // <, >, <= ou >=
+        padrao(E_RELACIONAL, A_ACEITA, Token.Tipo.OPRELACIONAL);
+        transicao(E_RELACIONAL, C_IGUAL, A_ACEITA_CONSUMINDO, Token.Tipo.OPRELACIONAL);
+        
+        // /, // ou /*
+        padrao(E_BARRA, A_ACEITA, Token.Tipo.OPMULT);
+        transicao(E_BARRA, C_BARRA, A_SEGUE, E_COMENTARIO_LINHA);
+        transicao(E_BARRA, C_ASTERISCO, A_SEGUE, E_COMENTARIO_BLOCO);
+        
+        // Comentário de linha: até o fim da linha
+        padrao(E_COMENTARIO_LINHA, A_SEGUE, E_COMENTARIO_LINHA);
+        transicao(E_COMENTARIO_LINHA, C_QUEBRA, A_DESCARTA, 0);
+        transicao(E_COMENTARIO_LINHA, C_FIM, A_FIM, 0);
+        
+        // Comentário de bloco: até */
+        padrao(E_COMENTARIO_BLOCO, A_SEGUE, E_COMENTARIO_BLOCO);
+        transicao(E_COMENTARIO_BLOCO, C_ASTERISCO, A_SEGUE, E_COMENTARIO_ESTRELA);
+        transicao(E_COMENTARIO_BLOCO, C_FIM, A_FIM, 0);
+        padrao(E_COMENTARIO_ESTRELA, A_SEGUE, E_COMENTARIO_BLOCO);
+        transicao(E_COMENTARIO_ESTRELA, C_ASTERISCO, A_SEGUE, E_COMENTARIO_ESTRELA);
+        transicao(E_COMENTARIO_ESTRELA, C_BARRA, A_DESCARTA, 0);
+        transicao(E_COMENTARIO_ESTRELA, C_FIM, A_FIM, 0);
     }
     
     /**
-     * Identifica se uma string é uma palavra-chave
+     * Registra uma palavra-chave na posição dada pelo hash perfeito
      */
-    private Token.Tipo identificarPalavraChave(String palavra) {
-        switch (palavra) {
-            case "int": return Token.Tipo.INT;
-            case "void": return Token.Tipo.VOID;
-            case "if": return Token.Tipo.IF;
-            case "else": return Token.Tipo.ELSE;
-            case "while": return Token.Tipo.WHILE;
-            case "return": return Token.Tipo.RETURN;
-            default: return null;
+    private static void palavraChave(String palavra, Token.Tipo tipo) {
+        int h = hashPalavraChave(palavra.charAt(0), palavra.charAt(1), palavra.length());
+        if (PALAVRAS_CHAVE[h] != null) {
+            throw new IllegalStateException("Colisão no hash de palavras-chave: " + palavra);
         }
+        PALAVRAS_CHAVE[h] = palavra;
+        TIPOS_PALAVRAS_CHAVE[h] = tipo;
     }
     
     /**
-     * Processa números inteiros
+     * Define a transição de um estado para uma classe de caracteres
      */
-    private void processarNumero() {
-        int inicio = posicao;
-        int colInicio = coluna;
-        
-        while (posicao < codigo.length() && Character.isDigit(codigo.charAt(posicao))) {
-            avancar();
+    private static void transicao(int estado, int classe, int acao, int argumento) {
+        TRANSICOES[estado * NUM_CLASSES + classe] = (argumento << 8) | acao;
+    }
+    
+    private static void transicao(int estado, int classe, int acao, Token.Tipo tipo) {
+        transicao(estado, classe, acao, tipo.ordinal());
+    }
+    
+    /**
+     * Define a mesma transição para todas as classes de um estado
+     */
+    private static void padrao(int estado, int acao, int argumento) {
+        for (int classe = 0; classe < NUM_CLASSES; classe++) {
+            transicao(estado, classe, acao, argumento);
         }
-        
-        String valor = codigo.substring(inicio, posicao);
-        tokens.add(new Token(Token.Tipo.CONTINT, valor, linha, colInicio));
+    }
+    
+    private static void padrao(int estado, int acao, Token.Tipo tipo) {
+        padrao(estado, acao, tipo.ordinal());
+    }
+    
+    // ========== Acesso à fonte ==========
+    
+    /**
+     * Retorna o caractere na posição absoluta indicada
+     */
+    private char charEm(int pos) {
+        return codigo.charAt(pos - descartados);
     }
     
     /**
-     * Processa símbolos (operadores e delimitadores)
+     * Retorna o texto entre as posições absolutas [inicio, fim)
      */
-    private void processarSimbolo() {
-        int colInicio = coluna;
-        char atual = codigo.charAt(posicao);
+    private String texto(int inicio, int fim) {
+        return codigo.subSequence(inicio - descartados, fim - descartados).toString();
+    }
+    
+    /**
+     * Verifica se há caractere na posição indicada, lendo mais um
+     * bloco do Reader quando necessário
+     */
+    private boolean disponivel(int pos) {
+        return pos < limite || carregar(pos);
+    }
+    
+    /**
+     * Descarta da janela o que precede o token corrente e lê blocos
+     * do Reader até cobrir a posição indicada ou chegar ao fim
+     */
+    private boolean carregar(int pos) {
+        if (leitor == null) {
+            return false;
+        }
         
-        switch (atual) {
-            case ';':
-                tokens.add(new Token(Token.Tipo.PONTO_VIRGULA, ";", linha, colInicio));
-                avancar();
-                break;
-                
-            case ',':
-                tokens.add(new Token(Token.Tipo.VIRGULA, ",", linha, colInicio));
-                avancar();
-                break;
-                
-            case '(':
-                tokens.add(new Token(Token.Tipo.ABRE_PARENTESES, "(", linha, colInicio));
-                avancar();
-                break;
-                
-            case ')':
-                tokens.add(new Token(Token.Tipo.FECHA_PARENTESES, ")", linha, colInicio));
-                avancar();
-                break;
-                
-            case '[':
-                tokens.add(new Token(Token.Tipo.ABRE_COLCHETES, "[", linha, colInicio));
-                avancar();
-                break;
-                
-            case ']':
-                tokens.add(new Token(Token.Tipo.FECHA_COLCHETES, "]", linha, colInicio));
-                avancar();
-                break;
-                
-            case '{':
-                tokens.add(new Token(Token.Tipo.ABRE_CHAVES, "{", linha, colInicio));
-                avancar();
-                break;
-                
-            case '}':
-                tokens.add(new Token(Token.Tipo.FECHA_CHAVES, "}", linha, colInicio));
-                avancar();
-                break;
-                
-            case '=':
-                if (proximoChar() == '=') {
-                    tokens.add(new Token(Token.Tipo.OPRELACIONAL, "==", linha, colInicio));
-                    avancar(); // consome o segundo '='
-                    avancar();
-                } else {
-                    tokens.add(new Token(Token.Tipo.ATRIBUICAO, "=", linha, colInicio));
-                    avancar();
-                }
-                break;
-                
-            case '!':
-                if (proximoChar() == '=') {
-                    tokens.add(new Token(Token.Tipo.OPRELACIONAL, "!=", linha, colInicio));
-                    avancar(); // consome o '='
-                    avancar();
-                } else {
-                    erro("Caractere inesperado: !");
-                    avancar();
-                }
-                break;
-                
-            case '<':
-                if (proximoChar() == '=') {
-                    tokens.add(new Token(Token.Tipo.OPRELACIONAL, "<=", linha, colInicio));
-                    avancar(); // consome o '='
-                    avancar();
-                } else {
-                    tokens.add(new Token(Token.Tipo.OPRELACIONAL, "<", linha, colInicio));
-                    avancar();
-                }
-                break;
-                
-            case '>':
-                if (proximoChar() == '=') {
-                    tokens.add(new Token(Token.Tipo.OPRELACIONAL, ">=", linha, colInicio));
-                    avancar(); // consome o '='
-                    avancar();
-                } else {
-                    tokens.add(new Token(Token.Tipo.OPRELACIONAL, ">", linha, colInicio));
-                    avancar();
-                }
-                break;
-                
-            case '+':
-                tokens.add(new Token(Token.Tipo.OPADITIVO, "+", linha, colInicio));
-                avancar();
-                break;
-                
-            case '-':
-                tokens.add(new Token(Token.Tipo.OPADITIVO, "-", linha, colInicio));
-                avancar();
-                break;
-                
-            case '*':
-                tokens.add(new Token(Token.Tipo.OPMULT, "*", linha, colInicio));
-                avancar();
-                break;
-                
-            case '/':
-                if (proximoChar() == '/') {
-                    // Comentário de linha: ignora até o fim da linha
-                    while (posicao < codigo.length() && codigo.charAt(posicao) != '\n') {
-                        avancar();
-                    }
-                } else if (proximoChar() == '*') {
-                    // Comentário de bloco: ignora até */
-                    avancar(); // consome o '*'
-                    avancar(); // consome o '/'
-                    while (posicao < codigo.length()) {
-                        if (codigo.charAt(posicao) == '*' && 
-                            posicao + 1 < codigo.length() && 
-                            codigo.charAt(posicao + 1) == '/') {
-                            avancar(); // consome o '*'
-                            avancar(); // consome o '/'
-                            break;
-                        }
-                        avancar();
-                    }
-                } else {
-                    tokens.add(new Token(Token.Tipo.OPMULT, "/", linha, colInicio));
-                    avancar();
+        int descarte = Math.min(inicioToken, retido);
+        if (descarte > descartados) {
+            janela.delete(0, descarte - descartados);
+            descartados = descarte;
+            linhas.descartarAte(descarte);
+        }
+        
+        try {
+            while (pos >= limite) {
+                int lidos = leitor.read(bloco);
+                if (lidos < 0) {
+                    leitor = null;
+                    return false;
                 }
-                break;
-                
-            default:
-                erro("Caractere inesperado: " + atual);
-                avancar();
-                break;
+                janela.append(bloco, 0, lidos);
+                limite += lidos;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return true;
     }
     
     /**
-     * Retorna o próximo caractere sem consumir
+     * Retorna quantas posições da fonte ocupa o caractere em 'i': os bytes
+     * de uma sequência UTF-8 em FonteBytes, ou os dois chars de um par
+     * substituto, para que um caractere inválido gere um único erro nos
+     * dois tipos de fonte
      */
-    private char proximoChar() {
-        if (posicao + 1 < codigo.length()) {
-            return codigo.charAt(posicao + 1);
+    private static int comprimentoCaractere(CharSequence fonte, int i, int fim) {
+        if (fonte instanceof FonteBytes) {
+            return ((FonteBytes) fonte).comprimentoSequencia(i, fim);
         }
-        return '\0';
+        if (Character.isHighSurrogate(fonte.charAt(i)) && i + 1 < fim
+            && Character.isLowSurrogate(fonte.charAt(i + 1))) {
+            return 2;
+        }
+        return 1;
     }
     
     /**
-     * Avança a posição atual
+     * Registra um caractere inesperado na posição indicada
+     * @param comprimento Posições da fonte que o caractere ocupa
+     * @return false se o limite de erros foi atingido
      */
-    private void avancar() {
-        if (posicao < codigo.length()) {
-            if (codigo.charAt(posicao) == '\n') {
-                linha++;
-                coluna = 1;
-            } else {
-                coluna++;
+    private boolean erro(int pos, int comprimento) {
+        if (fonteDiagnosticos == null) {
+            fonteDiagnosticos = getFonte();
+        }
+        return diagnosticos.registrar(Diagnosticos.Codigo.CARACTERE_INESPERADO, null, pos, comprimento,
+                                      linhas.linha(pos), linhas.coluna(pos), 0, fonteDiagnosticos, null);
+    }
+    
+    // ========== Análise paralela ==========
+    
+    /**
+     * Junta ao buffer, em ordem, os tokens dos trechos analisados em
+     * paralelo. Cada trecho foi analisado a partir do estado inicial; se
+     * o anterior acabou dentro de um comentário de bloco, a análise é
+     * refeita em sequência desde o início do comentário até um token
+     * começar na mesma posição de um token do trecho: daí em diante o
+     * estado e o texto são os mesmos, e os tokens do trecho são usados.
+     */
+    private void juntar(Trechos trechos, BufferTokens destino) {
+        int i = 0;
+        // Primeiro token do trecho a usar, e onde ele começa
+        int primeiro = 0;
+        int inicio = 0;
+        while (true) {
+            Lexico trecho = trechos.lexicos[i];
+            BufferTokens especulados = trechos.tokens[i];
+            
+            // Erros anteriores a 'inicio' vieram de uma análise descartada
+            Diagnosticos erros = trecho.diagnosticos;
+            int erro = 0;
+            while (erro < erros.tamanho() && erros.getPosicao(erro) < inicio) {
+                erro++;
+            }
+            if (!diagnosticos.comporta(erros.tamanho() - erro)) {
+                // O limite de erros será atingido: o restante é analisado
+                // em sequência, que encerra a análise no ponto certo
+                posicao = inicio;
+                while (proximoToken(destino) != Token.Tipo.EOF) {
+                    // continua até o EOF
+                }
+                return;
+            }
+            linhas.anexar(trecho.linhas);
+            for (; erro < erros.tamanho(); erro++) {
+                erro(erros.getPosicao(erro), erros.getComprimento(erro));
+            }
+            
+            boolean ultimo = i == trechos.quantidade - 1;
+            // O EOF de um trecho que não é o último apenas marca seu fim
+            destino.anexar(especulados, primeiro, especulados.tamanho() - (ultimo ? 0 : 1));
+            if (ultimo) {
+                return;
+            }
+            i++;
+            primeiro = 0;
+            inicio = trechos.inicios[i];
+            if (trecho.comentarioAberto < 0) {
+                continue;
+            }
+            
+            posicao = trecho.comentarioAberto;
+            while (true) {
+                reconhecer();
+                if (tipoToken == Token.Tipo.EOF) {
+                    destino.adicionar(tipoToken, inicioToken, posicao - inicioToken, idToken);
+                    return;
+                }
+                while (inicioToken >= trechos.inicios[i + 1]) {
+                    i++;
+                }
+                primeiro = trechos.tokens[i].buscarIniciandoEm(inicioToken);
+                if (primeiro >= 0) {
+                    inicio = inicioToken;
+                    break;
+                }
+                destino.adicionar(tipoToken, inicioToken, posicao - inicioToken, idToken);
             }
-            posicao++;
         }
     }
     
     /**
-     * Pula espaços em branco
+     * Trechos da fonte, delimitados em inícios de linha, e o resultado
+     * da análise de cada um em paralelo
      */
-    private void pularEspacos() {
-        while (posicao < codigo.length() && 
-               Character.isWhitespace(codigo.charAt(posicao))) {
-            avancar();
+    private static final class Trechos {
+        // Trecho i: posições [inicios[i], inicios[i + 1])
+        final int[] inicios;
+        final int quantidade;
+        final Lexico[] lexicos;
+        final BufferTokens[] tokens;
+        
+        private Trechos(int[] inicios, int quantidade) {
+            this.inicios = inicios;
+            this.quantidade = quantidade;
+            this.lexicos = new Lexico[quantidade];
+            this.tokens = new BufferTokens[quantidade];
+        }
+        
+        /**
+         * Divide a fonte do analisador em trechos que começam logo após
+         * uma quebra de linha, onde nenhum token pode estar pela metade
+         * (só comentários de bloco atravessam linhas), e os analisa no
+         * pool do analisador
+         */
+        static Trechos analisar(Lexico lexico) {
+            CharSequence fonte = lexico.codigo;
+            int fim = lexico.limite;
+            int[] inicios = new int[fim / CARACTERES_POR_TAREFA + 2];
+            int n = 0;
+            inicios[n++] = 0;
+            for (int alvo = CARACTERES_POR_TAREFA; alvo < fim; alvo = inicios[n - 1] + CARACTERES_POR_TAREFA) {
+                int quebra = Varredura.proximaQuebra(fonte, alvo, fim);
+                if (quebra < 0 || quebra + 1 == fim) {
+                    break;
+                }
+                inicios[n++] = quebra + 1;
+            }
+            inicios[n] = fim;
+            Trechos trechos = new Trechos(inicios, n);
+            lexico.paralelo.invoke(new Tarefa(fonte, trechos, 0, n));
+            return trechos;
+        }
+        
+        int totalTokens() {
+            int total = 0;
+            for (BufferTokens buffer : tokens) {
+                total += buffer.tamanho();
+            }
+            return total;
         }
     }
     
     /**
-     * Registra um erro (pode ser melhorado com tratamento de erros)
+     * Analisa os trechos [de, ate), dividindo o intervalo até restar um
+     * trecho por tarefa
      */
-    private void erro(String mensagem) {
-        System.err.println("Erro léxico na linha " + linha + ", coluna " + coluna + ": " + mensagem);
+    private static final class Tarefa extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final transient CharSequence fonte;
+        private final transient Trechos trechos;
+        private final int de;
+        private final int ate;
+        
+        Tarefa(CharSequence fonte, Trechos trechos, int de, int ate) {
+            this.fonte = fonte;
+            this.trechos = trechos;
+            this.de = de;
+            this.ate = ate;
+        }
+        
+        @Override
+        protected void compute() {
+            if (ate - de > 1) {
+                int meio = (de + ate) >>> 1;
+                invokeAll(new Tarefa(fonte, trechos, de, meio),
+                          new Tarefa(fonte, trechos, meio, ate));
+                return;
+            }
+            // Tabela de nomes, linhas e erros próprios, juntados depois
+            Lexico lexico = new Lexico(fonte);
+            lexico.posicao = trechos.inicios[de];
+            lexico.limite = trechos.inicios[de + 1];
+            BufferTokens tokens = new BufferTokens(fonte, lexico.nomes, lexico.linhas,
+                                                   Math.max((lexico.limite - lexico.posicao) / TAMANHO_MEDIO_TOKEN, 256));
+            while (lexico.proximoToken(tokens) != Token.Tipo.EOF) {
+                // continua até o fim do trecho
+            }
+            trechos.lexicos[de] = lexico;
+            trechos.tokens[de] = tokens;
+        }
     }
 }
 
@@ -0,0 +1,327 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Instrumentação opcional das análises, para uso em produção. Ela tem
+ * três partes:
+ * - tempo, alocação, tokens e caracteres de cada fase (léxica e
+ *   sintática), acumulados no processo;
+ * - invocações e decisões por lookahead de cada regra do
+ *   {@link ParserLL1};
+ * - eventos do JDK Flight Recorder para a análise de cada fonte.
+ *
+ * As duas primeiras partes são ativadas pela propriedade de sistema
+ * cmenos.metricas (-Dcmenos.metricas=true). Sem ela, {@link #ATIVAS} é
+ * uma constante falsa, e o JIT elimina os pontos de medição por
+ * completo.
+ *
+ * Os eventos seguem a configuração do Flight Recorder e não dependem da
+ * propriedade. Fora de uma gravação, ou com o evento desligado, cada um
+ * custa apenas uma verificação. Para gravar:
+ * java -XX:StartFlightRecording:filename=analise.jfr ...
+ * Os eventos ficam na categoria "C-", e um evento de arquivo (do
+ * {@link Compilador}) contém os de suas fases.
+ */
+public final class Metricas {
+    /**
+     * Se as métricas de fases e regras estão ativas no processo
+     */
+    public static final boolean ATIVAS = Boolean.getBoolean("cmenos.metricas");
+    
+    private static final com.sun.management.ThreadMXBean THREADS = ATIVAS ? threads() : null;
+    
+    /**
+     * Fases medidas
+     */
+    public enum Fase {
+        LEXICA("Análise léxica"),
+        SINTATICA("Análise sintática");
+        
+        private final String descricao;
+        
+        Fase(String descricao) {
+            this.descricao = descricao;
+        }
+        
+        public String getDescricao() {
+            return descricao;
+        }
+    }
+    
+    /**
+     * Regras do {@link ParserLL1}, uma por método. As regras com mais de
+     * uma alternativa (incluindo ε) decidem pelo token atual a cada
+     * invocação, e as implementadas como laço, também a cada repetição.
+     */
+    public enum Regra {
+        PROGRAMA("<programa>", false),
+        DECLARACOES_LISTA("<declaraçõeslista>", false),
+        DECLARACOES_LISTA_LINHA("<declaraçõeslista'>", true),
+        DECLARACOES("<declarações>", false),
+        DECLARACOES_LINHA("<declarações'>", true),
+        DECLARACAO_VAR("<declaraçãovar>", false),
+        DECLARACAO_VAR_LINHA("<declaraçãovar'>", true),
+        TIPO("<tipo>", true),
+        PAR_FORMAIS("<parformais>", true),
+        LISTA_PAR_FORMAIS("<listaparformais>", false),
+        LISTA_PAR_FORMAIS_LINHA("<listaparformais'>", true),
+        PARAMETRO("<parametro>", false),
+        PARAMETRO_LINHA("<parametro'>", true),
+        DECL_COMPOSTO("<declcomposto>", false),
+        DECLARACOES_LOCAIS("<declaraçõeslocais>", true),
+        LISTA_DE_COMANDOS("<listadecomandos>", true),
+        COMANDO("<comando>", true),
+        COMANDO_EXPRESSAO("<comandoexpressão>", true),
+        COMANDO_ITERACAO("<comandoiteração>", false),
+        COMANDO_SELECAO("<comandoseleção>", false),
+        COMANDO_SELECAO_LINHA("<comandoseleção'>", true),
+        COMANDO_RETORNO("<comandoretorno>", false),
+        COMANDO_RETORNO_LINHA("<comandoretorno'>", true),
+        COMANDO_COMPOSTO("<comandocomposto>", false),
+        EXPRESSAO("<expressão>", true),
+        EXPRESSAO_IDENT_LINHA("<expressãoident'>", true),
+        EXPRESSAO_IDENT_COLCHETE_LINHA("<expressãoidentcolchete'>", true),
+        EXPRESSAO_SIMPLES("<expressãosimples>", false),
+        EXPRESSAO_SIMPLES_LINHA("<expressãosimples'>", true),
+        OP_RELACIONAL("<oprelacional>", false),
+        EXPRESSOES_SOMA("<expressõessoma>", false),
+        EXPRESSOES_SOMA_LINHA("<expressõessoma'>", true),
+        OP_ADITIVO("<opaditivo>", false),
+        TERMO("<termo>", false),
+        TERMO_LINHA("<termo'>", true),
+        OP_MULT("<opmult>", false),
+        FATOR("<fator>", true),
+        FATOR_IDENT_LINHA("<fatorident'>", true),
+        ARGS("<args>", true),
+        ARGS_LISTA("<argslista>", false),
+        ARGS_LISTA_LINHA("<argslista'>", true);
+        
+        private final String simbolo;
+        private final boolean alternativas;
+        
+        Regra(String simbolo, boolean alternativas) {
+            this.simbolo = simbolo;
+            this.alternativas = alternativas;
+        }
+        
+        /**
+         * Retorna o não-terminal da regra, como na gramática do README
+         */
+        public String getSimbolo() {
+            return simbolo;
+        }
+        
+        /**
+         * Retorna se a regra escolhe entre alternativas pelo token atual
+         */
+        public boolean temAlternativas() {
+            return alternativas;
+        }
+    }
+    
+    /**
+     * Quantidade de regras; os contadores de um parser têm as invocações
+     * em [0, REGRAS) e as decisões em [REGRAS, 2 * REGRAS)
+     */
+    public static final int REGRAS = Regra.values().length;
+    
+    // Por fase: execuções, nanossegundos, bytes alocados, tokens, caracteres
+    private static final int CAMPOS_FASE = 5;
+    private static final AtomicLongArray FASES = new AtomicLongArray(Fase.values().length * CAMPOS_FASE);
+    private static final AtomicLongArray REGRAS_CONTAGENS = new AtomicLongArray(2 * REGRAS);
+    
+    private Metricas() {
+    }
+    
+    // ========== Registro ==========
+    
+    /**
+     * Retorna os bytes já alocados pela thread atual, ou 0 se a JVM não
+     * os contabiliza
+     */
+    public static long alocados() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+    
+    /**
+     * Acumula uma execução da fase iniciada em 'inicio' (System.nanoTime)
+     * com 'alocados' bytes já alocados pela thread
+     */
+    public static void registrarFase(Fase fase, long inicio, long alocados, long tokens, long caracteres) {
+        int base = fase.ordinal() * CAMPOS_FASE;
+        FASES.incrementAndGet(base);
+        FASES.addAndGet(base + 1, System.nanoTime() - inicio);
+        FASES.addAndGet(base + 2, alocados() - alocados);
+        FASES.addAndGet(base + 3, tokens);
+        FASES.addAndGet(base + 4, caracteres);
+    }
+    
+    /**
+     * Acumula e zera os contadores de regras de um parser
+     */
+    public static void registrarRegras(long[] contagens) {
+        for (int i = 0; i < contagens.length; i++) {
+            if (contagens[i] != 0) {
+                REGRAS_CONTAGENS.addAndGet(i, contagens[i]);
+                contagens[i] = 0;
+            }
+        }
+    }
+    
+    /**
+     * Zera as métricas acumuladas
+     */
+    public static void zerar() {
+        for (int i = 0; i < FASES.length(); i++) {
+            FASES.set(i, 0);
+        }
+        for (int i = 0; i < REGRAS_CONTAGENS.length(); i++) {
+            REGRAS_CONTAGENS.set(i, 0);
+        }
+    }
+    
+    // ========== Consulta ==========
+    
+    public static long getExecucoes(Fase fase) {
+        return FASES.get(fase.ordinal() * CAMPOS_FASE);
+    }
+    
+    public static long getNanos(Fase fase) {
+        return FASES.get(fase.ordinal() * CAMPOS_FASE + 1);
+    }
+    
+    public static long getBytesAlocados(Fase fase) {
+        return FASES.get(fase.ordinal() * CAMPOS_FASE + 2);
+    }
+    
+    public static long getTokens(Fase fase) {
+        return FASES.get(fase.ordinal() * CAMPOS_FASE + 3);
+    }
+    
+    public static long getCaracteres(Fase fase) {
+        return FASES.get(fase.ordinal() * CAMPOS_FASE + 4);
+    }
+    
+    public static long getInvocacoes(Regra regra) {
+        return REGRAS_CONTAGENS.get(regra.ordinal());
+    }
+    
+    public static long getDecisoes(Regra regra) {
+        return REGRAS_CONTAGENS.get(REGRAS + regra.ordinal());
+    }
+    
+    /**
+     * Retorna as métricas acumuladas em texto: uma linha por fase e uma
+     * por regra invocada, das mais invocadas para as menos
+     */
+    public static String relatorio() {
+        StringBuilder texto = new StringBuilder();
+        texto.append(String.format("%-20s %8s %10s %12s %12s %10s%n",
+                                   "Fase", "execuções", "ms", "M tokens/s", "MB alocados", "B/token"));
+        for (Fase fase : Fase.values()) {
+            long nanos = getNanos(fase);
+            long tokens = getTokens(fase);
+            texto.append(String.format("%-20s %8d %10.1f %12.2f %12.1f %10.1f%n", fase.getDescricao(),
+                                       getExecucoes(fase), nanos / 1e6,
+                                       nanos > 0 ? tokens * 1e3 / nanos : 0.0,
+                                       getBytesAlocados(fase) / (double) (1 << 20),
+                                       tokens > 0 ? getBytesAlocados(fase) / (double) tokens : 0.0));
+        }
+        
+        Regra[] regras = Regra.values().clone();
+        Arrays.sort(regras, (a, b) -> Long.compare(getInvocacoes(b), getInvocacoes(a)));
+        texto.append(String.format("%n%-28s %14s %14s%n", "Regra", "invocações", "decisões"));
+        for (Regra regra : regras) {
+            if (getInvocacoes(regra) > 0) {
+                texto.append(String.format("%-28s %14d %14d%n", regra.getSimbolo(),
+                                           getInvocacoes(regra), getDecisoes(regra)));
+            }
+        }
+        return texto.toString();
+    }
+    
+    private static com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean alocacao = (com.sun.management.ThreadMXBean) threads;
+        if (!alocacao.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        alocacao.setThreadAllocatedMemoryEnabled(true);
+        return alocacao;
+    }
+    
+    // ========== Eventos do Flight Recorder ==========
+    
+    /**
+     * Análise léxica de uma fonte
+     */
+    @Name("cmenos.AnaliseLexica")
+    @Label("Análise léxica")
+    @Category("C-")
+    static final class EventoLexico extends Event {
+        @Label("Caracteres")
+        long caracteres;
+        
+        @Label("Tokens")
+        int tokens;
+        
+        @Label("Erros")
+        @Description("Erros registrados até o fim da análise")
+        int erros;
+    }
+    
+    /**
+     * Análise sintática de uma fonte
+     */
+    @Name("cmenos.AnaliseSintatica")
+    @Label("Análise sintática")
+    @Category("C-")
+    static final class EventoSintatico extends Event {
+        @Label("Tokens")
+        int tokens;
+        
+        @Label("Erros")
+        @Description("Erros registrados até o fim da análise")
+        int erros;
+        
+        @Label("Sucesso")
+        boolean sucesso;
+        
+        @Label("Incremental")
+        @Description("Reanálise após uma edição")
+        boolean incremental;
+    }
+    
+    /**
+     * Verificação de um arquivo pelo {@link Compilador}, incluindo a
+     * leitura e as fases
+     */
+    @Name("cmenos.Arquivo")
+    @Label("Verificação de arquivo")
+    @Category("C-")
+    static final class EventoArquivo extends Event {
+        @Label("Arquivo")
+        String arquivo;
+        
+        @Label("Tamanho")
+        @DataAmount
+        long bytes;
+        
+        @Label("Erros")
+        int erros;
+        
+        @Label("Do cache")
+        boolean cache;
+    }
+}
@@ -0,0 +1,843 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Otimizações escalares clássicas sobre a forma SSA ({@link FuncaoSsa}).
+ * Cada passo custa tempo linear (ou quase) no tamanho da função, e o
+ * tempo e as alterações de cada um são acumulados no otimizador:
+ * - constantes: propagação esparsa condicional de constantes (Wegman e
+ *   Zadeck), que dobra as expressões constantes, fixa os desvios de
+ *   condição constante e simplifica identidades (x + 0, x * 1);
+ * - blocos inalcançáveis: remove os blocos sem caminho da entrada;
+ * - cópias: troca cada COPY, e cada φ cujos operandos são um único valor,
+ *   por esse valor;
+ * - numeração de valores: elimina expressões repetidas dominadas por
+ *   uma igual, percorrendo a árvore de dominadores com uma tabela de
+ *   valores com escopo;
+ * - código morto: remove as instruções sem efeito cujo valor não é usado;
+ * - simplificação do grafo: contorna blocos que só saltam para outro e
+ *   funde blocos com um único predecessor ao predecessor.
+ *
+ * Uso: java OtimizadorSsa [-n] arquivo
+ * Imprime a forma SSA otimizada de cada função e o tempo de cada passo;
+ * com -n, imprime a forma SSA sem otimizações.
+ */
+public class OtimizadorSsa {
+    /**
+     * Passos, na ordem em que {@link #otimizar} os executa
+     */
+    public enum Passo {
+        CONSTANTES("Constantes"),
+        BLOCOS_INALCANCAVEIS("Blocos inalcançáveis"),
+        COPIAS("Cópias"),
+        NUMERACAO_VALORES("Numeração de valores"),
+        CODIGO_MORTO("Código morto"),
+        SIMPLIFICACAO_CFG("Simplificação do grafo");
+        
+        private final String descricao;
+        
+        Passo(String descricao) {
+            this.descricao = descricao;
+        }
+        
+        public String getDescricao() {
+            return descricao;
+        }
+    }
+    
+    private static final Passo[] PASSOS = Passo.values();
+    
+    // Estados da propagação de constantes
+    private static final byte INDEFINIDO = 0;
+    private static final byte CONSTANTE = 1;
+    private static final byte VARIAVEL = 2;
+    
+    private final long[] execucoes = new long[PASSOS.length];
+    private final long[] nanos = new long[PASSOS.length];
+    private final long[] alteracoes = new long[PASSOS.length];
+    private int rodadas = 1;
+    
+    public static void main(String[] args) throws IOException {
+        boolean otimizar = !(args.length == 2 && args[0].equals("-n"));
+        if (args.length != 1 && otimizar) {
+            System.err.println("Uso: java OtimizadorSsa [-n] arquivo");
+            System.exit(2);
+        }
+        Compilador.Analise analise = Compilador.analisarOuSair(Paths.get(args[args.length - 1]));
+        OtimizadorSsa otimizador = new OtimizadorSsa();
+        for (FuncaoSsa funcao : new ConstrutorSsa(analise.getArvore(), analise.getSemantico()).construir()) {
+            if (otimizar) {
+                otimizador.otimizar(funcao);
+            }
+            System.out.println(funcao);
+        }
+        if (otimizar) {
+            System.out.print(otimizador.relatorio());
+        }
+    }
+    
+    /**
+     * Define quantas vezes {@link #otimizar} repete a sequência de passos
+     */
+    public void setRodadas(int rodadas) {
+        this.rodadas = Math.max(rodadas, 1);
+    }
+    
+    /**
+     * Executa todos os passos sobre a função
+     */
+    public void otimizar(FuncaoSsa funcao) {
+        for (int rodada = 0; rodada < rodadas; rodada++) {
+            for (Passo passo : PASSOS) {
+                executar(passo, funcao);
+            }
+        }
+    }
+    
+    /**
+     * Executa um passo sobre a função, medindo seu tempo
+     * @return a quantidade de alterações feitas
+     */
+    public int executar(Passo passo, FuncaoSsa funcao) {
+        long inicio = System.nanoTime();
+        int feitas;
+        switch (passo) {
+            case CONSTANTES:
+                feitas = new Constantes(funcao).executar();
+                break;
+            case BLOCOS_INALCANCAVEIS:
+                feitas = funcao.removerInalcancaveis();
+                break;
+            case COPIAS:
+                feitas = copias(funcao);
+                break;
+            case NUMERACAO_VALORES:
+                feitas = numerarValores(funcao);
+                break;
+            case CODIGO_MORTO:
+                feitas = codigoMorto(funcao);
+                break;
+            default:
+                feitas = simplificarGrafo(funcao);
+                break;
+        }
+        int indice = passo.ordinal();
+        execucoes[indice]++;
+        nanos[indice] += System.nanoTime() - inicio;
+        alteracoes[indice] += feitas;
+        return feitas;
+    }
+    
+    // ========== Consulta ==========
+    
+    public long getExecucoes(Passo passo) {
+        return execucoes[passo.ordinal()];
+    }
+    
+    public long getNanos(Passo passo) {
+        return nanos[passo.ordinal()];
+    }
+    
+    /**
+     * Retorna as alterações (instruções ou blocos removidos ou
+     * simplificados) acumuladas pelo passo
+     */
+    public long getAlteracoes(Passo passo) {
+        return alteracoes[passo.ordinal()];
+    }
+    
+    /**
+     * Zera os tempos e contagens acumulados
+     */
+    public void zerar() {
+        Arrays.fill(execucoes, 0);
+        Arrays.fill(nanos, 0);
+        Arrays.fill(alteracoes, 0);
+    }
+    
+    /**
+     * Retorna os tempos e contagens acumulados em texto, uma linha por passo
+     */
+    public String relatorio() {
+        StringBuilder texto = new StringBuilder();
+        texto.append(String.format("%-24s %10s %10s %12s%n", "Passo", "execuções", "ms", "alterações"));
+        for (Passo passo : PASSOS) {
+            texto.append(String.format("%-24s %10d %10.2f %12d%n", passo.getDescricao(), getExecucoes(passo),
+                                       getNanos(passo) / 1e6, getAlteracoes(passo)));
+        }
+        return texto.toString();
+    }
+    
+    // ========== Constantes ==========
+    
+    /**
+     * Propagação esparsa condicional de constantes. Cada valor desce no
+     * reticulado INDEFINIDO → CONSTANTE → VARIAVEL no máximo duas vezes, e
+     * só as instruções de blocos executáveis são avaliadas; as arestas
+     * passam a executáveis conforme os desvios são avaliados.
+     */
+    private static final class Constantes {
+        private final FuncaoSsa funcao;
+        private final byte[] estados;
+        private final int[] valores;
+        private final Usos usos;
+        private final boolean[] executaveis;
+        // Arestas executáveis: a do predecessor i do bloco b em bases[b] + i
+        private final int[] bases;
+        private final boolean[] arestas;
+        private int[] pendentes = new int[64];
+        private int quantidadePendentes;
+        private final int[] blocosPendentes;
+        private int quantidadeBlocosPendentes;
+        
+        Constantes(FuncaoSsa funcao) {
+            this.funcao = funcao;
+            this.estados = new byte[funcao.tamanho()];
+            this.valores = new int[funcao.tamanho()];
+            this.usos = new Usos(funcao);
+            int blocos = funcao.getQuantidadeBlocos();
+            this.executaveis = new boolean[blocos];
+            this.bases = new int[blocos + 1];
+            for (int b = 0; b < blocos; b++) {
+                bases[b + 1] = bases[b] + funcao.getQuantidadePredecessores(b);
+            }
+            this.arestas = new boolean[bases[blocos]];
+            this.blocosPendentes = new int[blocos];
+        }
+        
+        int executar() {
+            executaveis[funcao.getEntrada()] = true;
+            blocosPendentes[quantidadeBlocosPendentes++] = funcao.getEntrada();
+            while (quantidadeBlocosPendentes > 0 || quantidadePendentes > 0) {
+                if (quantidadeBlocosPendentes > 0) {
+                    int bloco = blocosPendentes[--quantidadeBlocosPendentes];
+                    for (int i = funcao.getPrimeira(bloco); i >= 0; i = funcao.getProxima(i)) {
+                        avaliar(i);
+                    }
+                } else {
+                    int valor = pendentes[--quantidadePendentes];
+                    for (int u = usos.primeiro(valor); u >= 0; u = usos.proximo(u)) {
+                        int usuario = usos.usuario(u);
+                        if (funcao.getBloco(usuario) >= 0 && executaveis[funcao.getBloco(usuario)]) {
+                            avaliar(usuario);
+                        }
+                    }
+                }
+            }
+            return reescrever();
+        }
+        
+        private void avaliar(int instrucao) {
+            int operacao = funcao.getOperacao(instrucao);
+            int bloco = funcao.getBloco(instrucao);
+            switch (operacao) {
+                case FuncaoSsa.CONST:
+                    definir(instrucao, CONSTANTE, funcao.getConstante(instrucao));
+                    break;
+                case FuncaoSsa.PHI: {
+                    byte estado = INDEFINIDO;
+                    int valor = 0;
+                    for (int i = 0; i < funcao.getQuantidadeOperandos(instrucao); i++) {
+                        if (!arestas[bases[bloco] + i]) {
+                            continue;
+                        }
+                        int operando = funcao.getOperando(instrucao, i);
+                        if (estados[operando] == VARIAVEL
+                            || (estados[operando] == CONSTANTE && estado == CONSTANTE && valores[operando] != valor)) {
+                            estado = VARIAVEL;
+                            break;
+                        }
+                        if (estados[operando] == CONSTANTE) {
+                            estado = CONSTANTE;
+                            valor = valores[operando];
+                        }
+                    }
+                    definir(instrucao, estado, valor);
+                    break;
+                }
+                case FuncaoSsa.COPY: {
+                    int operando = funcao.getOperando(instrucao, 0);
+                    definir(instrucao, estados[operando], valores[operando]);
+                    break;
+                }
+                case FuncaoSsa.JMP:
+                    tornarExecutavel(bloco, funcao.getSucessor(bloco, 0));
+                    break;
+                case FuncaoSsa.BR: {
+                    int condicao = funcao.getOperando(instrucao, 0);
+                    if (estados[condicao] == CONSTANTE) {
+                        tornarExecutavel(bloco, funcao.getSucessor(bloco, valores[condicao] != 0 ? 0 : 1));
+                    } else if (estados[condicao] == VARIAVEL) {
+                        tornarExecutavel(bloco, funcao.getSucessor(bloco, 0));
+                        tornarExecutavel(bloco, funcao.getSucessor(bloco, 1));
+                    }
+                    break;
+                }
+                default:
+                    if (FuncaoSsa.isBinaria(operacao)) {
+                        binaria(instrucao, operacao);
+                    } else {
+                        definir(instrucao, VARIAVEL, 0);
+                    }
+                    break;
+            }
+        }
+        
+        private void binaria(int instrucao, int operacao) {
+            int a = funcao.getOperando(instrucao, 0);
+            int b = funcao.getOperando(instrucao, 1);
+            if (operacao == FuncaoSsa.MUL && (zero(a) || zero(b))) {
+                definir(instrucao, CONSTANTE, 0);
+                return;
+            }
+            if (a == b && operacao != FuncaoSsa.ADD && operacao != FuncaoSsa.MUL && operacao != FuncaoSsa.DIV) {
+                // x - x, x < x, x == x...: o resultado não depende de x
+                definir(instrucao, CONSTANTE, dobrar(operacao, 0, 0));
+                return;
+            }
+            if (estados[a] == VARIAVEL || estados[b] == VARIAVEL) {
+                definir(instrucao, VARIAVEL, 0);
+            } else if (estados[a] == CONSTANTE && estados[b] == CONSTANTE) {
+                if (operacao == FuncaoSsa.DIV && valores[b] == 0) {
+                    // A divisão por zero fica para a execução
+                    definir(instrucao, VARIAVEL, 0);
+                } else {
+                    definir(instrucao, CONSTANTE, dobrar(operacao, valores[a], valores[b]));
+                }
+            }
+        }
+        
+        private boolean zero(int valor) {
+            return estados[valor] == CONSTANTE && valores[valor] == 0;
+        }
+        
+        private void definir(int instrucao, byte estado, int valor) {
+            if (estado <= estados[instrucao]) {
+                return;
+            }
+            estados[instrucao] = estado;
+            valores[instrucao] = valor;
+            if (quantidadePendentes == pendentes.length) {
+                pendentes = Arrays.copyOf(pendentes, quantidadePendentes * 2);
+            }
+            pendentes[quantidadePendentes++] = instrucao;
+        }
+        
+        private void tornarExecutavel(int origem, int destino) {
+            int aresta = bases[destino] + funcao.indicePredecessor(destino, origem);
+            if (arestas[aresta]) {
+                return;
+            }
+            arestas[aresta] = true;
+            if (!executaveis[destino]) {
+                executaveis[destino] = true;
+                blocosPendentes[quantidadeBlocosPendentes++] = destino;
+            } else {
+                // Uma aresta nova muda apenas as φ do destino
+                for (int phi = funcao.getPrimeira(destino); phi >= 0 && funcao.getOperacao(phi) == FuncaoSsa.PHI;
+                     phi = funcao.getProxima(phi)) {
+                    avaliar(phi);
+                }
+            }
+        }
+        
+        /**
+         * Aplica o resultado: valores constantes viram CONST, desvios de
+         * condição constante viram JMP e identidades viram COPY
+         */
+        private int reescrever() {
+            int feitas = 0;
+            int entrada = funcao.getEntrada();
+            for (int bloco = 0; bloco < funcao.getQuantidadeBlocos(); bloco++) {
+                if (!executaveis[bloco]) {
+                    continue;
+                }
+                int instrucao = funcao.getPrimeira(bloco);
+                while (instrucao >= 0) {
+                    int proxima = funcao.getProxima(instrucao);
+                    int operacao = funcao.getOperacao(instrucao);
+                    if (estados[instrucao] == CONSTANTE && operacao != FuncaoSsa.CONST) {
+                        if (operacao == FuncaoSsa.PHI) {
+                            // As φ ficam no início do bloco: a constante vai para a entrada
+                            int constante = funcao.nova(FuncaoSsa.CONST, valores[instrucao]);
+                            funcao.inserirNoInicio(entrada, constante);
+                            funcao.substituir(instrucao, constante);
+                        } else {
+                            funcao.tornarConstante(instrucao, valores[instrucao]);
+                        }
+                        feitas++;
+                    } else if (operacao == FuncaoSsa.BR) {
+                        int condicao = funcao.getOperando(instrucao, 0);
+                        if (isConstante(condicao)) {
+                            funcao.fixarDesvio(bloco, valor(condicao) != 0 ? 0 : 1);
+                            feitas++;
+                        }
+                    } else if (FuncaoSsa.isBinaria(operacao) && identidade(instrucao, operacao)) {
+                        feitas++;
+                    }
+                    instrucao = proxima;
+                }
+            }
+            return feitas;
+        }
+        
+        /**
+         * Troca x + 0, 0 + x, x - 0, x * 1, 1 * x e x / 1 por COPY x
+         */
+        private boolean identidade(int instrucao, int operacao) {
+            int a = funcao.getOperando(instrucao, 0);
+            int b = funcao.getOperando(instrucao, 1);
+            int neutro = operacao == FuncaoSsa.ADD || operacao == FuncaoSsa.SUB ? 0 : 1;
+            if (operacao > FuncaoSsa.DIV) {
+                return false;
+            }
+            if (isConstante(b) && valor(b) == neutro) {
+                funcao.tornarCopia(instrucao, a);
+                return true;
+            }
+            if ((operacao == FuncaoSsa.ADD || operacao == FuncaoSsa.MUL)
+                && isConstante(a) && valor(a) == neutro) {
+                funcao.tornarCopia(instrucao, b);
+                return true;
+            }
+            return false;
+        }
+        
+        /**
+         * Verifica se o valor é constante; as CONST criadas por
+         * reescrever() estão além do reticulado
+         */
+        private boolean isConstante(int valor) {
+            return valor >= estados.length || estados[valor] == CONSTANTE;
+        }
+        
+        private int valor(int valor) {
+            return valor >= estados.length ? funcao.getConstante(valor) : valores[valor];
+        }
+    }
+    
+    /**
+     * Calcula a operação com a semântica de int do Java (a mesma dos
+     * outros back-ends); b != 0 em divisões
+     */
+    static int dobrar(int operacao, int a, int b) {
+        switch (operacao) {
+            case FuncaoSsa.ADD:
+                return a + b;
+            case FuncaoSsa.SUB:
+                return a - b;
+            case FuncaoSsa.MUL:
+                return a * b;
+            case FuncaoSsa.DIV:
+                return a / b;
+            case FuncaoSsa.LT:
+                return a < b ? 1 : 0;
+            case FuncaoSsa.LE:
+                return a <= b ? 1 : 0;
+            case FuncaoSsa.GT:
+                return a > b ? 1 : 0;
+            case FuncaoSsa.GE:
+                return a >= b ? 1 : 0;
+            case FuncaoSsa.EQ:
+                return a == b ? 1 : 0;
+            default:
+                return a != b ? 1 : 0;
+        }
+    }
+    
+    // ========== Cópias ==========
+    
+    /**
+     * Substitui as cópias por seus operandos, e as φ triviais (cujos
+     * operandos são um único valor, além da própria φ) por esse valor.
+     * Uma φ substituída pode tornar triviais as φ que a usam, revistas
+     * por uma lista de trabalho.
+     */
+    private static int copias(FuncaoSsa funcao) {
+        int feitas = 0;
+        for (int bloco = 0; bloco < funcao.getQuantidadeBlocos(); bloco++) {
+            int instrucao = funcao.getPrimeira(bloco);
+            while (instrucao >= 0) {
+                int proxima = funcao.getProxima(instrucao);
+                if (funcao.getOperacao(instrucao) == FuncaoSsa.COPY) {
+                    funcao.substituir(instrucao, funcao.getOperando(instrucao, 0));
+                    feitas++;
+                }
+                instrucao = proxima;
+            }
+        }
+        
+        Usos usos = new Usos(funcao);
+        int[] pendentes = new int[64];
+        int quantidade = 0;
+        for (int bloco = 0; bloco < funcao.getQuantidadeBlocos(); bloco++) {
+            for (int phi = funcao.getPrimeira(bloco); phi >= 0 && funcao.getOperacao(phi) == FuncaoSsa.PHI;
+                 phi = funcao.getProxima(phi)) {
+                if (quantidade == pendentes.length) {
+                    pendentes = Arrays.copyOf(pendentes, quantidade * 2);
+                }
+                pendentes[quantidade++] = phi;
+            }
+        }
+        while (quantidade > 0) {
+            int phi = pendentes[--quantidade];
+            if (funcao.getBloco(phi) < 0) {
+                continue;
+            }
+            int unico = -1;
+            for (int i = 0; i < funcao.getQuantidadeOperandos(phi); i++) {
+                int operando = funcao.getOperando(phi, i);
+                if (operando == phi || operando == unico) {
+                    continue;
+                }
+                if (unico >= 0) {
+                    unico = -2;
+                    break;
+                }
+                unico = operando;
+            }
+            if (unico < 0) {
+                continue;
+            }
+            funcao.substituir(phi, unico);
+            feitas++;
+            // As φ que usavam a removida passam a usar 'unico'
+            for (int u = usos.primeiro(phi); u >= 0; u = usos.proximo(u)) {
+                int usuario = usos.usuario(u);
+                if (funcao.getOperacao(usuario) == FuncaoSsa.PHI && funcao.getBloco(usuario) >= 0) {
+                    if (quantidade == pendentes.length) {
+                        pendentes = Arrays.copyOf(pendentes, quantidade * 2);
+                    }
+                    pendentes[quantidade++] = usuario;
+                }
+            }
+            usos.transferir(phi, unico);
+        }
+        return feitas;
+    }
+    
+    // ========== Numeração de valores ==========
+    
+    /**
+     * Numeração de valores pela árvore de dominadores: uma instrução igual
+     * (mesma operação, constante e operandos) a outra de um bloco que a
+     * domina é substituída por ela. A tabela é de endereçamento aberto, e
+     * as entradas de um bloco saem dela, na ordem inversa, ao fim da
+     * subárvore do bloco.
+     */
+    private static int numerarValores(FuncaoSsa funcao) {
+        FuncaoSsa.Dominadores dominadores = funcao.dominadores();
+        int capacidade = Integer.highestOneBit(Math.max(funcao.tamanho(), 8)) * 4;
+        int mascara = capacidade - 1;
+        int[] tabela = new int[capacidade];
+        Arrays.fill(tabela, -1);
+        int[] inseridas = new int[64];
+        int quantidadeInseridas = 0;
+        int feitas = 0;
+        
+        int[] pilha = new int[2 * funcao.getQuantidadeBlocos() + 2];
+        int[] marcas = new int[funcao.getQuantidadeBlocos()];
+        int topo = 0;
+        pilha[topo++] = funcao.getEntrada();
+        while (topo > 0) {
+            int bloco = pilha[--topo];
+            if (bloco < 0) {
+                while (quantidadeInseridas > marcas[~bloco]) {
+                    tabela[inseridas[--quantidadeInseridas]] = -1;
+                }
+                continue;
+            }
+            marcas[bloco] = quantidadeInseridas;
+            int instrucao = funcao.getPrimeira(bloco);
+            while (instrucao >= 0) {
+                int proxima = funcao.getProxima(instrucao);
+                if (numeravel(funcao.getOperacao(instrucao))) {
+                    int posicao = hash(funcao, instrucao) & mascara;
+                    int igual = -1;
+                    while (tabela[posicao] >= 0) {
+                        if (iguais(funcao, instrucao, tabela[posicao])) {
+                            igual = tabela[posicao];
+                            break;
+                        }
+                        posicao = (posicao + 1) & mascara;
+                    }
+                    if (igual >= 0) {
+                        funcao.substituir(instrucao, igual);
+                        feitas++;
+                    } else {
+                        tabela[posicao] = instrucao;
+                        if (quantidadeInseridas == inseridas.length) {
+                            inseridas = Arrays.copyOf(inseridas, quantidadeInseridas * 2);
+                        }
+                        inseridas[quantidadeInseridas++] = posicao;
+                    }
+                }
+                instrucao = proxima;
+            }
+            pilha[topo++] = ~bloco;
+            for (int i = dominadores.inicios[bloco]; i < dominadores.inicios[bloco + 1]; i++) {
+                pilha[topo++] = dominadores.filhos[i];
+            }
+        }
+        return feitas;
+    }
+    
+    /**
+     * Instruções puras, cujo valor depende só dos operandos (e, nas φ, do
+     * bloco). Leituras de memória e chamadas não entram.
+     */
+    private static boolean numeravel(int operacao) {
+        return operacao <= FuncaoSsa.NE || operacao == FuncaoSsa.VETORG;
+    }
+    
+    /**
+     * Operação normalizada: a > b vira b < a, e a >= b vira b <= a
+     */
+    private static int normalizada(int operacao) {
+        return operacao == FuncaoSsa.GT ? FuncaoSsa.LT : operacao == FuncaoSsa.GE ? FuncaoSsa.LE : operacao;
+    }
+    
+    /**
+     * Retorna o operando 0 ou 1 da binária na ordem normalizada: trocados
+     * em GT e GE, e em ordem crescente nas comutativas
+     */
+    private static int operandoNormalizado(FuncaoSsa funcao, int instrucao, int indice) {
+        int operacao = funcao.getOperacao(instrucao);
+        int a = funcao.getOperando(instrucao, 0);
+        int b = funcao.getOperando(instrucao, 1);
+        boolean trocar;
+        if (operacao == FuncaoSsa.GT || operacao == FuncaoSsa.GE) {
+            trocar = true;
+        } else if (operacao == FuncaoSsa.ADD || operacao == FuncaoSsa.MUL
+                   || operacao == FuncaoSsa.EQ || operacao == FuncaoSsa.NE) {
+            trocar = a > b;
+        } else {
+            trocar = false;
+        }
+        return (indice == 0) != trocar ? a : b;
+    }
+    
+    private static int hash(FuncaoSsa funcao, int instrucao) {
+        int operacao = funcao.getOperacao(instrucao);
+        int h = normalizada(operacao) * 0x9E3779B1 + funcao.getConstante(instrucao);
+        if (FuncaoSsa.isBinaria(operacao)) {
+            h = h * 31 + operandoNormalizado(funcao, instrucao, 0);
+            h = h * 31 + operandoNormalizado(funcao, instrucao, 1);
+        } else {
+            if (operacao == FuncaoSsa.PHI) {
+                h = h * 31 + funcao.getBloco(instrucao);
+            }
+            for (int i = 0; i < funcao.getQuantidadeOperandos(instrucao); i++) {
+                h = h * 31 + funcao.getOperando(instrucao, i);
+            }
+        }
+        // Mistura final (de MurmurHash3)
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+    
+    private static boolean iguais(FuncaoSsa funcao, int a, int b) {
+        int operacao = funcao.getOperacao(a);
+        if (normalizada(operacao) != normalizada(funcao.getOperacao(b))
+            || funcao.getConstante(a) != funcao.getConstante(b)) {
+            return false;
+        }
+        if (FuncaoSsa.isBinaria(operacao)) {
+            return operandoNormalizado(funcao, a, 0) == operandoNormalizado(funcao, b, 0)
+                   && operandoNormalizado(funcao, a, 1) == operandoNormalizado(funcao, b, 1);
+        }
+        if (operacao == FuncaoSsa.PHI && funcao.getBloco(a) != funcao.getBloco(b)) {
+            return false;
+        }
+        if (funcao.getQuantidadeOperandos(a) != funcao.getQuantidadeOperandos(b)) {
+            return false;
+        }
+        for (int i = 0; i < funcao.getQuantidadeOperandos(a); i++) {
+            if (funcao.getOperando(a, i) != funcao.getOperando(b, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // ========== Código morto ==========
+    
+    /**
+     * Marca as instruções com efeito e, a partir delas, os operandos;
+     * remove as não marcadas. Uma divisão por constante diferente de zero
+     * não falha e não é marcada por si.
+     */
+    private static int codigoMorto(FuncaoSsa funcao) {
+        boolean[] vivas = new boolean[funcao.tamanho()];
+        int[] pilha = new int[64];
+        int topo = 0;
+        for (int bloco = 0; bloco < funcao.getQuantidadeBlocos(); bloco++) {
+            for (int i = funcao.getPrimeira(bloco); i >= 0; i = funcao.getProxima(i)) {
+                int operacao = funcao.getOperacao(i);
+                if (!FuncaoSsa.temEfeito(operacao) || (operacao == FuncaoSsa.DIV && divisorSeguro(funcao, i))) {
+                    continue;
+                }
+                vivas[i] = true;
+                if (topo == pilha.length) {
+                    pilha = Arrays.copyOf(pilha, topo * 2);
+                }
+                pilha[topo++] = i;
+            }
+        }
+        while (topo > 0) {
+            int instrucao = pilha[--topo];
+            for (int i = 0; i < funcao.getQuantidadeOperandos(instrucao); i++) {
+                int operando = funcao.getOperando(instrucao, i);
+                if (!vivas[operando]) {
+                    vivas[operando] = true;
+                    if (topo == pilha.length) {
+                        pilha = Arrays.copyOf(pilha, topo * 2);
+                    }
+                    pilha[topo++] = operando;
+                }
+            }
+        }
+        int feitas = 0;
+        for (int bloco = 0; bloco < funcao.getQuantidadeBlocos(); bloco++) {
+            int instrucao = funcao.getPrimeira(bloco);
+            while (instrucao >= 0) {
+                int proxima = funcao.getProxima(instrucao);
+                if (!vivas[instrucao]) {
+                    funcao.remover(instrucao);
+                    feitas++;
+                }
+                instrucao = proxima;
+            }
+        }
+        return feitas;
+    }
+    
+    private static boolean divisorSeguro(FuncaoSsa funcao, int divisao) {
+        int divisor = funcao.getOperando(divisao, 1);
+        return funcao.getOperacao(divisor) == FuncaoSsa.CONST && funcao.getConstante(divisor) != 0;
+    }
+    
+    // ========== Simplificação do grafo ==========
+    
+    /**
+     * Fixa os desvios de condição constante, contorna os blocos vazios
+     * (só com um JMP) e funde cada bloco que termina em JMP com o sucessor,
+     * se é o único predecessor dele. A fusão segue a pós-ordem reversa:
+     * uma cadeia de blocos é fundida no primeiro, e cada instrução muda de
+     * bloco uma só vez.
+     */
+    private static int simplificarGrafo(FuncaoSsa funcao) {
+        int feitas = 0;
+        for (int bloco = 0; bloco < funcao.getQuantidadeBlocos(); bloco++) {
+            int ultima = funcao.getUltima(bloco);
+            if (ultima >= 0 && funcao.getOperacao(ultima) == FuncaoSsa.BR) {
+                int condicao = funcao.getOperando(ultima, 0);
+                if (funcao.getOperacao(condicao) == FuncaoSsa.CONST) {
+                    funcao.fixarDesvio(bloco, funcao.getConstante(condicao) != 0 ? 0 : 1);
+                    feitas++;
+                }
+            }
+        }
+        if (feitas > 0) {
+            funcao.removerInalcancaveis();
+        }
+        
+        for (int bloco = 0; bloco < funcao.getQuantidadeBlocos(); bloco++) {
+            if (!funcao.isRemovido(bloco) && funcao.contornar(bloco)) {
+                feitas++;
+            }
+        }
+        
+        for (int bloco : funcao.posOrdemReversa()) {
+            if (funcao.isRemovido(bloco)) {
+                continue;
+            }
+            while (true) {
+                int ultima = funcao.getUltima(bloco);
+                int sucessor = funcao.getSucessor(bloco, 0);
+                if (ultima < 0 || funcao.getOperacao(ultima) != FuncaoSsa.JMP || sucessor == bloco
+                    || sucessor == funcao.getEntrada() || funcao.getQuantidadePredecessores(sucessor) != 1) {
+                    break;
+                }
+                funcao.fundir(bloco, sucessor);
+                feitas++;
+            }
+        }
+        return feitas;
+    }
+    
+    // ========== Usos ==========
+    
+    /**
+     * Usos de cada valor pelas instruções dos blocos, em listas encadeadas
+     * que podem ser concatenadas quando um valor substitui outro
+     */
+    private static final class Usos {
+        private final int[] primeiros;
+        private final int[] ultimos;
+        private int[] usuarios = new int[64];
+        private int[] proximos = new int[64];
+        private int quantidade;
+        
+        Usos(FuncaoSsa funcao) {
+            primeiros = new int[funcao.tamanho()];
+            ultimos = new int[funcao.tamanho()];
+            Arrays.fill(primeiros, -1);
+            Arrays.fill(ultimos, -1);
+            for (int bloco = 0; bloco < funcao.getQuantidadeBlocos(); bloco++) {
+                for (int i = funcao.getPrimeira(bloco); i >= 0; i = funcao.getProxima(i)) {
+                    for (int o = 0; o < funcao.getQuantidadeOperandos(i); o++) {
+                        acrescentar(funcao.getOperando(i, o), i);
+                    }
+                }
+            }
+        }
+        
+        private void acrescentar(int valor, int usuario) {
+            if (quantidade == usuarios.length) {
+                usuarios = Arrays.copyOf(usuarios, quantidade * 2);
+                proximos = Arrays.copyOf(proximos, quantidade * 2);
+            }
+            usuarios[quantidade] = usuario;
+            proximos[quantidade] = -1;
+            if (ultimos[valor] >= 0) {
+                proximos[ultimos[valor]] = quantidade;
+            } else {
+                primeiros[valor] = quantidade;
+            }
+            ultimos[valor] = quantidade++;
+        }
+        
+        int primeiro(int valor) {
+            return primeiros[valor];
+        }
+        
+        int proximo(int uso) {
+            return proximos[uso];
+        }
+        
+        int usuario(int uso) {
+            return usuarios[uso];
+        }
+        
+        /**
+         * Passa os usos de 'origem' para 'destino'
+         */
+        void transferir(int origem, int destino) {
+            if (primeiros[origem] < 0) {
+                return;
+            }
+            if (ultimos[destino] >= 0) {
+                proximos[ultimos[destino]] = primeiros[origem];
+            } else {
+                primeiros[destino] = primeiros[origem];
+            }
+            ultimos[destino] = ultimos[origem];
+            primeiros[origem] = -1;
+            ultimos[origem] = -1;
+        }
+    }
+}
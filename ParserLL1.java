@@ -1,78 +1,436 @@
+import java.util.Arrays;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Parser LL(1) para a linguagem C- (gramática refatorada - Parte 2)
  * Implementa análise sintática top-down recursiva
  */
 public class ParserLL1 {
-    private List<Token> tokens;
+    // Capacidade do buffer circular usado no modo fluxo (potência de 2)
+    private static final int TAMANHO_JANELA = 4;
+    
+    // Folga de pilha por nível de aninhamento na thread usada para
+    // programas profundamente aninhados (medido: até ~500 bytes)
+    private static final long BYTES_POR_NIVEL = 1024;
+    
+    // Conjuntos de sincronização da recuperação de erros (modo pânico)
+    private static final long SINC_COMANDO = Diagnosticos.conjunto(
+        Token.Tipo.PONTO_VIRGULA, Token.Tipo.ABRE_CHAVES, Token.Tipo.FECHA_CHAVES,
+        Token.Tipo.IF, Token.Tipo.ELSE, Token.Tipo.WHILE, Token.Tipo.RETURN, Token.Tipo.EOF);
+    private static final long SINC_DECLARACAO = Diagnosticos.conjunto(
+        Token.Tipo.INT, Token.Tipo.VOID, Token.Tipo.EOF);
+    
+    // Parsing paralelo: só compensa a partir deste total de tokens, e cada
+    // tarefa analisa ao menos esta quantidade de tokens
+    private static final int MINIMO_PARALELO = 1 << 14;
+    private static final int TOKENS_POR_TAREFA = 1 << 12;
+    
+    private BufferTokens tokens;
     private int posicaoAtual;
-    private List<String> erros;
+    // Posições a partir de 'limite' exigem mais tokens do léxico (modo
+    // fluxo) ou correspondem ao EOF (fim do buffer ou do segmento)
+    private int limite;
+    private Diagnosticos diagnosticos;
+    private int errosSintaticos;
+    
+    // Verdadeiro entre um erro e a próxima sincronização; enquanto isso,
+    // os erros seguintes (em cascata) não são registrados
+    private boolean recuperando;
+    
+    // Fornece os tokens sob demanda no modo fluxo
+    private Lexico lexico;
+    
+    // Árvore construída durante o parsing; null no modo apenas validação
+    private boolean construirArvore;
+    private ArvoreSintatica arvore;
+    
+    // Parsing paralelo das declarações globais (null: sequencial)
+    private ForkJoinPool paralelo;
+    private Segmentos segmentos;
+    
+    // Parsing incremental: as declarações globais do último parsing, com
+    // o trecho da árvore de cada uma, são reaproveitadas por reanalisar
+    private boolean incremental;
+    private Segmentos declaradas;
+    private int diagnosticosAnteriores;
+    
+    // Invocações e decisões por regra (ver Metricas); null sem métricas
+    private final long[] contagens = Metricas.ATIVAS ? new long[2 * Metricas.REGRAS] : null;
     
     /**
      * Construtor do parser
-     * @param tokens Lista de tokens gerados pelo analisador léxico
+     * @param tokens Buffer de tokens gerado pelo analisador léxico
      */
-    public ParserLL1(List<Token> tokens) {
+    public ParserLL1(BufferTokens tokens) {
         this.tokens = tokens;
         this.posicaoAtual = 0;
-        this.erros = new ArrayList<>();
+        this.diagnosticos = new Diagnosticos();
+    }
+    
+    /**
+     * Construtor do parser
+     * @param tokens Lista de tokens gerados pelo analisador léxico
+     */
+    public ParserLL1(List<Token> tokens) {
+        this(BufferTokens.de(tokens));
+    }
+    
+    /**
+     * Construtor do parser em modo fluxo: os tokens são pedidos ao
+     * analisador léxico à medida que o parsing avança, mantendo em
+     * memória apenas uma pequena janela de lookahead
+     * @param lexico Analisador léxico que fornece os tokens
+     */
+    public ParserLL1(Lexico lexico) {
+        this(BufferTokens.circular(lexico.getFonte(), lexico.getNomes(), lexico.getLinhas(), TAMANHO_JANELA));
+        this.lexico = lexico;
     }
     
     /**
-     * Inicia o parsing do programa
+     * Inicia o parsing do programa. A recursão das regras acompanha o
+     * aninhamento do programa; se ela esgotar a pilha da thread atual, o
+     * parsing é refeito em uma thread cuja pilha é dimensionada pela
+     * profundidade de aninhamento (ver {@link Pilha}); se mesmo ela se
+     * esgotar, é registrado aninhamento excessivo. No modo fluxo os
+     * tokens já consumidos não podem ser relidos, e o esgotamento é
+     * registrado como erro.
      * @return true se o parsing foi bem-sucedido, false caso contrário
      */
     public boolean parse() {
+        diagnosticosAnteriores = diagnosticos.tamanho();
+        return executar(false);
+    }
+    
+    /**
+     * Aplica uma edição à fonte e refaz o parsing de forma incremental
+     * (ver {@link #setIncremental}). Os tokens são atualizados por
+     * {@link Lexico#reanalisar}, e os erros do parsing anterior são
+     * substituídos pelos do novo; os erros léxicos não são refeitos.
+     * @param inicio Posição da edição
+     * @param removidos Quantidade de caracteres removidos
+     * @param inserido Texto inserido no lugar
+     * @return true se o parsing foi bem-sucedido, false caso contrário
+     */
+    public boolean reanalisar(int inicio, int removidos, CharSequence inserido) {
+        if (!incremental || declaradas == null || lexico != null) {
+            throw new IllegalStateException("Parsing incremental não ativado ou sem parsing anterior");
+        }
+        int antes = tokens.tamanho();
+        int primeiro = tokens.buscarTerminandoEm(inicio);
+        int novos = Lexico.reanalisar(tokens, inicio, removidos, inserido);
+        int deltaTokens = tokens.tamanho() - antes;
+        segmentos = declaradas.editar(primeiro, primeiro + novos - deltaTokens, deltaTokens,
+                                      inserido.length() - removidos, arvore);
+        if (arvore != null && arvore.tamanho() > 2 * segmentos.nosUsados() + tokens.tamanho()) {
+            // A maior parte da arena é de nós descartados: as declarações
+            // mantidas são copiadas para uma nova
+            ArvoreSintatica nova = new ArvoreSintatica(tokens.getNomes(), tokens.getLinhas(), tokens.tamanho());
+            segmentos.mover(nova);
+            arvore = nova;
+        }
+        diagnosticos.truncar(diagnosticosAnteriores);
+        posicaoAtual = 0;
+        errosSintaticos = 0;
+        recuperando = false;
+        return executar(true);
+    }
+    
+    /**
+     * Executa o parsing. A recursão das regras acompanha o aninhamento do
+     * programa; se ela esgotar a pilha da thread atual, o parsing é
+     * refeito em uma thread de pilha maior.
+     * @param reaproveitar Se o parsing reaproveita as declarações e a
+     *                     árvore do anterior (parsing incremental)
+     */
+    private boolean executar(boolean reaproveitar) {
+        Metricas.EventoSintatico evento = new Metricas.EventoSintatico();
+        evento.begin();
+        long inicio = Metricas.ATIVAS ? System.nanoTime() : 0;
+        long alocados = Metricas.ATIVAS ? Metricas.alocados() : 0;
+        
+        boolean sucesso = executarComRetentativa(reaproveitar);
+        
+        // No modo fluxo o buffer é só a janela, e a posição conta os tokens lidos
+        int lidos = lexico == null ? tokens.tamanho() : posicaoAtual + 1;
+        if (Metricas.ATIVAS) {
+            // Caracteres até o token em que a análise parou (o EOF, se chegou ao fim)
+            Metricas.registrarFase(Metricas.Fase.SINTATICA, inicio, alocados, lidos,
+                                   tokens.getInicio(indiceAtual()));
+            Metricas.registrarRegras(contagens);
+        }
+        if (evento.shouldCommit()) {
+            evento.tokens = lidos;
+            evento.erros = diagnosticos.tamanho();
+            evento.sucesso = sucesso;
+            evento.incremental = reaproveitar;
+            evento.commit();
+        }
+        return sucesso;
+    }
+    
+    private boolean executarComRetentativa(boolean reaproveitar) {
+        int registrados = diagnosticos.tamanho();
+        try {
+            return analisar(reaproveitar);
+        } catch (StackOverflowError e) {
+            if (lexico != null) {
+                return aninhamentoExcessivo();
+            }
+            diagnosticos.truncar(registrados);
+            posicaoAtual = 0;
+            errosSintaticos = 0;
+            recuperando = false;
+            return analisarComPilha(estimarProfundidade(), reaproveitar);
+        }
+    }
+    
+    private boolean analisar(boolean reaproveitar) {
+        limite = tokens.tamanho();
+        if (reaproveitar) {
+            segmentos.cursor = 0;
+        } else {
+            segmentos = null;
+            if (paralelo != null && lexico == null && limite >= MINIMO_PARALELO) {
+                segmentos = Segmentos.analisar(this);
+            }
+            if (construirArvore) {
+                // Cerca de um nó por token; a arena cresce se preciso
+                arvore = new ArvoreSintatica(tokens.getNomes(), tokens.getLinhas(), tokens.tamanho());
+            }
+        }
+        if (incremental && lexico == null) {
+            declaradas = new Segmentos(segmentos != null ? segmentos.quantidade : 64);
+        }
         try {
             programa();
-            if (posicaoAtual < tokens.size() - 1) {
-                erro("Tokens adicionais após o fim do programa");
+            if (!check(Token.Tipo.EOF)) {
+                erro(Diagnosticos.Codigo.TOKENS_ADICIONAIS, Diagnosticos.conjunto(Token.Tipo.EOF));
                 return false;
             }
-            return erros.isEmpty();
+            return errosSintaticos == 0;
+        } catch (Diagnosticos.LimiteAtingido e) {
+            return false;
         } catch (Exception e) {
-            erro("Erro durante o parsing: " + e.getMessage());
+            registrar(Diagnosticos.Codigo.ERRO_INTERNO, 0, e.getMessage());
             return false;
         }
     }
     
     /**
-     * Retorna a lista de erros encontrados
+     * Executa o parsing em uma thread com pilha para a profundidade indicada
+     */
+    private boolean analisarComPilha(int profundidade, boolean reaproveitar) {
+        try {
+            return Pilha.executarComPilha("ParserLL1", profundidade, BYTES_POR_NIVEL, () -> analisar(reaproveitar));
+        } catch (StackOverflowError e) {
+            return aninhamentoExcessivo();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            registrar(Diagnosticos.Codigo.ERRO_INTERNO, 0, "parsing interrompido");
+            return false;
+        }
+    }
+    
+    private boolean aninhamentoExcessivo() {
+        registrar(Diagnosticos.Codigo.ANINHAMENTO_EXCESSIVO, 0, null);
+        return false;
+    }
+    
+    /**
+     * Estima, percorrendo os tipos dos tokens, um limite superior para a
+     * quantidade de regras aninhadas: parênteses, colchetes e chaves
+     * abertos, mais os prefixos de comando (if, while, else) e as
+     * atribuições encadeadas ainda pendentes em cada nível.
+     */
+    private int estimarProfundidade() {
+        int[] salvos = new int[64];
+        int abertos = 0;
+        int acumulado = 0;
+        int pendentes = 0;
+        int maximo = 0;
+        int n = tokens.tamanho();
+        for (int i = 0; i < n; i++) {
+            switch (tokens.getTipo(i)) {
+                case ABRE_PARENTESES:
+                case ABRE_COLCHETES:
+                case ABRE_CHAVES:
+                    if (abertos == salvos.length) {
+                        salvos = Arrays.copyOf(salvos, abertos * 2);
+                    }
+                    salvos[abertos++] = pendentes;
+                    acumulado += pendentes;
+                    pendentes = 0;
+                    break;
+                case FECHA_PARENTESES:
+                case FECHA_COLCHETES:
+                case FECHA_CHAVES:
+                    if (abertos > 0) {
+                        pendentes = salvos[--abertos];
+                        acumulado -= pendentes;
+                    }
+                    // Um bloco encerra o comando que o contém, exceto antes de else
+                    if (tokens.getTipo(i) == Token.Tipo.FECHA_CHAVES && i + 1 < n
+                            && tokens.getTipo(i + 1) != Token.Tipo.ELSE) {
+                        pendentes = 0;
+                    }
+                    break;
+                case PONTO_VIRGULA:
+                    if (i + 1 < n && tokens.getTipo(i + 1) != Token.Tipo.ELSE) {
+                        pendentes = 0;
+                    }
+                    break;
+                case VIRGULA:
+                    pendentes = 0;
+                    break;
+                case IF:
+                case WHILE:
+                case ELSE:
+                case ATRIBUICAO:
+                    pendentes++;
+                    maximo = Math.max(maximo, abertos + acumulado + pendentes);
+                    break;
+                default:
+                    break;
+            }
+            maximo = Math.max(maximo, abertos + acumulado);
+        }
+        return maximo;
+    }
+    
+    /**
+     * Retorna a lista de erros encontrados, formatados
      */
     public List<String> getErros() {
-        return erros;
+        return diagnosticos.renderizar();
+    }
+    
+    /**
+     * Retorna os erros encontrados como registros compactos
+     */
+    public Diagnosticos getDiagnosticos() {
+        return diagnosticos;
+    }
+    
+    /**
+     * Define onde os erros são registrados. Um coletor com limite faz o
+     * parsing ser abandonado ao atingi-lo; compartilhado com o léxico,
+     * reúne os erros das duas fases.
+     */
+    public void setDiagnosticos(Diagnosticos diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
+    
+    /**
+     * Ativa a construção da árvore sintática durante o parsing. Desativada
+     * (o padrão), o parser apenas valida o programa, sem criar nós.
+     */
+    public void setConstruirArvore(boolean construirArvore) {
+        this.construirArvore = construirArvore;
+    }
+    
+    /**
+     * Retorna a árvore construída pelo último parsing, ou null se a
+     * construção não foi ativada. Após erros, partes da árvore podem
+     * estar ausentes.
+     */
+    public ArvoreSintatica getArvore() {
+        return arvore;
+    }
+    
+    /**
+     * Ativa o parsing incremental: cada parsing registra as declarações
+     * globais e o trecho da árvore de cada uma, e {@link #reanalisar}
+     * refaz apenas as declarações tocadas pela edição. As demais, se
+     * analisadas sem erros e alcançadas fora do modo de recuperação (de
+     * modo que o resultado é o mesmo de um parsing completo), são
+     * reaproveitadas sem nova análise, e seus nós, mantidos na mesma
+     * arena, apenas deslocados. A árvore retornada por {@link #getArvore}
+     * é atualizada no lugar. Sem efeito no modo fluxo.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+    
+    /**
+     * Ativa o parsing paralelo das declarações globais no pool indicado
+     * (null volta ao sequencial). Os limites das declarações são achados
+     * por uma pré-varredura (profundidade de chaves e ';' fora delas) e
+     * cada uma é analisada em uma tarefa do pool. O resultado (erros e
+     * árvore) é idêntico ao do parsing sequencial: a análise principal
+     * aproveita o resultado de uma declaração apenas se ela foi analisada
+     * sem erros e se é alcançada fora do modo de recuperação; as demais
+     * são refeitas em sequência. Sem efeito no modo fluxo.
+     */
+    public void setParalelo(ForkJoinPool paralelo) {
+        this.paralelo = paralelo;
     }
     
     // ========== Métodos auxiliares ==========
     
     /**
-     * Retorna o token atual sem consumi-lo
+     * Conta uma invocação da regra (e a decisão da sua alternativa), se
+     * as métricas estão ativas
+     */
+    private void entrar(Metricas.Regra regra) {
+        if (Metricas.ATIVAS) {
+            contagens[regra.ordinal()]++;
+            if (regra.temAlternativas()) {
+                contagens[Metricas.REGRAS + regra.ordinal()]++;
+            }
+        }
+    }
+    
+    /**
+     * Conta uma decisão adicional da regra (repetição de um laço), se
+     * as métricas estão ativas
      */
-    private Token lookahead() {
-        if (posicaoAtual >= tokens.size()) {
-            return new Token(Token.Tipo.EOF, "", 0, 0);
+    private void decidir(Metricas.Regra regra) {
+        if (Metricas.ATIVAS) {
+            contagens[Metricas.REGRAS + regra.ordinal()]++;
         }
-        return tokens.get(posicaoAtual);
+    }
+    
+    /**
+     * Retorna o índice do token atual no buffer. No modo fluxo, pede
+     * o próximo token ao léxico quando necessário; no modo normal,
+     * posições além do fim correspondem ao EOF final.
+     */
+    private int indiceAtual() {
+        if (posicaoAtual >= limite) {
+            if (lexico == null) {
+                return tokens.tamanho() - 1;
+            }
+            lexico.proximoToken(tokens);
+            lexico.liberarAte(tokens.getInicio(posicaoAtual));
+            limite = tokens.tamanho();
+        }
+        return posicaoAtual;
+    }
+    
+    /**
+     * Retorna o tipo do token atual sem consumi-lo
+     */
+    private Token.Tipo tipoAtual() {
+        return tokens.getTipo(indiceAtual());
     }
     
     /**
      * Consome o token atual e avança para o próximo
      */
-    private Token consume() {
-        if (posicaoAtual >= tokens.size()) {
-            return new Token(Token.Tipo.EOF, "", 0, 0);
+    private void consume() {
+        int atual = indiceAtual();
+        if (tokens.getTipo(atual) != Token.Tipo.EOF) {
+            posicaoAtual = atual + 1;
         }
-        return tokens.get(posicaoAtual++);
     }
     
     /**
      * Verifica se o token atual é do tipo esperado e o consome
      */
     private boolean match(Token.Tipo tipoEsperado) {
-        Token atual = lookahead();
-        if (atual.getTipo() == tipoEsperado) {
+        if (tipoAtual() == tipoEsperado) {
             consume();
             return true;
         }
@@ -83,52 +441,123 @@ public class ParserLL1 {
      * Verifica se o token atual é do tipo esperado (sem consumir)
      */
     private boolean check(Token.Tipo tipoEsperado) {
-        return lookahead().getTipo() == tipoEsperado;
+        return tipoAtual() == tipoEsperado;
     }
     
     /**
-     * Registra um erro de sintaxe
+     * Registra um erro de sintaxe no token atual, abandonando o parsing
+     * se o limite de erros foi atingido. A mensagem só é formatada se os
+     * erros forem consultados. Entra em modo de recuperação: até a
+     * próxima sincronização, novos erros são consequência deste e não
+     * são registrados.
      */
-    private void erro(String mensagem) {
-        Token atual = lookahead();
-        erros.add(String.format("Erro na linha %d, coluna %d: %s. Token encontrado: %s", 
-                               atual.getLinha(), atual.getColuna(), mensagem, atual));
+    private void erro(Diagnosticos.Codigo codigo, long esperados) {
+        if (recuperando) {
+            return;
+        }
+        recuperando = true;
+        if (!registrar(codigo, esperados, null)) {
+            throw Diagnosticos.LimiteAtingido.INSTANCIA;
+        }
+    }
+    
+    /**
+     * Consome o '{' que abre um bloco. O início de um bloco também
+     * sincroniza: erros dentro dele voltam a ser registrados.
+     */
+    private void abrirBloco() {
+        if (match(Token.Tipo.ABRE_CHAVES)) {
+            recuperando = false;
+        } else {
+            erro(Diagnosticos.Codigo.TOKEN_ESPERADO, Diagnosticos.conjunto(Token.Tipo.ABRE_CHAVES));
+        }
+    }
+    
+    /**
+     * Após um erro, descarta tokens até um do conjunto de sincronização
+     * (consumindo o ';' que encerra o comando) e sai do modo de
+     * recuperação. Cada token é descartado no máximo uma vez, de modo que
+     * o custo total da recuperação é linear no número de tokens.
+     */
+    private void sincronizar(long conjunto) {
+        if (!recuperando) {
+            return;
+        }
+        Token.Tipo tipo = tipoAtual();
+        while ((conjunto & (1L << tipo.ordinal())) == 0) {
+            consume();
+            tipo = tipoAtual();
+        }
+        if (tipo == Token.Tipo.PONTO_VIRGULA) {
+            consume();
+        }
+        recuperando = false;
+    }
+    
+    /**
+     * Registra o erro no token atual
+     * @return false se o limite de erros foi atingido
+     */
+    private boolean registrar(Diagnosticos.Codigo codigo, long esperados, String detalhe) {
+        int atual = indiceAtual();
+        errosSintaticos++;
+        return diagnosticos.registrar(codigo, tokens.getTipo(atual), tokens.getInicio(atual),
+                                      tokens.getComprimento(atual), tokens.getLinha(atual),
+                                      tokens.getColuna(atual), esperados, tokens.getFonte(), detalhe);
     }
     
     /**
      * Consome um token esperado ou registra erro
      */
-    private void esperar(Token.Tipo tipoEsperado, String descricao) {
+    private void esperar(Token.Tipo tipoEsperado) {
         if (!match(tipoEsperado)) {
-            erro("Esperado " + descricao);
+            erro(Diagnosticos.Codigo.TOKEN_ESPERADO, Diagnosticos.conjunto(tipoEsperado));
         }
     }
     
     // ========== Regras da gramática ==========
+    // Com a árvore ativada, cada regra retorna o nó que construiu (-1 se
+    // nada foi construído); sem ela, os nós não são criados.
     
     /**
      * <programa> → <declaraçõeslista>
      */
     private void programa() {
-        declaracoesLista();
+        entrar(Metricas.Regra.PROGRAMA);
+        int programa = no(ArvoreSintatica.No.PROGRAMA, 0);
+        declaracoesLista(programa);
+        if (arvore != null) {
+            arvore.setRaiz(programa);
+        }
     }
     
     /**
      * <declaraçõeslista> → <declarações> <declaraçõeslista'>
      */
-    private void declaracoesLista() {
-        declaracoes();
-        declaracoesListaLinha();
+    private void declaracoesLista(int programa) {
+        entrar(Metricas.Regra.DECLARACOES_LISTA);
+        filho(programa, declaracoes());
+        sincronizar(SINC_DECLARACAO);
+        declaracoesListaLinha(programa);
     }
     
     /**
      * <declaraçõeslista'> → <declarações> <declaraçõeslista'> | ε
+     * A recursão à direita é feita como laço, para que a quantidade de
+     * declarações não seja limitada pela pilha. Tokens que não iniciam
+     * uma declaração são reportados e descartados até a próxima.
      */
-    private void declaracoesListaLinha() {
-        // Verifica se há mais declarações (FIRST de <declarações> = {int, void})
-        if (check(Token.Tipo.INT) || check(Token.Tipo.VOID)) {
-            declaracoes();
-            declaracoesListaLinha();
+    private void declaracoesListaLinha(int programa) {
+        entrar(Metricas.Regra.DECLARACOES_LISTA_LINHA);
+        while (!check(Token.Tipo.EOF)) {
+            decidir(Metricas.Regra.DECLARACOES_LISTA_LINHA);
+            // FIRST de <declarações> = {int, void}
+            if (check(Token.Tipo.INT) || check(Token.Tipo.VOID)) {
+                filho(programa, declaracoes());
+            } else {
+                erro(Diagnosticos.Codigo.TOKENS_ADICIONAIS, Diagnosticos.conjunto(Token.Tipo.EOF));
+            }
+            sincronizar(SINC_DECLARACAO);
         }
         // Caso contrário, ε (não faz nada)
     }
@@ -136,76 +565,119 @@ public class ParserLL1 {
     /**
      * <declarações> → <tipo> ident <declarações'>
      */
-    private void declaracoes() {
-        tipo();
-        esperar(Token.Tipo.IDENT, "identificador");
-        declaracoesLinha();
+    private int declaracoes() {
+        entrar(Metricas.Regra.DECLARACOES);
+        if (segmentos != null && !recuperando) {
+            // Declaração já analisada (em paralelo ou no parsing anterior),
+            // a partir do mesmo estado
+            int no = segmentos.aproveitar(this);
+            if (no != Segmentos.INDISPONIVEL) {
+                return no;
+            }
+        }
+        int inicio = posicaoAtual;
+        int erros = errosSintaticos;
+        boolean limpa = !recuperando;
+        int primeiroNo = arvore != null ? arvore.tamanho() : 0;
+        int tipo = tipo();
+        int nome = nomeAtual();
+        esperar(Token.Tipo.IDENT);
+        int declaracao = declaracoesLinha(tipo, nome);
+        if (declaradas != null) {
+            declaradas.registrar(inicio, posicaoAtual, declaracao, limpa && errosSintaticos == erros,
+                                 arvore, primeiroNo, arvore != null ? arvore.tamanho() : 0);
+        }
+        return declaracao;
     }
     
     /**
      * <declarações'> → ; | [contint]; | (<parformais>) <declcomposto>
      */
-    private void declaracoesLinha() {
+    private int declaracoesLinha(int tipo, int nome) {
+        entrar(Metricas.Regra.DECLARACOES_LINHA);
+        int declaracao = -1;
         if (match(Token.Tipo.PONTO_VIRGULA)) {
             // Caso: ;
-            return;
+            declaracao = declaracao(ArvoreSintatica.No.DECL_VARIAVEL, tipo, nome);
         } else if (match(Token.Tipo.ABRE_COLCHETES)) {
             // Caso: [contint];
-            esperar(Token.Tipo.CONTINT, "constante inteira");
-            esperar(Token.Tipo.FECHA_COLCHETES, "]");
-            esperar(Token.Tipo.PONTO_VIRGULA, ";");
+            declaracao = declaracao(ArvoreSintatica.No.DECL_VETOR, tipo, nome);
+            filho(declaracao, constante());
+            esperar(Token.Tipo.CONTINT);
+            esperar(Token.Tipo.FECHA_COLCHETES);
+            esperar(Token.Tipo.PONTO_VIRGULA);
         } else if (match(Token.Tipo.ABRE_PARENTESES)) {
             // Caso: (<parformais>) <declcomposto>
-            parFormais();
-            esperar(Token.Tipo.FECHA_PARENTESES, ")");
-            declComposto();
+            declaracao = declaracao(ArvoreSintatica.No.DECL_FUNCAO, tipo, nome);
+            int parametros = no(ArvoreSintatica.No.PARAMETROS, 0);
+            filho(declaracao, parametros);
+            parFormais(parametros);
+            esperar(Token.Tipo.FECHA_PARENTESES);
+            filho(declaracao, declComposto());
         } else {
-            erro("Esperado ';', '[' ou '(' após identificador");
+            erro(Diagnosticos.Codigo.DECLARACAO_INCOMPLETA,
+                 Diagnosticos.conjunto(Token.Tipo.PONTO_VIRGULA, Token.Tipo.ABRE_COLCHETES, Token.Tipo.ABRE_PARENTESES));
         }
+        return declaracao;
     }
     
     /**
      * <declaraçãovar> → <tipo> ident <declaraçãovar'>
      */
-    private void declaracaoVar() {
-        tipo();
-        esperar(Token.Tipo.IDENT, "identificador");
-        declaracaoVarLinha();
+    private int declaracaoVar() {
+        entrar(Metricas.Regra.DECLARACAO_VAR);
+        int tipo = tipo();
+        int nome = nomeAtual();
+        esperar(Token.Tipo.IDENT);
+        return declaracaoVarLinha(tipo, nome);
     }
     
     /**
      * <declaraçãovar'> → ; | [contint];
      */
-    private void declaracaoVarLinha() {
+    private int declaracaoVarLinha(int tipo, int nome) {
+        entrar(Metricas.Regra.DECLARACAO_VAR_LINHA);
+        int declaracao = -1;
         if (match(Token.Tipo.PONTO_VIRGULA)) {
             // Caso: ;
-            return;
+            declaracao = declaracao(ArvoreSintatica.No.DECL_VARIAVEL, tipo, nome);
         } else if (match(Token.Tipo.ABRE_COLCHETES)) {
             // Caso: [contint];
-            esperar(Token.Tipo.CONTINT, "constante inteira");
-            esperar(Token.Tipo.FECHA_COLCHETES, "]");
-            esperar(Token.Tipo.PONTO_VIRGULA, ";");
+            declaracao = declaracao(ArvoreSintatica.No.DECL_VETOR, tipo, nome);
+            filho(declaracao, constante());
+            esperar(Token.Tipo.CONTINT);
+            esperar(Token.Tipo.FECHA_COLCHETES);
+            esperar(Token.Tipo.PONTO_VIRGULA);
         } else {
-            erro("Esperado ';' ou '[' após identificador");
+            erro(Diagnosticos.Codigo.DECLARACAO_VAR_INCOMPLETA,
+                 Diagnosticos.conjunto(Token.Tipo.PONTO_VIRGULA, Token.Tipo.ABRE_COLCHETES));
         }
+        return declaracao;
     }
     
     /**
      * <tipo> → int | void
      */
-    private void tipo() {
-        if (!match(Token.Tipo.INT) && !match(Token.Tipo.VOID)) {
-            erro("Esperado 'int' ou 'void'");
+    private int tipo() {
+        entrar(Metricas.Regra.TIPO);
+        Token.Tipo tipo = tipoAtual();
+        if (tipo != Token.Tipo.INT && tipo != Token.Tipo.VOID) {
+            erro(Diagnosticos.Codigo.TIPO_ESPERADO, Diagnosticos.conjunto(Token.Tipo.INT, Token.Tipo.VOID));
+            return -1;
         }
+        int no = no(ArvoreSintatica.No.TIPO, tipo.ordinal());
+        consume();
+        return no;
     }
     
     /**
      * <parformais> → <listaparformais> | ε
      */
-    private void parFormais() {
+    private void parFormais(int parametros) {
+        entrar(Metricas.Regra.PAR_FORMAIS);
         // FIRST de <listaparformais> = {int, void}
         if (check(Token.Tipo.INT) || check(Token.Tipo.VOID)) {
-            listaParFormais();
+            listaParFormais(parametros);
         }
         // Caso contrário, ε (não faz nada)
     }
@@ -213,17 +685,20 @@ public class ParserLL1 {
     /**
      * <listaparformais> → <parametro> <listaparformais'>
      */
-    private void listaParFormais() {
-        parametro();
-        listaParFormaisLinha();
+    private void listaParFormais(int parametros) {
+        entrar(Metricas.Regra.LISTA_PAR_FORMAIS);
+        filho(parametros, parametro());
+        listaParFormaisLinha(parametros);
     }
     
     /**
      * <listaparformais'> → , <listaparformais> | ε
      */
-    private void listaParFormaisLinha() {
-        if (match(Token.Tipo.VIRGULA)) {
-            listaParFormais();
+    private void listaParFormaisLinha(int parametros) {
+        entrar(Metricas.Regra.LISTA_PAR_FORMAIS_LINHA);
+        while (match(Token.Tipo.VIRGULA)) {
+            decidir(Metricas.Regra.LISTA_PAR_FORMAIS_LINHA);
+            filho(parametros, parametro());
         }
         // Caso contrário, ε (não faz nada)
     }
@@ -231,39 +706,50 @@ public class ParserLL1 {
     /**
      * <parametro> → <tipo> ident <parametro'>
      */
-    private void parametro() {
-        tipo();
-        esperar(Token.Tipo.IDENT, "identificador");
-        parametroLinha();
+    private int parametro() {
+        entrar(Metricas.Regra.PARAMETRO);
+        int tipo = tipo();
+        int nome = nomeAtual();
+        esperar(Token.Tipo.IDENT);
+        return parametroLinha(tipo, nome);
     }
     
     /**
      * <parametro'> → [] | ε
      */
-    private void parametroLinha() {
+    private int parametroLinha(int tipo, int nome) {
+        entrar(Metricas.Regra.PARAMETRO_LINHA);
         if (match(Token.Tipo.ABRE_COLCHETES)) {
-            esperar(Token.Tipo.FECHA_COLCHETES, "]");
+            esperar(Token.Tipo.FECHA_COLCHETES);
+            return declaracao(ArvoreSintatica.No.PARAMETRO_VETOR, tipo, nome);
         }
         // Caso contrário, ε (não faz nada)
+        return declaracao(ArvoreSintatica.No.PARAMETRO, tipo, nome);
     }
     
     /**
      * <declcomposto> → { <declaraçõeslocais> <listadecomandos> }
      */
-    private void declComposto() {
-        esperar(Token.Tipo.ABRE_CHAVES, "{");
-        declaracoesLocais();
-        listaDeComandos();
-        esperar(Token.Tipo.FECHA_CHAVES, "}");
+    private int declComposto() {
+        entrar(Metricas.Regra.DECL_COMPOSTO);
+        int bloco = no(ArvoreSintatica.No.BLOCO, 0);
+        abrirBloco();
+        declaracoesLocais(bloco);
+        listaDeComandos(bloco);
+        esperar(Token.Tipo.FECHA_CHAVES);
+        return bloco;
     }
     
     /**
      * <declaraçõeslocais> → <declaraçãovar> <declaraçõeslocais> | ε
      */
-    private void declaracoesLocais() {
+    private void declaracoesLocais(int bloco) {
+        entrar(Metricas.Regra.DECLARACOES_LOCAIS);
         // FIRST de <declaraçãovar> = {int, void}
         while (check(Token.Tipo.INT) || check(Token.Tipo.VOID)) {
-            declaracaoVar();
+            decidir(Metricas.Regra.DECLARACOES_LOCAIS);
+            filho(bloco, declaracaoVar());
+            sincronizar(SINC_COMANDO);
         }
         // Caso contrário, ε (não faz nada)
     }
@@ -271,10 +757,12 @@ public class ParserLL1 {
     /**
      * <listadecomandos> → <comando> <listadecomandos> | ε
      */
-    private void listaDeComandos() {
+    private void listaDeComandos(int bloco) {
+        entrar(Metricas.Regra.LISTA_DE_COMANDOS);
         // FIRST de <comando> = {ident, contint, (, ;, {, if, while, return}
         while (ehFirstDeComando()) {
-            comando();
+            decidir(Metricas.Regra.LISTA_DE_COMANDOS);
+            filho(bloco, comando());
         }
         // Caso contrário, ε (não faz nada)
     }
@@ -283,8 +771,8 @@ public class ParserLL1 {
      * Verifica se o token atual é FIRST de <comando>
      */
     private boolean ehFirstDeComando() {
-        Token.Tipo tipo = lookahead().getTipo();
-        return tipo == Token.Tipo.IDENT || 
+        Token.Tipo tipo = tipoAtual();
+        return tipo == Token.Tipo.IDENT ||
                tipo == Token.Tipo.CONTINT ||
                tipo == Token.Tipo.ABRE_PARENTESES ||
                tipo == Token.Tipo.PONTO_VIRGULA ||
@@ -297,66 +785,82 @@ public class ParserLL1 {
     /**
      * <comando> → <comandoexpressão> | <comandocomposto> | <comandoseleção> | <comandoiteração> | <comandoretorno>
      */
-    private void comando() {
-        Token.Tipo tipo = lookahead().getTipo();
+    private int comando() {
+        entrar(Metricas.Regra.COMANDO);
+        Token.Tipo tipo = tipoAtual();
+        int comando;
         
         if (tipo == Token.Tipo.ABRE_CHAVES) {
-            comandoComposto();
+            comando = comandoComposto();
         } else if (tipo == Token.Tipo.IF) {
-            comandoSelecao();
+            comando = comandoSelecao();
         } else if (tipo == Token.Tipo.WHILE) {
-            comandoIteracao();
+            comando = comandoIteracao();
         } else if (tipo == Token.Tipo.RETURN) {
-            comandoRetorno();
+            comando = comandoRetorno();
         } else {
             // <comandoexpressão> → <expressão>; | ;
-            comandoExpressao();
+            comando = comandoExpressao();
         }
+        // Um erro no comando é sincronizado aqui, antes de um possível else
+        sincronizar(SINC_COMANDO);
+        return comando;
     }
     
     /**
      * <comandoexpressão> → <expressão>; | ;
      */
-    private void comandoExpressao() {
-        if (match(Token.Tipo.PONTO_VIRGULA)) {
+    private int comandoExpressao() {
+        entrar(Metricas.Regra.COMANDO_EXPRESSAO);
+        if (check(Token.Tipo.PONTO_VIRGULA)) {
             // Caso: ;
-            return;
+            int vazio = no(ArvoreSintatica.No.VAZIO, 0);
+            consume();
+            return vazio;
         } else {
             // Caso: <expressão>;
-            expressao();
-            esperar(Token.Tipo.PONTO_VIRGULA, ";");
+            int expressao = expressao();
+            esperar(Token.Tipo.PONTO_VIRGULA);
+            return expressao;
         }
     }
     
     /**
      * <comandoiteração> → while (<expressão>) <comando>
      */
-    private void comandoIteracao() {
-        esperar(Token.Tipo.WHILE, "while");
-        esperar(Token.Tipo.ABRE_PARENTESES, "(");
-        expressao();
-        esperar(Token.Tipo.FECHA_PARENTESES, ")");
-        comando();
+    private int comandoIteracao() {
+        entrar(Metricas.Regra.COMANDO_ITERACAO);
+        int enquanto = no(ArvoreSintatica.No.ENQUANTO, 0);
+        esperar(Token.Tipo.WHILE);
+        esperar(Token.Tipo.ABRE_PARENTESES);
+        filho(enquanto, expressao());
+        esperar(Token.Tipo.FECHA_PARENTESES);
+        filho(enquanto, comando());
+        return enquanto;
     }
     
     /**
      * <comandoseleção> → if (<expressão>) <comando> <comandoseleção'>
      */
-    private void comandoSelecao() {
-        esperar(Token.Tipo.IF, "if");
-        esperar(Token.Tipo.ABRE_PARENTESES, "(");
-        expressao();
-        esperar(Token.Tipo.FECHA_PARENTESES, ")");
-        comando();
-        comandoSelecaoLinha();
+    private int comandoSelecao() {
+        entrar(Metricas.Regra.COMANDO_SELECAO);
+        int se = no(ArvoreSintatica.No.SE, 0);
+        esperar(Token.Tipo.IF);
+        esperar(Token.Tipo.ABRE_PARENTESES);
+        filho(se, expressao());
+        esperar(Token.Tipo.FECHA_PARENTESES);
+        filho(se, comando());
+        comandoSelecaoLinha(se);
+        return se;
     }
     
     /**
      * <comandoseleção'> → else <comando> | ε
      */
-    private void comandoSelecaoLinha() {
+    private void comandoSelecaoLinha(int se) {
+        entrar(Metricas.Regra.COMANDO_SELECAO_LINHA);
         if (match(Token.Tipo.ELSE)) {
-            comando();
+            filho(se, comando());
         }
         // Caso contrário, ε (não faz nada)
     }
@@ -364,32 +868,39 @@ public class ParserLL1 {
     /**
      * <comandoretorno> → return <comandoretorno'>
      */
-    private void comandoRetorno() {
-        esperar(Token.Tipo.RETURN, "return");
-        comandoRetornoLinha();
+    private int comandoRetorno() {
+        entrar(Metricas.Regra.COMANDO_RETORNO);
+        int retorno = no(ArvoreSintatica.No.RETORNO, 0);
+        esperar(Token.Tipo.RETURN);
+        comandoRetornoLinha(retorno);
+        return retorno;
     }
     
     /**
      * <comandoretorno'> → ; | <expressão>;
      */
-    private void comandoRetornoLinha() {
+    private void comandoRetornoLinha(int retorno) {
+        entrar(Metricas.Regra.COMANDO_RETORNO_LINHA);
         if (match(Token.Tipo.PONTO_VIRGULA)) {
             // Caso: ;
             return;
         } else {
             // Caso: <expressão>;
-            expressao();
-            esperar(Token.Tipo.PONTO_VIRGULA, ";");
+            filho(retorno, expressao());
+            esperar(Token.Tipo.PONTO_VIRGULA);
         }
     }
     
     /**
      * <comandocomposto> → { <listadecomandos> }
      */
-    private void comandoComposto() {
-        esperar(Token.Tipo.ABRE_CHAVES, "{");
-        listaDeComandos();
-        esperar(Token.Tipo.FECHA_CHAVES, "}");
+    private int comandoComposto() {
+        entrar(Metricas.Regra.COMANDO_COMPOSTO);
+        int bloco = no(ArvoreSintatica.No.BLOCO, 0);
+        abrirBloco();
+        listaDeComandos(bloco);
+        esperar(Token.Tipo.FECHA_CHAVES);
+        return bloco;
     }
     
     /**
@@ -397,29 +908,31 @@ public class ParserLL1 {
      *             | contint <termo'> <expressõessoma'> <expressãosimples'>
      *             | ident <expressãoident'>
      */
-    private void expressao() {
-        Token.Tipo tipo = lookahead().getTipo();
+    private int expressao() {
+        entrar(Metricas.Regra.EXPRESSAO);
+        Token.Tipo tipo = tipoAtual();
         
         if (tipo == Token.Tipo.ABRE_PARENTESES) {
             // Caso: ( <expressão> ) <termo'> <expressõessoma'> <expressãosimples'>
             consume(); // (
-            expressao();
-            esperar(Token.Tipo.FECHA_PARENTESES, ")");
-            termoLinha();
-            expressoesSomaLinha();
-            expressaoSimplesLinha();
+            int esquerda = expressao();
+            esperar(Token.Tipo.FECHA_PARENTESES);
+            return expressaoSimplesLinha(expressoesSomaLinha(termoLinha(esquerda)));
         } else if (tipo == Token.Tipo.CONTINT) {
             // Caso: contint <termo'> <expressõessoma'> <expressãosimples'>
+            int esquerda = constante();
             consume(); // contint
-            termoLinha();
-            expressoesSomaLinha();
-            expressaoSimplesLinha();
+            return expressaoSimplesLinha(expressoesSomaLinha(termoLinha(esquerda)));
         } else if (tipo == Token.Tipo.IDENT) {
             // Caso: ident <expressãoident'>
+            int nome = nomeAtual();
+            int posicao = posicaoAtualFonte();
             consume(); // ident
-            expressaoIdentLinha();
+            return expressaoIdentLinha(nome, posicao);
         } else {
-            erro("Esperado expressão: '(', constante inteira ou identificador");
+            erro(Diagnosticos.Codigo.EXPRESSAO_ESPERADA,
+                 Diagnosticos.conjunto(Token.Tipo.ABRE_PARENTESES, Token.Tipo.CONTINT, Token.Tipo.IDENT));
+            return -1;
         }
     }
     
@@ -429,32 +942,35 @@ public class ParserLL1 {
      *                  | ( <args> ) <termo'> <expressõessoma'> <expressãosimples'>
      *                  | <termo'> <expressõessoma'> <expressãosimples'>
      */
-    private void expressaoIdentLinha() {
-        Token.Tipo tipo = lookahead().getTipo();
+    private int expressaoIdentLinha(int nome, int posicao) {
+        entrar(Metricas.Regra.EXPRESSAO_IDENT_LINHA);
+        Token.Tipo tipo = tipoAtual();
         
         if (tipo == Token.Tipo.ATRIBUICAO) {
             // Caso: = <expressão>
+            int atribuicao = no(ArvoreSintatica.No.ATRIBUICAO, 0);
             consume(); // =
-            expressao();
+            filho(atribuicao, noEm(ArvoreSintatica.No.VARIAVEL, nome, posicao));
+            filho(atribuicao, expressao());
+            return atribuicao;
         } else if (tipo == Token.Tipo.ABRE_COLCHETES) {
             // Caso: [ <expressão> ] <expressãoidentcolchete'>
+            int indexacao = noEm(ArvoreSintatica.No.INDEXACAO, nome, posicao);
             consume(); // [
-            expressao();
-            esperar(Token.Tipo.FECHA_COLCHETES, "]");
-            expressaoIdentColcheteLinha();
+            filho(indexacao, expressao());
+            esperar(Token.Tipo.FECHA_COLCHETES);
+            return expressaoIdentColcheteLinha(indexacao);
         } else if (tipo == Token.Tipo.ABRE_PARENTESES) {
             // Caso: ( <args> ) <termo'> <expressõessoma'> <expressãosimples'>
+            int chamada = noEm(ArvoreSintatica.No.CHAMADA, nome, posicao);
             consume(); // (
-            args();
-            esperar(Token.Tipo.FECHA_PARENTESES, ")");
-            termoLinha();
-            expressoesSomaLinha();
-            expressaoSimplesLinha();
+            args(chamada);
+            esperar(Token.Tipo.FECHA_PARENTESES);
+            return expressaoSimplesLinha(expressoesSomaLinha(termoLinha(chamada)));
         } else {
             // Caso: <termo'> <expressõessoma'> <expressãosimples'>
-            termoLinha();
-            expressoesSomaLinha();
-            expressaoSimplesLinha();
+            int variavel = noEm(ArvoreSintatica.No.VARIAVEL, nome, posicao);
+            return expressaoSimplesLinha(expressoesSomaLinha(termoLinha(variavel)));
         }
     }
     
@@ -462,42 +978,50 @@ public class ParserLL1 {
      * <expressãoidentcolchete'> → = <expressão>
      *                           | <termo'> <expressõessoma'> <expressãosimples'>
      */
-    private void expressaoIdentColcheteLinha() {
-        if (match(Token.Tipo.ATRIBUICAO)) {
+    private int expressaoIdentColcheteLinha(int indexacao) {
+        entrar(Metricas.Regra.EXPRESSAO_IDENT_COLCHETE_LINHA);
+        if (check(Token.Tipo.ATRIBUICAO)) {
             // Caso: = <expressão>
-            expressao();
+            int atribuicao = no(ArvoreSintatica.No.ATRIBUICAO, 0);
+            consume(); // =
+            filho(atribuicao, indexacao);
+            filho(atribuicao, expressao());
+            return atribuicao;
         } else {
             // Caso: <termo'> <expressõessoma'> <expressãosimples'>
-            termoLinha();
-            expressoesSomaLinha();
-            expressaoSimplesLinha();
+            return expressaoSimplesLinha(expressoesSomaLinha(termoLinha(indexacao)));
         }
     }
     
     /**
      * <expressãosimples> → <expressõessoma> <expressãosimples'>
      */
-    private void expressaoSimples() {
-        expressoesSoma();
-        expressaoSimplesLinha();
+    private int expressaoSimples() {
+        entrar(Metricas.Regra.EXPRESSAO_SIMPLES);
+        return expressaoSimplesLinha(expressoesSoma());
     }
     
     /**
      * <expressãosimples'> → <oprelacional> <expressõessoma> | ε
+     * @param esquerda Operando já reconhecido
      */
-    private void expressaoSimplesLinha() {
+    private int expressaoSimplesLinha(int esquerda) {
+        entrar(Metricas.Regra.EXPRESSAO_SIMPLES_LINHA);
         if (ehOpRelacional()) {
+            int operacao = operacao(esquerda);
             opRelacional();
-            expressoesSoma();
+            filho(operacao, expressoesSoma());
+            return operacao;
         }
         // Caso contrário, ε (não faz nada)
+        return esquerda;
     }
     
     /**
      * Verifica se o token atual é um operador relacional
      */
     private boolean ehOpRelacional() {
-        Token.Tipo tipo = lookahead().getTipo();
+        Token.Tipo tipo = tipoAtual();
         return tipo == Token.Tipo.OPRELACIONAL;
     }
     
@@ -505,120 +1029,150 @@ public class ParserLL1 {
      * <oprelacional> → > | < | <= | >= | == | !=
      */
     private void opRelacional() {
+        entrar(Metricas.Regra.OP_RELACIONAL);
         if (!match(Token.Tipo.OPRELACIONAL)) {
-            erro("Esperado operador relacional: >, <, <=, >=, == ou !=");
+            erro(Diagnosticos.Codigo.RELACIONAL_ESPERADO, Diagnosticos.conjunto(Token.Tipo.OPRELACIONAL));
         }
     }
     
     /**
      * <expressõessoma> → <termo> <expressõessoma'>
      */
-    private void expressoesSoma() {
-        termo();
-        expressoesSomaLinha();
+    private int expressoesSoma() {
+        entrar(Metricas.Regra.EXPRESSOES_SOMA);
+        return expressoesSomaLinha(termo());
     }
     
     /**
      * <expressõessoma'> → <opaditivo> <termo> <expressõessoma'> | ε
+     * @param esquerda Operando já reconhecido
      */
-    private void expressoesSomaLinha() {
+    private int expressoesSomaLinha(int esquerda) {
+        entrar(Metricas.Regra.EXPRESSOES_SOMA_LINHA);
         while (check(Token.Tipo.OPADITIVO)) {
+            decidir(Metricas.Regra.EXPRESSOES_SOMA_LINHA);
+            int operacao = operacao(esquerda);
             opAditivo();
-            termo();
+            filho(operacao, termo());
+            esquerda = operacao;
         }
         // Caso contrário, ε (não faz nada)
+        return esquerda;
     }
     
     /**
      * <opaditivo> → + | -
      */
     private void opAditivo() {
+        entrar(Metricas.Regra.OP_ADITIVO);
         if (!match(Token.Tipo.OPADITIVO)) {
-            erro("Esperado operador aditivo: + ou -");
+            erro(Diagnosticos.Codigo.ADITIVO_ESPERADO, Diagnosticos.conjunto(Token.Tipo.OPADITIVO));
         }
     }
     
     /**
      * <termo> → <fator> <termo'>
      */
-    private void termo() {
-        fator();
-        termoLinha();
+    private int termo() {
+        entrar(Metricas.Regra.TERMO);
+        return termoLinha(fator());
     }
     
     /**
      * <termo'> → <opmult> <fator> <termo'> | ε
+     * @param esquerda Operando já reconhecido
      */
-    private void termoLinha() {
+    private int termoLinha(int esquerda) {
+        entrar(Metricas.Regra.TERMO_LINHA);
         while (check(Token.Tipo.OPMULT)) {
+            decidir(Metricas.Regra.TERMO_LINHA);
+            int operacao = operacao(esquerda);
             opMult();
-            fator();
+            filho(operacao, fator());
+            esquerda = operacao;
         }
         // Caso contrário, ε (não faz nada)
+        return esquerda;
     }
     
     /**
      * <opmult> → * | /
      */
     private void opMult() {
+        entrar(Metricas.Regra.OP_MULT);
         if (!match(Token.Tipo.OPMULT)) {
-            erro("Esperado operador multiplicativo: * ou /");
+            erro(Diagnosticos.Codigo.MULTIPLICATIVO_ESPERADO, Diagnosticos.conjunto(Token.Tipo.OPMULT));
         }
     }
     
     /**
      * <fator> → (<expressão>) | contint | ident <fatorident'>
      */
-    private void fator() {
-        Token.Tipo tipo = lookahead().getTipo();
+    private int fator() {
+        entrar(Metricas.Regra.FATOR);
+        Token.Tipo tipo = tipoAtual();
         
         if (tipo == Token.Tipo.ABRE_PARENTESES) {
             // Caso: (<expressão>)
             consume(); // (
-            expressao();
-            esperar(Token.Tipo.FECHA_PARENTESES, ")");
+            int expressao = expressao();
+            esperar(Token.Tipo.FECHA_PARENTESES);
+            return expressao;
         } else if (tipo == Token.Tipo.CONTINT) {
             // Caso: contint
+            int constante = constante();
             consume(); // contint
+            return constante;
         } else if (tipo == Token.Tipo.IDENT) {
             // Caso: ident <fatorident'>
+            int nome = nomeAtual();
+            int posicao = posicaoAtualFonte();
             consume(); // ident
-            fatorIdentLinha();
+            return fatorIdentLinha(nome, posicao);
         } else {
-            erro("Esperado fator: '(', constante inteira ou identificador");
+            erro(Diagnosticos.Codigo.FATOR_ESPERADO,
+                 Diagnosticos.conjunto(Token.Tipo.ABRE_PARENTESES, Token.Tipo.CONTINT, Token.Tipo.IDENT));
+            return -1;
         }
     }
     
     /**
      * <fatorident'> → [ <expressão> ] | ( <args> ) | ε
      */
-    private void fatorIdentLinha() {
-        Token.Tipo tipo = lookahead().getTipo();
+    private int fatorIdentLinha(int nome, int posicao) {
+        entrar(Metricas.Regra.FATOR_IDENT_LINHA);
+        Token.Tipo tipo = tipoAtual();
         
         if (tipo == Token.Tipo.ABRE_COLCHETES) {
             // Caso: [ <expressão> ]
+            int indexacao = noEm(ArvoreSintatica.No.INDEXACAO, nome, posicao);
             consume(); // [
-            expressao();
-            esperar(Token.Tipo.FECHA_COLCHETES, "]");
+            filho(indexacao, expressao());
+            esperar(Token.Tipo.FECHA_COLCHETES);
+            return indexacao;
         } else if (tipo == Token.Tipo.ABRE_PARENTESES) {
             // Caso: ( <args> )
+            int chamada = noEm(ArvoreSintatica.No.CHAMADA, nome, posicao);
             consume(); // (
-            args();
-            esperar(Token.Tipo.FECHA_PARENTESES, ")");
+            args(chamada);
+            esperar(Token.Tipo.FECHA_PARENTESES);
+            return chamada;
         }
         // Caso contrário, ε (não faz nada)
+        return noEm(ArvoreSintatica.No.VARIAVEL, nome, posicao);
     }
     
     /**
      * <args> → <argslista> | ε
      */
-    private void args() {
+    private void args(int chamada) {
+        entrar(Metricas.Regra.ARGS);
         // FIRST de <argslista> = FIRST de <expressão> = {(, contint, ident}
-        Token.Tipo tipo = lookahead().getTipo();
-        if (tipo == Token.Tipo.ABRE_PARENTESES || 
-            tipo == Token.Tipo.CONTINT || 
+        Token.Tipo tipo = tipoAtual();
+        if (tipo == Token.Tipo.ABRE_PARENTESES ||
+            tipo == Token.Tipo.CONTINT ||
             tipo == Token.Tipo.IDENT) {
-            argsLista();
+            argsLista(chamada);
         }
         // Caso contrário, ε (não faz nada)
     }
@@ -626,20 +1180,406 @@ public class ParserLL1 {
     /**
      * <argslista> → <expressão> <argslista'>
      */
-    private void argsLista() {
-        expressao();
-        argsListaLinha();
+    private void argsLista(int chamada) {
+        entrar(Metricas.Regra.ARGS_LISTA);
+        filho(chamada, expressao());
+        argsListaLinha(chamada);
     }
     
     /**
      * <argslista'> → , <expressão> <argslista'> | ε
      */
-    private void argsListaLinha() {
+    private void argsListaLinha(int chamada) {
+        entrar(Metricas.Regra.ARGS_LISTA_LINHA);
         while (match(Token.Tipo.VIRGULA)) {
-            expressao();
+            decidir(Metricas.Regra.ARGS_LISTA_LINHA);
+            filho(chamada, expressao());
         }
         // Caso contrário, ε (não faz nada)
     }
+    
+    // ========== Construção da árvore ==========
+    
+    /**
+     * Cria um nó na posição do token atual, se a árvore está ativada
+     */
+    private int no(ArvoreSintatica.No tipo, int valor) {
+        if (arvore == null) {
+            return -1;
+        }
+        return arvore.novo(tipo, valor, posicaoAtualFonte());
+    }
+    
+    /**
+     * Cria um nó na posição indicada, se a árvore está ativada
+     */
+    private int noEm(ArvoreSintatica.No tipo, int valor, int posicao) {
+        if (arvore == null) {
+            return -1;
+        }
+        return arvore.novo(tipo, valor, posicao);
+    }
+    
+    private void filho(int pai, int filho) {
+        if (arvore != null) {
+            arvore.adicionarFilho(pai, filho);
+        }
+    }
+    
+    /**
+     * Cria o nó de uma declaração (ou parâmetro) com seu tipo como filho
+     * @param nome Id do nome declarado, ou o id negativo de {@link #nomeAtual}
+     */
+    private int declaracao(ArvoreSintatica.No tipo, int tipoDeclarado, int nome) {
+        if (arvore == null) {
+            return -1;
+        }
+        int declaracao = arvore.novo(tipo, nome, tipoDeclarado >= 0 ? arvore.getPosicao(tipoDeclarado) : posicaoAtualFonte());
+        arvore.adicionarFilho(declaracao, tipoDeclarado);
+        return declaracao;
+    }
+    
+    /**
+     * Cria o nó de operação binária para o operador atual, com o operando
+     * esquerdo como primeiro filho
+     */
+    private int operacao(int esquerda) {
+        if (arvore == null) {
+            return -1;
+        }
+        int atual = indiceAtual();
+        CharSequence fonte = tokens.getFonte();
+        int inicio = tokens.getInicio(atual);
+        char simbolo = fonte.charAt(inicio);
+        boolean composto = tokens.getComprimento(atual) > 1;
+        ArvoreSintatica.Operador operador;
+        switch (simbolo) {
+            case '+': operador = ArvoreSintatica.Operador.SOMA; break;
+            case '-': operador = ArvoreSintatica.Operador.SUBTRACAO; break;
+            case '*': operador = ArvoreSintatica.Operador.MULTIPLICACAO; break;
+            case '/': operador = ArvoreSintatica.Operador.DIVISAO; break;
+            case '<': operador = composto ? ArvoreSintatica.Operador.MENOR_IGUAL : ArvoreSintatica.Operador.MENOR; break;
+            case '>': operador = composto ? ArvoreSintatica.Operador.MAIOR_IGUAL : ArvoreSintatica.Operador.MAIOR; break;
+            case '=': operador = ArvoreSintatica.Operador.IGUAL; break;
+            default: operador = ArvoreSintatica.Operador.DIFERENTE; break;
+        }
+        int operacao = arvore.novo(ArvoreSintatica.No.OPERACAO, operador.ordinal(), inicio);
+        arvore.adicionarFilho(operacao, esquerda);
+        return operacao;
+    }
+    
+    /**
+     * Cria o nó da constante inteira atual (antes de consumi-la). Uma
+     * constante maior que Integer.MAX_VALUE é registrada como erro, com
+     * ou sem árvore: nenhum back-end recebe o valor truncado.
+     */
+    private int constante() {
+        int atual = indiceAtual();
+        if (tokens.getTipo(atual) != Token.Tipo.CONTINT) {
+            return -1;
+        }
+        int inicio = tokens.getInicio(atual);
+        int valor = valorConstante(tokens.getFonte(), inicio, tokens.getComprimento(atual));
+        if (valor < 0 && !registrar(Diagnosticos.Codigo.CONSTANTE_FORA_DO_INTERVALO, 0, null)) {
+            throw Diagnosticos.LimiteAtingido.INSTANCIA;
+        }
+        if (arvore == null) {
+            return -1;
+        }
+        return arvore.novo(ArvoreSintatica.No.CONSTANTE, Math.max(valor, 0), inicio);
+    }
+    
+    /**
+     * Retorna o valor da constante inteira em [inicio, inicio + comprimento)
+     * da fonte, ou -1 se ele não cabe em um int
+     */
+    static int valorConstante(CharSequence fonte, int inicio, int comprimento) {
+        int valor = 0;
+        for (int i = inicio; i < inicio + comprimento; i++) {
+            int digito = fonte.charAt(i) - '0';
+            if (valor > (Integer.MAX_VALUE - digito) / 10) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+    
+    /**
+     * Retorna o id do nome do identificador atual, ou -1 se o token
+     * atual não é um identificador ou a árvore está desativada
+     */
+    private int nomeAtual() {
+        if (arvore == null) {
+            return -1;
+        }
+        int atual = indiceAtual();
+        return tokens.getTipo(atual) == Token.Tipo.IDENT ? tokens.getId(atual) : -1;
+    }
+    
+    /**
+     * Retorna a posição na fonte do token atual
+     */
+    private int posicaoAtualFonte() {
+        return arvore == null ? -1 : tokens.getInicio(indiceAtual());
+    }
+    
+    // ========== Parsing paralelo ==========
+    
+    /**
+     * Declarações globais já analisadas e o resultado de cada uma: as
+     * delimitadas pela pré-varredura e analisadas em paralelo, ou as
+     * registradas por um parsing anterior (parsing incremental)
+     */
+    private static final class Segmentos {
+        static final int INDISPONIVEL = -2;
+        
+        // Segmento i: tokens [inicios[i], fins[i])
+        int[] inicios;
+        int[] fins;
+        int quantidade;
+        boolean[] limpos;
+        int[] nos;
+        ArvoreSintatica[] arvores;
+        // Nós do segmento em sua árvore: [primeirosNos[i], fimNos[i])
+        int[] primeirosNos;
+        int[] fimNos;
+        // Próximo segmento que a análise principal pode alcançar
+        int cursor;
+        
+        private Segmentos(int[] inicios, int quantidade) {
+            this(quantidade);
+            this.inicios = inicios;
+            this.fins = Arrays.copyOfRange(inicios, 1, quantidade + 1);
+            this.quantidade = quantidade;
+        }
+        
+        /**
+         * Cria uma lista vazia, preenchida por {@link #registrar}
+         */
+        Segmentos(int capacidade) {
+            capacidade = Math.max(capacidade, 16);
+            this.inicios = new int[capacidade];
+            this.fins = new int[capacidade];
+            this.limpos = new boolean[capacidade];
+            this.nos = new int[capacidade];
+            this.arvores = new ArvoreSintatica[capacidade];
+            this.primeirosNos = new int[capacidade];
+            this.fimNos = new int[capacidade];
+        }
+        
+        /**
+         * Acrescenta uma declaração analisada, que deve começar depois das
+         * já registradas
+         */
+        void registrar(int inicio, int fim, int no, boolean limpo, ArvoreSintatica arvore,
+                       int primeiroNo, int fimNo) {
+            if (quantidade == inicios.length) {
+                int capacidade = quantidade * 2;
+                inicios = Arrays.copyOf(inicios, capacidade);
+                fins = Arrays.copyOf(fins, capacidade);
+                limpos = Arrays.copyOf(limpos, capacidade);
+                nos = Arrays.copyOf(nos, capacidade);
+                arvores = Arrays.copyOf(arvores, capacidade);
+                primeirosNos = Arrays.copyOf(primeirosNos, capacidade);
+                fimNos = Arrays.copyOf(fimNos, capacidade);
+            }
+            int i = quantidade++;
+            inicios[i] = inicio;
+            fins[i] = fim;
+            nos[i] = no;
+            limpos[i] = limpo;
+            arvores[i] = arvore;
+            primeirosNos[i] = primeiroNo;
+            fimNos[i] = fimNo;
+        }
+        
+        /**
+         * Ajusta as declarações a uma edição que trocou os tokens [de, ate)
+         * por outros: as que terminam até 'de' são mantidas, as que começam
+         * em 'ate' ou depois são deslocadas (tokens e posições dos nós), e
+         * as demais, assim como as que tiveram erros, são descartadas
+         * @param deltaTokens Quantidade de tokens a mais após a edição
+         * @param deltaPosicao Quantidade de caracteres a mais após a edição
+         */
+        Segmentos editar(int de, int ate, int deltaTokens, int deltaPosicao, ArvoreSintatica arvore) {
+            Segmentos editados = new Segmentos(quantidade);
+            for (int i = 0; i < quantidade; i++) {
+                if (!limpos[i]) {
+                    continue;
+                }
+                if (fins[i] <= de) {
+                    editados.registrar(inicios[i], fins[i], nos[i], true, arvores[i], primeirosNos[i], fimNos[i]);
+                } else if (inicios[i] >= ate) {
+                    if (arvore != null) {
+                        arvore.deslocar(primeirosNos[i], fimNos[i], deltaPosicao);
+                    }
+                    editados.registrar(inicios[i] + deltaTokens, fins[i] + deltaTokens, nos[i], true,
+                                       arvores[i], primeirosNos[i], fimNos[i]);
+                }
+            }
+            return editados;
+        }
+        
+        /**
+         * Retorna a quantidade de nós das declarações na árvore
+         */
+        int nosUsados() {
+            int total = 0;
+            for (int i = 0; i < quantidade; i++) {
+                total += fimNos[i] - primeirosNos[i];
+            }
+            return total;
+        }
+        
+        /**
+         * Copia os nós das declarações para outra árvore, que passa a ser
+         * a sua
+         */
+        void mover(ArvoreSintatica destino) {
+            for (int i = 0; i < quantidade; i++) {
+                primeirosNos[i] = destino.tamanho();
+                nos[i] = destino.anexar(arvores[i], nos[i]);
+                fimNos[i] = destino.tamanho();
+                arvores[i] = destino;
+            }
+        }
+        
+        /**
+         * Delimita as declarações globais e as analisa no pool do parser.
+         * Retorna null se há menos de duas declarações.
+         */
+        static Segmentos analisar(ParserLL1 parser) {
+            BufferTokens tokens = parser.tokens;
+            int fim = tokens.tamanho() - 1;
+            int[] inicios = new int[64];
+            int n = 0;
+            inicios[n++] = 0;
+            int profundidade = 0;
+            for (int i = 0; i < fim; i++) {
+                Token.Tipo tipo = tokens.getTipo(i);
+                if (tipo == Token.Tipo.ABRE_CHAVES) {
+                    profundidade++;
+                } else if (tipo == Token.Tipo.FECHA_CHAVES || tipo == Token.Tipo.PONTO_VIRGULA) {
+                    if (tipo == Token.Tipo.FECHA_CHAVES && profundidade > 0) {
+                        profundidade--;
+                    }
+                    if (profundidade == 0) {
+                        if (n == inicios.length) {
+                            inicios = Arrays.copyOf(inicios, n * 2);
+                        }
+                        inicios[n++] = i + 1;
+                    }
+                }
+            }
+            if (inicios[n - 1] == fim) {
+                n--;
+            }
+            if (n < 2) {
+                return null;
+            }
+            if (n == inicios.length) {
+                inicios = Arrays.copyOf(inicios, n + 1);
+            }
+            inicios[n] = fim;
+            Segmentos segmentos = new Segmentos(inicios, n);
+            // Construídos antes das tarefas, que apenas os consultam
+            tokens.getLinhas();
+            parser.paralelo.invoke(new Tarefa(parser, segmentos, 0, n));
+            return segmentos;
+        }
+        
+        /**
+         * Se a posição atual do parser inicia um segmento analisado sem
+         * erros, anexa o resultado e avança até o fim do segmento
+         * @return o nó da declaração, ou INDISPONIVEL
+         */
+        int aproveitar(ParserLL1 parser) {
+            int posicao = parser.posicaoAtual;
+            while (cursor < quantidade && inicios[cursor] < posicao) {
+                cursor++;
+            }
+            if (cursor == quantidade || inicios[cursor] != posicao || !limpos[cursor]) {
+                return INDISPONIVEL;
+            }
+            int i = cursor++;
+            parser.posicaoAtual = fins[i];
+            int no = -1;
+            int primeiroNo = 0;
+            int fimNo = 0;
+            if (parser.arvore != null) {
+                if (arvores[i] == parser.arvore) {
+                    // Parsing incremental: os nós já estão na arena
+                    no = nos[i];
+                    primeiroNo = primeirosNos[i];
+                    fimNo = fimNos[i];
+                } else {
+                    primeiroNo = parser.arvore.tamanho();
+                    no = parser.arvore.anexar(arvores[i], nos[i]);
+                    fimNo = parser.arvore.tamanho();
+                }
+            }
+            if (parser.declaradas != null) {
+                parser.declaradas.registrar(posicao, fins[i], no, true, parser.arvore, primeiroNo, fimNo);
+            }
+            return no;
+        }
+    }
+    
+    /**
+     * Analisa os segmentos [de, ate), dividindo o intervalo enquanto ele
+     * tiver tokens para mais de uma tarefa
+     */
+    private static final class Tarefa extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final transient ParserLL1 principal;
+        private final transient Segmentos segmentos;
+        private final int de;
+        private final int ate;
+        
+        Tarefa(ParserLL1 principal, Segmentos segmentos, int de, int ate) {
+            this.principal = principal;
+            this.segmentos = segmentos;
+            this.de = de;
+            this.ate = ate;
+        }
+        
+        @Override
+        protected void compute() {
+            int[] inicios = segmentos.inicios;
+            if (ate - de > 1 && inicios[ate] - inicios[de] > TOKENS_POR_TAREFA) {
+                int meio = (de + ate) >>> 1;
+                invokeAll(new Tarefa(principal, segmentos, de, meio),
+                          new Tarefa(principal, segmentos, meio, ate));
+                return;
+            }
+            // Um parser e uma árvore por tarefa, reaproveitados entre os segmentos
+            ParserLL1 parser = new ParserLL1(principal.tokens);
+            // Basta saber se houve erro: o primeiro encerra o segmento
+            parser.diagnosticos = new Diagnosticos(0);
+            ArvoreSintatica arvore = null;
+            if (principal.construirArvore) {
+                arvore = new ArvoreSintatica(principal.tokens.getNomes(), principal.tokens.getLinhas(),
+                                             inicios[ate] - inicios[de]);
+            }
+            for (int i = de; i < ate; i++) {
+                parser.posicaoAtual = inicios[i];
+                parser.limite = inicios[i + 1];
+                parser.errosSintaticos = 0;
+                parser.recuperando = false;
+                parser.arvore = arvore;
+                try {
+                    segmentos.nos[i] = parser.declaracoes();
+                    segmentos.limpos[i] = parser.errosSintaticos == 0 && parser.posicaoAtual == inicios[i + 1];
+                } catch (Diagnosticos.LimiteAtingido | StackOverflowError e) {
+                    segmentos.limpos[i] = false;
+                }
+                segmentos.arvores[i] = arvore;
+            }
+            if (Metricas.ATIVAS) {
+                Metricas.registrarRegras(parser.contagens);
+            }
+        }
+    }
 }
-
-
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parser LL(1) preditivo dirigido por tabela: reconhece a mesma
+ * linguagem que {@link ParserLL1}, mas a partir da tabela calculada por
+ * {@link Gramatica}, em um único laço com pilha explícita. Cada decisão
+ * é uma consulta à tabela, e mudanças na gramática não exigem alterar
+ * o parser.
+ *
+ * Apenas valida o programa: não constrói árvore e para no primeiro erro.
+ */
+public class ParserTabela {
+    private static final int EOF = Token.Tipo.EOF.ordinal();
+    private static final int CONTINT = Token.Tipo.CONTINT.ordinal();
+    
+    private final Gramatica gramatica;
+    private final BufferTokens tokens;
+    private Diagnosticos diagnosticos;
+    private int[] pilha = new int[64];
+    
+    /**
+     * @param tokens Buffer de tokens gerado pelo analisador léxico
+     */
+    public ParserTabela(BufferTokens tokens) {
+        this(tokens, Gramatica.C_MENOS);
+    }
+    
+    /**
+     * @param tokens Lista de tokens gerados pelo analisador léxico
+     */
+    public ParserTabela(List<Token> tokens) {
+        this(BufferTokens.de(tokens));
+    }
+    
+    /**
+     * @param gramatica Gramática cuja tabela dirige o parsing
+     */
+    public ParserTabela(BufferTokens tokens, Gramatica gramatica) {
+        this.tokens = tokens;
+        this.gramatica = gramatica;
+        this.diagnosticos = new Diagnosticos();
+    }
+    
+    /**
+     * Executa o parsing do programa
+     * @return true se o parsing foi bem-sucedido, false caso contrário
+     */
+    public boolean parse() {
+        int[] pilha = this.pilha;
+        int topo = 0;
+        pilha[topo++] = EOF;
+        pilha[topo++] = gramatica.getInicial();
+        
+        int ultimo = tokens.tamanho() - 1;
+        int atual = 0;
+        int tipo = tokens.getTipo(atual).ordinal();
+        while (topo > 0) {
+            int simbolo = pilha[--topo];
+            if (simbolo < Gramatica.TERMINAIS) {
+                if (simbolo != tipo) {
+                    return erro(atual, simbolo == EOF ? Diagnosticos.Codigo.TOKENS_ADICIONAIS
+                                                      : Diagnosticos.Codigo.TOKEN_ESPERADO, 1L << simbolo);
+                }
+                if (tipo == CONTINT
+                    && ParserLL1.valorConstante(tokens.getFonte(), tokens.getInicio(atual), tokens.getComprimento(atual)) < 0) {
+                    return erro(atual, Diagnosticos.Codigo.CONSTANTE_FORA_DO_INTERVALO, 0);
+                }
+                if (atual < ultimo) {
+                    tipo = tokens.getTipo(++atual).ordinal();
+                }
+            } else {
+                int producao = gramatica.producao(simbolo - Gramatica.TERMINAIS, tipo);
+                if (producao < 0) {
+                    return erro(atual, Diagnosticos.Codigo.TOKEN_ESPERADO,
+                                gramatica.esperados(simbolo - Gramatica.TERMINAIS));
+                }
+                // Empilha o corpo em ordem inversa, para expandir da esquerda
+                int[] corpo = gramatica.getCorpo(producao);
+                if (topo + corpo.length > pilha.length) {
+                    pilha = this.pilha = Arrays.copyOf(pilha, Math.max(pilha.length * 2, topo + corpo.length));
+                }
+                for (int i = corpo.length - 1; i >= 0; i--) {
+                    pilha[topo++] = corpo[i];
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Retorna a lista de erros encontrados, formatados
+     */
+    public List<String> getErros() {
+        return diagnosticos.renderizar();
+    }
+    
+    /**
+     * Retorna os erros encontrados como registros compactos
+     */
+    public Diagnosticos getDiagnosticos() {
+        return diagnosticos;
+    }
+    
+    /**
+     * Define onde os erros são registrados
+     */
+    public void setDiagnosticos(Diagnosticos diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
+    
+    private boolean erro(int atual, Diagnosticos.Codigo codigo, long esperados) {
+        diagnosticos.registrar(codigo, tokens.getTipo(atual), tokens.getInicio(atual),
+                               tokens.getComprimento(atual), tokens.getLinha(atual),
+                               tokens.getColuna(atual), esperados, tokens.getFonte(), null);
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.function.Supplier;
+
+/**
+ * Execução de fases recursivas (parser, análise semântica, SSA e
+ * geradores) em uma thread com pilha maior, usada quando a recursão
+ * esgota a pilha da thread atual. A pilha tem uma base fixa mais uma
+ * folga por nível de aninhamento, medida por cada fase.
+ * O tamanho pedido é só uma sugestão: a JVM pode arredondá-lo, limitá-lo
+ * ou ignorá-lo (ver {@link Thread#Thread(ThreadGroup, Runnable, String, long)}),
+ * então a tarefa ainda pode esgotar a pilha. Nesse caso, como em qualquer
+ * outra exceção da tarefa, o StackOverflowError é relançado na thread que
+ * chamou, que decide como tratá-lo.
+ */
+final class Pilha {
+    static final long BASE = 1 << 20;
+    
+    private Pilha() {
+    }
+    
+    /**
+     * Executa a tarefa em uma thread com pilha para a profundidade
+     * indicada e espera o seu fim
+     * @param nome Nome da thread
+     * @param profundidade Profundidade de aninhamento da entrada
+     * @param bytesPorNivel Folga de pilha por nível
+     * @return O resultado da tarefa
+     * @throws InterruptedException se a thread atual for interrompida
+     *                              enquanto espera
+     */
+    static <T> T executarComPilha(String nome, long profundidade, long bytesPorNivel, Supplier<T> tarefa)
+            throws InterruptedException {
+        Object[] resultado = new Object[1];
+        Throwable[] falha = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                resultado[0] = tarefa.get();
+            } catch (Throwable e) {
+                falha[0] = e;
+            }
+        }, nome, BASE + profundidade * bytesPorNivel);
+        thread.start();
+        thread.join();
+        if (falha[0] instanceof RuntimeException) {
+            throw (RuntimeException) falha[0];
+        }
+        if (falha[0] instanceof Error) {
+            throw (Error) falha[0];
+        }
+        @SuppressWarnings("unchecked")
+        T valor = (T) resultado[0];
+        return valor;
+    }
+}
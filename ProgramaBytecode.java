@@ -0,0 +1,222 @@
+import java.util.Arrays;
+
+/**
+ * Programa C- compilado para bytecode de registradores por
+ * {@link GeradorBytecode} e executado por {@link Interpretador}.
+ *
+ * O código de todas as funções fica em um único int[]: cada instrução é
+ * o código de operação seguido de seus operandos. Os registradores de
+ * uma função são as posições de seu quadro na memória (relativas ao
+ * início do quadro): primeiro os parâmetros, depois as variáveis e os
+ * vetores locais, e por fim os temporários. As variáveis globais ficam
+ * em endereços absolutos no início da memória.
+ *
+ * Notação dos operandos: d, a, b e i são registradores; k é uma
+ * constante; g é um endereço global; l é a posição de um vetor local no
+ * quadro; v é um registrador com o endereço de um vetor (parâmetro),
+ * seguido de um com o seu tamanho; n é o tamanho de um vetor; t é o
+ * índice da instrução de destino; f é o índice de uma função. Os acessos
+ * a vetores conferem 0 <= i < n.
+ */
+public final class ProgramaBytecode {
+    // ========== Instruções ==========
+    
+    public static final int CONST = 0;     // d k: d = k
+    public static final int MOV = 1;       // d a: d = a
+    // Aritméticas, na ordem de ArvoreSintatica.Operador
+    public static final int ADD = 2;       // d a b: d = a + b
+    public static final int SUB = 3;
+    public static final int MUL = 4;
+    public static final int DIV = 5;
+    // Aritméticas com constante à direita
+    public static final int ADDK = 6;      // d a k: d = a + k
+    public static final int SUBK = 7;
+    public static final int MULK = 8;
+    public static final int DIVK = 9;
+    // Relacionais, na ordem de ArvoreSintatica.Operador
+    public static final int LT = 10;       // d a b: d = a < b ? 1 : 0
+    public static final int LE = 11;
+    public static final int GT = 12;
+    public static final int GE = 13;
+    public static final int EQ = 14;
+    public static final int NE = 15;
+    // Desvios
+    public static final int JMP = 16;      // t
+    public static final int JZ = 17;       // a t: desvia se a == 0
+    public static final int JNZ = 18;      // a t: desvia se a != 0
+    public static final int JLT = 19;      // a b t: desvia se a < b
+    public static final int JLE = 20;
+    public static final int JGT = 21;
+    public static final int JGE = 22;
+    public static final int JEQ = 23;
+    public static final int JNE = 24;
+    public static final int JLTK = 25;     // a k t: desvia se a < k
+    public static final int JLEK = 26;
+    public static final int JGTK = 27;
+    public static final int JGEK = 28;
+    public static final int JEQK = 29;
+    public static final int JNEK = 30;
+    // Memória
+    public static final int LOADG = 31;    // d g: d = mem[g]
+    public static final int STOREG = 32;   // g a: mem[g] = a
+    public static final int LOADA = 33;    // d g i n: d = mem[g + i]
+    public static final int STOREA = 34;   // g i a n: mem[g + i] = a
+    public static final int LOADL = 35;    // d l i n: d = quadro[l + i]
+    public static final int STOREL = 36;   // l i a n: quadro[l + i] = a
+    public static final int LOADX = 37;    // d v i: d = mem[v + i], com n em v + 1
+    public static final int STOREX = 38;   // v i a: mem[v + i] = a, com n em v + 1
+    public static final int ADDR = 39;     // d l: d = endereço absoluto de quadro[l]
+    public static final int ZERO = 40;     // l k: zera quadro[l, l + k)
+    // Chamadas
+    public static final int CALL = 41;     // f a d: chama f com o quadro a partir de a; d = retorno
+    public static final int RET = 42;      // a: retorna a
+    public static final int RETV = 43;     // retorna sem valor (0)
+    public static final int INPUT = 44;    // d: d = input()
+    public static final int OUTPUT = 45;   // a: output(a)
+    
+    private static final String[] NOMES = {
+        "CONST", "MOV", "ADD", "SUB", "MUL", "DIV", "ADDK", "SUBK", "MULK", "DIVK",
+        "LT", "LE", "GT", "GE", "EQ", "NE", "JMP", "JZ", "JNZ",
+        "JLT", "JLE", "JGT", "JGE", "JEQ", "JNE", "JLTK", "JLEK", "JGTK", "JGEK", "JEQK", "JNEK",
+        "LOADG", "STOREG", "LOADA", "STOREA", "LOADL", "STOREL", "LOADX", "STOREX", "ADDR", "ZERO",
+        "CALL", "RET", "RETV", "INPUT", "OUTPUT"
+    };
+    
+    private static final int[] OPERANDOS = {
+        2, 2, 3, 3, 3, 3, 3, 3, 3, 3,
+        3, 3, 3, 3, 3, 3, 1, 2, 2,
+        3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3,
+        2, 2, 4, 4, 4, 4, 3, 3, 2, 2,
+        3, 1, 0, 1, 1
+    };
+    
+    /**
+     * Retorna o tamanho da instrução com o código de operação, contando-o
+     */
+    public static int tamanho(int operacao) {
+        return 1 + OPERANDOS[operacao];
+    }
+    
+    /**
+     * Retorna o mnemônico da instrução
+     */
+    public static String nome(int operacao) {
+        return NOMES[operacao];
+    }
+    
+    // ========== Programa ==========
+    
+    private final int[] codigo;
+    private final int[] linhas;
+    private final int globais;
+    private final String[] nomes;
+    private final int[] entradas;
+    private final int[] tamanhosQuadro;
+    private final int principal;
+    
+    /**
+     * @param codigo Instruções de todas as funções
+     * @param linhas Linha da fonte de cada instrução, no índice em que ela começa
+     * @param globais Quantidade de posições de memória das variáveis globais
+     * @param nomes Nome de cada função
+     * @param entradas Índice da primeira instrução de cada função
+     * @param tamanhosQuadro Tamanho do quadro de cada função
+     * @param principal Índice da função main, ou -1
+     */
+    ProgramaBytecode(int[] codigo, int[] linhas, int globais, String[] nomes, int[] entradas,
+                     int[] tamanhosQuadro, int principal) {
+        this.codigo = codigo;
+        this.linhas = linhas;
+        this.globais = globais;
+        this.nomes = nomes;
+        this.entradas = entradas;
+        this.tamanhosQuadro = tamanhosQuadro;
+        this.principal = principal;
+    }
+    
+    int[] getCodigo() {
+        return codigo;
+    }
+    
+    int[] getEntradas() {
+        return entradas;
+    }
+    
+    int[] getTamanhosQuadro() {
+        return tamanhosQuadro;
+    }
+    
+    /**
+     * Retorna a linha da fonte da instrução que começa em 'indice'
+     */
+    public int getLinha(int indice) {
+        return linhas[indice];
+    }
+    
+    public int getGlobais() {
+        return globais;
+    }
+    
+    public int getQuantidadeFuncoes() {
+        return nomes.length;
+    }
+    
+    public String getNome(int funcao) {
+        return nomes[funcao];
+    }
+    
+    public int getEntrada(int funcao) {
+        return entradas[funcao];
+    }
+    
+    public int getTamanhoQuadro(int funcao) {
+        return tamanhosQuadro[funcao];
+    }
+    
+    /**
+     * Retorna o índice da função main, ou -1 se o programa não a tem
+     */
+    public int getPrincipal() {
+        return principal;
+    }
+    
+    /**
+     * Retorna a quantidade de posições do código
+     */
+    public int tamanho() {
+        return codigo.length;
+    }
+    
+    /**
+     * Retorna o código desmontado, uma instrução por linha, agrupado por
+     * função
+     */
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder();
+        int funcao = 0;
+        int[] inicios = entradas.clone();
+        Arrays.sort(inicios);
+        for (int pc = 0; pc < codigo.length; pc += tamanho(codigo[pc])) {
+            if (funcao < inicios.length && inicios[funcao] == pc) {
+                texto.append(funcaoEm(pc)).append(":\n");
+                funcao++;
+            }
+            texto.append(String.format("%6d  %-7s", pc, NOMES[codigo[pc]]));
+            for (int i = 1; i <= OPERANDOS[codigo[pc]]; i++) {
+                texto.append(i == 1 ? " " : ", ").append(codigo[pc + i]);
+            }
+            texto.append('\n');
+        }
+        return texto.toString();
+    }
+    
+    private String funcaoEm(int pc) {
+        for (int f = 0; f < entradas.length; f++) {
+            if (entradas[f] == pc) {
+                return nomes[f] + " (quadro " + tamanhosQuadro[f] + ")";
+            }
+        }
+        return "?";
+    }
+}
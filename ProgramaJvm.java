@@ -0,0 +1,151 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Programa C- compilado por {@link GeradorJvm} para uma classe oculta,
+ * executado a partir da função main.
+ *
+ * A execução roda em uma thread própria, cuja pilha limita a
+ * profundidade das chamadas do programa C- (cada chamada é uma chamada
+ * de método da JVM). As globais ficam em campos estáticos da classe:
+ * execuções simultâneas do mesmo programa não são permitidas.
+ *
+ * Os quadros de classes ocultas não aparecem nos rastros de exceções, de
+ * modo que os erros de execução só informam a linha da fonte se a JVM
+ * roda com -XX:+ShowHiddenFrames.
+ */
+public final class ProgramaJvm {
+    private static final long PILHA_PADRAO = 1L << 29;
+    
+    private final MethodHandles.Lookup classe;
+    private final String principal;
+    private IntSupplier entrada = Interpretador::lerEntradaPadrao;
+    private IntConsumer saida = System.out::println;
+    private long tamanhoPilha = PILHA_PADRAO;
+    
+    /**
+     * @param classe Acesso à classe oculta gerada
+     * @param principal Descritor do método main, ou null se não há main
+     */
+    ProgramaJvm(MethodHandles.Lookup classe, String principal) {
+        this.classe = classe;
+        this.principal = principal;
+    }
+    
+    /**
+     * Retorna a classe gerada
+     */
+    public Class<?> getClasse() {
+        return classe.lookupClass();
+    }
+    
+    /**
+     * Define a origem dos valores de input(); por padrão, inteiros lidos
+     * da entrada padrão
+     */
+    public void setEntrada(IntSupplier entrada) {
+        this.entrada = entrada;
+    }
+    
+    /**
+     * Define o destino dos valores de output(); por padrão, uma linha por
+     * valor na saída padrão
+     */
+    public void setSaida(IntConsumer saida) {
+        this.saida = saida;
+    }
+    
+    /**
+     * Define o tamanho da pilha da thread de execução, em bytes
+     */
+    public void setTamanhoPilha(long tamanhoPilha) {
+        this.tamanhoPilha = tamanhoPilha;
+    }
+    
+    /**
+     * Executa a função main
+     * @return o valor retornado por main (0 se ela é void)
+     * @throws Interpretador.ErroExecucao se o programa não tem main ou falha
+     */
+    public synchronized int executar() {
+        if (principal == null) {
+            throw new Interpretador.ErroExecucao("o programa não tem função main", 0);
+        }
+        MethodHandle main;
+        try {
+            Class<?> alvo = classe.lookupClass();
+            classe.findStaticSetter(alvo, GeradorJvm.CAMPO_ENTRADA, IntSupplier.class).invoke(entrada);
+            classe.findStaticSetter(alvo, GeradorJvm.CAMPO_SAIDA, IntConsumer.class).invoke(saida);
+            classe.findStatic(alvo, GeradorJvm.INICIAR, MethodType.methodType(void.class)).invoke();
+            main = classe.findStatic(alvo, "main", MethodType.fromMethodDescriptorString(principal, null));
+        } catch (Throwable e) {
+            throw new IllegalStateException("classe gerada inválida", e);
+        }
+        
+        // Parâmetros de main, se houver, recebem 0 ou um vetor vazio
+        Class<?>[] tipos = main.type().parameterArray();
+        Object[] argumentos = new Object[tipos.length];
+        for (int i = 0; i < tipos.length; i++) {
+            argumentos[i] = tipos[i] == int.class ? (Object) 0 : new int[0];
+        }
+        Object[] resultado = new Object[1];
+        Throwable[] falha = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                resultado[0] = main.invokeWithArguments(argumentos);
+            } catch (Throwable e) {
+                falha[0] = e;
+            }
+        }, "ProgramaJvm", tamanhoPilha);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException interrompido) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("execução interrompida", interrompido);
+        }
+        if (falha[0] != null) {
+            throw erro(falha[0]);
+        }
+        return resultado[0] instanceof Integer ? (Integer) resultado[0] : 0;
+    }
+    
+    /**
+     * Converte uma exceção do código gerado em erro de execução
+     */
+    private RuntimeException erro(Throwable falha) {
+        String mensagem;
+        if (falha instanceof ArithmeticException) {
+            mensagem = "divisão por zero";
+        } else if (falha instanceof ArrayIndexOutOfBoundsException) {
+            mensagem = "acesso fora do vetor";
+        } else if (falha instanceof StackOverflowError) {
+            mensagem = "estouro da pilha de chamadas";
+        } else if (falha instanceof RuntimeException) {
+            // Exceções da entrada e da saída
+            return (RuntimeException) falha;
+        } else if (falha instanceof Error) {
+            throw (Error) falha;
+        } else {
+            return new IllegalStateException(falha);
+        }
+        return new Interpretador.ErroExecucao(mensagem, linha(falha));
+    }
+    
+    /**
+     * Procura a linha da fonte no rastro da exceção (só presente com
+     * -XX:+ShowHiddenFrames)
+     */
+    private int linha(Throwable falha) {
+        String nome = classe.lookupClass().getName();
+        for (StackTraceElement quadro : falha.getStackTrace()) {
+            if (quadro.getClassName().equals(nome)) {
+                return Math.max(quadro.getLineNumber(), 0);
+            }
+        }
+        return 0;
+    }
+}
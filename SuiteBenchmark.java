@@ -0,0 +1,263 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Suíte de benchmarks dos analisadores: mede as análises léxica,
+ * sintática e completa (léxica seguida da sintática) sobre fontes de
+ * perfis diferentes — pequena, média e enorme, com muitos comentários,
+ * com muitas expressões e com muitos erros. As fontes são geradas por
+ * {@link GeradorProgramas} a partir de uma única semente, e os números
+ * são reproduzíveis.
+ *
+ * Cada caso é aquecido por um tempo fixo e medido em várias iterações;
+ * as iterações repetem a operação até durarem um mínimo, de modo que
+ * fontes pequenas também sejam medidas com precisão. Para cada caso são
+ * impressas a vazão (tokens/s e MB/s da fonte) e a alocação na thread
+ * da medição (bytes por token e MB/s), além das coletas de lixo no
+ * período: uma regressão de alocação aparece nos números mesmo quando
+ * não muda o tempo.
+ *
+ * A medição de referência é a do módulo jmh (BenchmarkAnalisadores),
+ * que usa as mesmas fontes e operações ({@link #fonte} e
+ * {@link #operacao}) com o perfilador de GC do JMH. Esta classe é a
+ * alternativa que roda apenas com o JDK; a alocação vem do contador por
+ * thread da JVM (com.sun.management.ThreadMXBean), o mesmo usado pelo
+ * perfilador de GC.
+ *
+ * Uso: java SuiteBenchmark [-csv] [-s semente] [filtro...]
+ * Os filtros selecionam os casos cujo nome ("fase/fonte") os contém.
+ */
+public class SuiteBenchmark {
+    private static final long AQUECIMENTO_MS = 1000;
+    private static final long ITERACAO_MS = 100;
+    private static final int ITERACOES = 10;
+    public static final String[] FASES = {"lexico", "sintatico", "completo"};
+    public static final String[] PERFIS = {"pequena", "media", "enorme", "comentarios", "expressoes", "erros"};
+    
+    // Resultados das operações, para que não sejam eliminadas pelo JIT
+    private static volatile int sumidouro;
+    
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+    
+    public static void main(String[] args) {
+        boolean csv = false;
+        long semente = 1;
+        List<String> filtros = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-csv")) {
+                csv = true;
+            } else if (args[i].equals("-s") && i + 1 < args.length) {
+                semente = Long.parseLong(args[++i]);
+            } else {
+                filtros.add(args[i]);
+            }
+        }
+        
+        Map<String, String> fontes = new LinkedHashMap<>();
+        for (String perfil : PERFIS) {
+            fontes.put(perfil, fonte(perfil, semente));
+        }
+        
+        if (csv) {
+            System.out.println("caso,tokens,m_tokens_s,desvio,mb_s,bytes_token,alocacao_mb_s,coletas");
+        } else {
+            System.out.printf("%-24s %10s %12s %8s %8s %10s %11s %7s%n", "caso", "tokens", "M tokens/s",
+                              "±", "MB/s", "B/token", "aloc. MB/s", "coletas");
+        }
+        for (Map.Entry<String, String> fonte : fontes.entrySet()) {
+            for (String fase : FASES) {
+                String caso = fase + "/" + fonte.getKey();
+                if (!selecionado(caso, filtros)) {
+                    continue;
+                }
+                Resultado resultado = medir(operacao(fase, fonte.getValue()), fonte.getValue());
+                resultado.imprimir(caso, fonte.getValue().length(), csv);
+            }
+        }
+    }
+    
+    /**
+     * Gera a fonte de um dos perfis
+     * @param perfil Um dos nomes em PERFIS
+     */
+    public static String fonte(String perfil, long semente) {
+        GeradorProgramas gerador = new GeradorProgramas(semente);
+        gerador.setTamanho(1 << 20);
+        switch (perfil) {
+            case "pequena":
+                return GeradorProgramas.gerar(semente, 4 << 10);
+            case "media":
+                return GeradorProgramas.gerar(semente, 256 << 10);
+            case "enorme":
+                return GeradorProgramas.gerar(semente, 16 << 20);
+            case "comentarios":
+                gerador.setComentarios(1);
+                return gerador.gerar();
+            case "expressoes":
+                gerador.setComentarios(0);
+                gerador.setComplexidade(8);
+                return gerador.gerar();
+            case "erros":
+                gerador.setComentarios(0);
+                gerador.setTaxaErros(0.05);
+                return gerador.gerar();
+            default:
+                throw new IllegalArgumentException("Perfil desconhecido: " + perfil);
+        }
+    }
+    
+    /**
+     * Retorna a operação da fase sobre a fonte; ela retorna a quantidade
+     * de tokens processados. A análise sintática isolada reusa um buffer
+     * de tokens pronto.
+     * @param fase Um dos nomes em FASES
+     */
+    public static ToIntFunction<String> operacao(String fase, String fonte) {
+        switch (fase) {
+            case "lexico":
+                return f -> new Lexico(f).analisarBuffer().tamanho();
+            case "sintatico": {
+                BufferTokens tokens = new Lexico(fonte).analisarBuffer();
+                return f -> {
+                    sumidouro += new ParserLL1(tokens).parse() ? 1 : 0;
+                    return tokens.tamanho();
+                };
+            }
+            default:
+                return f -> {
+                    Diagnosticos diagnosticos = new Diagnosticos();
+                    Lexico lexico = new Lexico(f);
+                    lexico.setDiagnosticos(diagnosticos);
+                    BufferTokens tokens = lexico.analisarBuffer();
+                    ParserLL1 parser = new ParserLL1(tokens);
+                    parser.setDiagnosticos(diagnosticos);
+                    sumidouro += parser.parse() ? 1 : 0;
+                    return tokens.tamanho();
+                };
+        }
+    }
+    
+    private static boolean selecionado(String caso, List<String> filtros) {
+        if (filtros.isEmpty()) {
+            return true;
+        }
+        for (String filtro : filtros) {
+            if (caso.contains(filtro)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // ========== Medição ==========
+    
+    /**
+     * Medidas de um caso
+     */
+    private static final class Resultado {
+        long tokens;
+        double[] vazoes = new double[ITERACOES];
+        long operacoes;
+        long nanos;
+        long bytesAlocados = -1;
+        long coletas;
+        
+        void imprimir(String caso, int caracteres, boolean csv) {
+            double media = 0;
+            for (double vazao : vazoes) {
+                media += vazao;
+            }
+            media /= ITERACOES;
+            double variancia = 0;
+            for (double vazao : vazoes) {
+                variancia += (vazao - media) * (vazao - media);
+            }
+            double desvio = Math.sqrt(variancia / (ITERACOES - 1));
+            double segundos = nanos / 1e9;
+            double megabytes = (double) caracteres * operacoes / (1 << 20) / segundos;
+            double porToken = bytesAlocados < 0 ? Double.NaN : (double) bytesAlocados / operacoes / tokens;
+            double alocacao = bytesAlocados < 0 ? Double.NaN : bytesAlocados / (double) (1 << 20) / segundos;
+            if (csv) {
+                System.out.printf(Locale.ROOT, "%s,%d,%.3f,%.3f,%.2f,%.2f,%.1f,%d%n", caso, tokens,
+                                  media / 1e6, desvio / 1e6, megabytes, porToken, alocacao, coletas);
+            } else {
+                System.out.printf("%-24s %10d %12.2f %8.2f %8.2f %10.2f %11.1f %7d%n", caso, tokens,
+                                  media / 1e6, desvio / 1e6, megabytes, porToken, alocacao, coletas);
+            }
+        }
+    }
+    
+    /**
+     * Aquece e mede a operação sobre a fonte. Cada iteração repete a
+     * operação até durar ITERACAO_MS.
+     */
+    private static Resultado medir(ToIntFunction<String> operacao, String fonte) {
+        Resultado resultado = new Resultado();
+        long fimAquecimento = System.nanoTime() + AQUECIMENTO_MS * 1_000_000;
+        while (System.nanoTime() < fimAquecimento) {
+            sumidouro += operacao.applyAsInt(fonte);
+        }
+        
+        long alocadosAntes = alocados();
+        long coletasAntes = coletas();
+        for (int i = 0; i < ITERACOES; i++) {
+            long inicio = System.nanoTime();
+            long fim = inicio + ITERACAO_MS * 1_000_000;
+            long agora;
+            long tokens = 0;
+            int operacoes = 0;
+            do {
+                int processados = operacao.applyAsInt(fonte);
+                sumidouro += processados;
+                tokens += processados;
+                operacoes++;
+                agora = System.nanoTime();
+            } while (agora < fim);
+            resultado.vazoes[i] = tokens / ((agora - inicio) / 1e9);
+            resultado.tokens = tokens / operacoes;
+            resultado.operacoes += operacoes;
+            resultado.nanos += agora - inicio;
+        }
+        long alocadosDepois = alocados();
+        if (alocadosAntes >= 0 && alocadosDepois >= 0) {
+            resultado.bytesAlocados = alocadosDepois - alocadosAntes;
+        }
+        resultado.coletas = coletas() - coletasAntes;
+        return resultado;
+    }
+    
+    private static long alocados() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+    
+    private static long coletas() {
+        long total = 0;
+        for (GarbageCollectorMXBean coletor : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(coletor.getCollectionCount(), 0);
+        }
+        return total;
+    }
+    
+    /**
+     * Retorna o bean com o contador de alocação por thread, ou null se a
+     * JVM não o oferece
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean alocacao = (com.sun.management.ThreadMXBean) threads;
+        if (!alocacao.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        alocacao.setThreadAllocatedMemoryEnabled(true);
+        return alocacao;
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+
+/**
+ * Tabela de internação de identificadores: cada nome distinto recebe um
+ * id inteiro estável e é guardado uma única vez. Usa endereçamento
+ * aberto com sondagem linear, comparando os caracteres diretamente na
+ * fonte, de modo que uma ocorrência repetida não cria String.
+ */
+public class TabelaNomes {
+    private static final int CAPACIDADE_INICIAL = 64;
+    
+    // Posição na tabela -> id + 1 (0 indica posição vazia)
+    private int[] posicoes;
+    private int[] hashes;
+    private String[] nomes;
+    private int tamanho;
+    
+    public TabelaNomes() {
+        this.posicoes = new int[CAPACIDADE_INICIAL * 2];
+        this.hashes = new int[CAPACIDADE_INICIAL];
+        this.nomes = new String[CAPACIDADE_INICIAL];
+    }
+    
+    /**
+     * Calcula o hash do trecho [inicio, fim) da fonte
+     */
+    public static int hash(CharSequence fonte, int inicio, int fim) {
+        int h = 0;
+        for (int i = inicio; i < fim; i++) {
+            h = 31 * h + fonte.charAt(i);
+        }
+        return h;
+    }
+    
+    /**
+     * Retorna o id do nome no trecho [inicio, fim) da fonte,
+     * registrando-o se ainda não existir
+     */
+    public int internar(CharSequence fonte, int inicio, int fim) {
+        int h = hash(fonte, inicio, fim);
+        int mascara = posicoes.length - 1;
+        for (int p = mistura(h) & mascara; ; p = (p + 1) & mascara) {
+            int id = posicoes[p] - 1;
+            if (id < 0) {
+                return registrar(p, h, fonte.subSequence(inicio, fim).toString());
+            }
+            if (hashes[id] == h && coincide(nomes[id], fonte, inicio, fim)) {
+                return id;
+            }
+        }
+    }
+    
+    /**
+     * Retorna o id do nome, registrando-o se ainda não existir
+     */
+    public int internar(String nome) {
+        return internar(nome, 0, nome.length());
+    }
+    
+    /**
+     * Retorna o id do nome, ou -1 se ele nunca foi registrado
+     */
+    public int buscar(String nome) {
+        int h = nome.hashCode();
+        int mascara = posicoes.length - 1;
+        for (int p = mistura(h) & mascara; ; p = (p + 1) & mascara) {
+            int id = posicoes[p] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (hashes[id] == h && nomes[id].equals(nome)) {
+                return id;
+            }
+        }
+    }
+    
+    /**
+     * Retorna o nome correspondente ao id
+     */
+    public String nome(int id) {
+        return nomes[id];
+    }
+    
+    /**
+     * Retorna a quantidade de nomes distintos
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+    
+    private int registrar(int posicao, int h, String nome) {
+        int id = tamanho++;
+        if (id == nomes.length) {
+            nomes = Arrays.copyOf(nomes, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        nomes[id] = nome;
+        hashes[id] = h;
+        posicoes[posicao] = id + 1;
+        // Mantém a ocupação da tabela abaixo de 50%
+        if (tamanho * 2 > posicoes.length) {
+            redimensionar();
+        }
+        return id;
+    }
+    
+    private void redimensionar() {
+        int[] novas = new int[posicoes.length * 2];
+        int mascara = novas.length - 1;
+        for (int id = 0; id < tamanho; id++) {
+            int p = mistura(hashes[id]) & mascara;
+            while (novas[p] != 0) {
+                p = (p + 1) & mascara;
+            }
+            novas[p] = id + 1;
+        }
+        posicoes = novas;
+    }
+    
+    /**
+     * Espalha os bits do hash (hashes de nomes curtos diferem pouco nos
+     * bits baixos)
+     */
+    private static int mistura(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    private static boolean coincide(String nome, CharSequence fonte, int inicio, int fim) {
+        if (nome.length() != fim - inicio) {
+            return false;
+        }
+        for (int i = 0; i < nome.length(); i++) {
+            if (nome.charAt(i) != fonte.charAt(inicio + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
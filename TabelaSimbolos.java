@@ -0,0 +1,278 @@
+import java.util.Arrays;
+
+/**
+ * Tabela de símbolos com escopos aninhados, indexada pelos ids dos nomes
+ * internados em {@link TabelaNomes}.
+ *
+ * Uma única tabela de endereçamento aberto associa cada nome ao símbolo
+ * visível mais interno. Os símbolos ficam em vetores paralelos,
+ * empilhados na ordem de declaração, e cada um guarda o símbolo que
+ * encobre e a posição de seu nome na tabela. Essa pilha serve de
+ * registro para desfazer: fechar um escopo desempilha seus símbolos e
+ * restaura os encobertos. Assim não há um mapa por bloco, e abrir e
+ * fechar escopos custa apenas o proporcional aos símbolos declarados
+ * neles.
+ */
+public class TabelaSimbolos {
+    private static final int CAPACIDADE_INICIAL = 64;
+    
+    /**
+     * Categorias de símbolo
+     */
+    public enum Categoria {
+        VARIAVEL, VETOR, FUNCAO
+    }
+    
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    private static final Token.Tipo[] TIPOS = Token.Tipo.values();
+    
+    // Tabela: id do nome + 1 (0 indica posição vazia) e símbolo visível
+    // (-1: nenhum). Os nomes nunca saem da tabela, apenas ficam sem símbolo.
+    private int[] chaves;
+    private int[] visiveis;
+    private int ocupadas;
+    
+    // Pilha de símbolos
+    private int[] nomes;
+    private byte[] categorias;
+    private byte[] tipos;
+    private int[] niveis;
+    private int[] encobertos;
+    private int[] posicoesTabela;
+    private int[] declaracoes;
+    // Funções: parâmetros em [iniciosParametros[s], iniciosParametros[s] + quantidadesParametros[s])
+    // de 'parametrosVetor'
+    private int[] iniciosParametros;
+    private int[] quantidadesParametros;
+    private int quantidade;
+    
+    private boolean[] parametrosVetor = new boolean[CAPACIDADE_INICIAL];
+    private int totalParametros;
+    
+    // Primeiro símbolo de cada escopo aberto
+    private int[] iniciosEscopos = new int[16];
+    private int nivel = -1;
+    
+    public TabelaSimbolos() {
+        this.chaves = new int[CAPACIDADE_INICIAL * 2];
+        this.visiveis = new int[CAPACIDADE_INICIAL * 2];
+        this.nomes = new int[CAPACIDADE_INICIAL];
+        this.categorias = new byte[CAPACIDADE_INICIAL];
+        this.tipos = new byte[CAPACIDADE_INICIAL];
+        this.niveis = new int[CAPACIDADE_INICIAL];
+        this.encobertos = new int[CAPACIDADE_INICIAL];
+        this.posicoesTabela = new int[CAPACIDADE_INICIAL];
+        this.declaracoes = new int[CAPACIDADE_INICIAL];
+        this.iniciosParametros = new int[CAPACIDADE_INICIAL];
+        this.quantidadesParametros = new int[CAPACIDADE_INICIAL];
+    }
+    
+    // ========== Escopos ==========
+    
+    /**
+     * Abre um escopo dentro do atual (o primeiro é o global)
+     */
+    public void abrirEscopo() {
+        nivel++;
+        if (nivel == iniciosEscopos.length) {
+            iniciosEscopos = Arrays.copyOf(iniciosEscopos, nivel * 2);
+        }
+        iniciosEscopos[nivel] = quantidade;
+    }
+    
+    /**
+     * Fecha o escopo atual, descartando seus símbolos e tornando
+     * visíveis de novo os que eles encobriam
+     */
+    public void fecharEscopo() {
+        int inicio = iniciosEscopos[nivel--];
+        for (int s = quantidade - 1; s >= inicio; s--) {
+            visiveis[posicoesTabela[s]] = encobertos[s];
+        }
+        // Os parâmetros das funções descartadas também saem: os que
+        // restam terminam nos do último símbolo antes do escopo
+        if (quantidade > inicio && inicio > 0) {
+            totalParametros = iniciosParametros[inicio - 1] + quantidadesParametros[inicio - 1];
+        } else if (inicio == 0) {
+            totalParametros = 0;
+        }
+        quantidade = inicio;
+    }
+    
+    /**
+     * Retorna o nível do escopo atual (0: global)
+     */
+    public int getNivel() {
+        return nivel;
+    }
+    
+    // ========== Declaração e busca ==========
+    
+    /**
+     * Declara um símbolo no escopo atual
+     * @param nome Id do nome
+     * @param tipo Tipo declarado (INT ou VOID)
+     * @param declaracao Nó da declaração na árvore, ou -1
+     * @return o símbolo, ou -1 se o nome já está declarado neste escopo
+     */
+    public int declarar(int nome, Categoria categoria, Token.Tipo tipo, int declaracao) {
+        int posicao = posicaoDe(nome);
+        int anterior = visiveis[posicao];
+        if (anterior >= 0 && niveis[anterior] == nivel) {
+            return -1;
+        }
+        if (quantidade == nomes.length) {
+            crescer();
+        }
+        int s = quantidade++;
+        nomes[s] = nome;
+        categorias[s] = (byte) categoria.ordinal();
+        tipos[s] = (byte) tipo.ordinal();
+        niveis[s] = nivel;
+        encobertos[s] = anterior;
+        posicoesTabela[s] = posicao;
+        declaracoes[s] = declaracao;
+        iniciosParametros[s] = totalParametros;
+        quantidadesParametros[s] = 0;
+        visiveis[posicao] = s;
+        return s;
+    }
+    
+    /**
+     * Acrescenta um parâmetro à função declarada por último
+     */
+    public void adicionarParametro(int funcao, boolean vetor) {
+        if (totalParametros == parametrosVetor.length) {
+            parametrosVetor = Arrays.copyOf(parametrosVetor, totalParametros * 2);
+        }
+        parametrosVetor[totalParametros++] = vetor;
+        quantidadesParametros[funcao]++;
+    }
+    
+    /**
+     * Retorna o símbolo visível com o nome, ou -1 se não há nenhum
+     */
+    public int buscar(int nome) {
+        int mascara = chaves.length - 1;
+        for (int p = mistura(nome) & mascara; ; p = (p + 1) & mascara) {
+            int chave = chaves[p];
+            if (chave == 0) {
+                return -1;
+            }
+            if (chave == nome + 1) {
+                return visiveis[p];
+            }
+        }
+    }
+    
+    public int getNome(int simbolo) {
+        return nomes[simbolo];
+    }
+    
+    public Categoria getCategoria(int simbolo) {
+        return CATEGORIAS[categorias[simbolo]];
+    }
+    
+    /**
+     * Retorna o tipo declarado (de uma função, o tipo de retorno)
+     */
+    public Token.Tipo getTipo(int simbolo) {
+        return TIPOS[tipos[simbolo]];
+    }
+    
+    /**
+     * Retorna o nível do escopo em que o símbolo foi declarado
+     */
+    public int getNivel(int simbolo) {
+        return niveis[simbolo];
+    }
+    
+    /**
+     * Retorna o nó da declaração do símbolo, ou -1 (funções predefinidas)
+     */
+    public int getDeclaracao(int simbolo) {
+        return declaracoes[simbolo];
+    }
+    
+    public int getQuantidadeParametros(int funcao) {
+        return quantidadesParametros[funcao];
+    }
+    
+    public boolean isParametroVetor(int funcao, int parametro) {
+        return parametrosVetor[iniciosParametros[funcao] + parametro];
+    }
+    
+    /**
+     * Retorna a quantidade de símbolos visíveis ou encobertos nos escopos
+     * abertos
+     */
+    public int tamanho() {
+        return quantidade;
+    }
+    
+    /**
+     * Retorna a posição do nome na tabela, inserindo-o se preciso
+     */
+    private int posicaoDe(int nome) {
+        int mascara = chaves.length - 1;
+        for (int p = mistura(nome) & mascara; ; p = (p + 1) & mascara) {
+            int chave = chaves[p];
+            if (chave == nome + 1) {
+                return p;
+            }
+            if (chave == 0) {
+                // Mantém a ocupação da tabela abaixo de 50%
+                if ((ocupadas + 1) * 2 > chaves.length) {
+                    redimensionar();
+                    return posicaoDe(nome);
+                }
+                chaves[p] = nome + 1;
+                visiveis[p] = -1;
+                ocupadas++;
+                return p;
+            }
+        }
+    }
+    
+    private void redimensionar() {
+        int[] novasChaves = new int[chaves.length * 2];
+        int[] novosVisiveis = new int[chaves.length * 2];
+        int mascara = novasChaves.length - 1;
+        for (int p = 0; p < chaves.length; p++) {
+            if (chaves[p] == 0) {
+                continue;
+            }
+            int q = mistura(chaves[p] - 1) & mascara;
+            while (novasChaves[q] != 0) {
+                q = (q + 1) & mascara;
+            }
+            novasChaves[q] = chaves[p];
+            novosVisiveis[q] = visiveis[p];
+            // Os símbolos guardam a posição do nome, que mudou
+            for (int s = visiveis[p]; s >= 0; s = encobertos[s]) {
+                posicoesTabela[s] = q;
+            }
+        }
+        chaves = novasChaves;
+        visiveis = novosVisiveis;
+    }
+    
+    private static int mistura(int h) {
+        // Os ids são sequenciais: espalha-os pela tabela
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    private void crescer() {
+        int capacidade = nomes.length * 2;
+        nomes = Arrays.copyOf(nomes, capacidade);
+        categorias = Arrays.copyOf(categorias, capacidade);
+        tipos = Arrays.copyOf(tipos, capacidade);
+        niveis = Arrays.copyOf(niveis, capacidade);
+        encobertos = Arrays.copyOf(encobertos, capacidade);
+        posicoesTabela = Arrays.copyOf(posicoesTabela, capacidade);
+        declaracoes = Arrays.copyOf(declaracoes, capacidade);
+        iniciosParametros = Arrays.copyOf(iniciosParametros, capacidade);
+        quantidadesParametros = Arrays.copyOf(quantidadesParametros, capacidade);
+    }
+}
@@ -33,12 +33,22 @@ public class Token {
     private String valor;
     private int linha;
     private int coluna;
+    private int id;
     
     public Token(Tipo tipo, String valor, int linha, int coluna) {
+        this(tipo, valor, linha, coluna, -1);
+    }
+    
+    /**
+     * @param id Id do nome na {@link TabelaNomes}, para identificadores
+     *           (-1 para os demais tokens)
+     */
+    public Token(Tipo tipo, String valor, int linha, int coluna, int id) {
         this.tipo = tipo;
         this.valor = valor;
         this.linha = linha;
         this.coluna = coluna;
+        this.id = id;
     }
     
     public Tipo getTipo() {
@@ -57,6 +67,10 @@ public class Token {
         return coluna;
     }
     
+    public int getId() {
+        return id;
+    }
+    
     @Override
     public String toString() {
         return String.format("Token(%s, '%s', linha: %d, coluna: %d)", 
@@ -0,0 +1,70 @@
+/**
+ * Buscas em bloco sobre a fonte, usadas para saltar o corpo de
+ * comentários sem passar cada caractere pelo autômato. FonteBytes lê
+ * 8 bytes por vez (SWAR); as demais fontes são percorridas caractere a
+ * caractere. Nenhuma busca lê além de 'ate': String.indexOf não tem
+ * limite no JDK 17 e, com muitos comentários numa só linha, cada busca
+ * iria até a próxima quebra real, em tempo quadrático. Ele só é usado
+ * (pelo intrínseco da JVM) quando 'ate' é o fim da String.
+ * Todas as posições são relativas à fonte recebida.
+ */
+final class Varredura {
+    private Varredura() {
+    }
+    
+    /**
+     * Retorna a posição da primeira quebra de linha em [de, ate),
+     * ou -1 se não houver
+     */
+    static int proximaQuebra(CharSequence fonte, int de, int ate) {
+        if (fonte instanceof FonteBytes) {
+            return ((FonteBytes) fonte).indiceDe((byte) '\n', de, ate);
+        }
+        if (fonte instanceof String) {
+            String texto = (String) fonte;
+            if (ate == texto.length()) {
+                return texto.indexOf('\n', de);
+            }
+            for (int i = de; i < ate; i++) {
+                if (texto.charAt(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        for (int i = de; i < ate; i++) {
+            if (fonte.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Retorna a posição do '*' que fecha um comentário de bloco (o
+     * primeiro '*' seguido de '/') em [de, ate), ou -1 se não houver
+     */
+    static int fimComentario(CharSequence fonte, int de, int ate) {
+        if (fonte instanceof FonteBytes) {
+            return ((FonteBytes) fonte).indiceDeFimComentario(de, ate);
+        }
+        if (fonte instanceof String) {
+            String texto = (String) fonte;
+            if (ate == texto.length()) {
+                return texto.indexOf("*/", de);
+            }
+            for (int i = de; i + 1 < ate; i++) {
+                if (texto.charAt(i) == '*' && texto.charAt(i + 1) == '/') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        for (int i = de; i + 1 < ate; i++) {
+            if (fonte.charAt(i) == '*' && fonte.charAt(i + 1) == '/') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
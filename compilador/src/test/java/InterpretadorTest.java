@@ -0,0 +1,84 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Execução de programas pelo interpretador de bytecode, conferida com o
+ * código gerado para a JVM
+ */
+class InterpretadorTest {
+    @Test
+    void executaVetoresLocaisGlobaisEParametros() {
+        String fonte = "int g[5];\n"
+                       + "void enche(int v[], int n) { int i; i = 0; while (i < n) { v[i] = i * i; i = i + 1; } }\n"
+                       + "int soma(int v[], int n) { int i; int t; i = 0; t = 0;"
+                       + " while (i < n) { t = t + v[i]; i = i + 1; } return t; }\n"
+                       + "int main() { int l[4]; enche(g, 5); enche(l, 4); return soma(g, 5) + soma(l, 4); }\n";
+        assertEquals(44, executar(fonte));
+        assertEquals(44, executarJvm(fonte));
+    }
+    
+    @Test
+    void indiceLogoAposOFimDeVetorLocal() {
+        conferirForaDoVetor("int main() { int x; int v[3]; x = 0;\nv[3] = 1; return x; }\n", 2);
+    }
+    
+    @Test
+    void indiceLogoAposOFimDeVetorGlobal() {
+        conferirForaDoVetor("int v[3]; int x;\nint main() { x = 0;\nreturn v[3]; }\n", 3);
+    }
+    
+    @Test
+    void indiceLogoAposOFimDeParametroVetor() {
+        conferirForaDoVetor("void f(int v[]) {\nv[3] = 1; }\nint main() { int a[3]; int b[3]; f(a); return b[0]; }\n",
+                            2);
+    }
+    
+    @Test
+    void indiceNegativoDeVetorLocal() {
+        conferirForaDoVetor("int main() { int x; int v[3]; x = 1;\nreturn v[0 - x]; }\n", 2);
+    }
+    
+    @Test
+    void indiceNegativoDeVetorGlobal() {
+        conferirForaDoVetor("int x; int v[3];\nint main() {\nv[0 - 1] = 5; return x; }\n", 3);
+    }
+    
+    @Test
+    void indiceNegativoDeParametroRepassado() {
+        conferirForaDoVetor("int f(int v[]) {\nreturn v[0 - 1]; }\nint g(int v[]) { return f(v); }\n"
+                            + "int main() { int a[3]; return g(a); }\n", 2);
+    }
+    
+    /**
+     * Confere que os dois backends param com "acesso fora do vetor" na linha
+     */
+    private static void conferirForaDoVetor(String fonte, int linha) {
+        Interpretador.ErroExecucao erro = assertThrows(Interpretador.ErroExecucao.class, () -> executar(fonte));
+        assertTrue(erro.getMessage().endsWith("acesso fora do vetor"), erro.getMessage());
+        assertEquals(linha, erro.getLinha());
+        Interpretador.ErroExecucao erroJvm = assertThrows(Interpretador.ErroExecucao.class, () -> executarJvm(fonte));
+        assertTrue(erroJvm.getMessage().endsWith("acesso fora do vetor"), erroJvm.getMessage());
+    }
+    
+    private static int executar(String fonte) {
+        Compilador.Analise analise = analisar(fonte);
+        return new Interpretador(new GeradorBytecode(analise.getArvore(), analise.getSemantico()).gerar()).executar();
+    }
+    
+    private static int executarJvm(String fonte) {
+        Compilador.Analise analise = analisar(fonte);
+        return new GeradorJvm(analise.getArvore(), analise.getSemantico()).gerar().executar();
+    }
+    
+    /**
+     * Analisa um programa que não deve ter erros
+     */
+    private static Compilador.Analise analisar(String fonte) {
+        Compilador.Analise analise = Compilador.analisarFonte(fonte);
+        assertTrue(analise.getErros().isEmpty(), () -> String.join("\n", analise.getErros()));
+        return analise;
+    }
+}
@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Análise léxica da mesma fonte como String e como bytes UTF-8
+ */
+class LexicoTest {
+    @Test
+    void caractereMultibyteGeraUmErroNaColunaDoCaractere() {
+        String fonte = "int main() {\n  int x; é x = 1;\n}\n";
+        List<String> erros = erros(fonte);
+        assertEquals(List.of("Erro léxico na linha 2, coluna 10: Caractere inesperado: é"), erros);
+        assertEquals(erros, errosBytes(fonte));
+    }
+    
+    @Test
+    void sequenciasDeDoisTresEQuatroBytesComoNaString() {
+        String fonte = "int é;\nint x€y; /* ação */\nvoid f() { 😀 return; }\nint çé; // fim é\n";
+        List<String> erros = erros(fonte);
+        assertEquals(5, erros.size(), erros::toString);
+        assertEquals(erros, errosBytes(fonte));
+    }
+    
+    @Test
+    void tokensAposCaractereMultibyteSaoOsMesmos() {
+        String fonte = "int a; é int b; ação int c; 😀 int d;\n";
+        BufferTokens texto = new Lexico(fonte).analisarBuffer();
+        BufferTokens bytes = new Lexico(fonteBytes(fonte)).analisarBuffer();
+        assertEquals(texto.tamanho(), bytes.tamanho());
+        for (int i = 0; i < texto.tamanho(); i++) {
+            assertEquals(texto.getTipo(i), bytes.getTipo(i));
+            assertEquals(texto.getColuna(i), bytes.getColuna(i));
+        }
+    }
+    
+    @Test
+    void identificadoresSaoSoAscii() {
+        String fonte = "int café;\n";
+        List<String> erros = erros(fonte);
+        assertEquals(List.of("Erro léxico na linha 1, coluna 8: Caractere inesperado: é"), erros);
+        assertEquals(erros, errosBytes(fonte));
+        BufferTokens tokens = new Lexico(fonte).analisarBuffer();
+        assertEquals(Token.Tipo.IDENT, tokens.getTipo(1));
+        assertEquals(5, tokens.getColuna(1));
+    }
+    
+    private static List<String> erros(CharSequence fonte) {
+        Lexico lexico = new Lexico(fonte);
+        lexico.analisarBuffer();
+        return lexico.getDiagnosticos().renderizar();
+    }
+    
+    private static List<String> errosBytes(String fonte) {
+        return erros(fonteBytes(fonte));
+    }
+    
+    private static FonteBytes fonteBytes(String fonte) {
+        return new FonteBytes(ByteBuffer.wrap(fonte.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,82 @@
+package cminus.jmh;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks JMH dos analisadores: as análises léxica, sintática e
+ * completa sobre as fontes de SuiteBenchmark (pequena, média e enorme,
+ * com muitos comentários, com muitas expressões e com muitos erros).
+ * Além de operações/s, é reportado o contador "tokens" (tokens/s); com
+ * -prof gc (ligado por {@link Principal}), a alocação por operação.
+ *
+ * As classes do analisador estão no pacote padrão, que não pode ser
+ * importado, e o JMH não aceita benchmarks nele: a fonte e a operação
+ * são obtidas de SuiteBenchmark por reflexão na preparação, como tipos
+ * do JDK, e a medição não passa por reflexão.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkAnalisadores {
+    @Param({"lexico", "sintatico", "completo"})
+    public String fase;
+    
+    @Param({"pequena", "media", "enorme", "comentarios", "expressoes", "erros"})
+    public String perfil;
+    
+    @Param("1")
+    public long semente;
+    
+    private String fonte;
+    private ToIntFunction<String> operacao;
+    
+    /**
+     * Tokens processados, reportados como vazão
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Tokens {
+        public long tokens;
+        
+        @Setup(Level.Iteration)
+        public void zerar() {
+            tokens = 0;
+        }
+    }
+    
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void preparar() throws ReflectiveOperationException {
+        Class<?> suite = Class.forName("SuiteBenchmark");
+        Method gerarFonte = suite.getMethod("fonte", String.class, long.class);
+        Method obterOperacao = suite.getMethod("operacao", String.class, String.class);
+        fonte = (String) gerarFonte.invoke(null, perfil, semente);
+        operacao = (ToIntFunction<String>) obterOperacao.invoke(null, fase, fonte);
+    }
+    
+    @Benchmark
+    public int analisar(Tokens contador) {
+        int tokens = operacao.applyAsInt(fonte);
+        contador.tokens += tokens;
+        return tokens;
+    }
+}
@@ -0,0 +1,30 @@
+package cminus.jmh;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ponto de entrada de benchmarks.jar: aceita as opções de linha de
+ * comando do JMH e liga sempre o perfilador de GC, para que a alocação
+ * apareça junto com a vazão.
+ *
+ * Uso: java -jar jmh/target/benchmarks.jar [opções do JMH]
+ * Ex.: java -jar jmh/target/benchmarks.jar -p fase=lexico -p perfil=enorme
+ */
+public class Principal {
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions linha = new CommandLineOptions(args);
+        if (linha.shouldHelp() || linha.shouldList() || linha.shouldListProfilers()
+            || linha.shouldListResultFormats() || linha.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder().parent(linha).addProfiler(GCProfiler.class).build()).run();
+    }
+}